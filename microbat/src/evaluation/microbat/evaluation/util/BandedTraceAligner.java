@@ -0,0 +1,170 @@
+package microbat.evaluation.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import microbat.evaluation.model.PairList;
+import microbat.evaluation.model.TraceNodePair;
+import microbat.model.trace.TraceNode;
+
+/**
+ * Aligns two traces like the score table of {@link DiffUtil} does, but only fills the cells within a band around
+ * the diagonal, and keeps two rows of scores and one byte per cell (the step the back tracking takes from it)
+ * instead of the whole table of scores. The similarities are computed sequentially, the comparators are not
+ * thread-safe (e.g., they load the variables of lazy steps and link the children of compared values).
+ * <p>
+ * The band starts narrow and is doubled until no path leaving it can get a better score (a pair of steps is
+ * never scored more than 1), until widening it does not improve the score anymore, or until it would take more
+ * than {@link #MAX_BAND_CELLS} cells. When the band covers the whole table, which is always the case for small
+ * traces, the result is exactly the one of the full table.
+ */
+public class BandedTraceAligner {
+	/* traces up to this size are aligned with the full table */
+	private static final long FULL_TABLE_CELLS = 1L << 24;
+	private static final long MAX_BAND_CELLS = 1L << 28;
+	private static final int INIT_BAND_WIDTH = 64;
+
+	/* steps of the back tracking */
+	private static final byte UP = 1;
+	private static final byte LEFT = 2;
+	private static final byte DIAGONAL = 3;
+	private static final byte STEP_MASK = 3;
+	private static final byte EXACT_SAME = 4;
+
+	private TraceNode[] nodeList1;
+	private TraceNode[] nodeList2;
+	private TraceNodeSimilarityComparator comparator;
+
+	/* band of diagonals (j - i) being filled */
+	private int lowDiagonal;
+	private int highDiagonal;
+	private byte[][] steps;
+	private double score;
+
+	public BandedTraceAligner(TraceNode[] nodeList1, TraceNode[] nodeList2, TraceNodeSimilarityComparator comparator) {
+		this.nodeList1 = nodeList1;
+		this.nodeList2 = nodeList2;
+		this.comparator = comparator;
+	}
+
+	public PairList align() {
+		int n = nodeList1.length;
+		int m = nodeList2.length;
+		if (n == 0 || m == 0) {
+			return new PairList(new ArrayList<TraceNodePair>());
+		}
+		if ((long) (n + 1) * (m + 1) <= FULL_TABLE_CELLS) {
+			fill(m + n);
+			return backTrack();
+		}
+		int lengthDiff = Math.abs(m - n);
+		int bandWidth = INIT_BAND_WIDTH;
+		fill(bandWidth);
+		while (!coversTable() && score <= Math.min(n, m) - bandWidth - 1) {
+			bandWidth *= 2;
+			if ((long) (n + 1) * (lengthDiff + 2 * bandWidth + 1) > MAX_BAND_CELLS) {
+				break;
+			}
+			double narrowerScore = score;
+			fill(bandWidth);
+			if (score <= narrowerScore) {
+				/* widening does not help anymore */
+				break;
+			}
+		}
+		return backTrack();
+	}
+
+	private void setBand(int bandWidth) {
+		int lengthDiff = nodeList2.length - nodeList1.length;
+		lowDiagonal = Math.max(Math.min(0, lengthDiff) - bandWidth, -nodeList1.length);
+		highDiagonal = Math.min(Math.max(0, lengthDiff) + bandWidth, nodeList2.length);
+	}
+
+	private boolean coversTable() {
+		return lowDiagonal == -nodeList1.length && highDiagonal == nodeList2.length;
+	}
+
+	/**
+	 * fills the band with the same recurrence as the full table, cells out of the band count as unreachable. The
+	 * step taken back from a cell is decided here, the way {@link DiffUtil} decides it from the full table.
+	 */
+	private void fill(int bandWidth) {
+		setBand(bandWidth);
+		int n = nodeList1.length;
+		int width = highDiagonal - lowDiagonal + 1;
+		steps = new byte[n + 1][];
+		double[] prevRow = new double[width];
+		double[] row = new double[width];
+		/* row 0 */
+		for (int c = 0; c < width; c++) {
+			int j = c + lowDiagonal;
+			prevRow[c] = (j >= 0 && j <= nodeList2.length) ? 0 : Double.NEGATIVE_INFINITY;
+		}
+		for (int i = 1; i <= n; i++) {
+			fillRow(i, prevRow, row);
+			double[] tmp = prevRow;
+			prevRow = row;
+			row = tmp;
+		}
+		score = prevRow[nodeList2.length - n - lowDiagonal];
+	}
+
+	private void fillRow(int i, double[] prevRow, double[] row) {
+		int width = row.length;
+		byte[] rowSteps = new byte[width];
+		steps[i] = rowSteps;
+		for (int c = 0; c < width; c++) {
+			int j = i + c + lowDiagonal;
+			if (j < 0 || j > nodeList2.length) {
+				row[c] = Double.NEGATIVE_INFINITY;
+				continue;
+			}
+			if (j == 0) {
+				row[c] = 0;
+				continue;
+			}
+			/* cell (i-1, j) is in the same column of the previous row, cell (i-1, j-1) is the one before it */
+			double up = (c + 1 < width) ? prevRow[c + 1] : Double.NEGATIVE_INFINITY;
+			double left = (c > 0) ? row[c - 1] : Double.NEGATIVE_INFINITY;
+			double diagonal = prevRow[c];
+			TraceNode node1 = nodeList1[i - 1];
+			TraceNode node2 = nodeList2[j - 1];
+			double value;
+			if (node1.hasSameLocation(node2)) {
+				double sim = comparator.compute(node1, node2);
+				value = DiffUtil.getLargestValue(diagonal + sim, up, left);
+				double increase = value - diagonal;
+				if (Math.abs(sim - increase) < 0.01) {
+					rowSteps[c] = (byte) (sim > 0.99 ? DIAGONAL | EXACT_SAME : DIAGONAL);
+				} else {
+					rowSteps[c] = (up >= left) ? UP : LEFT;
+				}
+			} else {
+				value = (up >= left) ? up : left;
+				rowSteps[c] = (up >= left) ? UP : LEFT;
+			}
+			row[c] = value;
+		}
+	}
+
+	private PairList backTrack() {
+		List<TraceNodePair> pairList = new ArrayList<>();
+		for (int i = nodeList1.length, j = nodeList2.length; (i > 0 && j > 0);) {
+			byte step = steps[i][j - i - lowDiagonal];
+			if ((step & STEP_MASK) == DIAGONAL) {
+				TraceNodePair pair = new TraceNodePair(nodeList1[i - 1], nodeList2[j - 1]);
+				pair.setExactSame((step & EXACT_SAME) != 0);
+				pairList.add(pair);
+				i--;
+				j--;
+			} else if (step == UP) {
+				i--;
+			} else {
+				j--;
+			}
+		}
+		DiffUtil.reverseOrder(pairList);
+		return new PairList(pairList);
+	}
+}
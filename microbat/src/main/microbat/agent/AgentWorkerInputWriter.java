@@ -0,0 +1,52 @@
+package microbat.agent;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import microbat.instrumentation.worker.AgentWorker;
+import sav.strategies.vm.interprocess.TcpInputWriter;
+
+/**
+ * Sends the runs to an agent worker, in the format read by {@link AgentWorker}.
+ */
+public class AgentWorkerInputWriter extends TcpInputWriter {
+	private List<String> request;
+	private PrintWriter pw;
+
+	public AgentWorkerInputWriter() {
+		waiting();
+	}
+
+	public void sendData(List<String> request) {
+		if (isClosed()) {
+			throw new IllegalStateException("InputWriter is closed!");
+		}
+		this.request = request;
+		ready();
+	}
+
+	@Override
+	protected void writeData() {
+		for (String line : request) {
+			pw.println(line);
+		}
+		pw.println(AgentWorker.REQUEST_END);
+		request = null;
+	}
+
+	@Override
+	public void setOutputStream(OutputStream outputStream) {
+		this.pw = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), true);
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		if (pw != null) {
+			pw.close();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package microbat.agent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import microbat.instrumentation.worker.AgentWorker;
+import sav.common.core.utils.StringUtils;
+import sav.strategies.vm.interprocess.TcpOutputReader;
+
+/**
+ * Reads the program message of each run of an agent worker, see {@link AgentWorker}.
+ */
+public class AgentWorkerOutputReader extends TcpOutputReader {
+	private volatile String output;
+
+	public AgentWorkerOutputReader() {
+		waiting();
+	}
+
+	@Override
+	public boolean isMatched(String line) {
+		return AgentWorker.OUTPUT_START.equals(line);
+	}
+
+	@Override
+	protected void readData(BufferedReader br) {
+		List<String> lines = new ArrayList<>();
+		try {
+			String line = null;
+			while ((line = br.readLine()) != null) {
+				if (AgentWorker.OUTPUT_END.equals(line)) {
+					this.output = StringUtils.newLineJoin(lines);
+					return;
+				}
+				lines.add(line);
+			}
+		} catch (IOException e) {
+			// do nothing
+		}
+	}
+
+	/**
+	 * @return the output of the last run, null if the worker stopped while sending it.
+	 */
+	public String readOutput() {
+		String output = this.output;
+		this.output = null;
+		waiting();
+		return output;
+	}
+}
@@ -0,0 +1,172 @@
+package microbat.agent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.instrumentation.AgentConstants;
+import microbat.instrumentation.worker.AgentWorker;
+import sav.common.core.SavException;
+import sav.common.core.utils.CollectionBuilder;
+import sav.common.core.utils.StringUtils;
+import sav.strategies.vm.VMConfiguration;
+import sav.strategies.vm.VMRunner;
+import sav.strategies.vm.interprocess.socket.SocketAgentVmRunner;
+
+/**
+ * A vm in which the agent stays resident to execute the precheck and trace runs of many {@link TraceAgentRunner}
+ * one after the other, see {@link AgentWorker}. The runs of a worker must be executed with the same java home,
+ * working directory and vm options, idle workers are kept by these settings to be reused by the next runs.
+ */
+public class AgentWorkerVmRunner extends SocketAgentVmRunner {
+	private static final int MAX_IDLE_WORKERS = Runtime.getRuntime().availableProcessors();
+	private static final long OUTPUT_POLLING_INTERVAL = 10;
+	private static final Map<String, Deque<AgentWorkerVmRunner>> idleWorkers = new HashMap<>();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			synchronized (idleWorkers) {
+				for (Deque<AgentWorkerVmRunner> workers : idleWorkers.values()) {
+					for (AgentWorkerVmRunner worker : workers) {
+						worker.stop();
+					}
+				}
+				idleWorkers.clear();
+			}
+		}));
+	}
+
+	private String key;
+	private AgentWorkerInputWriter inputWriter;
+	private AgentWorkerOutputReader outputReader;
+	private volatile TraceAgentRunner client;
+	private boolean runTimeout;
+
+	private AgentWorkerVmRunner(String agentJar, String key, AgentWorkerInputWriter inputWriter,
+			AgentWorkerOutputReader outputReader) {
+		super(inputWriter, outputReader, agentJar);
+		setAgentOptionSeparator(AgentConstants.AGENT_OPTION_SEPARATOR);
+		setAgentParamsSeparator(AgentConstants.AGENT_PARAMS_SEPARATOR);
+		this.key = key;
+		this.inputWriter = inputWriter;
+		this.outputReader = outputReader;
+	}
+
+	/**
+	 * @return an idle worker for the settings of {@code runConfig}, or a new one, null if it could not be started.
+	 */
+	public static AgentWorkerVmRunner acquire(String agentJar, VMConfiguration runConfig) throws SavException {
+		String key = StringUtils.join("|", agentJar, runConfig.getJavaHome(), runConfig.getWorkingDirectory(),
+				runConfig.isEnableAssertion(), runConfig.isNoVerify());
+		synchronized (idleWorkers) {
+			Deque<AgentWorkerVmRunner> workers = idleWorkers.get(key);
+			while (workers != null && !workers.isEmpty()) {
+				AgentWorkerVmRunner worker = workers.pop();
+				if (worker.isProcessRunning()) {
+					return worker;
+				}
+			}
+		}
+		AgentWorkerVmRunner worker = new AgentWorkerVmRunner(agentJar, key, new AgentWorkerInputWriter(),
+				new AgentWorkerOutputReader());
+		VMConfiguration workerConfig = new VMConfiguration();
+		workerConfig.setJavaHome(runConfig.getJavaHome());
+		workerConfig.setWorkingDirectory(runConfig.getWorkingDirectory());
+		workerConfig.setEnableAssertion(runConfig.isEnableAssertion());
+		workerConfig.setNoVerify(runConfig.isNoVerify());
+		workerConfig.addClasspath(agentJar);
+		workerConfig.setLaunchClass(AgentWorker.class.getName());
+		if (!worker.startVm(workerConfig)) {
+			worker.stop();
+			return null;
+		}
+		return worker;
+	}
+
+	/**
+	 * makes the worker available to the next runs, a worker whose last run did not complete is not reused.
+	 */
+	public static void release(AgentWorkerVmRunner worker) {
+		synchronized (idleWorkers) {
+			Deque<AgentWorkerVmRunner> workers = idleWorkers.get(worker.key);
+			if (workers == null) {
+				workers = new ArrayDeque<>();
+				idleWorkers.put(worker.key, workers);
+			}
+			if (workers.size() < MAX_IDLE_WORKERS) {
+				workers.push(worker);
+				return;
+			}
+		}
+		worker.stop();
+	}
+
+	@Override
+	protected void buildVmOption(CollectionBuilder<String, ?> builder, VMConfiguration config) {
+		builder.append("-Xmx30g");
+		builder.append("-XX:+UseG1GC");
+		super.buildVmOption(builder, config);
+	}
+
+	/**
+	 * executes the program of {@code runConfig} with the given agent options, the output of the worker is printed
+	 * by {@code client} during the run.
+	 *
+	 * @return whether the run completed, if not, the worker is stopped.
+	 */
+	public boolean execute(String agentOptions, VMConfiguration runConfig, List<String> programArgs, long timeout,
+			TraceAgentRunner client) {
+		List<String> request = new ArrayList<>();
+		request.add(agentOptions);
+		request.add(runConfig.getClasspathStr());
+		request.add(runConfig.getLaunchClass());
+		request.addAll(runConfig.getProgramArgs());
+		request.addAll(programArgs);
+		runTimeout = false;
+		this.client = client;
+		try {
+			inputWriter.sendData(request);
+			inputWriter.write();
+			long startTime = System.currentTimeMillis();
+			while (outputReader.isWaiting()) {
+				if (!isProcessRunning()) {
+					return false;
+				}
+				if (timeout != VMRunner.NO_TIME_OUT && System.currentTimeMillis() - startTime > timeout) {
+					runTimeout = true;
+					stop();
+					/* like a vm of the agent, the worker stores the run in progress before it exits */
+					getProcess().waitFor();
+					return false;
+				}
+				Thread.sleep(OUTPUT_POLLING_INTERVAL);
+			}
+			if (outputReader.readOutput() == null) {
+				stop();
+				return false;
+			}
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			stop();
+			return false;
+		} finally {
+			this.client = null;
+		}
+	}
+
+	@Override
+	protected void printOut(String line, boolean error) {
+		TraceAgentRunner client = this.client;
+		if (client != null) {
+			client.printOut(line, error);
+		}
+	}
+
+	public boolean isRunTimeout() {
+		return runTimeout;
+	}
+}
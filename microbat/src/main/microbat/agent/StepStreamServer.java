@@ -0,0 +1,82 @@
+package microbat.agent;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import microbat.instrumentation.output.tcp.StepStreamListener;
+import microbat.instrumentation.output.tcp.StepStreamReader;
+import sav.common.core.SavRtException;
+import sav.strategies.vm.VMConfiguration;
+
+/**
+ * Receives the steps streamed by the agent during a trace run, in a thread reading them as they come so that the
+ * agent is not kept waiting, see {@link StepStreamReader}.
+ */
+public class StepStreamServer {
+	private static final int ACCEPT_TIMEOUT = 200;
+	private static final long READ_TIMEOUT = 10000;
+	private ServerSocket serverSocket;
+	private Thread readerThread;
+	private volatile boolean runEnded = false;
+
+	public StepStreamServer(StepStreamListener listener) {
+		try {
+			serverSocket = new ServerSocket(VMConfiguration.findFreePort());
+			serverSocket.setSoTimeout(ACCEPT_TIMEOUT);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new SavRtException(e);
+		}
+		readerThread = new Thread(() -> read(listener), "trace-step-stream-reader");
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	private void read(StepStreamListener listener) {
+		try (Socket client = accept()) {
+			if (client != null) {
+				new StepStreamReader(client.getInputStream()).read(listener);
+			}
+		} catch (IOException e) {
+			// the run ended without streaming its steps
+		}
+	}
+
+	/**
+	 * @return the connection of the agent, or null if the run ended without connecting.
+	 */
+	private Socket accept() throws IOException {
+		while (true) {
+			try {
+				return serverSocket.accept();
+			} catch (SocketTimeoutException e) {
+				if (runEnded) {
+					return null;
+				}
+			}
+		}
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * to be called when the run ended, waits for the remaining steps.
+	 */
+	public void close() {
+		runEnded = true;
+		try {
+			readerThread.join(READ_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
@@ -13,6 +13,7 @@ import microbat.instrumentation.AgentConstants;
 import microbat.instrumentation.AgentParams;
 import microbat.instrumentation.output.RunningInfo;
 import microbat.instrumentation.output.TraceOutputReader;
+import microbat.instrumentation.output.tcp.StepStreamListener;
 import microbat.instrumentation.precheck.PrecheckInfo;
 import microbat.model.trace.Trace;
 import microbat.preference.DatabasePreference;
@@ -39,6 +40,12 @@ public class TraceAgentRunner extends AgentVmRunner {
 	private String testFailureMessage;
 	private VMConfiguration config;
 	private boolean enableSettingHeapSize = true;
+	/* executes the precheck and trace runs in an agent worker instead of a new vm */
+	private boolean useWorker = false;
+	private boolean executedInWorker = false;
+	private boolean workerTimeout = false;
+	/* if set, receives the steps of a trace run while the program is running */
+	private StepStreamListener stepListener;
 	
 	private List<Trace> traces;
 
@@ -72,7 +79,7 @@ public class TraceAgentRunner extends AgentVmRunner {
 			String dumpFilePath = dumpFile.getPath();
 			System.out.println("Precheck dumpfile: " + dumpFilePath);
 			addAgentParam(AgentParams.OPT_DUMP_FILE, String.valueOf(dumpFilePath));
-			super.startAndWaitUntilStop(getConfig());
+			executeVm();
 			if (this.isProcessTimeout()) {
 				return false;
 			}
@@ -92,6 +99,41 @@ public class TraceAgentRunner extends AgentVmRunner {
 		return true;
 	}
 
+	/**
+	 * executes the program with the agent, in an agent worker if enabled, otherwise or if the worker could not
+	 * complete the run for another reason than a timeout, in a new vm.
+	 */
+	private void executeVm() throws SavException {
+		executedInWorker = false;
+		workerTimeout = false;
+		if (useWorker && !getConfig().isDebug()) {
+			AgentWorkerVmRunner worker = AgentWorkerVmRunner.acquire(agentJarPath, getConfig());
+			if (worker != null) {
+				String agentOptions = StringUtils.join(getAgentParams(), getAgentParamsSeparator());
+				if (worker.execute(agentOptions, getConfig(), getProgramArgs(), getTimeout(), this)) {
+					AgentWorkerVmRunner.release(worker);
+					executedInWorker = true;
+					return;
+				}
+				if (worker.isRunTimeout()) {
+					executedInWorker = true;
+					workerTimeout = true;
+					return;
+				}
+			}
+			System.out.println("Agent worker failed, execute the run in a new vm.");
+		}
+		super.startAndWaitUntilStop(getConfig());
+	}
+
+	@Override
+	public boolean isProcessTimeout() {
+		if (executedInWorker) {
+			return workerTimeout;
+		}
+		return super.isProcessTimeout();
+	}
+
 	public boolean run(Reader reader) throws SavException {
 		isPrecheckMode = false;
 		String runId = UUID.randomUUID().toString();
@@ -102,6 +144,7 @@ public class TraceAgentRunner extends AgentVmRunner {
 			boolean toDeleteDumpFile = false;
 			switch (reader) {
 			case FILE:
+			case INDEXED_FILE:
 				dumpFile = File.createTempFile("trace", ".exec");
 				dumpFile.deleteOnExit();
 				break;
@@ -112,7 +155,19 @@ public class TraceAgentRunner extends AgentVmRunner {
 			addAgentParam(AgentParams.OPT_TRACE_RECORDER, reader.name()); // why is reader name used for recorder option?
 			addAgentParam(AgentParams.OPT_RUN_ID, runId);
 			addAgentParam(AgentParams.OPT_DUMP_FILE, String.valueOf(dumpFile.getPath()));
-			super.startAndWaitUntilStop(getConfig()); // Trace recording
+			StepStreamServer stepStream = null;
+			if (stepListener != null) {
+				stepStream = new StepStreamServer(stepListener);
+				addAgentParam(AgentParams.OPT_TCP_PORT, String.valueOf(stepStream.getPort()));
+			}
+			try {
+				executeVm(); // Trace recording
+			} finally {
+				if (stepStream != null) {
+					removeAgentParam(AgentParams.OPT_TCP_PORT);
+					stepStream.close();
+				}
+			}
 			System.out.println("|");
 			timer.newPoint("Read output result");
 			this.runningInfo = reader.create(runId).read(precheckInfo, dumpFile.getPath());
@@ -176,7 +231,7 @@ public class TraceAgentRunner extends AgentVmRunner {
 				dumpFile = FileUtils.getFileCreateIfNotExist(filePath);
 			}
 			addAgentParam(AgentParams.OPT_DUMP_FILE, String.valueOf(dumpFile.getPath()));
-			super.startAndWaitUntilStop(getConfig());
+			executeVm();
 			System.out.println("|");
 			timer.newPoint("Read output result");
 			runningInfo = RunningInfo.readFromFile(dumpFile);
@@ -351,6 +406,14 @@ public class TraceAgentRunner extends AgentVmRunner {
 		return config;
 	}
 
+	public void setStepListener(StepStreamListener stepListener) {
+		this.stepListener = stepListener;
+	}
+
+	public void setUseWorker(boolean useWorker) {
+		this.useWorker = useWorker;
+	}
+
 	public void setConfig(VMConfiguration config) {
 		this.config = config;
 	}
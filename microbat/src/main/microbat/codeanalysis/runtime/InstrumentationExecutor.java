@@ -22,6 +22,7 @@ import microbat.instrumentation.AgentParams;
 import microbat.instrumentation.AgentParams.LogType;
 import microbat.instrumentation.filter.CodeRangeEntry;
 import microbat.instrumentation.output.RunningInfo;
+import microbat.instrumentation.output.tcp.StepStreamListener;
 import microbat.instrumentation.precheck.PrecheckInfo;
 import microbat.model.BreakPoint;
 import microbat.model.ClassLocation;
@@ -49,6 +50,8 @@ public class InstrumentationExecutor {
 	private String traceExecFilePath;
 	private TraceAgentRunner agentRunner;
 	private long timeout = VMRunner.NO_TIME_OUT;
+	private boolean deferMissingInfo = false;
+	private boolean singlePass = false;
 	
 	private List<String> includeLibs = Collections.emptyList();
 	private List<String> excludeLibs = Collections.emptyList();
@@ -114,6 +117,7 @@ public class InstrumentationExecutor {
 		agentRunner.addAgentParam(AgentParams.OPT_REQUIRE_METHOD_SPLITTING,
 				MicrobatPreference.getValue(MicrobatPreference.REQUIRE_METHOD_SPLITTING));
 		agentRunner.addAgentParam(AgentParams.OPT_AVOID_TO_STRING_OF_PROXY_OBJ, true);
+		singlePass = Boolean.valueOf(MicrobatPreference.getValue(MicrobatPreference.SINGLE_PASS_TRACE));
 		agentRunner.setTimeout(timeout);
 		// FIXME Xuezhi [2]
 		List<CodeRangeEntry> entries = ExecutionRangePreference.getCodeRangeEntrys();
@@ -132,6 +136,10 @@ public class InstrumentationExecutor {
 			agentRunner.getConfig().setDebug(Settings.isRunWtihDebugMode);
 			agentRunner.getConfig().setPort(9000);
 			
+			if (singlePass) {
+				return runSinglePass();
+			}
+			
 			System.out.println("precheck..");
 			agentRunner.precheck(null);
 			PrecheckInfo info = agentRunner.getPrecheckInfo();
@@ -164,6 +172,37 @@ public class InstrumentationExecutor {
 		return null;
 	}
 	
+	/**
+	 * traces the program without a precheck run, the agent finds the over long methods when their class is loaded
+	 * and records the lines only once the trace exceeds the step limit. The precheck information is taken from the
+	 * trace, it has no visited locations nor loaded classes.
+	 */
+	private RunningInfo runSinglePass() {
+		agentRunner.addAgentParam(AgentParams.OPT_SINGLE_PASS, true);
+		RunningInfo rInfo = execute(null);
+		agentRunner.removeAgentParam(AgentParams.OPT_SINGLE_PASS);
+		if (rInfo == null) {
+			return null;
+		}
+		Trace trace = rInfo.getMainTrace();
+		PreCheckInformation precheckInfomation = new PreCheckInformation(rInfo.getTraceList().size(), trace.size(),
+				isOverStepLimit(trace), new ArrayList<ClassLocation>(), new ArrayList<String>(), new ArrayList<String>());
+		precheckInfomation.setPassTest(agentRunner.isTestSuccessful());
+		this.setPrecheckInfo(precheckInfomation);
+		if (precheckInfomation.isOverLong()) {
+			System.out.println("the trace is over long, only its lines are recorded after step " + MicrobatPreference.getStepLimit());
+		}
+		return rInfo;
+	}
+	
+	private boolean isOverStepLimit(Trace trace) {
+		try {
+			return trace.size() > Integer.parseInt(MicrobatPreference.getStepLimit());
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+	
 	public PreCheckInformation runPrecheck(String dumpFile, int stepLimit) {
 		try {
 			/* test stepLimit */
@@ -192,7 +231,9 @@ public class InstrumentationExecutor {
 		try {
 			long start = System.currentTimeMillis();
 //			agentRunner.getConfig().setPort(8888);
-			agentRunner.addAgentParam(AgentParams.OPT_EXPECTED_STEP, info.getStepNum());
+			if (info != null) {
+				agentRunner.addAgentParam(AgentParams.OPT_EXPECTED_STEP, info.getStepNum());
+			}
 			agentRunner.run(DatabasePreference.getReader());
 			// agentRunner.runWithSocket();
 			RunningInfo result = agentRunner.getRunningInfo();
@@ -208,7 +249,9 @@ public class InstrumentationExecutor {
 			trace.setAppJavaClassPath(appPath);
 //			trace.setMultiThread(info.getThreadNum()!=1);
 			
-			appendMissingInfo(trace, appPath);
+			if (!deferMissingInfo) {
+				appendMissingInfo(trace, appPath);
+			}
 			trace.setConstructTime((int) (System.currentTimeMillis() - start));
 			
 			return result;
@@ -411,6 +454,53 @@ public class InstrumentationExecutor {
 		this.timeout = timeout;
 	}
 	
+	/**
+	 * directory where the agent stores the control scopes of the traced methods, so that the runs of a program
+	 * sharing it (e.g. the runs of its mutants) do not rebuild them.
+	 */
+	public void setCfgCacheDir(String cfgCacheDir) {
+		agentRunner.addAgentParam(AgentParams.OPT_CFG_CACHE_DIR, cfgCacheDir);
+	}
+	
+	/**
+	 * class folders to be traced as application classes although they are not in the working directory.
+	 */
+	public void setAppBinFolders(List<String> appBinFolders) {
+		agentRunner.addAgentParams(AgentParams.OPT_APP_BIN_FOLDERS, appBinFolders);
+	}
+	
+	/**
+	 * if set, the precheck and the trace run are executed in a persistent agent worker vm rather than in a new vm,
+	 * which suits many short runs of the same program, e.g. the runs of its mutants.
+	 */
+	public void setUseAgentWorker(boolean useAgentWorker) {
+		agentRunner.setUseWorker(useAgentWorker);
+	}
+	
+	/**
+	 * if set, {@link #run()} traces the program in a single run without precheck, see {@link #runSinglePass()}. It
+	 * defaults to the preference {@link MicrobatPreference#SINGLE_PASS_TRACE}.
+	 */
+	public void setSinglePass(boolean singlePass) {
+		this.singlePass = singlePass;
+	}
+	
+	/**
+	 * if set, receives the steps of the trace run while the program is running.
+	 */
+	public void setStepListener(StepStreamListener stepListener) {
+		agentRunner.setStepListener(stepListener);
+	}
+	
+	/**
+	 * if set, {@link #execute(PreCheckInformation)} does not append the missing info of the trace, the caller has to
+	 * call {@link #appendMissingInfo(Trace, AppJavaClassPath)} itself. It uses the shared compilation unit caches of
+	 * {@link Settings}, so executors running in worker threads leave it to the thread owning them.
+	 */
+	public void setDeferMissingInfo(boolean deferMissingInfo) {
+		this.deferMissingInfo = deferMissingInfo;
+	}
+	
 	public String getTraceExecFilePath() {
 		return traceExecFilePath;
 	}
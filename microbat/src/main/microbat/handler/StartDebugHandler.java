@@ -32,6 +32,7 @@ import microbat.util.JavaUtil;
 import microbat.util.MicroBatUtil;
 import microbat.util.Settings;
 import microbat.views.DebugFeedbackView;
+import microbat.views.LiveTraceListener;
 import microbat.views.MicroBatViews;
 import microbat.views.TraceView;
 //import microbat.views.TraceView;
@@ -105,6 +106,7 @@ public class StartDebugHandler extends AbstractHandler {
 						List<String> excludedClassNames = AnalysisScopePreference.getExcludedLibList();
 						InstrumentationExecutor executor = new InstrumentationExecutor(appClassPath,
 								generateTraceDir(appClassPath), "trace", includedClassNames, excludedClassNames);
+						executor.setStepListener(new LiveTraceListener(appClassPath));
 						final RunningInfo result = executor.run();
 						
 						monitor.worked(80);
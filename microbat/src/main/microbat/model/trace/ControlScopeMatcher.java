@@ -0,0 +1,134 @@
+package microbat.model.trace;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.model.BreakPoint;
+import microbat.model.ClassLocation;
+import microbat.model.ControlScope;
+import microbat.model.Scope;
+
+/**
+ * Tells whether a step, or one of its invocation parents, is located in a control scope, which is how
+ * {@link Trace#constructControlDomianceRelation()} decides whether a step is control dominated by a branch.
+ * <p>
+ * The lines of each control scope are indexed once, and the answer for an invocation parent is memoized per scope,
+ * so the steps of a method invocation share the walk up their invocation parents instead of each doing it again.
+ * A matcher is meant to be used for one pass over a trace, as its memo is never invalidated.
+ */
+class ControlScopeMatcher {
+	/* memo values of (invocation parent, scope) */
+	private static final int NOT_CONTAINED = 1;
+	private static final int CONTAINED = 2;
+	private static final int VISITING = 3;
+
+	private Map<Scope, Integer> scopeIds = new IdentityHashMap<>();
+	/* lines of the scope with the same id, by class, null if it is not a control scope */
+	private List<Map<String, BitSet>> scopeLines = new ArrayList<>();
+	private List<Scope> scopes = new ArrayList<>();
+	private Map<Long, Integer> parentMatches = new HashMap<>();
+	private List<TraceNode> path = new ArrayList<>();
+
+	/**
+	 * same as checking {@code node} and every node of {@link TraceNode#findAllInvocationParents()} against
+	 * {@link Scope#containsNodeScope(TraceNode)}.
+	 */
+	public boolean isContainedInScope(TraceNode node, Scope scope) {
+		if (scope == null) {
+			return false;
+		}
+		int scopeId = getScopeId(scope);
+		if (containsNode(scopeId, node)) {
+			return true;
+		}
+		TraceNode parent = node.getInvocationParent();
+		return parent != null && isParentContained(parent, scopeId);
+	}
+
+	/**
+	 * whether {@code parent} or one of its own invocation parents is in the scope. Parents which are met for the
+	 * first time are marked as visiting, so that a cycle of invocation parents ends the walk like it ends
+	 * {@link TraceNode#findAllInvocationParents()}.
+	 */
+	private boolean isParentContained(TraceNode parent, int scopeId) {
+		boolean contained = false;
+		for (TraceNode node = parent; node != null; node = node.getInvocationParent()) {
+			long key = getKey(node, scopeId);
+			Integer match = parentMatches.get(key);
+			if (match == null) {
+				match = 0;
+			}
+			if (match == CONTAINED) {
+				contained = true;
+				break;
+			}
+			if (match == NOT_CONTAINED || match == VISITING) {
+				break;
+			}
+			if (containsNode(scopeId, node)) {
+				parentMatches.put(key, CONTAINED);
+				contained = true;
+				break;
+			}
+			parentMatches.put(key, VISITING);
+			path.add(node);
+		}
+		for (TraceNode node : path) {
+			parentMatches.put(getKey(node, scopeId), contained ? CONTAINED : NOT_CONTAINED);
+		}
+		path.clear();
+		return contained;
+	}
+
+	private boolean containsNode(int scopeId, TraceNode node) {
+		Map<String, BitSet> lines = scopeLines.get(scopeId);
+		BreakPoint breakPoint = node.getBreakPoint();
+		if (lines == null || breakPoint.getLineNumber() < 0) {
+			return scopes.get(scopeId).containsNodeScope(node);
+		}
+		BitSet classLines = lines.get(breakPoint.getClassCanonicalName());
+		return classLines != null && classLines.get(breakPoint.getLineNumber());
+	}
+
+	private int getScopeId(Scope scope) {
+		Integer scopeId = scopeIds.get(scope);
+		if (scopeId == null) {
+			scopeId = scopes.size();
+			scopes.add(scope);
+			scopeLines.add(indexLines(scope));
+			scopeIds.put(scope, scopeId);
+		}
+		return scopeId;
+	}
+
+	/**
+	 * a control scope contains a location if one of its ranges has the same class and line, see
+	 * {@link ControlScope#containLocation(ClassLocation)}.
+	 */
+	private static Map<String, BitSet> indexLines(Scope scope) {
+		if (!(scope instanceof ControlScope)) {
+			return null;
+		}
+		Map<String, BitSet> lines = new HashMap<>();
+		for (ClassLocation location : ((ControlScope) scope).getRangeList()) {
+			if (location.getLineNumber() < 0) {
+				return null;
+			}
+			BitSet classLines = lines.get(location.getClassCanonicalName());
+			if (classLines == null) {
+				classLines = new BitSet();
+				lines.put(location.getClassCanonicalName(), classLines);
+			}
+			classLines.set(location.getLineNumber());
+		}
+		return lines;
+	}
+
+	private static long getKey(TraceNode node, int scopeId) {
+		return ((long) node.getOrder() << 32) | scopeId;
+	}
+}
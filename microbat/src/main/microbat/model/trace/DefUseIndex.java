@@ -0,0 +1,179 @@
+package microbat.model.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import microbat.model.value.VarValue;
+import microbat.model.variable.Variable;
+import sav.common.core.Pair;
+
+/**
+ * Def-use index of a trace, answering {@link Trace#findProducer(VarValue, TraceNode)} and
+ * {@link Trace#findDataDependentee(TraceNode, VarValue)} by binary search instead of scanning the trace.
+ * <p>
+ * A step writes (or reads) a variable if one of its written (read) values has the same simple var ID, the same
+ * simple alias ID, or a (grand)child whose var ID is one of them, the same matching rules as the former linear
+ * search. For each of these three kinds of keys, the index keeps the sorted orders of the matching steps.
+ * <p>
+ * The index is built on the calling thread in step order. The variables of a lazily loaded step which are not loaded
+ * yet are read for the index without being kept in the step, so that building the index does not load the whole
+ * trace in heap, see {@link TraceNode#peekReadWriteVariables()}.
+ */
+public class DefUseIndex {
+	private static final int[] NO_ORDERS = new int[0];
+
+	private StepVarIndex writeIndex;
+	private StepVarIndex readIndex;
+
+	private DefUseIndex(StepVarIndex writeIndex, StepVarIndex readIndex) {
+		this.writeIndex = writeIndex;
+		this.readIndex = readIndex;
+	}
+
+	public static DefUseIndex build(List<TraceNode> steps) {
+		StepVarIndexBuilder writes = new StepVarIndexBuilder();
+		StepVarIndexBuilder reads = new StepVarIndexBuilder();
+		for (TraceNode step : steps) {
+			Pair<List<VarValue>, List<VarValue>> vars = step.peekReadWriteVariables();
+			reads.add(step.getOrder(), vars.first());
+			writes.add(step.getOrder(), vars.second());
+		}
+		return new DefUseIndex(writes.build(), reads.build());
+	}
+
+	/**
+	 * @return the order of the latest step before <code>order</code> writing the value, or 0 if there is none.
+	 */
+	public int findProducer(VarValue value, int order) {
+		String varID = Variable.truncateSimpleID(value.getVarID());
+		String headID = Variable.truncateSimpleID(value.getAliasVarID());
+		return writeIndex.findLast(varID, headID, order);
+	}
+
+	/**
+	 * @return the orders of the steps after <code>order</code> reading the value, in ascending order.
+	 */
+	public List<Integer> findConsumers(VarValue value, int order) {
+		String varID = Variable.truncateSimpleID(value.getVarID());
+		String headID = Variable.truncateSimpleID(value.getAliasVarID());
+		return readIndex.findAllAfter(varID, headID, order);
+	}
+
+	private static class StepVarIndex {
+		private Map<String, int[]> byVarID;
+		private Map<String, int[]> byAliasID;
+		private Map<String, int[]> byChildID;
+
+		public int findLast(String varID, String headID, int order) {
+			int last = 0;
+			last = Math.max(last, findLast(byVarID, varID, order));
+			last = Math.max(last, findLast(byAliasID, headID, order));
+			last = Math.max(last, findLast(byChildID, varID, order));
+			last = Math.max(last, findLast(byChildID, headID, order));
+			return last;
+		}
+
+		private static int findLast(Map<String, int[]> map, String key, int order) {
+			int[] orders = getOrders(map, key);
+			int idx = Arrays.binarySearch(orders, order);
+			int insertIdx = idx >= 0 ? idx : -idx - 1;
+			return insertIdx == 0 ? 0 : orders[insertIdx - 1];
+		}
+
+		public List<Integer> findAllAfter(String varID, String headID, int order) {
+			TreeSet<Integer> result = new TreeSet<>();
+			addAllAfter(byVarID, varID, order, result);
+			addAllAfter(byAliasID, headID, order, result);
+			addAllAfter(byChildID, varID, order, result);
+			addAllAfter(byChildID, headID, order, result);
+			return new ArrayList<>(result);
+		}
+
+		private static void addAllAfter(Map<String, int[]> map, String key, int order, Set<Integer> result) {
+			int[] orders = getOrders(map, key);
+			int idx = Arrays.binarySearch(orders, order);
+			for (int i = idx >= 0 ? idx + 1 : -idx - 1; i < orders.length; i++) {
+				result.add(orders[i]);
+			}
+		}
+
+		private static int[] getOrders(Map<String, int[]> map, String key) {
+			if (key == null) {
+				return NO_ORDERS;
+			}
+			int[] orders = map.get(key);
+			return orders == null ? NO_ORDERS : orders;
+		}
+	}
+
+	private static class StepVarIndexBuilder {
+		private Map<String, List<Integer>> byVarID = new HashMap<>();
+		private Map<String, List<Integer>> byAliasID = new HashMap<>();
+		private Map<String, List<Integer>> byChildID = new HashMap<>();
+
+		public void add(int order, Collection<VarValue> values) {
+			for (VarValue value : values) {
+				add(byVarID, Variable.truncateSimpleID(value.getVarID()), order);
+				add(byAliasID, Variable.truncateSimpleID(value.getAliasVarID()), order);
+				for (String childID : collectChildIDs(value, new HashSet<String>())) {
+					add(byChildID, childID, order);
+				}
+			}
+		}
+
+		/**
+		 * the var IDs {@link VarValue#findVarValue(String)} can match, walking the children the same way.
+		 */
+		private static Set<String> collectChildIDs(VarValue value, Set<String> visitedIDs) {
+			for (VarValue child : value.getChildren()) {
+				String childID = child.getVarID();
+				if (childID != null && visitedIDs.add(childID)) {
+					collectChildIDs(child, visitedIDs);
+				}
+			}
+			return visitedIDs;
+		}
+
+		private static void add(Map<String, List<Integer>> map, String key, int order) {
+			if (key == null) {
+				return;
+			}
+			List<Integer> orders = map.get(key);
+			if (orders == null) {
+				orders = new ArrayList<>();
+				map.put(key, orders);
+			}
+			if (orders.isEmpty() || orders.get(orders.size() - 1) != order) {
+				orders.add(order);
+			}
+		}
+
+		public StepVarIndex build() {
+			StepVarIndex index = new StepVarIndex();
+			index.byVarID = toArrays(byVarID);
+			index.byAliasID = toArrays(byAliasID);
+			index.byChildID = toArrays(byChildID);
+			return index;
+		}
+
+		private static Map<String, int[]> toArrays(Map<String, List<Integer>> map) {
+			Map<String, int[]> result = new HashMap<>(map.size() * 4 / 3 + 1);
+			for (Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+				List<Integer> orders = entry.getValue();
+				int[] array = new int[orders.size()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = orders.get(i);
+				}
+				result.put(entry.getKey(), array);
+			}
+			return result;
+		}
+	}
+}
@@ -9,6 +9,8 @@ import sav.common.core.Pair;
 
 public class LazyTraceNode extends TraceNode{
 	private Function<TraceNode, Pair<List<VarValue>, List<VarValue>>> supplier;
+	/* steps without variables must not be loaded again */
+	private boolean rwVarsLoaded = false;
 	public LazyTraceNode(
 			BreakPoint breakPoint, 
 			BreakPointValue programState, 
@@ -21,7 +23,7 @@ public class LazyTraceNode extends TraceNode{
 	
 	@Override
 	public List<VarValue> getReadVariables() {
-		if (this.readVariables.isEmpty()) {
+		if (!rwVarsLoaded && this.readVariables.isEmpty()) {
 			this.populateRWVars();
 		}
 		return readVariables;
@@ -29,15 +31,32 @@ public class LazyTraceNode extends TraceNode{
 
 	@Override
 	public List<VarValue> getWrittenVariables() {
-		if (this.writtenVariables.isEmpty()) {
+		if (!rwVarsLoaded && this.writtenVariables.isEmpty()) {
 			this.populateRWVars();
 		}
 		return writtenVariables;
 	}
 	
+	@Override
+	Pair<List<VarValue>, List<VarValue>> peekReadWriteVariables() {
+		if (rwVarsLoaded || !readVariables.isEmpty() || !writtenVariables.isEmpty()) {
+			return super.peekReadWriteVariables();
+		}
+		Pair<List<VarValue>, List<VarValue>> pair = supplier.apply(this);
+		if (pair == null) {
+			return Pair.of(readVariables, writtenVariables);
+		}
+		return pair;
+	}
+	
 	private void populateRWVars() {
 		Pair<List<VarValue>, List<VarValue>> pair = supplier.apply(this);
-		this.setReadVariables(pair.first());
-		this.setWrittenVariables(pair.second());
+		if (pair == null) {
+			return;
+		}
+		rwVarsLoaded = true;
+		/* loading the variables does not change them, see Trace#getDefUseIndex() */
+		this.readVariables = pair.first();
+		this.writtenVariables = pair.second();
 	}
 }
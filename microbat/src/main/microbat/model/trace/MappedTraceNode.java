@@ -0,0 +1,51 @@
+package microbat.model.trace;
+
+import java.io.IOException;
+import java.util.List;
+
+import microbat.instrumentation.output.MappedTraceFile.MappedTrace;
+import microbat.model.BreakPointValue;
+import microbat.model.value.VarValue;
+import sav.common.core.Pair;
+import sav.common.core.SavRtException;
+
+/**
+ * A step of a {@link MappedTrace}, its bytecode and variables are decoded from the trace file when they are first
+ * accessed.
+ */
+public class MappedTraceNode extends LazyTraceNode {
+	private MappedTrace mappedTrace;
+	private boolean bytecodeLoaded = false;
+
+	public MappedTraceNode(BreakPointValue programState, int order, Trace trace, MappedTrace mappedTrace) {
+		super(mappedTrace.getLocation(order), programState, order, trace, step -> loadRWVars(mappedTrace, step));
+		this.mappedTrace = mappedTrace;
+	}
+
+	private static Pair<List<VarValue>, List<VarValue>> loadRWVars(MappedTrace mappedTrace, TraceNode step) {
+		try {
+			return Pair.of(mappedTrace.getReadVariables(step.getOrder()),
+					mappedTrace.getWrittenVariables(step.getOrder()));
+		} catch (IOException e) {
+			throw new SavRtException(e);
+		}
+	}
+
+	@Override
+	public String getBytecode() {
+		if (!bytecodeLoaded) {
+			try {
+				setBytecode(mappedTrace.getBytecode(getOrder()));
+			} catch (IOException e) {
+				throw new SavRtException(e);
+			}
+		}
+		return super.getBytecode();
+	}
+
+	@Override
+	public void setBytecode(String bytecode) {
+		bytecodeLoaded = true;
+		super.setBytecode(bytecode);
+	}
+}
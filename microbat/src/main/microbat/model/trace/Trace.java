@@ -14,7 +14,6 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 import microbat.codeanalysis.ast.LocalVariableScopes;
 import microbat.model.AttributionVar;
 import microbat.model.BreakPoint;
-import microbat.model.Scope;
 import microbat.model.value.VarValue;
 import microbat.model.value.VirtualValue;
 import microbat.model.variable.Variable;
@@ -59,6 +58,7 @@ public class Trace {
 	private int checkTime = 1;
 	
 	private List<TraceNode> executionList = new ArrayList<>();
+	private DefUseIndex defUseIndex;
 	/**
 	 * tracking which steps read/write what variables, and what variables are read/written by which steps.
 	 * key is the variable ID, and value is the entry containing all the steps reading/writing the corresponding
@@ -85,12 +85,14 @@ public class Trace {
 		return executionList;
 	}
 
-	public void setExecutionList(List<TraceNode> exectionList) {
+	public synchronized void setExecutionList(List<TraceNode> exectionList) {
 		this.executionList = exectionList;
+		this.defUseIndex = null;
 	}
 	
-	public void addTraceNode(TraceNode node){
+	public synchronized void addTraceNode(TraceNode node){
 		this.executionList.add(node);
+		this.defUseIndex = null;
 	}
 	
 	public int size(){
@@ -263,33 +265,9 @@ public class Trace {
 	
 	private List<TraceNode> findConsumer(VarValue writtenVar, TraceNode startNode) {
 		List<TraceNode> consumers = new ArrayList<TraceNode>();
-		
-		String varID = Variable.truncateSimpleID(writtenVar.getVarID());
-		String headID = Variable.truncateSimpleID(writtenVar.getAliasVarID());
-		
-		for(int i=startNode.getOrder()+1; i>=this.getExecutionList().size(); i++) {
-			TraceNode node = this.getTraceNode(i);
-			for(VarValue readVar: node.getReadVariables()) {
-				
-				String rVarID = Variable.truncateSimpleID(readVar.getVarID());
-				String rHeadID = Variable.truncateSimpleID(readVar.getAliasVarID());
-				
-				if(rVarID != null && rVarID.equals(varID)) {
-					consumers.add(node);						
-				}
-				
-				if(rHeadID != null && rHeadID.equals(headID)) {
-					consumers.add(node);
-				}
-				
-				VarValue childValue = readVar.findVarValue(varID, headID);
-				if(childValue != null) {
-					consumers.add(node);
-				}
-				
-			}
+		for (int order : getDefUseIndex().findConsumers(writtenVar, startNode.getOrder())) {
+			consumers.add(this.getTraceNode(order));
 		}
-		
 		return consumers;
 	}
 
@@ -433,18 +411,24 @@ public class Trace {
 		}
 	}
 	
+	/**
+	 * the control dominators which are still effective form a stack (each one is dominated by the one below), a
+	 * dominator is popped once and never comes back, and containment is answered by a {@link ControlScopeMatcher},
+	 * so the whole pass is linear in the trace size in amortized time.
+	 */
 	private void constructControlDomianceRelation() {
+		ControlScopeMatcher matcher = new ControlScopeMatcher();
 		TraceNode controlDominator = null;
 		for(TraceNode node: this.executionList){
 			if(controlDominator != null){
 				
-				if(isContainedInScope(node, controlDominator.getControlScope())){
+				if(matcher.isContainedInScope(node, controlDominator.getControlScope())){
 					controlDominator.addControlDominatee(node);
 					node.setControlDominator(controlDominator);
 				}
 				/** which means the {@code controlDominator} is no longer effective now */
 				else{
-					controlDominator = findContainingControlDominator(node, controlDominator);
+					controlDominator = findContainingControlDominator(node, controlDominator, matcher);
 					
 					if(controlDominator != null){
 						controlDominator.addControlDominatee(node);
@@ -522,10 +506,11 @@ public class Trace {
 		}
 	}
 
-	private TraceNode findContainingControlDominator(TraceNode node, TraceNode controlDominator) {
+	private TraceNode findContainingControlDominator(TraceNode node, TraceNode controlDominator,
+			ControlScopeMatcher matcher) {
 		TraceNode superControlDominator = controlDominator.getControlDominator();
 		while(superControlDominator != null){
-			if(isContainedInScope(node, superControlDominator.getControlScope())){
+			if(matcher.isContainedInScope(node, superControlDominator.getControlScope())){
 				return superControlDominator;
 			}
 			superControlDominator = superControlDominator.getControlDominator();
@@ -534,31 +519,6 @@ public class Trace {
 		return null;
 	}
 
-	/**
-	 * I will consider the invocation parents of {@code node} as well
-	 * @param node
-	 * @param conditionScope
-	 * @return
-	 */
-	private boolean isContainedInScope(TraceNode node, Scope conditionScope) {
-		if(conditionScope==null){
-			return false;
-		}
-		
-		List<TraceNode> testingSet = new ArrayList<>();
-		testingSet.add(node);
-		List<TraceNode> invocationParents = node.findAllInvocationParents();
-		testingSet.addAll(invocationParents);
-		
-		for(TraceNode n: testingSet){
-			if(conditionScope.containsNodeScope(n)){
-				return true;
-			}
-		}
-		
-		return false;
-	}
-
 //	@Deprecated
 //	private void constructControlDomianceRelation0() {
 //		if(this.exectionList.size()>1){
@@ -913,34 +873,23 @@ public class Trace {
 	}
 	
 	public TraceNode findProducer(VarValue varValue, TraceNode startNode) {
-		
-		String varID = Variable.truncateSimpleID(varValue.getVarID());
-		String headID = Variable.truncateSimpleID(varValue.getAliasVarID());
-		
-		for(int i=startNode.getOrder()-1; i>=1; i--) {
-			TraceNode node = this.getTraceNode(i);
-			for(VarValue writtenValue: node.getWrittenVariables()) {
-				
-				String wVarID = Variable.truncateSimpleID(writtenValue.getVarID());
-				String wHeadID = Variable.truncateSimpleID(writtenValue.getAliasVarID());
-				
-				if(wVarID != null && wVarID.equals(varID)) {
-					return node;						
-				}
-				
-				if(wHeadID != null && wHeadID.equals(headID)) {
-					return node;
-				}
-				
-				VarValue childValue = writtenValue.findVarValue(varID, headID);
-				if(childValue != null) {
-					return node;
-				}
-				
-			}
+		int order = getDefUseIndex().findProducer(varValue, startNode.getOrder());
+		return order == 0 ? null : this.getTraceNode(order);
+	}
+
+	/**
+	 * built on the first producer/consumer query, and rebuilt after the execution list or the variables of a step
+	 * change.
+	 */
+	public synchronized DefUseIndex getDefUseIndex() {
+		if (defUseIndex == null) {
+			defUseIndex = DefUseIndex.build(executionList);
 		}
-		
-		return null;
+		return defUseIndex;
+	}
+	
+	synchronized void invalidateDefUseIndex() {
+		this.defUseIndex = null;
 	}
 
 	public int getConstructTime() {
@@ -23,6 +23,7 @@ import microbat.model.UserInterestedVariables;
 import microbat.model.value.VarValue;
 import microbat.util.JavaUtil;
 import microbat.util.Settings;
+import sav.common.core.Pair;
 
 public class TraceNode{
 	
@@ -527,10 +528,12 @@ public class TraceNode{
 
 	public void setReadVariables(List<VarValue> readVariables) {
 		this.readVariables = readVariables;
+		variablesChanged();
 	}
 	
 	public void addReadVariable(VarValue var){
 		this.readVariables.add(var);
+		variablesChanged();
 	}
 	
 	public List<VarValue> getWrittenVariables() {
@@ -539,10 +542,26 @@ public class TraceNode{
 
 	public void setWrittenVariables(List<VarValue> writtenVariables) {
 		this.writtenVariables = writtenVariables;
+		variablesChanged();
 	}
 	
 	public void addWrittenVariable(VarValue var){
 		this.writtenVariables.add(var);
+		variablesChanged();
+	}
+	
+	/**
+	 * the read and written variables for the {@link DefUseIndex} of the trace, a step whose variables are loaded
+	 * lazily does not keep them.
+	 */
+	Pair<List<VarValue>, List<VarValue>> peekReadWriteVariables() {
+		return Pair.of(getReadVariables(), getWrittenVariables());
+	}
+	
+	private void variablesChanged() {
+		if (trace != null) {
+			trace.invalidateDefUseIndex();
+		}
 	}
 
 	public Double getSuspicousScore(AttributionVar var) {
@@ -671,8 +690,13 @@ public class TraceNode{
 		this.controlDominatees = controlDominatees;
 	}
 	
+	/**
+	 * dominatees are added in trace order, so a step after the last dominatee cannot be in the list yet.
+	 */
 	public void addControlDominatee(TraceNode dominatee){
-		if(!this.controlDominatees.contains(dominatee)){
+		int size = controlDominatees.size();
+		if (size == 0 || controlDominatees.get(size - 1).getOrder() < dominatee.getOrder()
+				|| !this.controlDominatees.contains(dominatee)) {
 			this.controlDominatees.add(dominatee);
 		}
 	}
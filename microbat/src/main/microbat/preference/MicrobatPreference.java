@@ -56,6 +56,7 @@ public class MicrobatPreference extends PreferencePage implements
 		this.defaultJava7HomePath = Activator.getDefault().getPreferenceStore().getString(JAVA7HOME_PATH);
 		this.defaultApplyRecodingOptimization = Activator.getDefault().getPreferenceStore().getString(RECORDING_OPTIMIZATION);
 		this.defaultEnableMethodSplitting = Activator.getDefault().getPreferenceStore().getBoolean(REQUIRE_METHOD_SPLITTING);
+		this.defaultSinglePassTrace = Activator.getDefault().getPreferenceStore().getBoolean(SINGLE_PASS_TRACE);
 		this.defaultRunWithDebugMode = Activator.getDefault().getPreferenceStore().getString(RUN_WITH_DEBUG_MODE);
 	}
 
@@ -84,6 +85,7 @@ public class MicrobatPreference extends PreferencePage implements
 	public static final String JAVA7HOME_PATH = "java7_path";
 	public static final String RECORDING_OPTIMIZATION = "recording_optimization";
 	public static final String REQUIRE_METHOD_SPLITTING = "enableMethodSplitting";
+	public static final String SINGLE_PASS_TRACE = "singlePassTrace";
 	public static final String SUPPORT_CONCURRENT_TRACE = "supportConcurrentTrace";
 	public static final String RUN_WITH_DEBUG_MODE = "runWithDebugMode";
 	
@@ -101,6 +103,7 @@ public class MicrobatPreference extends PreferencePage implements
 	private Button runTestButton;
 	private Button runWithDebugModeButton;
 	private Button enableMethodSplittingButton;
+	private Button singlePassTraceButton;
 	private Text java7HomePathText;
 	
 	private String defaultTargetProject = "";
@@ -118,6 +121,7 @@ public class MicrobatPreference extends PreferencePage implements
 	private String defaultApplyRecodingOptimization;
 	private String defaultRunWithDebugMode = "false";
 	private boolean defaultEnableMethodSplitting;
+	private boolean defaultSinglePassTrace;
 	
 	@Override
 	protected Control createContents(Composite parent) {
@@ -223,6 +227,9 @@ public class MicrobatPreference extends PreferencePage implements
 		
 		enableMethodSplittingButton = SWTFactory.createCheckbox(settingGroup, "Enable method splitting function", 2);
 		enableMethodSplittingButton.setSelection(this.defaultEnableMethodSplitting);
+		
+		singlePassTraceButton = SWTFactory.createCheckbox(settingGroup, "Trace without precheck run (record lines only over step limit)", 2);
+		singlePassTraceButton.setSelection(this.defaultSinglePassTrace);
 	}
 	
 	private void createSeedStatementGroup(Composite parent){
@@ -294,6 +301,7 @@ public class MicrobatPreference extends PreferencePage implements
 		preferences.put(JAVA7HOME_PATH, this.java7HomePathText.getText());
 		preferences.put(RECORDING_OPTIMIZATION, String.valueOf(this.recordingOptimizationButton.getSelection()));
 		preferences.putBoolean(REQUIRE_METHOD_SPLITTING, this.enableMethodSplittingButton.getSelection());
+		preferences.putBoolean(SINGLE_PASS_TRACE, this.singlePassTraceButton.getSelection());
 		preferences.put(SUPPORT_CONCURRENT_TRACE, String.valueOf(this.supportConcurrentTraceButton.getSelection()));
 		preferences.put(RUN_WITH_DEBUG_MODE, String.valueOf(this.runWithDebugModeButton.getSelection()));
 		
@@ -310,6 +318,7 @@ public class MicrobatPreference extends PreferencePage implements
 		Activator.getDefault().getPreferenceStore().putValue(JAVA7HOME_PATH, this.java7HomePathText.getText());
 		Activator.getDefault().getPreferenceStore().putValue(RECORDING_OPTIMIZATION, String.valueOf(this.recordingOptimizationButton.getSelection()));
 		Activator.getDefault().getPreferenceStore().putValue(REQUIRE_METHOD_SPLITTING, String.valueOf(this.enableMethodSplittingButton.getSelection()));
+		Activator.getDefault().getPreferenceStore().putValue(SINGLE_PASS_TRACE, String.valueOf(this.singlePassTraceButton.getSelection()));
 		Activator.getDefault().getPreferenceStore().putValue(SUPPORT_CONCURRENT_TRACE, String.valueOf(this.supportConcurrentTraceButton.getSelection()));
 		Activator.getDefault().getPreferenceStore().putValue(RUN_WITH_DEBUG_MODE, String.valueOf(this.runWithDebugModeButton.getSelection()));
 		
@@ -3,6 +3,7 @@
  */
 package microbat.sql;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
@@ -10,11 +11,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import microbat.handler.xml.VarValueXmlReader;
+import microbat.instrumentation.output.VarValueReader;
 import microbat.model.BreakPoint;
 import microbat.model.trace.LazyTraceNode;
 import microbat.model.trace.Trace;
@@ -37,8 +40,22 @@ public class TraceRetrieverImpl implements TraceRetriever {
 			"SELECT s.* FROM Step s WHERE s.trace_id=?";
 	private static final String GET_STEP_VARIABLE_RELATION = 
 			"SELECT r.step_order, r.var_id, r.RW FROM StepVariableRelation r WHERE r.trace_id=?";
+	private static final String GET_STEP_VARS_PAGE = 
+			"SELECT step_order, read_vars, written_vars FROM Step WHERE trace_id = ? AND step_order BETWEEN ? AND ?";
+	public static final int VAR_PAGE_SIZE = 200;
+	public static final int MAX_CACHED_VAR_PAGES = 50;
 	private Connection conn;
 	private List<AutoCloseable> closables = new ArrayList<>();
+	@SuppressWarnings("serial")
+	private Map<String, List<Pair<List<VarValue>, List<VarValue>>>> varPageCache = 
+			new LinkedHashMap<String, List<Pair<List<VarValue>, List<VarValue>>>>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, List<Pair<List<VarValue>, List<VarValue>>>> eldest) {
+					return size() > MAX_CACHED_VAR_PAGES;
+				}
+			};
+	private long varCacheHits;
+	private long varCacheMisses;
 
 	public TraceRetrieverImpl() throws SQLException {
 		this.conn = DbService.getConnection();
@@ -161,32 +178,71 @@ public class TraceRetrieverImpl implements TraceRetriever {
 		return allSteps;
 	}
 	
-	public Pair<List<VarValue>, List<VarValue>> loadRWVars(TraceNode step, String traceId) {
-		String loadVarStep = "read_vars";
+	/**
+	 * variables are loaded by pages of {@link #VAR_PAGE_SIZE} steps, each page on its own connection which is closed
+	 * once the page is read, the decoded pages are kept in a cache of {@link #MAX_CACHED_VAR_PAGES} pages.
+	 */
+	public synchronized Pair<List<VarValue>, List<VarValue>> loadRWVars(TraceNode step, String traceId) {
+		int pageIdx = (step.getOrder() - 1) / VAR_PAGE_SIZE;
+		String pageKey = traceId + "#" + pageIdx;
+		List<Pair<List<VarValue>, List<VarValue>>> page = varPageCache.get(pageKey);
+		if (page != null) {
+			varCacheHits++;
+		} else {
+			varCacheMisses++;
+			try {
+				page = loadVarPage(traceId, pageIdx * VAR_PAGE_SIZE + 1);
+			} catch (SQLException e) {
+				e.printStackTrace();
+				return null;
+			}
+			varPageCache.put(pageKey, page);
+		}
+		return page.get(step.getOrder() - 1 - pageIdx * VAR_PAGE_SIZE);
+	}
+
+	private List<Pair<List<VarValue>, List<VarValue>>> loadVarPage(String traceId, int startOrder)
+			throws SQLException {
+		List<Pair<List<VarValue>, List<VarValue>>> page = new ArrayList<>(VAR_PAGE_SIZE);
+		for (int i = 0; i < VAR_PAGE_SIZE; i++) {
+			page.add(Pair.of(new ArrayList<VarValue>(), new ArrayList<VarValue>()));
+		}
+		Connection varConn = DbService.getConnection();
+		List<AutoCloseable> varClosables = new ArrayList<>();
 		try {
-			conn = DbService.getConnection();
-			PreparedStatement ps = conn.prepareStatement("SELECT read_vars, written_vars from Step where step_order = ? AND trace_id = ?");
-			ps.setInt(1, step.getOrder());
-			ps.setString(2, traceId);
+			PreparedStatement ps = varConn.prepareStatement(GET_STEP_VARS_PAGE);
+			varClosables.add(ps);
+			ps.setString(1, traceId);
+			ps.setInt(2, startOrder);
+			ps.setInt(3, startOrder + VAR_PAGE_SIZE - 1);
 			ResultSet rs = ps.executeQuery();
-			closables.add(rs);
-			closables.add(ps);
-			// read_vars
-			List<VarValue>readVars = toVarValue(rs.getString("read_vars"));
-			// written_vars
-			loadVarStep = "written_vars";
-			List<VarValue>writeVars = toVarValue(rs.getString("written_vars"));
-			return Pair.of(readVars, writeVars);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		} catch (Exception e) {
-			System.out.println(String.format("%s: Xml error at step: [trace_id, order] = [%d, %d]", loadVarStep, traceId, step.getOrder()));
-			throw e;
+			varClosables.add(rs);
+			while (rs.next()) {
+				int order = rs.getInt("step_order");
+				String loadVarStep = "read_vars";
+				try {
+					List<VarValue> readVars = toVarValue(rs.getObject("read_vars"));
+					loadVarStep = "written_vars";
+					List<VarValue> writeVars = toVarValue(rs.getObject("written_vars"));
+					page.set(order - startOrder, Pair.of(readVars, writeVars));
+				} catch (RuntimeException e) {
+					System.out.println(String.format("%s: Xml error at step: [trace_id, order] = [%s, %d]",
+							loadVarStep, traceId, order));
+					throw e;
+				}
+			}
 		} finally {
-			DbService.closeDb(conn, closables);
-			this.closables = new ArrayList<>();
+			DbService.closeDb(varConn, varClosables);
 		}
-		return null;
+		return page;
+	}
+
+	public synchronized long getVarCacheHits() {
+		return varCacheHits;
+	}
+
+	public synchronized long getVarCacheMisses() {
+		return varCacheMisses;
 	}
 
 	/**
@@ -243,6 +299,20 @@ public class TraceRetrieverImpl implements TraceRetriever {
 		ps.close();
 	}
 
+	/**
+	 * variables are stored as xml, or as binary by the SQLITE3_BATCH recorder.
+	 */
+	protected List<VarValue> toVarValue(Object content) throws SQLException {
+		if (content instanceof byte[]) {
+			try {
+				return VarValueReader.decode((byte[]) content).get(0);
+			} catch (IOException e) {
+				throw new SQLException(e);
+			}
+		}
+		return toVarValue((String) content);
+	}
+
 	protected List<VarValue> toVarValue(String xmlContent) {
 		// xmlContent = xmlContent.replace("&#", "#");
 		return VarValueXmlReader.read(xmlContent);
@@ -0,0 +1,97 @@
+/**
+ * 
+ */
+package microbat.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import microbat.instrumentation.output.MappedTraceFile;
+import microbat.instrumentation.output.MappedTraceFile.MappedTrace;
+import microbat.instrumentation.output.RunningInfo;
+import microbat.instrumentation.precheck.PrecheckInfo;
+import microbat.model.trace.MappedTraceNode;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import sav.common.core.SavRtException;
+
+/**
+ * Opens a trace file written by the INDEXED_FILE recorder without loading it, the bytecode and variables of a
+ * step are only decoded when they are accessed, see {@link MappedTraceNode}.
+ * 
+ * The trace file is kept open while the traces are in use.
+ */
+public class MappedFileTraceReader implements TraceReader {
+
+	@Override
+	public RunningInfo read(PrecheckInfo precheckInfo, String dumpFile) {
+		File file = new File(dumpFile);
+		if (!MappedTraceFile.isIndexedFile(file)) {
+			return RunningInfo.readFromFile(file);
+		}
+		try {
+			MappedTraceFile mappedFile = MappedTraceFile.open(file);
+			List<Trace> traces = new ArrayList<>(mappedFile.getTraces().size());
+			for (MappedTrace mappedTrace : mappedFile.getTraces()) {
+				traces.add(toLazyTrace(mappedTrace));
+			}
+			return new RunningInfo(mappedFile.getProgramMsg(), traces, mappedFile.getExpectedSteps(),
+					mappedFile.getCollectedSteps());
+		} catch (IOException e) {
+			throw new SavRtException(e);
+		}
+	}
+
+	private Trace toLazyTrace(MappedTrace mappedTrace) {
+		Trace trace = new Trace((String) null);
+		trace.setMain(mappedTrace.isMain());
+		trace.setThreadName(mappedTrace.getThreadName());
+		trace.setThreadId(mappedTrace.getThreadId());
+		trace.setIncludedLibraryClasses(mappedTrace.getIncludedLibraryClasses());
+		trace.setExcludedLibraryClasses(mappedTrace.getExcludedLibraryClasses());
+		int size = mappedTrace.size();
+		List<TraceNode> allSteps = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			allSteps.add(new MappedTraceNode(null, i + 1, trace, mappedTrace));
+		}
+		for (int order = 1; order <= size; order++) {
+			TraceNode step = allSteps.get(order - 1);
+			step.setTimestamp(mappedTrace.getTimestamp(order));
+			step.setException(mappedTrace.isException(order));
+			TraceNode controlDominator = getNode(allSteps, mappedTrace.getControlDominator(order));
+			step.setControlDominator(controlDominator);
+			if (controlDominator != null) {
+				controlDominator.addControlDominatee(step);
+			}
+			TraceNode stepIn = getNode(allSteps, mappedTrace.getStepInNext(order));
+			step.setStepInNext(stepIn);
+			if (stepIn != null) {
+				stepIn.setStepInPrevious(step);
+			}
+			TraceNode stepOver = getNode(allSteps, mappedTrace.getStepOverNext(order));
+			step.setStepOverNext(stepOver);
+			if (stepOver != null) {
+				stepOver.setStepOverPrevious(step);
+			}
+			TraceNode invocationParent = getNode(allSteps, mappedTrace.getInvocationParent(order));
+			step.setInvocationParent(invocationParent);
+			if (invocationParent != null) {
+				invocationParent.addInvocationChild(step);
+			}
+			TraceNode loopParent = getNode(allSteps, mappedTrace.getLoopParent(order));
+			step.setLoopParent(loopParent);
+			if (loopParent != null) {
+				loopParent.addLoopChild(step);
+			}
+		}
+		trace.setExecutionList(allSteps);
+		return trace;
+	}
+
+	private TraceNode getNode(List<TraceNode> allSteps, int order) {
+		return order <= 0 ? null : allSteps.get(order - 1);
+	}
+
+}
@@ -14,12 +14,25 @@ public enum Reader {
 			return new FileTraceReader();
 		}
 	},
+	INDEXED_FILE {
+		@Override
+		public TraceReader create(String runId) {
+			return new MappedFileTraceReader();
+		}
+	},
 	SQLITE3 {
 		@Override
 		public TraceReader create(String runId) {
 			return new SqliteTraceReader(runId);
 		}
 	},
+	/* read as SQLITE3, variables are stored in binary instead of xml */
+	SQLITE3_BATCH {
+		@Override
+		public TraceReader create(String runId) {
+			return new SqliteTraceReader(runId);
+		}
+	},
 	MYSQL {
 		@Override
 		public TraceReader create(String runId) {
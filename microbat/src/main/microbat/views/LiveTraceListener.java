@@ -0,0 +1,74 @@
+package microbat.views;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.widgets.Display;
+
+import microbat.instrumentation.output.tcp.StepStreamListener;
+import microbat.instrumentation.output.tcp.StepStreamReader;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import sav.strategies.dto.AppJavaClassPath;
+
+/**
+ * Shows the steps of a trace in the {@link TraceView} while its program is running. The steps received while the
+ * view is being updated are added together by the next update, so the stream is not slowed down by the view.
+ */
+public class LiveTraceListener implements StepStreamListener {
+	private AppJavaClassPath appClassPath;
+	/* steps received but not yet added to their trace, only the ui thread adds them */
+	private Map<Trace, List<TraceNode>> pendingSteps = new LinkedHashMap<>();
+	private boolean updateScheduled = false;
+	/* only accessed in the ui thread */
+	private List<Trace> traces = new ArrayList<>();
+	private Trace mainTrace;
+
+	public LiveTraceListener(AppJavaClassPath appClassPath) {
+		this.appClassPath = appClassPath;
+	}
+
+	@Override
+	public synchronized void stepsReceived(Trace trace, List<TraceNode> steps) {
+		List<TraceNode> pending = pendingSteps.get(trace);
+		if (pending == null) {
+			pending = new ArrayList<>();
+			pendingSteps.put(trace, pending);
+		}
+		pending.addAll(steps);
+		if (!updateScheduled) {
+			updateScheduled = true;
+			Display.getDefault().asyncExec(() -> update());
+		}
+	}
+
+	private void update() {
+		Map<Trace, List<TraceNode>> steps;
+		synchronized (this) {
+			steps = pendingSteps;
+			pendingSteps = new LinkedHashMap<>();
+			updateScheduled = false;
+		}
+		for (Trace trace : steps.keySet()) {
+			if (!traces.contains(trace)) {
+				trace.setAppJavaClassPath(appClassPath);
+				traces.add(trace);
+				if (trace.isMain()) {
+					mainTrace = trace;
+				}
+			}
+			StepStreamReader.appendSteps(trace, steps.get(trace));
+		}
+		TraceView traceView = MicroBatViews.getTraceView();
+		traceView.setMainTrace(mainTrace);
+		traceView.setTraceList(traces);
+		traceView.updateData();
+	}
+
+	@Override
+	public void streamEnded(String programMsg) {
+		// the trace built after the run replaces the streamed one
+	}
+}
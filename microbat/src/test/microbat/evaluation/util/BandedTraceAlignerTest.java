@@ -0,0 +1,120 @@
+package microbat.evaluation.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import microbat.evaluation.model.PairList;
+import microbat.evaluation.model.TraceNodePair;
+import microbat.model.BreakPoint;
+import microbat.model.trace.TraceNode;
+
+public class BandedTraceAlignerTest {
+	private Map<TraceNode, Double> values = new IdentityHashMap<>();
+	private TraceNodeSimilarityComparator comparator = new TraceNodeSimilarityComparator() {
+
+		@Override
+		public double compute(TraceNode node1, TraceNode node2) {
+			double v1 = values.get(node1);
+			double v2 = values.get(node2);
+			return 0.05 + 0.95 * (v1 == v2 ? 1 : (v1 + v2) / 4);
+		}
+	};
+
+	@Test
+	public void testSameAlignmentAsFullScoreTable() {
+		Random random = new Random(1);
+		for (int run = 0; run < 100; run++) {
+			TraceNode[] mutatedTrace = createTrace(random, 50 + random.nextInt(500), 1 + random.nextInt(20));
+			TraceNode[] correctTrace = mutate(random, mutatedTrace);
+			PairList expected = alignWithFullTable(mutatedTrace, correctTrace);
+			PairList actual = DiffUtil.generateMatchedTraceNodeList(mutatedTrace, correctTrace, comparator);
+			assertEquals(toString(expected), toString(actual));
+		}
+	}
+
+	private TraceNode[] createTrace(Random random, int size, int lines) {
+		TraceNode[] nodes = new TraceNode[size];
+		for (int i = 0; i < size; i++) {
+			nodes[i] = newNode(i + 1, 1 + random.nextInt(lines), random.nextInt(3) * 0.3);
+		}
+		return nodes;
+	}
+
+	/**
+	 * removes, inserts and changes the value of some steps.
+	 */
+	private TraceNode[] mutate(Random random, TraceNode[] nodes) {
+		List<TraceNode> mutated = new ArrayList<>();
+		for (TraceNode node : nodes) {
+			double p = random.nextDouble();
+			if (p < 0.02) {
+				continue;
+			}
+			if (p < 0.04) {
+				mutated.add(newNode(mutated.size() + 1, node.getLineNumber() + 1, 0));
+			}
+			mutated.add(newNode(mutated.size() + 1, node.getLineNumber(), p < 0.1 ? 0.6 : values.get(node)));
+		}
+		return mutated.toArray(new TraceNode[mutated.size()]);
+	}
+
+	private TraceNode newNode(int order, int line, double value) {
+		TraceNode node = new TraceNode(new BreakPoint("Sample", "Sample", "run()V", line), null, order, null, null);
+		values.put(node, value);
+		return node;
+	}
+
+	private String toString(PairList pairList) {
+		StringBuilder sb = new StringBuilder();
+		for (TraceNodePair pair : pairList.getPairList()) {
+			sb.append(pair.getMutatedNode().getOrder()).append("-").append(pair.getOriginalNode().getOrder())
+				.append(pair.isExactSame() ? "* " : " ");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * the alignment of the whole score table, as {@link DiffUtil} did before {@link BandedTraceAligner}.
+	 */
+	private PairList alignWithFullTable(TraceNode[] nodeList1, TraceNode[] nodeList2) {
+		double[][] table = new double[nodeList1.length + 1][nodeList2.length + 1];
+		for (int i = 1; i < nodeList1.length + 1; i++) {
+			for (int j = 1; j < nodeList2.length + 1; j++) {
+				if (nodeList1[i - 1].hasSameLocation(nodeList2[j - 1])) {
+					double value = table[i - 1][j - 1] + comparator.compute(nodeList1[i - 1], nodeList2[j - 1]);
+					table[i][j] = DiffUtil.getLargestValue(value, table[i - 1][j], table[i][j - 1]);
+				} else {
+					table[i][j] = Math.max(table[i - 1][j], table[i][j - 1]);
+				}
+			}
+		}
+		List<TraceNodePair> pairList = new ArrayList<>();
+		for (int i = nodeList1.length, j = nodeList2.length; (i > 0 && j > 0);) {
+			if (nodeList1[i - 1].hasSameLocation(nodeList2[j - 1])) {
+				double sim = comparator.compute(nodeList1[i - 1], nodeList2[j - 1]);
+				if (Math.abs(sim - (table[i][j] - table[i - 1][j - 1])) < 0.01) {
+					TraceNodePair pair = new TraceNodePair(nodeList1[i - 1], nodeList2[j - 1]);
+					pair.setExactSame(sim > 0.99);
+					pairList.add(pair);
+					i--;
+					j--;
+					continue;
+				}
+			}
+			if (table[i - 1][j] >= table[i][j - 1]) {
+				i--;
+			} else {
+				j--;
+			}
+		}
+		DiffUtil.reverseOrder(pairList);
+		return new PairList(pairList);
+	}
+}
@@ -0,0 +1,155 @@
+package microbat.model.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import microbat.model.BreakPoint;
+import microbat.model.value.ReferenceValue;
+import microbat.model.value.VarValue;
+import microbat.model.variable.LocalVar;
+import microbat.model.variable.Variable;
+
+public class DefUseIndexTest {
+
+	@Test
+	public void testSameDependenciesAsLinearScan() {
+		Random random = new Random(1);
+		for (int run = 0; run < 50; run++) {
+			Trace trace = createTrace(random, 20 + random.nextInt(300), 1 + random.nextInt(30));
+			for (TraceNode step : trace.getExecutionList()) {
+				for (VarValue readVar : step.getReadVariables()) {
+					assertSame(findProducerByScan(trace, readVar, step), trace.findProducer(readVar, step));
+				}
+				for (VarValue writtenVar : step.getWrittenVariables()) {
+					assertEquals(findConsumersByScan(trace, writtenVar, step),
+							trace.findDataDependentee(step, writtenVar));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRebuiltWhenVariablesChange() {
+		Trace trace = new Trace("test");
+		TraceNode writer = newStep(trace);
+		TraceNode reader = newStep(trace);
+		TraceNode laterWriter = newStep(trace);
+		TraceNode laterReader = newStep(trace);
+		writer.addWrittenVariable(newValue("x:1"));
+		VarValue readVar = newValue("x:2");
+		reader.addReadVariable(readVar);
+		assertSame(writer, trace.findProducer(readVar, laterWriter));
+		assertEquals(Collections.singletonList(reader), trace.findDataDependentee(writer, readVar));
+
+		laterWriter.addWrittenVariable(newValue("x:3"));
+		laterReader.addReadVariable(newValue("x:4"));
+		assertSame(laterWriter, trace.findProducer(readVar, laterReader));
+		assertEquals(Collections.singletonList(laterReader), trace.findDataDependentee(laterWriter, readVar));
+	}
+
+	private Trace createTrace(Random random, int size, int vars) {
+		Trace trace = new Trace("test");
+		for (int i = 0; i < size; i++) {
+			TraceNode step = newStep(trace);
+			int readNum = random.nextInt(3);
+			for (int j = 0; j < readNum; j++) {
+				step.addReadVariable(newRandomValue(random, vars));
+			}
+			int writtenNum = random.nextInt(2);
+			for (int j = 0; j < writtenNum; j++) {
+				step.addWrittenVariable(newRandomValue(random, vars));
+			}
+		}
+		return trace;
+	}
+
+	private TraceNode newStep(Trace trace) {
+		int order = trace.size() + 1;
+		TraceNode step = new TraceNode(new BreakPoint("Sample", "Sample", "run()V", order), null, order, trace, null);
+		trace.addTraceNode(step);
+		return step;
+	}
+
+	/**
+	 * a value with a var ID, and maybe an alias ID and a tree of children, out of a few IDs so that the steps share
+	 * them.
+	 */
+	private VarValue newRandomValue(Random random, int vars) {
+		VarValue value = newValue("v" + random.nextInt(vars) + ":" + random.nextInt(100));
+		if (random.nextBoolean()) {
+			value.setAliasVarID("v" + random.nextInt(vars));
+		}
+		addChildren(random, value, vars, 2);
+		return value;
+	}
+
+	private void addChildren(Random random, VarValue parent, int vars, int depth) {
+		if (depth == 0) {
+			return;
+		}
+		int childNum = random.nextInt(3);
+		for (int i = 0; i < childNum; i++) {
+			VarValue child = newValue("v" + random.nextInt(vars));
+			parent.linkAchild(child);
+			addChildren(random, child, vars, depth - 1);
+		}
+	}
+
+	private VarValue newValue(String varID) {
+		Variable variable = new LocalVar(varID, "int", "Sample", 1);
+		variable.setVarID(varID);
+		ReferenceValue value = new ReferenceValue(false, false, variable);
+		return value;
+	}
+
+	/**
+	 * the linear search of {@link Trace#findProducer(VarValue, TraceNode)} before {@link DefUseIndex}.
+	 */
+	private TraceNode findProducerByScan(Trace trace, VarValue varValue, TraceNode startNode) {
+		String varID = Variable.truncateSimpleID(varValue.getVarID());
+		String headID = Variable.truncateSimpleID(varValue.getAliasVarID());
+		for (int i = startNode.getOrder() - 1; i >= 1; i--) {
+			TraceNode node = trace.getTraceNode(i);
+			for (VarValue writtenValue : node.getWrittenVariables()) {
+				if (matches(writtenValue, varID, headID)) {
+					return node;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * the linear search of {@link Trace#findDataDependentee(TraceNode, VarValue)} before {@link DefUseIndex}, with the
+	 * loop condition fixed and each step listed once.
+	 */
+	private List<TraceNode> findConsumersByScan(Trace trace, VarValue writtenVar, TraceNode startNode) {
+		String varID = Variable.truncateSimpleID(writtenVar.getVarID());
+		String headID = Variable.truncateSimpleID(writtenVar.getAliasVarID());
+		List<TraceNode> consumers = new ArrayList<>();
+		for (int i = startNode.getOrder() + 1; i <= trace.size(); i++) {
+			TraceNode node = trace.getTraceNode(i);
+			for (VarValue readVar : node.getReadVariables()) {
+				if (matches(readVar, varID, headID)) {
+					consumers.add(node);
+					break;
+				}
+			}
+		}
+		return consumers;
+	}
+
+	private boolean matches(VarValue value, String varID, String headID) {
+		String vVarID = Variable.truncateSimpleID(value.getVarID());
+		String vHeadID = Variable.truncateSimpleID(value.getAliasVarID());
+		return (vVarID != null && vVarID.equals(varID)) || (vHeadID != null && vHeadID.equals(headID))
+				|| value.findVarValue(varID, headID) != null;
+	}
+}
@@ -1,53 +1,80 @@
 package microbat.codeanalysis.bytecode;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.DescendingVisitor;
 import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.util.SyntheticRepository;
 
 import sav.strategies.dto.AppJavaClassPath;
 
 public class ByteCodeParser{
+	private static final int MAX_CACHED_CLASS_PATHS = 4;
+	private static final int MAX_CACHED_CLASSES = 2000;
+	
+	/*
+	 * class repositories shared by all parsings of the same class path, least
+	 * recently used first. The class path is given to each repository instead
+	 * of being set as system class path, so parsing needs no global lock and
+	 * parsed classes are reused until they are evicted or the cache is cleared.
+	 */
+	private static final Map<String, CachedClassRepository> repositories = new LinkedHashMap<String, CachedClassRepository>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedClassRepository> eldest) {
+			return size() > MAX_CACHED_CLASS_PATHS;
+		}
+	};
+	
 	public static void parse(String className, ByteCodeMethodFinder visitor, AppJavaClassPath appClassPath){
-		String originalSystemClassPath = System.getProperty("java.class.path");
-		String[] paths = originalSystemClassPath.split(File.pathSeparator);
-		
 		try{
-			List<String> pathList = new ArrayList<>();
-			for(String path: paths){
-				pathList.add(path);
-			}
-			
-			StringBuffer buffer = new StringBuffer(originalSystemClassPath);
-			for(String classPath: appClassPath.getClasspaths()){
-				if(!pathList.contains(classPath)){
-					buffer.append(File.pathSeparator + classPath);				
-				}
-			}
-			buffer.append(File.pathSeparator);
-			String jdkPath = appClassPath.getJavaHome() + File.separator + "jre" + 
-					File.separator + "lib" + File.separator + "rt.jar";
-			buffer.append(jdkPath);
-			System.setProperty("java.class.path", buffer.toString());
-			String s = System.getProperty("java.class.path");
-			
-			ClassPath0 classPath = new ClassPath0(s);
-			Repository.setRepository(SyntheticRepository.getInstance(classPath));
-			
-			JavaClass clazz = Repository.lookupClass(className);
+			JavaClass clazz = getRepository(appClassPath).loadClass(className);
 			clazz.accept(new DescendingVisitor(clazz, visitor));
 			visitor.setJavaClass(clazz);
 		}
 		catch(Exception e){
 			e.printStackTrace();
 		}
-		finally{
-			System.setProperty("java.class.path", originalSystemClassPath);			
+	}
+	
+	public static synchronized CachedClassRepository getRepository(AppJavaClassPath appClassPath) {
+		String classPath = getClassPath(appClassPath);
+		CachedClassRepository repository = repositories.get(classPath);
+		if (repository == null) {
+			repository = new CachedClassRepository(new ClassPath0(classPath), MAX_CACHED_CLASSES);
+			repositories.put(classPath, repository);
 		}
-		
+		return repository;
+	}
+
+	/**
+	 * the system class path, followed by the application class path and rt.jar of its java home.
+	 */
+	private static String getClassPath(AppJavaClassPath appClassPath) {
+		String systemClassPath = System.getProperty("java.class.path");
+		Set<String> paths = new LinkedHashSet<>();
+		for (String path : systemClassPath.split(File.pathSeparator)) {
+			paths.add(path);
+		}
+		StringBuilder buffer = new StringBuilder(systemClassPath);
+		for (String classPath : appClassPath.getClasspaths()) {
+			if (paths.add(classPath)) {
+				buffer.append(File.pathSeparator).append(classPath);
+			}
+		}
+		buffer.append(File.pathSeparator);
+		String jdkPath = appClassPath.getJavaHome() + File.separator + "jre" + 
+				File.separator + "lib" + File.separator + "rt.jar";
+		buffer.append(jdkPath);
+		return buffer.toString();
+	}
+	
+	public static synchronized void clearCache() {
+		repositories.clear();
 	}
 }
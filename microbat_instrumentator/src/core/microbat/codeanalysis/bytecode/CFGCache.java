@@ -0,0 +1,194 @@
+package microbat.codeanalysis.bytecode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.CodeException;
+import org.apache.bcel.classfile.LineNumber;
+import org.apache.bcel.classfile.LineNumberTable;
+import org.apache.bcel.classfile.Method;
+
+import microbat.instrumentation.AgentLogger;
+
+/**
+ * Memoizes the {@link MethodControlScopes} of methods, so that building the control scopes of a trace does not rebuild
+ * the control flow graph and the control dominance of a method for every trace of the same program.
+ * <p>
+ * Entries are keyed by the class name, the method name and signature, and a digest of the method body (its code,
+ * exception table and line number table), so a recompiled method never gets a stale entry. Control scopes can also
+ * be stored in a directory (see {@link #setCacheDir(String)}), to be shared by the successive runs of a program, for
+ * example the runs of its mutants.
+ */
+public class CFGCache {
+	private static final int MAX_CACHED_SCOPES = 5000;
+	private static final int FILE_VERSION = 1;
+	private static final String FILE_EXTENSION = ".cs";
+
+	private static final Map<String, MethodControlScopes> controlScopes = newLruMap(MAX_CACHED_SCOPES);
+	private static File cacheDir;
+
+	public static synchronized void setCacheDir(String dir) {
+		if (dir == null || dir.isEmpty()) {
+			cacheDir = null;
+			return;
+		}
+		File file = new File(dir);
+		if (!file.exists() && !file.mkdirs()) {
+			AgentLogger.debug("Cannot create cfg cache dir: " + dir);
+			cacheDir = null;
+			return;
+		}
+		cacheDir = file;
+	}
+
+	public static MethodControlScopes getControlScopes(String className, Method method) {
+		String key = getKey(className, method);
+		MethodControlScopes scopes;
+		synchronized (CFGCache.class) {
+			scopes = controlScopes.get(key);
+		}
+		if (scopes != null) {
+			return scopes;
+		}
+		File file = getCacheFile(key);
+		scopes = readScopes(file);
+		if (scopes == null) {
+			CFG cfg = new CFGConstructor().buildCFGWithControlDomiance(method.getCode());
+			cfg.setMethod(method);
+			scopes = MethodControlScopes.build(cfg, method);
+			writeScopes(file, scopes);
+		}
+		synchronized (CFGCache.class) {
+			controlScopes.put(key, scopes);
+		}
+		return scopes;
+	}
+
+	public static synchronized void clearCache() {
+		controlScopes.clear();
+	}
+
+	private static String getKey(String className, Method method) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		Code code = method.getCode();
+		digest.update(code.getCode());
+		CodeException[] exceptionTable = code.getExceptionTable();
+		if (exceptionTable != null) {
+			for (CodeException exception : exceptionTable) {
+				update(digest, exception.getStartPC());
+				update(digest, exception.getEndPC());
+				update(digest, exception.getHandlerPC());
+			}
+		}
+		LineNumberTable lineTable = method.getLineNumberTable();
+		if (lineTable != null) {
+			for (LineNumber lineNumber : lineTable.getLineNumberTable()) {
+				update(digest, lineNumber.getStartPC());
+				update(digest, lineNumber.getLineNumber());
+			}
+		}
+		StringBuilder key = new StringBuilder(className).append('#').append(method.getName())
+				.append(method.getSignature()).append('@');
+		for (byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+
+	private static void update(MessageDigest digest, int value) {
+		digest.update((byte) (value >>> 24));
+		digest.update((byte) (value >>> 16));
+		digest.update((byte) (value >>> 8));
+		digest.update((byte) value);
+	}
+
+	private static File getCacheFile(String key) {
+		File dir;
+		synchronized (CFGCache.class) {
+			dir = cacheDir;
+		}
+		if (dir == null) {
+			return null;
+		}
+		/* method names and signatures may contain characters which are not allowed in file names */
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder fileName = new StringBuilder();
+			for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+				fileName.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return new File(dir, fileName.append(FILE_EXTENSION).toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodControlScopes readScopes(File file) {
+		if (file == null || !file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != FILE_VERSION) {
+				return null;
+			}
+			return MethodControlScopes.read(in);
+		} catch (IOException e) {
+			AgentLogger.debug("Cannot read cfg cache file " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * writes to a temporary file first then renames it, so concurrent runs never read a partial file.
+	 */
+	private static void writeScopes(File file, MethodControlScopes scopes) {
+		if (file == null) {
+			return;
+		}
+		File tmpFile = null;
+		try {
+			tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeInt(FILE_VERSION);
+				scopes.write(out);
+			}
+			if (!tmpFile.renameTo(file)) {
+				tmpFile.delete();
+			}
+		} catch (IOException e) {
+			AgentLogger.debug("Cannot write cfg cache file " + file + ": " + e.getMessage());
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+		}
+	}
+
+	private static <V> Map<String, V> newLruMap(final int maxSize) {
+		return new LinkedHashMap<String, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+}
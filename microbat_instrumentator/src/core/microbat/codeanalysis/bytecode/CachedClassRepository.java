@@ -0,0 +1,97 @@
+package microbat.codeanalysis.bytecode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.ClassPath;
+import org.apache.bcel.util.Repository;
+
+/**
+ * Thread-safe BCEL class repository over one class path, keeping at most <code>maxClasses</code> parsed classes,
+ * the least recently used ones are evicted first.
+ * <p>
+ * Unlike {@link org.apache.bcel.util.SyntheticRepository}, it is not registered in the global
+ * {@link org.apache.bcel.Repository}, so repositories of different class paths can be used at the same time.
+ * Classes are parsed outside of the lock, if two threads load the same class at the same time, the first stored
+ * one is kept.
+ */
+public class CachedClassRepository implements Repository {
+	private ClassPath classPath;
+	private Map<String, JavaClass> classes;
+
+	public CachedClassRepository(ClassPath classPath, final int maxClasses) {
+		this.classPath = classPath;
+		this.classes = new LinkedHashMap<String, JavaClass>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, JavaClass> eldest) {
+				return size() > maxClasses;
+			}
+		};
+	}
+
+	@Override
+	public synchronized void storeClass(JavaClass clazz) {
+		classes.put(clazz.getClassName(), clazz);
+		clazz.setRepository(this);
+	}
+
+	@Override
+	public synchronized void removeClass(JavaClass clazz) {
+		classes.remove(clazz.getClassName());
+	}
+
+	@Override
+	public synchronized JavaClass findClass(String className) {
+		return classes.get(className);
+	}
+
+	@Override
+	public JavaClass loadClass(String className) throws ClassNotFoundException {
+		if (className == null || className.isEmpty()) {
+			throw new IllegalArgumentException("Invalid class name " + className);
+		}
+		className = className.replace('/', '.');
+		JavaClass clazz = findClass(className);
+		if (clazz != null) {
+			return clazz;
+		}
+		try (InputStream in = classPath.getInputStream(className.replace('.', '/'), ".class")) {
+			clazz = new ClassParser(in, className).parse();
+		} catch (IOException e) {
+			throw new ClassNotFoundException("Exception while looking for class " + className + ": " + e, e);
+		}
+		synchronized (this) {
+			JavaClass existing = classes.get(className);
+			if (existing != null) {
+				return existing;
+			}
+			storeClass(clazz);
+		}
+		return clazz;
+	}
+
+	@Override
+	public JavaClass loadClass(Class<?> clazz) throws ClassNotFoundException {
+		return loadClass(clazz.getName());
+	}
+
+	@Override
+	public synchronized void clear() {
+		classes.clear();
+	}
+
+	@Override
+	public ClassPath getClassPath() {
+		return classPath;
+	}
+
+	public synchronized int size() {
+		return classes.size();
+	}
+}
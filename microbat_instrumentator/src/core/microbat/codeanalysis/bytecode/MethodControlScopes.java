@@ -0,0 +1,122 @@
+package microbat.codeanalysis.bytecode;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.bcel.classfile.LineNumberTable;
+import org.apache.bcel.classfile.Method;
+
+/**
+ * Line-level summary of the control dependencies of a method: for each source line, whether one of its
+ * instructions is a condition or a branch, and the lines of the instructions controlled by them, in the order the
+ * control scope of a step on that line lists them.
+ * <p>
+ * Unlike a {@link CFG}, it holds no BCEL object, so it can be shared and stored on disk, see {@link CFGCache}.
+ */
+public class MethodControlScopes {
+	private static final int[] NO_LINES = new int[0];
+
+	private Map<Integer, LineScope> lineScopes;
+
+	private MethodControlScopes(Map<Integer, LineScope> lineScopes) {
+		this.lineScopes = lineScopes;
+	}
+
+	/**
+	 * @param cfg must be built with its control dominance, see {@link CFGConstructor#buildCFGWithControlDomiance}.
+	 */
+	public static MethodControlScopes build(CFG cfg, Method method) {
+		Map<Integer, LineScope> lineScopes = new LinkedHashMap<>();
+		LineNumberTable lineTable = method.getLineNumberTable();
+		for (CFGNode node : cfg.getNodeList()) {
+			int line = lineTable.getSourceLine(node.getInstructionHandle().getPosition());
+			LineScope scope = lineScopes.get(line);
+			if (scope == null) {
+				scope = new LineScope();
+				lineScopes.put(line, scope);
+			}
+			scope.conditional |= node.isConditional();
+			scope.branch |= node.isBranch();
+			/* controlled lines are distinct for one instruction, not for the whole line */
+			List<Integer> nodeLines = new ArrayList<>();
+			for (CFGNode dependentee : node.getControlDependentees()) {
+				int controlledLine = lineTable.getSourceLine(dependentee.getInstructionHandle().getPosition());
+				if (!nodeLines.contains(controlledLine)) {
+					nodeLines.add(controlledLine);
+				}
+			}
+			scope.addControlledLines(nodeLines);
+		}
+		return new MethodControlScopes(Collections.unmodifiableMap(lineScopes));
+	}
+
+	public boolean isConditional(int line) {
+		LineScope scope = lineScopes.get(line);
+		return scope != null && scope.conditional;
+	}
+
+	public boolean isBranch(int line) {
+		LineScope scope = lineScopes.get(line);
+		return scope != null && scope.branch;
+	}
+
+	public int[] getControlledLines(int line) {
+		LineScope scope = lineScopes.get(line);
+		return scope == null ? NO_LINES : scope.controlledLines;
+	}
+
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(lineScopes.size());
+		for (Map.Entry<Integer, LineScope> entry : lineScopes.entrySet()) {
+			LineScope scope = entry.getValue();
+			out.writeInt(entry.getKey());
+			out.writeBoolean(scope.conditional);
+			out.writeBoolean(scope.branch);
+			out.writeInt(scope.controlledLines.length);
+			for (int controlledLine : scope.controlledLines) {
+				out.writeInt(controlledLine);
+			}
+		}
+	}
+
+	public static MethodControlScopes read(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<Integer, LineScope> lineScopes = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			int line = in.readInt();
+			LineScope scope = new LineScope();
+			scope.conditional = in.readBoolean();
+			scope.branch = in.readBoolean();
+			scope.controlledLines = new int[in.readInt()];
+			for (int j = 0; j < scope.controlledLines.length; j++) {
+				scope.controlledLines[j] = in.readInt();
+			}
+			lineScopes.put(line, scope);
+		}
+		return new MethodControlScopes(Collections.unmodifiableMap(lineScopes));
+	}
+
+	private static class LineScope {
+		boolean conditional;
+		boolean branch;
+		int[] controlledLines = NO_LINES;
+
+		void addControlledLines(List<Integer> lines) {
+			if (lines.isEmpty()) {
+				return;
+			}
+			int[] newLines = new int[controlledLines.length + lines.size()];
+			System.arraycopy(controlledLines, 0, newLines, 0, controlledLines.length);
+			for (int i = 0; i < lines.size(); i++) {
+				newLines[controlledLines.length + i] = lines.get(i);
+			}
+			controlledLines = newLines;
+		}
+	}
+}
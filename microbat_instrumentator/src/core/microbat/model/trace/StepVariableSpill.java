@@ -0,0 +1,725 @@
+package microbat.model.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.instrumentation.output.VarValueReader;
+import microbat.instrumentation.output.VarValueWriter;
+import microbat.model.value.ArrayValue;
+import microbat.model.value.ReferenceValue;
+import microbat.model.value.VarValue;
+import microbat.model.value.VirtualValue;
+import microbat.model.variable.ArrayElementVar;
+import microbat.model.variable.ConstantVar;
+import microbat.model.variable.FieldVar;
+import microbat.model.variable.LocalVar;
+import microbat.model.variable.VarIdTable;
+import microbat.model.variable.Variable;
+import sav.common.core.SavRtException;
+
+/**
+ * Keeps the variables (read, written, returned and passed variables) of at most {@code residentSteps} steps of a
+ * trace in heap. When a trace grows beyond that, the variables of the least recently accessed steps are moved into
+ * a temporary spill file, so that the heap used by a trace does not grow with the size of its variable graphs. The
+ * skeleton of a step (order, location, invocation/control links) always stays in heap.
+ *
+ * Spilled variables are written in chunks of {@link #CHUNK_SIZE} steps and restored transparently by
+ * {@link TraceNode} the next time they are accessed, so the code working on a trace (e.g., the trace construction
+ * after execution and the recorders) does not need to know whether the variables of a step are in heap or not.
+ * A step is spilled again each time it is evicted, since its values might have been modified in place meanwhile.
+ *
+ * Values keep their identity across chunks: each value has a key for the whole spill, a chunk writes in full only
+ * the values which are new or modified since they were last written (see {@link #fingerprint(VarValue)}) and only
+ * the key of the others. When read, a key resolves to the value in heap if there is still one, otherwise to the
+ * value decoded from the chunk where it was last written.
+ *
+ * Only the variables are spilled: the location of the latest spilled variables of each step, and the key, latest
+ * chunk, fingerprint, string value and number of links of each value ever spilled stay in heap for the lifetime of
+ * the spill, i.e. a few bytes per step and a few dozen bytes per value besides its string value. The interned ids of
+ * the variables are read back into the {@link VarIdTable} of the trace, so that they keep their ids in this table.
+ *
+ * A spill is bound to a single trace and, as a trace, is not supposed to be accessed by several threads.
+ */
+public class StepVariableSpill {
+	static final int CHUNK_SIZE = 1000;
+	private static final int DECODED_CHUNK_CACHE_SIZE = 2;
+	private static final int MIN_RESIDENT_STEPS = 16;
+	private static final int NOT_SPILLED = -1;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private int residentSteps;
+	/* resident steps in access order, the eldest one is the first to be spilled */
+	private LinkedHashMap<Integer, TraceNode> residents = new LinkedHashMap<>(64, 0.75f, true);
+	private TraceNode lastAccessed;
+
+	private File spillFile;
+	private RandomAccessFile spillOutput;
+	/* location of the latest spilled variables of each step (indexed by order - 1) */
+	private int[] stepChunks = new int[1024];
+	private int[] stepPositions = new int[1024];
+	private long[] chunkOffsets = new long[16];
+	/* the chunk being filled, its index is chunkNum */
+	private int chunkNum = 0;
+	private List<StepVariables> pendingChunk = new ArrayList<>(CHUNK_SIZE);
+	private Map<Integer, StepVariables[]> decodedChunks = new LinkedHashMap<Integer, StepVariables[]>(4, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, StepVariables[]> eldest) {
+			return size() > DECODED_CHUNK_CACHE_SIZE;
+		}
+	};
+	private ValueKeys valueKeys = new ValueKeys();
+	private int spilledSteps;
+
+	private VarIdTable varIds;
+
+	/**
+	 * @param varIds the table of the interned ids of the variables of the trace.
+	 */
+	public StepVariableSpill(int residentSteps, VarIdTable varIds) {
+		this.residentSteps = Math.max(residentSteps, MIN_RESIDENT_STEPS);
+		this.varIds = varIds;
+	}
+
+	/**
+	 * register a newly created step, which is always resident.
+	 */
+	public void register(TraceNode node) {
+		ensureStepCapacity(node.getOrder());
+		stepChunks[node.getOrder() - 1] = NOT_SPILLED;
+		makeResident(node);
+	}
+
+	/**
+	 * called by {@link TraceNode} before its variables are read or modified.
+	 */
+	public void access(TraceNode node) {
+		if (node == lastAccessed) {
+			return;
+		}
+		if (node.isVariablesSpilled()) {
+			node.attachVariables(load(node.getOrder()));
+			makeResident(node);
+		} else if (residents.get(node.getOrder()) != null) {
+			lastAccessed = node;
+		}
+	}
+
+	private void makeResident(TraceNode node) {
+		residents.put(node.getOrder(), node);
+		lastAccessed = node;
+		if (residents.size() > residentSteps) {
+			Iterator<TraceNode> it = residents.values().iterator();
+			while (residents.size() > residentSteps) {
+				TraceNode eldest = it.next();
+				it.remove();
+				spill(eldest);
+			}
+		}
+	}
+
+	private void spill(TraceNode node) {
+		StepVariables vars = node.detachVariables();
+		int idx = node.getOrder() - 1;
+		spilledSteps++;
+		if (stepChunks[idx] == chunkNum) {
+			/* reloaded before its chunk is flushed */
+			pendingChunk.set(stepPositions[idx], vars);
+			return;
+		}
+		stepChunks[idx] = chunkNum;
+		stepPositions[idx] = pendingChunk.size();
+		pendingChunk.add(vars);
+		if (pendingChunk.size() >= CHUNK_SIZE) {
+			flushChunk();
+		}
+	}
+
+	private StepVariables load(int order) {
+		int chunk = stepChunks[order - 1];
+		int pos = stepPositions[order - 1];
+		if (chunk == chunkNum) {
+			return pendingChunk.get(pos);
+		}
+		return getDecodedChunk(chunk)[pos];
+	}
+
+	private StepVariables[] getDecodedChunk(int chunk) {
+		StepVariables[] decoded = decodedChunks.get(chunk);
+		if (decoded == null) {
+			decoded = readChunk(chunk);
+			decodedChunks.put(chunk, decoded);
+		}
+		return decoded;
+	}
+
+	private void flushChunk() {
+		StepVariables[] chunk = pendingChunk.toArray(new StepVariables[pendingChunk.size()]);
+		try {
+			if (spillOutput == null) {
+				spillFile = File.createTempFile("trace_spill", ".tmp");
+				spillFile.deleteOnExit();
+				spillOutput = new RandomAccessFile(spillFile, "rw");
+			}
+			byte[] bytes = new ChunkWriter(chunkNum).writeSteps(chunk);
+			long offset = spillOutput.length();
+			spillOutput.seek(offset);
+			spillOutput.writeInt(bytes.length);
+			spillOutput.write(bytes);
+			if (chunkNum >= chunkOffsets.length) {
+				long[] newOffsets = new long[chunkOffsets.length * 2];
+				System.arraycopy(chunkOffsets, 0, newOffsets, 0, chunkOffsets.length);
+				chunkOffsets = newOffsets;
+			}
+			chunkOffsets[chunkNum] = offset;
+		} catch (IOException e) {
+			throw new SavRtException(e);
+		}
+		/* the chunk is likely to be accessed again soon */
+		decodedChunks.put(chunkNum, chunk);
+		chunkNum++;
+		pendingChunk = new ArrayList<>(CHUNK_SIZE);
+	}
+
+	private StepVariables[] readChunk(int chunk) {
+		try {
+			spillOutput.seek(chunkOffsets[chunk]);
+			byte[] bytes = new byte[spillOutput.readInt()];
+			spillOutput.readFully(bytes);
+			return new ChunkReader(bytes, chunk).readSteps();
+		} catch (IOException e) {
+			throw new SavRtException(e);
+		}
+	}
+
+	/**
+	 * the value of a key which is last written in another chunk than the one being read.
+	 */
+	private VarValue resolveValue(int key) {
+		VarValue value = valueKeys.getValue(key);
+		if (value == null) {
+			/* the decoded chunk keeps its values reachable */
+			getDecodedChunk(valueKeys.getLatestChunk(key));
+			value = valueKeys.getValue(key);
+			if (value == null) {
+				throw new SavRtException("Spilled value " + key + " is not found in chunk "
+						+ valueKeys.getLatestChunk(key));
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * a hash of what {@link VarValueWriter} writes for the value itself, the children and parents being identified
+	 * by their keys. A value is written again if its fingerprint changes, or if its string value or its number of
+	 * children or parents does, these being compared exactly so that a collision of fingerprints does not hide the
+	 * usual modifications in place.
+	 */
+	long fingerprint(VarValue value) {
+		long h = hash(FNV_OFFSET, value.getClass().getName());
+		h = hash(h, value.isRoot() ? 1 : 0);
+		h = hash(h, value.isDefinedToStringMethod() ? 1 : 0);
+		h = hash(h, value.getStringValue());
+		Variable var = value.getVariable();
+		if (var != null) {
+			h = hash(h, var.getClass().getName());
+			boolean namedByVarID = (var instanceof ArrayElementVar) && ((ArrayElementVar) var).isNamedByVarID();
+			h = hash(h, namedByVarID ? null : var.getName());
+			h = hash(h, var.getType());
+			h = hash(h, var.getRuntimeType());
+			h = hashVarID(h, var.getVarIdx(), var, false);
+			h = hashVarID(h, var.getAliasVarIdx(), var, true);
+			if (var instanceof LocalVar) {
+				LocalVar localVar = (LocalVar) var;
+				h = hash(h, localVar.getLocationClass());
+				h = hash(h, localVar.getLineNumber());
+				h = hash(h, localVar.getByteCodeIndex());
+				h = hash(h, localVar.isParameter() ? 1 : 0);
+			} else if (var instanceof FieldVar) {
+				FieldVar fieldVar = (FieldVar) var;
+				h = hash(h, fieldVar.isStatic() ? 1 : 0);
+				h = hash(h, fieldVar.getDeclaringType());
+			} else if (var instanceof ConstantVar) {
+				h = hash(h, ((ConstantVar) var).getValue());
+			}
+		}
+		if (value instanceof ReferenceValue) {
+			ReferenceValue refValue = (ReferenceValue) value;
+			h = hash(h, refValue.isNull() ? 1 : 0);
+			h = hash(h, refValue.getUniqueID());
+			if (value instanceof ArrayValue) {
+				h = hash(h, ((ArrayValue) value).getComponentType());
+			}
+		}
+		h = hashLinks(h, value.getChildren());
+		h = hashLinks(h, value.getParents());
+		return h;
+	}
+
+	/**
+	 * an interned id is hashed as it is, so that its string form is not built.
+	 */
+	private static long hashVarID(long h, int varIdx, Variable var, boolean alias) {
+		if (varIdx != VarIdTable.NO_ID) {
+			return hash(hash(h, 1), varIdx);
+		}
+		return hash(hash(h, 0), alias ? var.getAliasVarID() : var.getVarID());
+	}
+
+	private long hashLinks(long h, List<VarValue> values) {
+		h = hash(h, values.size());
+		for (VarValue value : values) {
+			h = hash(h, (value == null) ? -1 : valueKeys.getKey(value));
+		}
+		return h;
+	}
+
+	private static long hash(long h, long value) {
+		for (int i = 0; i < 8; i++) {
+			h = (h ^ (value & 0xFF)) * FNV_PRIME;
+			value >>>= 8;
+		}
+		return h;
+	}
+
+	private static long hash(long h, String str) {
+		if (str == null) {
+			return hash(h, -1);
+		}
+		h = hash(h, str.length());
+		for (int i = 0; i < str.length(); i++) {
+			h = (h ^ str.charAt(i)) * FNV_PRIME;
+		}
+		return h;
+	}
+
+	private void ensureStepCapacity(int order) {
+		if (order > stepChunks.length) {
+			int newLength = Math.max(order, stepChunks.length * 2);
+			int[] newChunks = new int[newLength];
+			System.arraycopy(stepChunks, 0, newChunks, 0, stepChunks.length);
+			stepChunks = newChunks;
+			int[] newPositions = new int[newLength];
+			System.arraycopy(stepPositions, 0, newPositions, 0, stepPositions.length);
+			stepPositions = newPositions;
+		}
+	}
+
+	public int getSpilledSteps() {
+		return spilledSteps;
+	}
+
+	public int getResidentSteps() {
+		return residentSteps;
+	}
+
+	/**
+	 * delete the spill file, the variables of spilled steps are not accessible afterward.
+	 */
+	public void dispose() {
+		residents.clear();
+		decodedChunks.clear();
+		pendingChunk.clear();
+		valueKeys = new ValueKeys();
+		lastAccessed = null;
+		try {
+			if (spillOutput != null) {
+				spillOutput.close();
+			}
+		} catch (IOException e) {
+			// ignore
+		}
+		if (spillFile != null) {
+			spillFile.delete();
+		}
+	}
+
+	/**
+	 * the variables of a step which are moved out of heap together. Lists and maps of {@link TraceNode} are kept as
+	 * they are, so that a restored step behaves exactly as if it has never been spilled.
+	 */
+	static class StepVariables {
+		List<VarValue> readVariables;
+		List<VarValue> writtenVariables;
+		Map<Object, VarValue> readVariableMap;
+		Map<Object, VarValue> writtenVariableMap;
+		List<VarValue> returnedVariables;
+		List<VarValue> passParameters;
+
+		private List<Collection<VarValue>> getValueCollections() {
+			List<Collection<VarValue>> collections = new ArrayList<>(6);
+			collections.add(readVariables);
+			collections.add(writtenVariables);
+			collections.add(readVariableMap == null ? null : readVariableMap.values());
+			collections.add(writtenVariableMap == null ? null : writtenVariableMap.values());
+			collections.add(returnedVariables);
+			collections.add(passParameters);
+			return collections;
+		}
+	}
+
+	/**
+	 * writes the variables of the steps of a chunk, each value being preceded by its key and by whether it is
+	 * written in full.
+	 */
+	private class ChunkWriter extends VarValueWriter {
+		private int chunk;
+		private Map<VarValue, Integer> keys = new IdentityHashMap<>();
+		/* the values which are new or modified since they were last written, with their new fingerprint */
+		private Map<VarValue, Long> changedValues = new IdentityHashMap<>();
+		private List<VarValue> changedList = new ArrayList<>();
+
+		private ChunkWriter(int chunk) {
+			this.chunk = chunk;
+		}
+
+		private byte[] writeSteps(StepVariables[] steps) throws IOException {
+			collectValues(steps);
+			writeVarInt(steps.length);
+			for (StepVariables vars : steps) {
+				writeValues(vars.readVariables);
+				writeValues(vars.writtenVariables);
+				writeValueMap(vars.readVariableMap);
+				writeValueMap(vars.writtenVariableMap);
+				writeValues(vars.returnedVariables);
+				writeValues(vars.passParameters);
+			}
+			/* the modified values which are only reachable through unmodified ones */
+			List<VarValue> remaining = new ArrayList<>();
+			for (VarValue value : changedList) {
+				if (!isWritten(value)) {
+					remaining.add(value);
+				}
+			}
+			writeValues(remaining);
+			return toByteArray();
+		}
+
+		/**
+		 * visits all values reachable from the steps through children and parents to find the modified ones.
+		 */
+		private void collectValues(StepVariables[] steps) {
+			ArrayDeque<VarValue> queue = new ArrayDeque<>();
+			for (StepVariables vars : steps) {
+				for (Collection<VarValue> values : vars.getValueCollections()) {
+					visit(queue, values);
+				}
+			}
+			while (!queue.isEmpty()) {
+				VarValue value = queue.poll();
+				int key = keys.get(value);
+				long fingerprint = fingerprint(value);
+				if (valueKeys.isModified(key, value, fingerprint)) {
+					changedValues.put(value, fingerprint);
+					changedList.add(value);
+				}
+				visit(queue, value.getChildren());
+				visit(queue, value.getParents());
+			}
+		}
+
+		private void visit(ArrayDeque<VarValue> queue, Collection<VarValue> values) {
+			if (values == null) {
+				return;
+			}
+			for (VarValue value : values) {
+				if (value != null && !keys.containsKey(value)) {
+					keys.put(value, valueKeys.getKey(value));
+					queue.add(value);
+				}
+			}
+		}
+
+		private void writeValueMap(Map<Object, VarValue> map) throws IOException {
+			if (map == null) {
+				writeVarInt(-1);
+				return;
+			}
+			writeVarInt(map.size());
+			for (Map.Entry<Object, VarValue> entry : map.entrySet()) {
+				/* an interned id of the trace, or a string id, see TraceNode#getVarKey(VarValue) */
+				Object key = entry.getKey();
+				writeBoolean(key instanceof Integer);
+				if (key instanceof Integer) {
+					writeVarInt((Integer) key);
+				} else {
+					writeRefString((String) key);
+				}
+				writeValue(entry.getValue());
+			}
+		}
+
+		@Override
+		protected boolean writeValueKey(VarValue value) throws IOException {
+			int key = keys.get(value);
+			Long fingerprint = changedValues.get(value);
+			writeVarInt(key);
+			writeBoolean(fingerprint != null);
+			if (fingerprint != null) {
+				valueKeys.setWritten(key, chunk, value, fingerprint);
+			}
+			return fingerprint != null;
+		}
+	}
+
+	/**
+	 * reads a chunk written by {@link ChunkWriter}. The values written in other chunks are first read as
+	 * {@link UnresolvedValue}, and resolved once all values of the chunk are read.
+	 */
+	private class ChunkReader extends VarValueReader {
+		private int chunk;
+		private int key;
+		private boolean valueFollowing;
+		private List<VarValue> newValues = new ArrayList<>();
+
+		private ChunkReader(byte[] bytes, int chunk) {
+			super(bytes, StepVariableSpill.this.varIds);
+			this.chunk = chunk;
+		}
+
+		private StepVariables[] readSteps() throws IOException {
+			StepVariables[] steps = new StepVariables[readVarInt()];
+			for (int i = 0; i < steps.length; i++) {
+				StepVariables vars = new StepVariables();
+				vars.readVariables = readValues();
+				vars.writtenVariables = readValues();
+				vars.readVariableMap = readValueMap();
+				vars.writtenVariableMap = readValueMap();
+				vars.returnedVariables = readValues();
+				vars.passParameters = readValues();
+				steps[i] = vars;
+			}
+			readValues();
+			for (VarValue value : newValues) {
+				resolve(value.getChildren());
+				resolve(value.getParents());
+			}
+			for (StepVariables vars : steps) {
+				resolve(vars.readVariables);
+				resolve(vars.writtenVariables);
+				resolve(vars.readVariableMap);
+				resolve(vars.writtenVariableMap);
+				resolve(vars.returnedVariables);
+				resolve(vars.passParameters);
+			}
+			return steps;
+		}
+
+		private Map<Object, VarValue> readValueMap() throws IOException {
+			int size = readVarInt();
+			if (size == -1) {
+				return null;
+			}
+			Map<Object, VarValue> map = new HashMap<>();
+			for (int i = 0; i < size; i++) {
+				Object key = readBoolean() ? (Object) readVarInt() : readRefString();
+				map.put(key, readValue());
+			}
+			return map;
+		}
+
+		@Override
+		protected VarValue readValueKey() throws IOException {
+			key = readVarInt();
+			valueFollowing = readBoolean();
+			VarValue value = valueKeys.getValue(key);
+			if (value != null) {
+				/* still in heap, possibly more recent than any written version */
+				return value;
+			}
+			if (valueFollowing && valueKeys.getLatestChunk(key) == chunk) {
+				return null;
+			}
+			return new UnresolvedValue(key);
+		}
+
+		@Override
+		protected boolean isValueFollowing() {
+			return valueFollowing;
+		}
+
+		@Override
+		protected void valueRead(VarValue value) {
+			valueKeys.register(value, key);
+			newValues.add(value);
+		}
+
+		/**
+		 * the ids stay interned, so that the restored values are keyed as the new ones in the maps of the steps.
+		 */
+		@Override
+		protected void setVarIDs(Variable var, String varID, int varIdx, String aliasVarID, int aliasVarIdx) {
+			if (varIdx == VarIdTable.NO_ID) {
+				var.setVarID(varID);
+			} else {
+				var.setVarID(varIds, varIdx);
+			}
+			if (aliasVarIdx == VarIdTable.NO_ID) {
+				var.setAliasVarID(aliasVarID);
+			} else {
+				var.setAliasVarID(varIds, aliasVarIdx);
+			}
+		}
+
+		@Override
+		protected void nameByVarID(Variable var) {
+			/* named by its varID when asked for, see ArrayElementVar#getName() */
+		}
+
+		private void resolve(List<VarValue> values) {
+			if (values == null) {
+				return;
+			}
+			for (int i = 0; i < values.size(); i++) {
+				VarValue value = values.get(i);
+				if (value instanceof UnresolvedValue) {
+					values.set(i, resolveValue(((UnresolvedValue) value).key));
+				}
+			}
+		}
+
+		private void resolve(Map<Object, VarValue> values) {
+			if (values == null) {
+				return;
+			}
+			for (Map.Entry<Object, VarValue> entry : values.entrySet()) {
+				if (entry.getValue() instanceof UnresolvedValue) {
+					entry.setValue(resolveValue(((UnresolvedValue) entry.getValue()).key));
+				}
+			}
+		}
+	}
+
+	private static class UnresolvedValue extends VirtualValue {
+		private static final long serialVersionUID = 1L;
+		private int key;
+
+		private UnresolvedValue(int key) {
+			super(false, null);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * the keys of the values of a spill, a value in heap is weakly mapped to its key, so that a value which is no
+	 * longer used by the trace can be collected and decoded again later.
+	 */
+	private static class ValueKeys {
+		private static final int NOT_WRITTEN = -1;
+		private Map<ValueKey, ValueKey> keysByValue = new HashMap<>();
+		private ReferenceQueue<VarValue> clearedKeys = new ReferenceQueue<>();
+		/* indexed by key */
+		private ValueKey[] valueRefs = new ValueKey[1024];
+		private int[] latestChunks = new int[1024];
+		private long[] fingerprints = new long[1024];
+		/* the string value and the numbers of children (high bits) and parents (low bits) when last written */
+		private String[] stringValues = new String[1024];
+		private long[] linkCounts = new long[1024];
+		private int keyNum = 0;
+
+		private int getKey(VarValue value) {
+			ValueKey ref = keysByValue.get(new ValueKey(value, NOT_WRITTEN, null));
+			if (ref != null) {
+				return ref.key;
+			}
+			expungeClearedKeys();
+			if (keyNum >= valueRefs.length) {
+				int newLength = valueRefs.length * 2;
+				valueRefs = Arrays.copyOf(valueRefs, newLength);
+				latestChunks = Arrays.copyOf(latestChunks, newLength);
+				fingerprints = Arrays.copyOf(fingerprints, newLength);
+				stringValues = Arrays.copyOf(stringValues, newLength);
+				linkCounts = Arrays.copyOf(linkCounts, newLength);
+			}
+			int key = keyNum++;
+			latestChunks[key] = NOT_WRITTEN;
+			register(value, key);
+			return key;
+		}
+
+		private void register(VarValue value, int key) {
+			ValueKey ref = new ValueKey(value, key, clearedKeys);
+			valueRefs[key] = ref;
+			keysByValue.put(ref, ref);
+		}
+
+		private VarValue getValue(int key) {
+			ValueKey ref = valueRefs[key];
+			return (ref == null) ? null : ref.get();
+		}
+
+		private boolean isModified(int key, VarValue value, long fingerprint) {
+			return latestChunks[key] == NOT_WRITTEN || fingerprints[key] != fingerprint
+					|| linkCounts[key] != getLinkCount(value) || !value.getStringValue().equals(stringValues[key]);
+		}
+
+		private void setWritten(int key, int chunk, VarValue value, long fingerprint) {
+			latestChunks[key] = chunk;
+			fingerprints[key] = fingerprint;
+			stringValues[key] = value.getStringValue();
+			linkCounts[key] = getLinkCount(value);
+		}
+
+		private static long getLinkCount(VarValue value) {
+			return ((long) value.getChildren().size() << 32) | value.getParents().size();
+		}
+
+		private int getLatestChunk(int key) {
+			return latestChunks[key];
+		}
+
+		private void expungeClearedKeys() {
+			ValueKey ref;
+			while ((ref = (ValueKey) clearedKeys.poll()) != null) {
+				keysByValue.remove(ref);
+				if (valueRefs[ref.key] == ref) {
+					valueRefs[ref.key] = null;
+				}
+			}
+		}
+	}
+
+	private static class ValueKey extends WeakReference<VarValue> {
+		private final int key;
+		private final int hash;
+
+		private ValueKey(VarValue value, int key, ReferenceQueue<VarValue> queue) {
+			super(value, queue);
+			this.key = key;
+			this.hash = System.identityHashCode(value);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ValueKey)) {
+				return false;
+			}
+			VarValue value = get();
+			return value != null && value == ((ValueKey) obj).get();
+		}
+	}
+}
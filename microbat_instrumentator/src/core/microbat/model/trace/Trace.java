@@ -6,20 +6,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.InstructionHandle;
 
 import microbat.codeanalysis.bytecode.ByteCodeParser;
-import microbat.codeanalysis.bytecode.CFG;
-import microbat.codeanalysis.bytecode.CFGConstructor;
-import microbat.codeanalysis.bytecode.CFGNode;
+import microbat.codeanalysis.bytecode.CFGCache;
+import microbat.codeanalysis.bytecode.MethodControlScopes;
 import microbat.codeanalysis.bytecode.MethodFinderByLine;
 import microbat.model.BreakPoint;
 import microbat.model.ClassLocation;
 import microbat.model.ControlScope;
-import microbat.model.Scope;
 import microbat.model.variable.LocalVar;
+import microbat.model.variable.VarIdTable;
 import microbat.model.variable.Variable;
 import sav.common.core.utils.CollectionUtils;
 import sav.strategies.dto.AppJavaClassPath;
@@ -60,6 +57,16 @@ public class Trace {
 	}
 	
 	private List<TraceNode> executionList;
+	/**
+	 * locations, links and timestamps of the steps, see {@link TraceColumns}.
+	 */
+	private TraceColumns columns = new TraceColumns();
+	
+	/**
+	 * if not null, only the variables of a bounded number of steps are kept
+	 * in heap, see {@link StepVariableSpill}.
+	 */
+	private StepVariableSpill variableSpill;
 	/**
 	 * tracking which steps read/write what variables, and what variables are read/written by which steps.
 	 * key is the variable ID, and value is the entry containing all the steps reading/writing the corresponding
@@ -75,6 +82,10 @@ public class Trace {
 		this.threadId = threadId;
 	}
 
+	public TraceColumns getColumns() {
+		return columns;
+	}
+
 	public List<TraceNode> getExecutionList() {
 		return executionList;
 	}
@@ -85,6 +96,9 @@ public class Trace {
 	
 	public void addTraceNode(TraceNode node){
 		this.executionList.add(node);
+		if (variableSpill != null) {
+			variableSpill.register(node);
+		}
 	}
 	
 	public int size(){
@@ -112,27 +126,25 @@ public class Trace {
 		}
 	}
 	
-	private ControlScope parseControlScope(BreakPoint breakPoint, CFG cfg) {
-		List<ClassLocation> ranges = new ArrayList<>(1);
-		List<InstructionHandle> correspondingList = findCorrepondingIns(breakPoint, cfg, cfg.getMethod());
+	private ControlScope parseControlScope(BreakPoint breakPoint, MethodControlScopes methodScopes) {
+		int line = breakPoint.getLineNumber();
+		if(!breakPoint.isConditional()){
+			breakPoint.setConditional(methodScopes.isConditional(line));
+		}
 		
-		for(InstructionHandle ins: correspondingList){
-			CFGNode cfgNode = cfg.findNode(ins);
-			if(!breakPoint.isConditional()){
-				breakPoint.setConditional(cfgNode.isConditional());				
-			}
-			
-			if(!breakPoint.isBranch()){
-				breakPoint.setBranch(cfgNode.isBranch());				
-			}
-			
-			List<ClassLocation> controlScope0 = findControlledLines(cfgNode.getControlDependentees(), cfg.getMethod(), breakPoint);
-			ranges.addAll(controlScope0);
+		if(!breakPoint.isBranch()){
+			breakPoint.setBranch(methodScopes.isBranch(line));
 		}
 		
-		ClassLocation own = new ClassLocation(breakPoint.getClassCanonicalName(), breakPoint.getMethodSign(), breakPoint.getLineNumber());
-		if(!ranges.contains(own)){
-			ranges.add(own);
+		int[] controlledLines = methodScopes.getControlledLines(line);
+		List<ClassLocation> ranges = new ArrayList<>(controlledLines.length + 1);
+		boolean containsOwn = false;
+		for (int controlledLine : controlledLines) {
+			ranges.add(new ClassLocation(breakPoint.getClassCanonicalName(), breakPoint.getMethodSign(), controlledLine));
+			containsOwn |= (controlledLine == line);
+		}
+		if(!containsOwn){
+			ranges.add(new ClassLocation(breakPoint.getClassCanonicalName(), breakPoint.getMethodSign(), line));
 		}
 		
 		ControlScope scope = new ControlScope();
@@ -142,44 +154,29 @@ public class Trace {
 		return scope;
 	}
 
-	private List<InstructionHandle> findCorrepondingIns(BreakPoint breakPoint, CFG cfg, Method method) {
-		List<InstructionHandle> list = new ArrayList<>();
-		for(CFGNode node: cfg.getNodeList()){
-			int line = method.getLineNumberTable().getSourceLine(node.getInstructionHandle().getPosition());
-			if(line==breakPoint.getLineNumber()){
-				list.add(node.getInstructionHandle());
-			}
-		}
-		return list;
-	}
-
-	private List<ClassLocation> findControlledLines(List<CFGNode> controlDependentees, Method method,
-			BreakPoint breakPoint) {
-		List<ClassLocation> controlLines = new ArrayList<>();
-		for(CFGNode node: controlDependentees){
-			int line = method.getLineNumberTable().getSourceLine(node.getInstructionHandle().getPosition());
-			ClassLocation location = new ClassLocation(breakPoint.getClassCanonicalName(), breakPoint.getMethodSign(), line);
-			
-			if(!controlLines.contains(location)){
-				controlLines.add(location);
-			}
-		}
-		return controlLines;
+	public void constructControlDomianceRelation() {
+		fillInControlScope();
+		assignControlDominators();
 	}
 
-	public void constructControlDomianceRelation() {
+	/**
+	 * the control dominators which are still effective form a stack (each one is dominated by the one below), a
+	 * dominator is popped once and never comes back, and containment is answered by a {@link ControlScopeMatcher},
+	 * so the whole pass is linear in the trace size in amortized time.
+	 */
+	void assignControlDominators() {
+		ControlScopeMatcher matcher = new ControlScopeMatcher();
 		TraceNode controlDominator = null;
-		fillInControlScope();
 		for(TraceNode node: this.executionList){
 			if(controlDominator != null){
 				
-				if(isContainedInScope(node, controlDominator.getControlScope())){
+				if(matcher.isContainedInScope(node, controlDominator.getControlScope())){
 					controlDominator.addControlDominatee(node);
 					node.setControlDominator(controlDominator);
 				}
 				/** which means the {@code controlDominator} is no longer effective now */
 				else{
-					controlDominator = findContainingControlDominator(node, controlDominator);
+					controlDominator = findContainingControlDominator(node, controlDominator, matcher);
 					
 					if(controlDominator != null){
 						controlDominator.addControlDominatee(node);
@@ -212,11 +209,9 @@ public class Trace {
 				MethodFinderByLine finder = new MethodFinderByLine(breakPoint);
 				ByteCodeParser.parse(breakPoint.getClassCanonicalName(), finder, appJavaClassPath);
 				Method method = finder.getMethod();
-				CFGConstructor cfgConstructor = new CFGConstructor();
-				CFG cfg = cfgConstructor.buildCFGWithControlDomiance(method.getCode());
-				cfg.setMethod(method);
+				MethodControlScopes methodScopes = CFGCache.getControlScopes(breakPoint.getClassCanonicalName(), method);
 				for (BreakPoint bkp : bkpList) {
-					ControlScope scope = parseControlScope(bkp, cfg);		
+					ControlScope scope = parseControlScope(bkp, methodScopes);		
 					for (TraceNode node : breakpointMap.get(bkp)) {
 						node.getBreakPoint().setConditional(scope.isCondition());
 						node.getBreakPoint().setBranch(scope.isBranch());
@@ -224,14 +219,14 @@ public class Trace {
 					}
 				}
 			}
-			Repository.clearCache();
 		}
 	}
 
-	private TraceNode findContainingControlDominator(TraceNode node, TraceNode controlDominator) {
+	private TraceNode findContainingControlDominator(TraceNode node, TraceNode controlDominator,
+			ControlScopeMatcher matcher) {
 		TraceNode superControlDominator = controlDominator.getControlDominator();
 		while(superControlDominator != null){
-			if(isContainedInScope(node, superControlDominator.getControlScope())){
+			if(matcher.isContainedInScope(node, superControlDominator.getControlScope())){
 				return superControlDominator;
 			}
 			superControlDominator = superControlDominator.getControlDominator();
@@ -240,31 +235,6 @@ public class Trace {
 		return null;
 	}
 
-	/**
-	 * I will consider the invocation parents of {@code node} as well
-	 * @param node
-	 * @param conditionScope
-	 * @return
-	 */
-	private boolean isContainedInScope(TraceNode node, Scope conditionScope) {
-		if(conditionScope==null){
-			return false;
-		}
-		
-		List<TraceNode> testingSet = new ArrayList<>();
-		testingSet.add(node);
-		List<TraceNode> invocationParents = node.findAllInvocationParents();
-		testingSet.addAll(invocationParents);
-		
-		for(TraceNode n: testingSet){
-			if(conditionScope.containsNodeScope(n)){
-				return true;
-			}
-		}
-		
-		return false;
-	}
-
 //	public Map<String, StepVariableRelationEntry> getStepVariableTable() {
 //		return stepVariableTable;
 //	}
@@ -430,6 +400,28 @@ public class Trace {
 		this.threadName = threadName;
 	}
 
+	public StepVariableSpill getVariableSpill() {
+		return variableSpill;
+	}
+	
+	/**
+	 * must be enabled before any step is added into the trace.
+	 */
+	public void enableVariableSpill(int residentSteps, VarIdTable varIds) {
+		enableVariableSpill(new StepVariableSpill(residentSteps, varIds));
+	}
+
+	void enableVariableSpill(StepVariableSpill variableSpill) {
+		this.variableSpill = variableSpill;
+	}
+	
+	public void disposeVariableSpill() {
+		if (variableSpill != null) {
+			variableSpill.dispose();
+			variableSpill = null;
+		}
+	}
+
 	public boolean isMain() {
 		return isMain;
 	}
@@ -0,0 +1,205 @@
+package microbat.model.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.model.BreakPoint;
+
+/**
+ * Column-oriented storage of the structure of a trace. Instead of keeping references to other steps in every
+ * {@link TraceNode}, the links between steps are kept as orders in one int array per kind of link, indexed by the
+ * order of the step, 0 standing for no step. Locations and bytecodes are kept once per trace and referred to by
+ * index, and timestamps and exception flags are kept in a long array and a bit set.
+ * <p>
+ * A {@link TraceNode} is a view of one row of the columns of its trace.
+ */
+public class TraceColumns {
+	public static final int NO_STEP = 0;
+	public static final int NO_LOCATION = -1;
+	public static final int NO_BYTECODE = -1;
+
+	public static final int CONTROL_DOMINATOR = 0;
+	public static final int STEP_IN_NEXT = 1;
+	public static final int STEP_IN_PREVIOUS = 2;
+	public static final int STEP_OVER_NEXT = 3;
+	public static final int STEP_OVER_PREVIOUS = 4;
+	public static final int INVOCATION_PARENT = 5;
+	public static final int LOOP_PARENT = 6;
+	static final int LINK_COLUMNS = 7;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private int capacity;
+	private int[][] links;
+	private int[] locationIdxs;
+	private long[] timestamps;
+	private BitSet exceptions = new BitSet();
+	private List<BreakPoint> locations = new ArrayList<>();
+	private Map<LocationKey, Integer> locationIdxMap = new HashMap<>();
+	private int[] bytecodeIdxs;
+	private List<String> bytecodes = new ArrayList<>();
+	private Map<String, Integer> bytecodeIdxMap = new HashMap<>();
+
+	public TraceColumns() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public TraceColumns(int initialCapacity) {
+		this.capacity = initialCapacity;
+		this.links = new int[LINK_COLUMNS][initialCapacity];
+		this.locationIdxs = newIdxColumn(initialCapacity);
+		this.bytecodeIdxs = newIdxColumn(initialCapacity);
+		this.timestamps = new long[initialCapacity];
+	}
+
+	public int getLink(int column, int order) {
+		if (order >= capacity) {
+			return NO_STEP;
+		}
+		return links[column][order];
+	}
+
+	public void setLink(int column, int order, int linkedOrder) {
+		ensureCapacity(order);
+		links[column][order] = linkedOrder;
+	}
+
+	public BreakPoint getLocation(int order) {
+		if (order >= capacity || locationIdxs[order] == NO_LOCATION) {
+			return null;
+		}
+		return locations.get(locationIdxs[order]);
+	}
+
+	public int getLocationIdx(int order) {
+		return order >= capacity ? NO_LOCATION : locationIdxs[order];
+	}
+
+	/**
+	 * steps at the same location (same class, method and line) share the first {@link BreakPoint} set for it.
+	 */
+	public void setLocation(int order, BreakPoint location) {
+		ensureCapacity(order);
+		if (location == null) {
+			locationIdxs[order] = NO_LOCATION;
+			return;
+		}
+		LocationKey key = new LocationKey(location);
+		Integer idx = locationIdxMap.get(key);
+		if (idx == null) {
+			idx = locations.size();
+			locations.add(location);
+			locationIdxMap.put(key, idx);
+		}
+		locationIdxs[order] = idx;
+	}
+
+	public List<BreakPoint> getLocations() {
+		return locations;
+	}
+
+	public String getBytecode(int order) {
+		if (order >= capacity || bytecodeIdxs[order] == NO_BYTECODE) {
+			return null;
+		}
+		return bytecodes.get(bytecodeIdxs[order]);
+	}
+
+	/**
+	 * the bytecode of a step, which is kept apart from its location since the same line can be instrumented with
+	 * different bytecodes, see {@link microbat.instrumentation.runtime.LocationRegistry}. Steps with the same
+	 * bytecode share the first string set for it.
+	 */
+	public void setBytecode(int order, String bytecode) {
+		ensureCapacity(order);
+		if (bytecode == null) {
+			bytecodeIdxs[order] = NO_BYTECODE;
+			return;
+		}
+		Integer idx = bytecodeIdxMap.get(bytecode);
+		if (idx == null) {
+			idx = bytecodes.size();
+			bytecodes.add(bytecode);
+			bytecodeIdxMap.put(bytecode, idx);
+		}
+		bytecodeIdxs[order] = idx;
+	}
+
+	public long getTimestamp(int order) {
+		return order >= capacity ? 0 : timestamps[order];
+	}
+
+	public void setTimestamp(int order, long timestamp) {
+		ensureCapacity(order);
+		timestamps[order] = timestamp;
+	}
+
+	public boolean isException(int order) {
+		return exceptions.get(order);
+	}
+
+	public void setException(int order, boolean isException) {
+		exceptions.set(order, isException);
+	}
+
+	private void ensureCapacity(int order) {
+		if (order < capacity) {
+			return;
+		}
+		int newCapacity = Math.max(order + 1, capacity + (capacity >> 1));
+		for (int i = 0; i < LINK_COLUMNS; i++) {
+			links[i] = Arrays.copyOf(links[i], newCapacity);
+		}
+		locationIdxs = Arrays.copyOf(locationIdxs, newCapacity);
+		Arrays.fill(locationIdxs, capacity, newCapacity, NO_LOCATION);
+		bytecodeIdxs = Arrays.copyOf(bytecodeIdxs, newCapacity);
+		Arrays.fill(bytecodeIdxs, capacity, newCapacity, NO_BYTECODE);
+		timestamps = Arrays.copyOf(timestamps, newCapacity);
+		capacity = newCapacity;
+	}
+
+	/* NO_LOCATION and NO_BYTECODE are both -1 */
+	private static int[] newIdxColumn(int capacity) {
+		int[] column = new int[capacity];
+		Arrays.fill(column, -1);
+		return column;
+	}
+
+	private static class LocationKey {
+		private BreakPoint location;
+		private int hashCode;
+
+		public LocationKey(BreakPoint location) {
+			this.location = location;
+			this.hashCode = location.hashCode() * 31 + hashCode(location.getMethodSign());
+		}
+
+		private static int hashCode(Object obj) {
+			return obj == null ? 0 : obj.hashCode();
+		}
+
+		private static boolean equals(Object obj1, Object obj2) {
+			return obj1 == null ? obj2 == null : obj1.equals(obj2);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LocationKey)) {
+				return false;
+			}
+			BreakPoint other = ((LocationKey) obj).location;
+			return location.getLineNumber() == other.getLineNumber()
+					&& equals(location.getClassCanonicalName(), other.getClassCanonicalName())
+					&& equals(location.getDeclaringCompilationUnitName(), other.getDeclaringCompilationUnitName())
+					&& equals(location.getMethodSign(), other.getMethodSign());
+		}
+	}
+}
@@ -15,6 +15,7 @@ import microbat.model.BreakPointValue;
 import microbat.model.ControlScope;
 import microbat.model.Scope;
 import microbat.model.value.VarValue;
+import microbat.model.variable.VarIdTable;
 import microbat.model.variable.Variable;
 import sav.common.core.utils.CollectionUtils;
 
@@ -35,15 +36,16 @@ public class TraceNode{
 	private String invokingMethod = null;
 	private InvokingDetail invokingDetail = null;
 	
-	private BreakPoint breakPoint;
 	private BreakPointValue afterStepInState;
 	private BreakPointValue afterStepOverState;
 	
+	/* only allocated once the variables are read or set */
 	private List<VarValue> readVariables;
 	private List<VarValue> writtenVariables;
 	
-	private transient Map<String, VarValue> readVariableMap = new HashMap<>();
-	private transient Map<String, VarValue> writtenVariableMap = new HashMap<>();
+	/* only allocated when variables are added one by one */
+	private transient Map<Object, VarValue> readVariableMap;
+	private transient Map<Object, VarValue> writtenVariableMap;
 	
 //	private List<VarValue> hiddenReadVariables = new ArrayList<>();
 //	private List<VarValue> hiddenWrittenVariables = new ArrayList<>();
@@ -51,8 +53,7 @@ public class TraceNode{
 //	private Map<TraceNode, List<String>> dataDominators = new HashMap<>();
 //	private Map<TraceNode, List<String>> dataDominatees = new HashMap<>();
 	
-	private TraceNode controlDominator;
-	private List<TraceNode> controlDominatees = new ArrayList<>();
+	private List<TraceNode> controlDominatees;
 	
 	/**
 	 * this filed is used as a temporary field during the trace 
@@ -67,55 +68,79 @@ public class TraceNode{
 	private List<VarValue> passParameters = null;
 	
 	/**
-	 * the order of this node in the whole trace, starting from 1.
+	 * the order of this node in the whole trace, starting from 1. The location, timestamp, exception flag and the
+	 * links to other steps (control dominator, step in/over next/previous, invocation and loop parents) are kept by
+	 * order in the {@link TraceColumns} of the trace, so the order of a node must not change once they are set.
 	 */
 	private int order;
 	
-	private TraceNode stepInNext;
-	private TraceNode stepInPrevious;
+	/* the row of a node created without a trace, e.g. in tests or tools */
+	private transient DetachedRow detachedRow;
 	
-	private TraceNode stepOverNext;
-	private TraceNode stepOverPrevious;
-	
-	private List<TraceNode> invocationChildren = new ArrayList<>();
-	private TraceNode invocationParent;
+	private List<TraceNode> invocationChildren;
 	
 	private List<TraceNode> loopChildren;
-	private TraceNode loopParent;
-	
-	private boolean isException;
 	
 	private TraceNode invokingMatchNode;
 	
 	private long runtimePC;
 	private Trace trace;
 	
-	private long timestamp;
-	
-	private String bytecode;
+	/**
+	 * whether the variables of this node are currently moved out of heap by
+	 * the {@link StepVariableSpill} of its trace.
+	 */
+	private transient boolean variablesSpilled = false;
 	
 	public TraceNode(BreakPoint breakPoint, BreakPointValue programState, int order, Trace trace, String bytecode) {
 		this(breakPoint, programState, order, trace, -1, -1, System.currentTimeMillis(), bytecode);
 	}
 	
+	/**
+	 * @param initReadVarsSize
+	 *            not used any more, the variables of a node are allocated once they are added, as is
+	 *            <code>initWrittenVarsSize</code>.
+	 */
 	public TraceNode(BreakPoint breakPoint, BreakPointValue programState, int order, Trace trace,
 			int initReadVarsSize, int initWrittenVarsSize, long timestamp, String bytecode) {
-		this.breakPoint = breakPoint;
 		this.order = order;
 		this.trace = trace;
-		if (initReadVarsSize >= 0) {
-			readVariables = new ArrayList<>(initReadVarsSize);
-		} else {
-			readVariables = new ArrayList<>();
+		setBreakPoint(breakPoint);
+		setTimestamp(timestamp);
+		setBytecode(bytecode);
+	}
+	
+	/**
+	 * the columns of the trace, or of the node itself if it has no trace.
+	 */
+	private TraceColumns columns() {
+		if (trace != null) {
+			return trace.getColumns();
 		}
-		
-		if (initWrittenVarsSize >= 0) {
-			writtenVariables = new ArrayList<>(initWrittenVarsSize);
-		} else {
-			writtenVariables = new ArrayList<>();
+		return getDetachedRow().columns;
+	}
+	
+	private TraceNode getLink(int column) {
+		if (trace == null) {
+			return getDetachedRow().links[column];
+		}
+		int linkedOrder = columns().getLink(column, order);
+		return linkedOrder == TraceColumns.NO_STEP ? null : trace.getTraceNode(linkedOrder);
+	}
+	
+	private void setLink(int column, TraceNode node) {
+		if (trace == null) {
+			getDetachedRow().links[column] = node;
+			return;
+		}
+		columns().setLink(column, order, node == null ? TraceColumns.NO_STEP : node.getOrder());
+	}
+	
+	private DetachedRow getDetachedRow() {
+		if (detachedRow == null) {
+			detachedRow = new DetachedRow(order);
 		}
-		this.timestamp = timestamp;
-		this.bytecode = bytecode;
+		return detachedRow;
 	}
 	
 	public String getMethodSign() {
@@ -127,6 +152,7 @@ public class TraceNode{
 	}
 	
 	public void addReturnVariable(VarValue var){
+		accessVariables();
 		if (returnedVariables == null) {
 			returnedVariables = new ArrayList<>(5);
 		}
@@ -203,7 +229,7 @@ public class TraceNode{
 		buffer.append(": line ");
 		buffer.append(getLineNumber());
 		
-		String methodName = this.breakPoint.getMethodName();
+		String methodName = this.getBreakPoint().getMethodName();
 		if(methodName != null){
 			buffer.append(" in ");
 			buffer.append(methodName);
@@ -214,23 +240,23 @@ public class TraceNode{
 	}
 	
 	public String getClassCanonicalName(){
-		return this.breakPoint.getClassCanonicalName();
+		return this.getBreakPoint().getClassCanonicalName();
 	}
 	
 	public String getDeclaringCompilationUnitName(){
-		return this.breakPoint.getDeclaringCompilationUnitName();
+		return this.getBreakPoint().getDeclaringCompilationUnitName();
 	}
 	
 	public int getLineNumber(){
-		return this.breakPoint.getLineNumber();
+		return this.getBreakPoint().getLineNumber();
 	}
 
 	public BreakPoint getBreakPoint() {
-		return breakPoint;
+		return columns().getLocation(order);
 	}
 
 	public void setBreakPoint(BreakPoint breakPoint) {
-		this.breakPoint = breakPoint;
+		columns().setLocation(order, breakPoint);
 	}
 
 	public int getOrder() {
@@ -264,32 +290,33 @@ public class TraceNode{
 //	}
 
 	public TraceNode getStepInNext() {
-		return stepInNext;
+		return getLink(TraceColumns.STEP_IN_NEXT);
 	}
 
 	public void setStepInNext(TraceNode stepInNext) {
-		this.stepInNext = stepInNext;
+		setLink(TraceColumns.STEP_IN_NEXT, stepInNext);
 	}
 
 	public TraceNode getStepInPrevious() {
-		return stepInPrevious;
+		return getLink(TraceColumns.STEP_IN_PREVIOUS);
 	}
 
 	public void setStepInPrevious(TraceNode stepInPrevious) {
-		this.stepInPrevious = stepInPrevious;
+		setLink(TraceColumns.STEP_IN_PREVIOUS, stepInPrevious);
 	}
 
 	public TraceNode getStepOverNext() {
+		TraceNode stepOverNext = getLink(TraceColumns.STEP_OVER_NEXT);
 		if(stepOverNext!=null){
 			return stepOverNext;
 		}
 		else{
-			TraceNode n = stepInNext;
+			TraceNode n = getStepInNext();
 			while(n!=null) {
 				TraceNode p1 = n.getInvocationParent();
 				TraceNode p2 = this.getInvocationParent();
 				if(p1==null && p2==null) {
-					stepOverNext = n;
+					setStepOverNext(n);
 					return n;
 				}
 				
@@ -303,7 +330,7 @@ public class TraceNode{
 				
 				if(p1!=null && p2!=null) {
 					if(p1.getOrder()==p2.getOrder()) {
-						stepOverNext = n;
+						setStepOverNext(n);
 						return n;
 					}					
 				}
@@ -315,21 +342,22 @@ public class TraceNode{
 	}
 
 	public void setStepOverNext(TraceNode stepOverNext) {
-		this.stepOverNext = stepOverNext;
+		setLink(TraceColumns.STEP_OVER_NEXT, stepOverNext);
 	}
 
 	public TraceNode getStepOverPrevious() {
+		TraceNode stepOverPrevious = getLink(TraceColumns.STEP_OVER_PREVIOUS);
 		if(stepOverPrevious!=null){
 			return stepOverPrevious;
 		}
-		else if(stepInPrevious!=null){
-			TraceNode n = stepInPrevious;
+		else if(getStepInPrevious()!=null){
+			TraceNode n = getStepInPrevious();
 			while(n!=null) {
 				TraceNode p1 = n.getInvocationParent();
 				TraceNode p2 = this.getInvocationParent();
 				
 				if(p1==null && p2==null) {
-					stepOverPrevious = n;
+					setStepOverPrevious(n);
 					return n;
 				}
 				
@@ -339,7 +367,7 @@ public class TraceNode{
 				
 				if(p1!=null && p2!=null) {
 					if(p1.getOrder()==p2.getOrder()) {
-						stepOverPrevious = n;
+						setStepOverPrevious(n);
 						return n;
 					}					
 				}
@@ -350,11 +378,11 @@ public class TraceNode{
 	}
 
 	public void setStepOverPrevious(TraceNode stepOverPrevious) {
-		this.stepOverPrevious = stepOverPrevious;
+		setLink(TraceColumns.STEP_OVER_PREVIOUS, stepOverPrevious);
 	}
 
 	public List<TraceNode> getInvocationChildren() {
-		return invocationChildren;
+		return CollectionUtils.nullToEmpty(invocationChildren);
 	}
 
 	public void setInvocationChildren(List<TraceNode> invocationChildren) {
@@ -362,15 +390,16 @@ public class TraceNode{
 	}
 
 	public void addInvocationChild(TraceNode node){
+		invocationChildren = CollectionUtils.initIfEmpty(invocationChildren);
 		this.invocationChildren.add(node);
 	}
 
 	public TraceNode getInvocationParent() {
-		return invocationParent;
+		return getLink(TraceColumns.INVOCATION_PARENT);
 	}
 
 	public void setInvocationParent(TraceNode invocationParent) {
-		this.invocationParent = invocationParent;
+		setLink(TraceColumns.INVOCATION_PARENT, invocationParent);
 	}
 
 	public BreakPointValue getAfterStepInState() {
@@ -449,38 +478,44 @@ public class TraceNode{
 //	}
 
 	public boolean isException() {
-		return isException;
+		return columns().isException(order);
 	}
 
 	public void setException(boolean isException) {
-		this.isException = isException;
+		columns().setException(order, isException);
 	}
 	
 	public boolean containReadVariable(VarValue readVar){
-		if(!readVariableMap.isEmpty()){
-			return this.readVariableMap.containsKey(readVar.getVarID());			
+		accessVariables();
+		if(!CollectionUtils.isEmpty(readVariableMap)){
+			return this.readVariableMap.containsKey(getVarKey(readVar));			
 		}
 		else{
-			return this.readVariables.contains(readVar);
+			return this.readVariables != null && this.readVariables.contains(readVar);
 		}
 	}
 
 	public Collection<VarValue> getReadVariables() {
-		if(this.readVariables==null || this.readVariables.size() < this.readVariableMap.size()){
-			this.readVariables = new ArrayList<>(this.readVariableMap.values());
+		accessVariables();
+		if(this.readVariables==null || this.readVariables.size() < mapSize(this.readVariableMap)){
+			this.readVariables = (this.readVariableMap == null) ? new ArrayList<VarValue>()
+					: new ArrayList<>(this.readVariableMap.values());
 		}
 		return this.readVariables;
 	}
 	
 	public Collection<VarValue> getWrittenVariables() {
-		if(this.writtenVariables==null || this.writtenVariables.size() < this.writtenVariableMap.size()){
-			this.writtenVariables = new ArrayList<>(writtenVariableMap.values());			
+		accessVariables();
+		if(this.writtenVariables==null || this.writtenVariables.size() < mapSize(this.writtenVariableMap)){
+			this.writtenVariables = (this.writtenVariableMap == null) ? new ArrayList<VarValue>()
+					: new ArrayList<>(writtenVariableMap.values());
 		}
 		
 		return this.writtenVariables;
 	}
 
 	public void setReadVariables(List<VarValue> readVariables) {
+		accessVariables();
 		this.readVariables = readVariables;
 	}
 	
@@ -493,7 +528,11 @@ public class TraceNode{
 //			this.readVariables.add(var);			
 //		}
 		
-		this.readVariableMap.put(var.getVarID(), var);
+		accessVariables();
+		if (readVariableMap == null) {
+			readVariableMap = new HashMap<>();
+		}
+		this.readVariableMap.put(getVarKey(var), var);
 	}
 	
 	public void addWrittenVariable(VarValue var){
@@ -505,7 +544,28 @@ public class TraceNode{
 //			this.writtenVariables.add(var);			
 //		}
 		
-		this.writtenVariableMap.put(var.getVarID(), var);
+		accessVariables();
+		if (writtenVariableMap == null) {
+			writtenVariableMap = new HashMap<>();
+		}
+		this.writtenVariableMap.put(getVarKey(var), var);
+	}
+	
+	/**
+	 * the interned id of the variable if it has one, so that its string id is not built while recording. An interned
+	 * id is never the same as a string one, as the variables without interned id are the virtual ones and their
+	 * fields and elements.
+	 */
+	private static Object getVarKey(VarValue var) {
+		int varIdx = var.getVarIdx();
+		if (varIdx == VarIdTable.NO_ID) {
+			return var.getVarID();
+		}
+		return varIdx;
+	}
+	
+	private static int mapSize(Map<Object, VarValue> map) {
+		return map == null ? 0 : map.size();
 	}
 	
 	private VarValue find(List<VarValue> variables, VarValue var) {
@@ -521,6 +581,7 @@ public class TraceNode{
 	
 
 	public void setWrittenVariables(List<VarValue> writtenVariables) {
+		accessVariables();
 		this.writtenVariables = writtenVariables;
 	}
 	
@@ -599,11 +660,11 @@ public class TraceNode{
 //	}
 	
 	public void setControlDominator(TraceNode controlDominator){
-		this.controlDominator = controlDominator;
+		setLink(TraceColumns.CONTROL_DOMINATOR, controlDominator);
 	}
 	
 	public TraceNode getControlDominator(){
-		return this.controlDominator;
+		return getLink(TraceColumns.CONTROL_DOMINATOR);
 	}
 
 //	public List<TraceNode> getControlDominators() {
@@ -621,29 +682,35 @@ public class TraceNode{
 //	}
 
 	public List<TraceNode> getControlDominatees() {
-		return controlDominatees;
+		return CollectionUtils.nullToEmpty(controlDominatees);
 	}
 
 	public void setControlDominatees(List<TraceNode> controlDominatees) {
 		this.controlDominatees = controlDominatees;
 	}
 	
+	/**
+	 * dominatees are added in trace order, so a step after the last dominatee cannot be in the list yet.
+	 */
 	public void addControlDominatee(TraceNode dominatee){
-		if(!this.controlDominatees.contains(dominatee)){
+		controlDominatees = CollectionUtils.initIfEmpty(controlDominatees);
+		int size = controlDominatees.size();
+		if (size == 0 || controlDominatees.get(size - 1).getOrder() < dominatee.getOrder()
+				|| !this.controlDominatees.contains(dominatee)) {
 			this.controlDominatees.add(dominatee);
 		}
 	}
 
 	public boolean isConditional(){
-		return this.breakPoint.isConditional();
+		return this.getBreakPoint().isConditional();
 	}
 	
 	public Scope getControlScope(){
-		return this.breakPoint.getControlScope();
+		return this.getBreakPoint().getControlScope();
 	}
 	
 	public Scope getLoopScope(){
-		return this.breakPoint.getLoopScope();
+		return this.getBreakPoint().getLoopScope();
 	}
 
 	public int getInvocationLevel() {
@@ -715,8 +782,8 @@ public class TraceNode{
 //			}
 //		}
 		
-		if(this.controlDominator != null){
-			TraceNode controlDominator = this.controlDominator;
+		TraceNode controlDominator = getControlDominator();
+		if(controlDominator != null){
 			while(controlDominator != null){
 				if(controlDominator.isLoopCondition()  && controlDominator.isLoopContainsNodeScope(this)){
 					return controlDominator;
@@ -897,11 +964,11 @@ public class TraceNode{
 	}
 
 	public TraceNode getLoopParent() {
-		return loopParent;
+		return getLink(TraceColumns.LOOP_PARENT);
 	}
 
 	public void setLoopParent(TraceNode loopParent) {
-		this.loopParent = loopParent;
+		setLink(TraceColumns.LOOP_PARENT, loopParent);
 	}
 	
 	public void addLoopChild(TraceNode loopChild){
@@ -938,6 +1005,7 @@ public class TraceNode{
 	}
 
 	public List<VarValue> getReturnedVariables() {
+		accessVariables();
 		return CollectionUtils.nullToEmpty(returnedVariables);
 	}
 
@@ -966,19 +1034,64 @@ public class TraceNode{
 	}
 
 	public List<VarValue> getPassParameters() {
+		accessVariables();
 		return CollectionUtils.nullToEmpty(passParameters);
 	}
 
 	public void setPassParameters(List<VarValue> passParameters) {
+		accessVariables();
 		this.passParameters = passParameters;
 	}
+	
+	/**
+	 * make sure the variables of this node are in heap before they are read
+	 * or modified, see {@link StepVariableSpill}.
+	 */
+	private void accessVariables() {
+		StepVariableSpill spill = (trace == null) ? null : trace.getVariableSpill();
+		if (spill != null) {
+			spill.access(this);
+		}
+	}
+	
+	StepVariableSpill.StepVariables detachVariables() {
+		StepVariableSpill.StepVariables vars = new StepVariableSpill.StepVariables();
+		vars.readVariables = readVariables;
+		vars.writtenVariables = writtenVariables;
+		vars.readVariableMap = readVariableMap;
+		vars.writtenVariableMap = writtenVariableMap;
+		vars.returnedVariables = returnedVariables;
+		vars.passParameters = passParameters;
+		readVariables = null;
+		writtenVariables = null;
+		readVariableMap = null;
+		writtenVariableMap = null;
+		returnedVariables = null;
+		passParameters = null;
+		variablesSpilled = true;
+		return vars;
+	}
+	
+	void attachVariables(StepVariableSpill.StepVariables vars) {
+		readVariables = vars.readVariables;
+		writtenVariables = vars.writtenVariables;
+		readVariableMap = vars.readVariableMap;
+		writtenVariableMap = vars.writtenVariableMap;
+		returnedVariables = vars.returnedVariables;
+		passParameters = vars.passParameters;
+		variablesSpilled = false;
+	}
+	
+	boolean isVariablesSpilled() {
+		return variablesSpilled;
+	}
 
 	public void setControlScope(ControlScope scope) {
-		this.breakPoint.setControlScope(scope);;
+		this.getBreakPoint().setControlScope(scope);;
 	}
 
 	public boolean isBranch() {
-		return this.breakPoint.isBranch();
+		return this.getBreakPoint().isBranch();
 	}
 
 	public TraceNode getInvokingMatchNode() {
@@ -990,18 +1103,30 @@ public class TraceNode{
 	}
 
 	public long getTimestamp() {
-		return timestamp;
+		return columns().getTimestamp(order);
 	}
 	
 	public void setTimestamp(long timestamp) {
-		this.timestamp = timestamp;
+		columns().setTimestamp(order, timestamp);
 	}
 
 	public String getBytecode() {
-		return bytecode;
+		return columns().getBytecode(order);
 	}
 
 	public void setBytecode(String bytecode) {
-		this.bytecode = bytecode;
+		columns().setBytecode(order, bytecode);
+	}
+	
+	/**
+	 * the row of a node without a trace, its links are kept as nodes since there is no trace to look their orders up.
+	 */
+	private static class DetachedRow {
+		private TraceColumns columns;
+		private TraceNode[] links = new TraceNode[TraceColumns.LINK_COLUMNS];
+		
+		public DetachedRow(int order) {
+			columns = new TraceColumns(Math.max(order, 0) + 1);
+		}
 	}
 }
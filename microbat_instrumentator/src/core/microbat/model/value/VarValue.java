@@ -162,6 +162,13 @@ public abstract class VarValue implements GraphNode, Serializable {
 	public String getVarID() {
 		return this.variable.getVarID();
 	}
+	
+	/**
+	 * @see Variable#getVarIdx()
+	 */
+	public int getVarIdx() {
+		return this.variable.getVarIdx();
+	}
 
 	public void setVarID(String varID) {
 		if(varID == null){
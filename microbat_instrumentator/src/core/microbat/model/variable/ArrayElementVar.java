@@ -8,9 +8,16 @@ public class ArrayElementVar extends Variable {
 		this.varID = varID;
 	}
 	
+	/**
+	 * the name of an element is its varID unless given, which is then only built when it is asked for.
+	 */
 	@Override
-	public String getVarID() {
-		return this.varID;
+	public String getName() {
+		return (variableName == null) ? getVarID() : variableName;
+	}
+	
+	public boolean isNamedByVarID() {
+		return variableName == null;
 	}
 
 	@Override
@@ -18,8 +25,9 @@ public class ArrayElementVar extends Variable {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((type == null) ? 0 : type.hashCode());
+		String name = getName();
 		result = prime * result
-				+ ((variableName == null) ? 0 : variableName.hashCode());
+				+ ((name == null) ? 0 : name.hashCode());
 		return result;
 	}
 
@@ -32,10 +40,11 @@ public class ArrayElementVar extends Variable {
 		if (getClass() != obj.getClass())
 			return false;
 		ArrayElementVar other = (ArrayElementVar) obj;
-		if (variableName == null) {
-			if (other.variableName != null)
+		String name = getName();
+		if (name == null) {
+			if (other.getName() != null)
 				return false;
-		} else if (!variableName.equals(other.variableName))
+		} else if (!name.equals(other.getName()))
 			return false;
 		return true;
 	}
@@ -43,19 +52,20 @@ public class ArrayElementVar extends Variable {
 	@Override
 	public String toString() {
 		return "ArrayElementVar [type=" + type + ", variableName="
-				+ variableName + "]";
+				+ getName() + "]";
 	}
 
 	@Override
 	public String getSimpleName() {
-		String sName = variableName.substring(variableName.indexOf("[")+1, variableName.length()-1);
+		String name = getName();
+		String sName = name.substring(name.indexOf("[")+1, name.length()-1);
 		return sName;
 	}
 
 	@Override
 	public Variable clone() {
 		ArrayElementVar var = new ArrayElementVar(variableName, type, aliasVarID);
-		var.setVarID(varID);
+		copyVarID(var);
 		return var;
 	}
 	
@@ -79,7 +79,7 @@ public class FieldVar extends Variable{
 	@Override
 	public Variable clone() {
 		FieldVar var = new FieldVar(isStatic, variableName, type, declaringType);
-		var.setVarID(varID);
+		copyVarID(var);
 		var.setDeclaringType(declaringType);
 		return var;
 	}
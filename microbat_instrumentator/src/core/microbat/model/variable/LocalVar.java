@@ -81,7 +81,7 @@ public class LocalVar extends Variable{
 	@Override
 	public Variable clone() {
 		LocalVar var = new LocalVar(variableName, type, locationClass, lineNumber);
-		var.setVarID(varID);
+		copyVarID(var);
 		var.setParameter(isParameter);
 		return var;
 	}
@@ -0,0 +1,207 @@
+package microbat.model.variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.util.LongIntHashMap;
+
+/**
+ * Interns the identities of the variables met while recording a trace to compact int ids, so that building the id
+ * of a variable at every read/write event is a few hash lookups instead of a string concatenation.
+ * <p>
+ * An identity is made of the id of its parent (an object, a field, an array, ...) and a name or an index, the same
+ * parts {@link Variable#concanateFieldVarID(String, String)},
+ * {@link Variable#concanateArrayElementVarID(String, String)} and
+ * {@link Variable#concanateLocalVarID(String, String, int, int, int)} are made of. Its string form is only built
+ * the first time it is asked for, and is then shared by all the variables with this identity.
+ * <p>
+ * The table is not thread-safe, each tracer keeps its own one. Ids are only meaningful within their table, so they
+ * are written out as their parts (see {@link #visit(int, IdVisitor)}) and interned again into the table of the
+ * reader, which builds the string forms.
+ */
+public class VarIdTable {
+	public static final int NO_ID = 0;
+
+	/* kinds of identity, each one is (a, b) */
+	private static final int OBJECT = 0; // (identity hash code, 0)
+	private static final int FIELD = 1; // (parent id, field name)
+	private static final int STATIC_FIELD = 2; // (declaring type name, field name)
+	private static final int ARRAY_ELEMENT = 3; // (array id, index)
+	private static final int LOCAL_VAR_NAME = 4; // (class name, var name)
+	private static final int LOCAL_VAR_START = 5; // (LOCAL_VAR_NAME id, scope start line)
+	private static final int LOCAL_VAR_END = 6; // (LOCAL_VAR_START id, scope end line)
+	private static final int LOCAL_VAR = 7; // (LOCAL_VAR_END id, invocation layer)
+	private static final int KINDS = 8;
+	private static final int INIT_CAPACITY = 256;
+
+	private LongIntHashMap[] idMaps = new LongIntHashMap[KINDS];
+	private int[] kinds = new int[INIT_CAPACITY];
+	private int[] as = new int[INIT_CAPACITY];
+	private int[] bs = new int[INIT_CAPACITY];
+	private String[] varIDs = new String[INIT_CAPACITY];
+	/* id 0 is NO_ID */
+	private int size = 1;
+
+	private Map<String, Integer> nameIds = new HashMap<>();
+	private List<String> names = new ArrayList<>();
+
+	public VarIdTable() {
+		for (int i = 0; i < KINDS; i++) {
+			idMaps[i] = new LongIntHashMap();
+		}
+	}
+
+	/**
+	 * id of an object, see {@link System#identityHashCode(Object)}.
+	 */
+	public int getObjectId(int identityHashCode) {
+		return intern(OBJECT, identityHashCode, 0);
+	}
+
+	public int getFieldId(int parentId, String fieldName) {
+		return intern(FIELD, parentId, getNameId(fieldName));
+	}
+
+	public int getStaticFieldId(String declaringType, String fieldName) {
+		return intern(STATIC_FIELD, getNameId(declaringType), getNameId(fieldName));
+	}
+
+	public int getArrayElementId(int arrayId, int index) {
+		return intern(ARRAY_ELEMENT, arrayId, index);
+	}
+
+	public int getLocalVarId(String className, String varName, int startLine, int endLine, int invocationLayer) {
+		int id = intern(LOCAL_VAR_NAME, getNameId(className), getNameId(varName));
+		id = intern(LOCAL_VAR_START, id, startLine);
+		id = intern(LOCAL_VAR_END, id, endLine);
+		return intern(LOCAL_VAR, id, invocationLayer);
+	}
+
+	/**
+	 * @return the string form of the id, as it would have been built by the concanate methods of {@link Variable}.
+	 */
+	public String getVarID(int id) {
+		if (id <= NO_ID || id >= size) {
+			return null;
+		}
+		String varID = varIDs[id];
+		if (varID == null) {
+			varID = buildVarID(id);
+			varIDs[id] = varID;
+		}
+		return varID;
+	}
+
+	public int size() {
+		return size - 1;
+	}
+
+	/**
+	 * calls the method of the visitor for the kind of the id with its parts, the parent ids being left to the visitor.
+	 */
+	public <E extends Exception> void visit(int id, IdVisitor<E> visitor) throws E {
+		int a = as[id];
+		int b = bs[id];
+		switch (kinds[id]) {
+		case OBJECT:
+			visitor.visitObject(a);
+			break;
+		case FIELD:
+			visitor.visitField(a, names.get(b));
+			break;
+		case STATIC_FIELD:
+			visitor.visitStaticField(names.get(a), names.get(b));
+			break;
+		case ARRAY_ELEMENT:
+			visitor.visitArrayElement(a, b);
+			break;
+		case LOCAL_VAR:
+			int endId = a;
+			int startId = as[endId];
+			int nameId = as[startId];
+			visitor.visitLocalVar(names.get(as[nameId]), names.get(bs[nameId]), bs[startId], bs[endId], b);
+			break;
+		default:
+			throw new IllegalArgumentException("Not a variable id: " + id);
+		}
+	}
+
+	/**
+	 * the parts of an id, as given to the get*Id methods of {@link VarIdTable}.
+	 */
+	public interface IdVisitor<E extends Exception> {
+		void visitObject(int identityHashCode) throws E;
+
+		void visitField(int parentId, String fieldName) throws E;
+
+		void visitStaticField(String declaringType, String fieldName) throws E;
+
+		void visitArrayElement(int arrayId, int index) throws E;
+
+		void visitLocalVar(String className, String varName, int startLine, int endLine, int invocationLayer)
+				throws E;
+	}
+
+	/**
+	 * same as the concanate methods of {@link Variable}, which are not called as the table is also used to read
+	 * traces in the microbat plugin, against its own copy of {@link Variable}.
+	 */
+	private String buildVarID(int id) {
+		int a = as[id];
+		int b = bs[id];
+		switch (kinds[id]) {
+		case OBJECT:
+			return String.valueOf(a);
+		case FIELD:
+			return getVarID(a) + "." + names.get(b);
+		case STATIC_FIELD:
+			return names.get(a) + "." + names.get(b);
+		case ARRAY_ELEMENT:
+			return getVarID(a) + "[" + b + "]";
+		case LOCAL_VAR:
+			int endId = a;
+			int startId = as[endId];
+			int nameId = as[startId];
+			return names.get(as[nameId]).replace(".", "/") + "{" + bs[startId] + "," + bs[endId] + "}"
+					+ names.get(bs[nameId]) + "-" + b;
+		default:
+			/* partial identities of local variables have no string form */
+			return null;
+		}
+	}
+
+	private int intern(int kind, int a, int b) {
+		LongIntHashMap idMap = idMaps[kind];
+		long key = ((long) a << 32) | (b & 0xFFFFFFFFL);
+		int id = idMap.get(key);
+		if (id != LongIntHashMap.NO_VALUE) {
+			return id;
+		}
+		id = size++;
+		if (id >= kinds.length) {
+			int newCapacity = kinds.length * 2;
+			kinds = Arrays.copyOf(kinds, newCapacity);
+			as = Arrays.copyOf(as, newCapacity);
+			bs = Arrays.copyOf(bs, newCapacity);
+			varIDs = Arrays.copyOf(varIDs, newCapacity);
+		}
+		kinds[id] = kind;
+		as[id] = a;
+		bs[id] = b;
+		idMap.put(key, id);
+		return id;
+	}
+
+	private int getNameId(String name) {
+		Integer id = nameIds.get(name);
+		if (id == null) {
+			id = names.size();
+			names.add(name);
+			nameIds.put(name, id);
+		}
+		return id;
+	}
+}
@@ -1,5 +1,7 @@
 package microbat.model.variable;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 public abstract class Variable implements Serializable {
@@ -47,6 +49,15 @@ public abstract class Variable implements Serializable {
 	 * <code>Variable.concanateLocalVarID()</code><br>
 	 */
 	protected String varID;
+	
+	/**
+	 * the id of varID in the {@link VarIdTable} of the recorded trace, or {@link VarIdTable#NO_ID} if varID is not
+	 * interned, e.g. when it is read back from a file or when the order of its defining step is appended. The string
+	 * form of an interned id is only built when it is asked for.
+	 */
+	protected transient int varIdx = VarIdTable.NO_ID;
+	protected transient int aliasVarIdx = VarIdTable.NO_ID;
+	protected transient VarIdTable varIds;
 
 	public Variable(String name, String type){
 		this.variableName = name;
@@ -70,6 +81,9 @@ public abstract class Variable implements Serializable {
 	}
 	
 	public String getVarID() {
+		if (varID == null && varIdx != VarIdTable.NO_ID) {
+			varID = varIds.getVarID(varIdx);
+		}
 		return varID;
 	}
 
@@ -85,6 +99,40 @@ public abstract class Variable implements Serializable {
 	 */
 	public void setVarID(String varID) {
 		this.varID = varID;
+		this.varIdx = VarIdTable.NO_ID;
+	}
+	
+	/**
+	 * @param varIdx the id of varID in varIds.
+	 */
+	public void setVarID(VarIdTable varIds, int varIdx) {
+		this.varID = null;
+		this.varIdx = varIdx;
+		this.varIds = varIds;
+	}
+	
+	public int getVarIdx() {
+		return varIdx;
+	}
+	
+	/**
+	 * sets the varID of this variable to its clone, an interned id staying interned.
+	 */
+	protected void copyVarID(Variable var) {
+		var.varID = varID;
+		var.varIdx = varIdx;
+		var.varIds = varIds;
+	}
+	
+	public int getAliasVarIdx() {
+		return aliasVarIdx;
+	}
+	
+	/**
+	 * the table of the interned ids of this variable, if any.
+	 */
+	public VarIdTable getVarIdTable() {
+		return varIds;
 	}
 	
 	public static String concanateFieldVarID(String parentID, String fieldName){
@@ -106,9 +154,9 @@ public abstract class Variable implements Serializable {
 			return null;
 		}
 		
-		if(completeVarID.contains(":")){
-			String simpleID = completeVarID.substring(0, completeVarID.indexOf(":"));
-			return simpleID;			
+		int orderIdx = completeVarID.indexOf(':');
+		if(orderIdx >= 0){
+			return completeVarID.substring(0, orderIdx);
 		}
 		else{
 			return completeVarID;
@@ -126,11 +174,24 @@ public abstract class Variable implements Serializable {
 	}
 	
 	public String getAliasVarID() {
+		if (aliasVarID == null && aliasVarIdx != VarIdTable.NO_ID) {
+			aliasVarID = varIds.getVarID(aliasVarIdx);
+		}
 		return aliasVarID;
 	}
 
 	public void setAliasVarID(String aliasVarID) {
 		this.aliasVarID = aliasVarID;
+		this.aliasVarIdx = VarIdTable.NO_ID;
+	}
+	
+	/**
+	 * @param aliasVarIdx the id of aliasVarID in varIds, {@link VarIdTable#NO_ID} for no alias.
+	 */
+	public void setAliasVarID(VarIdTable varIds, int aliasVarIdx) {
+		this.aliasVarID = null;
+		this.aliasVarIdx = aliasVarIdx;
+		this.varIds = varIds;
 	}
 	
 //	public static boolean isPrimitiveVariable(String varID){
@@ -151,4 +212,11 @@ public abstract class Variable implements Serializable {
 		this.rtType = rtType;
 	}
 	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		/* the interned ids are not serialized */
+		getVarID();
+		getAliasVarID();
+		out.defaultWriteObject();
+	}
+	
 }
@@ -26,7 +26,7 @@ public class VirtualVar extends Variable {
 	@Override
 	public Variable clone() {
 		VirtualVar var = new VirtualVar(variableName, type);
-		var.setVarID(varID);
+		copyVarID(var);
 		return var;
 	}
 
@@ -0,0 +1,155 @@
+package microbat.sql;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import microbat.instrumentation.output.VarValueWriter;
+import microbat.model.BreakPoint;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import microbat.model.value.VarValue;
+import sav.common.core.utils.CollectionUtils;
+
+/**
+ * High-throughput variant of {@link SqliteRecorder} for long traces:
+ * <ul>
+ * <li>the database is switched to WAL journal mode with relaxed synchronization during the load,</li>
+ * <li>steps are flushed every {@link #BATCH_SIZE} rows and committed every <code>chunkSize</code> rows instead of
+ * in one transaction for the whole run,</li>
+ * <li>read/written variables are stored as {@link VarValueWriter} blobs instead of xml,</li>
+ * <li>secondary indexes are only created once all traces are loaded.</li>
+ * </ul>
+ * As chunks are committed along the way, a failure leaves the traces partially stored.
+ */
+public class BatchSqliteRecorder extends SqliteRecorder {
+	public static final int DEFAULT_CHUNK_SIZE = 10000;
+	private static final String[] DEFERRED_INDEXES = new String[] {
+			"CREATE INDEX IF NOT EXISTS Location_location_id ON Location (location_id)" };
+	private int chunkSize;
+
+	public BatchSqliteRecorder(String dbPath, String runId) {
+		this(dbPath, runId, DEFAULT_CHUNK_SIZE);
+	}
+
+	public BatchSqliteRecorder(String dbPath, String runId, int chunkSize) {
+		super(dbPath, runId);
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public void store(List<Trace> traces) {
+		Connection conn = null;
+		List<AutoCloseable> closables = new ArrayList<AutoCloseable>();
+		try {
+			conn = getConnection();
+			/* journal mode cannot be changed within a transaction */
+			executeStatements(conn, closables, "PRAGMA journal_mode=WAL", "PRAGMA synchronous=NORMAL");
+			conn.setAutoCommit(false);
+			insertRun(conn, closables);
+			for (Trace trace : traces) {
+				insertTrace(trace, getRunId(), conn, closables);
+			}
+			executeStatements(conn, closables, DEFERRED_INDEXES);
+			conn.commit();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			rollback(conn);
+		} finally {
+			closeDb(conn, closables);
+		}
+	}
+
+	@Override
+	protected void insertSteps(String traceId, List<TraceNode> exectionList, Connection conn,
+			List<AutoCloseable> closables) throws SQLException {
+		insertLocations(traceId, exectionList, conn, closables);
+		String sql = "INSERT INTO Step (trace_id, step_order, control_dominator, step_in, step_over, invocation_parent, loop_parent,"
+				+ "location_id, read_vars, written_vars, time) VALUES (?,?,?,?,?,?,?,?,?,?,?)";
+		PreparedStatement ps = conn.prepareStatement(sql);
+		closables.add(ps);
+		int batchCount = 0;
+		int chunkCount = 0;
+		for (int i = 0; i < exectionList.size(); i++) {
+			TraceNode node = exectionList.get(i);
+			int idx = 1;
+			ps.setString(idx++, traceId);
+			ps.setInt(idx++, node.getOrder());
+			setNodeOrder(ps, idx++, node.getControlDominator());
+			setNodeOrder(ps, idx++, node.getStepInNext());
+			setNodeOrder(ps, idx++, node.getStepOverNext());
+			setNodeOrder(ps, idx++, node.getInvocationParent());
+			setNodeOrder(ps, idx++, node.getLoopParent());
+			ps.setString(idx++, getLocationId(node.getBreakPoint()));
+			ps.setBytes(idx++, encodeVarValues(node.getReadVariables()));
+			ps.setBytes(idx++, encodeVarValues(node.getWrittenVariables()));
+			ps.setDate(idx, new Date(node.getTimestamp()));
+			ps.addBatch();
+			if (++batchCount >= BATCH_SIZE) {
+				ps.executeBatch();
+				batchCount = 0;
+			}
+			if (++chunkCount >= chunkSize) {
+				if (batchCount > 0) {
+					ps.executeBatch();
+					batchCount = 0;
+				}
+				conn.commit();
+				chunkCount = 0;
+			}
+		}
+		if (batchCount > 0) {
+			ps.executeBatch();
+		}
+	}
+
+	private void insertLocations(String traceId, List<TraceNode> nodes, Connection conn,
+			List<AutoCloseable> closables) throws SQLException {
+		String sql = "INSERT INTO location (location_id,trace_id, class_name, line_number, is_conditional, is_return) "
+				+ "VALUES (?,?, ?, ?, ?, ?)";
+		PreparedStatement ps = conn.prepareStatement(sql);
+		closables.add(ps);
+		for (BreakPoint location : getLoactionSet(nodes)) {
+			int idx = 1;
+			ps.setString(idx++, getLocationId(location));
+			ps.setString(idx++, traceId);
+			ps.setString(idx++, location.getDeclaringCompilationUnitName());
+			ps.setInt(idx++, location.getLineNumber());
+			ps.setBoolean(idx++, location.isConditional());
+			ps.setBoolean(idx++, location.isReturnStatement());
+			ps.addBatch();
+		}
+		ps.executeBatch();
+	}
+
+	private static String getLocationId(BreakPoint location) {
+		return location.getDeclaringCompilationUnitName() + "_" + location.getLineNumber();
+	}
+
+	protected byte[] encodeVarValues(Collection<VarValue> varValues) throws SQLException {
+		if (CollectionUtils.isEmpty(varValues)) {
+			return null;
+		}
+		try {
+			return VarValueWriter.encode(Collections.singletonList(varValues));
+		} catch (IOException e) {
+			throw new SQLException(e);
+		}
+	}
+
+	private static void executeStatements(Connection conn, List<AutoCloseable> closables, String... sqls)
+			throws SQLException {
+		Statement st = conn.createStatement();
+		closables.add(st);
+		for (String sql : sqls) {
+			st.execute(sql);
+		}
+	}
+}
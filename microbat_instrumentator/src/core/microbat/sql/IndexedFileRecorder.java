@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package microbat.sql;
+
+import java.io.IOException;
+import java.util.List;
+
+import microbat.instrumentation.Agent;
+import microbat.instrumentation.AgentLogger;
+import microbat.instrumentation.AgentParams;
+import microbat.instrumentation.output.IndexedTraceWriter;
+import microbat.instrumentation.output.RunningInfo;
+import microbat.model.trace.Trace;
+
+/**
+ * Stores traces in the random-access layout of {@link IndexedTraceWriter}, to be opened with
+ * {@link microbat.instrumentation.output.MappedTraceFile}.
+ */
+public class IndexedFileRecorder implements TraceRecorder {
+	private AgentParams agentParams;
+
+	public IndexedFileRecorder(AgentParams agentParams) {
+		this.agentParams = agentParams;
+	}
+
+	@Override
+	public void store(List<Trace> traceList) {
+		int collectedSteps = traceList.get(0).getExecutionList().size();
+		int expectedSteps = agentParams.getExpectedSteps();
+		RunningInfo result = new RunningInfo(Agent.getProgramMsg(), traceList, expectedSteps, collectedSteps);
+		try {
+			IndexedTraceWriter.saveToFile(result, agentParams.getDumpFile());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		AgentLogger.debug(result.toString());
+	}
+
+}
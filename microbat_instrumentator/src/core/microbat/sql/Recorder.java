@@ -10,14 +10,18 @@ import microbat.instrumentation.AgentParams;
  *
  */
 public enum Recorder {
-	FILE,SQLITE3,MYSQL;
+	FILE,INDEXED_FILE,SQLITE3,SQLITE3_BATCH,MYSQL;
 	
 	public static TraceRecorder create(AgentParams params) {
 		switch (params.getTraceRecorderName()) {
 		case "FILE":
 			return new FileRecorder(params);
+		case "INDEXED_FILE":
+			return new IndexedFileRecorder(params);
 		case "SQLITE3":
 			return new SqliteRecorder(params.getDumpFile(), params.getRunId());
+		case "SQLITE3_BATCH":
+			return new BatchSqliteRecorder(params.getDumpFile(), params.getRunId());
 //		case "MYSQL":
 //			return new MysqlRecorder(params.getRunId());
 		default:
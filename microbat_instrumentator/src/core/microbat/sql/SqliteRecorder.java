@@ -40,6 +40,10 @@ public class SqliteRecorder extends SqliteServer implements TraceRecorder {
 		this.runId = runId;
 	}
 
+	public String getRunId() {
+		return runId;
+	}
+
 	public void store(List<Trace> traces) {
 		Connection conn = null;
 		List<AutoCloseable> closables = new ArrayList<AutoCloseable>();
@@ -101,7 +105,7 @@ public class SqliteRecorder extends SqliteServer implements TraceRecorder {
 		return traceId;
 	}
 
-	private void insertSteps(String traceId, List<TraceNode> exectionList, Connection conn, List<AutoCloseable> closables)
+	protected void insertSteps(String traceId, List<TraceNode> exectionList, Connection conn, List<AutoCloseable> closables)
 			throws SQLException {
 		String sql = "INSERT INTO Step (trace_id, step_order, control_dominator, step_in, step_over, invocation_parent, loop_parent,"
 				+ "location_id, read_vars, written_vars, time) VALUES (?,?,?,?,?,?,?,?,?,?,?)";
@@ -195,7 +199,7 @@ public class SqliteRecorder extends SqliteServer implements TraceRecorder {
 		// insertLoopScope(traceId, result, conn, closables);
 	}
 
-	private HashSet<BreakPoint> getLoactionSet(List<TraceNode> list) {
+	protected HashSet<BreakPoint> getLoactionSet(List<TraceNode> list) {
 		HashSet<BreakPoint> set = new HashSet<>();
 		for (TraceNode node : list) {
 			set.add(node.getBreakPoint());
@@ -210,7 +214,7 @@ public class SqliteRecorder extends SqliteServer implements TraceRecorder {
 		return VarValueXmlWriter.generateXmlContent(varValues);
 	}
 
-	private void setNodeOrder(PreparedStatement ps, int idx, TraceNode node) throws SQLException {
+	protected void setNodeOrder(PreparedStatement ps, int idx, TraceNode node) throws SQLException {
 		if (node != null) {
 			ps.setInt(idx, node.getOrder());
 		} else {
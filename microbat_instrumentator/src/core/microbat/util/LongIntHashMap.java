@@ -0,0 +1,83 @@
+package microbat.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to positive int values, without boxing keys or values.
+ * 0 is returned for a missing key, so 0 cannot be stored as a value.
+ */
+public class LongIntHashMap {
+	public static final int NO_VALUE = 0;
+	private static final int INIT_CAPACITY = 64;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+
+	public LongIntHashMap() {
+		keys = new long[INIT_CAPACITY];
+		values = new int[INIT_CAPACITY];
+	}
+
+	public int get(long key) {
+		int mask = keys.length - 1;
+		for (int i = indexFor(key, mask); values[i] != NO_VALUE; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+		}
+		return NO_VALUE;
+	}
+
+	public void put(long key, int value) {
+		if (value == NO_VALUE) {
+			throw new IllegalArgumentException("value must not be " + NO_VALUE);
+		}
+		int mask = keys.length - 1;
+		int i = indexFor(key, mask);
+		for (; values[i] != NO_VALUE; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		/* keep the load factor under 0.5 */
+		if (++size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(values, NO_VALUE);
+		size = 0;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[newCapacity];
+		values = new int[newCapacity];
+		int mask = newCapacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] != NO_VALUE) {
+				int i = indexFor(oldKeys[j], mask);
+				while (values[i] != NO_VALUE) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int indexFor(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
@@ -8,6 +8,7 @@ import java.util.List;
 import microbat.instrumentation.filter.GlobalFilterChecker;
 import microbat.instrumentation.runtime.ExecutionTracer;
 import microbat.instrumentation.runtime.IExecutionTracer;
+import microbat.instrumentation.worker.RunAbortedError;
 
 /**
  * @author LLT
@@ -27,6 +28,10 @@ public abstract class Agent {
 	private volatile static Boolean shutdowned = false;
 	private static int numberOfThread = 1;
 	private static Instrumentation instrumentation;
+	/* the vm runs the programs of many runs, see AgentWorker */
+	private static volatile boolean workerMode = false;
+	/* in worker mode, whether the program of the current run has exited */
+	private static volatile boolean programExited = false;
 	
 	
 	public abstract void startup0(long vmStartupTime, long agentPreStartup);
@@ -82,6 +87,10 @@ public abstract class Agent {
 	 */
 	public static void _exitProgram(String programMsg) {
 		if(Thread.currentThread().getName().equals("main")) {
+			if (workerMode && programExited) {
+				/* keep the message of the first exit, e.g. the one of an aborted run */
+				return;
+			}
 			ExecutionTracer.getMainThreadStore().lock();
 			Agent.programMsg = programMsg;
 			
@@ -114,6 +123,14 @@ public abstract class Agent {
 				allInterestedThreadsStop = !needToConitnue;
 			}
 			
+			if (workerMode) {
+				/*
+				 * the program returns to the worker, which stores the trace of the run. The main tracer stays locked
+				 * so that nothing is recorded on the way back.
+				 */
+				programExited = true;
+				return;
+			}
 			stop();
 			ExecutionTracer.getMainThreadStore().unLock();
 			Runtime.getRuntime().exit(1); // force program to exit to avoid getting stuck by background running threads.
@@ -127,6 +144,17 @@ public abstract class Agent {
 		}
 	}
 	
+	/**
+	 * ends the program because of its execution, e.g. its trace is over long. In worker mode, the run is aborted by
+	 * unwinding the main thread back to the worker.
+	 */
+	public static void abortProgram(String programMsg) {
+		_exitProgram(programMsg);
+		if (workerMode && Thread.currentThread().getName().equals("main")) {
+			throw new RunAbortedError(programMsg);
+		}
+	}
+	
 	public static void _exitTest(String testResultMsg, String junitClass, String junitMethod, Long threadId) {
 		Agent agent = AgentFactory.createAgent(AgentFactory.cmd, instrumentation);
 		agent.exitTest(testResultMsg, junitClass, junitMethod, threadId);
@@ -212,6 +240,23 @@ public abstract class Agent {
 		return numberOfThread;
 	}
 
+	public static boolean isWorkerMode() {
+		return workerMode;
+	}
+
+	public static void setWorkerMode(boolean workerMode) {
+		Agent.workerMode = workerMode;
+	}
+
+	/**
+	 * clears the program state of the previous run of a worker.
+	 */
+	public static void reset() {
+		programMsg = "";
+		programExited = false;
+		numberOfThread = 1;
+	}
+
 	public ClassFileTransformer getTransformer() {
 		return getTransformer0();
 	}
@@ -2,9 +2,11 @@ package microbat.instrumentation;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import microbat.instrumentation.filter.CodeRangeEntry;
 import microbat.instrumentation.instr.instruction.info.EntryPoint;
@@ -43,6 +45,26 @@ public class AgentParams extends CommonParams {
 	public static final String OPT_CODE_RANGE = "code_range";
 	public static final String OPT_TRACE_RECORDER = "trace_recorder";
 	public static final String OPT_RUN_ID = "run_id";
+	public static final String OPT_SPILL_RESIDENT_STEPS = "spill_resident_steps";
+	public static final String OPT_CFG_CACHE_DIR = "cfg_cache_dir";
+	public static final String OPT_APP_BIN_FOLDERS = "app_bin_folders";
+	/*
+	 * traces the program without a precheck: over long methods are found when their class is loaded, and a trace
+	 * exceeding the step limit goes on with its lines only
+	 */
+	public static final String OPT_SINGLE_PASS = "single_pass";
+	/* an object read again unmodified shares the children of its previous value, see ObjectSnapshots */
+	public static final String OPT_SHARE_SNAPSHOTS = "share_snapshots";
+	/* the string values of objects, see ToStringPolicy: summaries instead of toString(), budgets in ms and limits */
+	public static final String OPT_TO_STRING_SUMMARY = "tostring_summary";
+	public static final String OPT_TO_STRING_CALL_BUDGET = "tostring_call_budget";
+	public static final String OPT_TO_STRING_CLASS_BUDGET = "tostring_class_budget";
+	public static final String OPT_TO_STRING_MAX_LENGTH = "tostring_max_length";
+	public static final String OPT_TO_STRING_MAX_ELEMENTS = "tostring_max_elements";
+	/* file to export the cost of toString() per class after the run */
+	public static final String OPT_TO_STRING_STATS_FILE = "tostring_stats_file";
+	/* port of the host which sends the runs of a worker vm, see SocketAgentVmRunner#CONNECTION_PORT_OPTION */
+	public static final String OPT_WORKER_PORT = "port";
 	
 	private boolean precheck;
 	private EntryPoint entryPoint;
@@ -63,6 +85,18 @@ public class AgentParams extends CommonParams {
 	private List<CodeRangeEntry> codeRanges;
 	private String recorderName;
 	private String runId;
+	private int spillResidentSteps;
+	private String cfgCacheDir;
+	/* class folders of the application which are not in the working directory */
+	private List<String> appBinFolders;
+	private boolean singlePass;
+	private boolean shareSnapshots;
+	private boolean toStringSummary;
+	private int toStringCallBudget;
+	private int toStringClassBudget;
+	private int toStringMaxLength;
+	private int toStringMaxElements;
+	private String toStringStatsFile;
 	
 	public AgentParams(CommandLine cmd) {
 		super(cmd);
@@ -99,6 +133,23 @@ public class AgentParams extends CommonParams {
 		codeRanges = CodeRangeEntry.parse(cmd.getStringList(OPT_CODE_RANGE));
 		recorderName = cmd.getString(OPT_TRACE_RECORDER);
 		runId = cmd.getString(OPT_RUN_ID);
+		spillResidentSteps = cmd.getInt(OPT_SPILL_RESIDENT_STEPS, AgentConstants.UNSPECIFIED_INT_VALUE);
+		cfgCacheDir = cmd.getString(OPT_CFG_CACHE_DIR);
+		appBinFolders = cmd.getStringList(OPT_APP_BIN_FOLDERS);
+		singlePass = cmd.getBoolean(OPT_SINGLE_PASS, false);
+		shareSnapshots = cmd.getBoolean(OPT_SHARE_SNAPSHOTS, false);
+		toStringSummary = cmd.getBoolean(OPT_TO_STRING_SUMMARY, false);
+		toStringCallBudget = cmd.getInt(OPT_TO_STRING_CALL_BUDGET, AgentConstants.UNSPECIFIED_INT_VALUE);
+		toStringClassBudget = cmd.getInt(OPT_TO_STRING_CLASS_BUDGET, AgentConstants.UNSPECIFIED_INT_VALUE);
+		toStringMaxLength = cmd.getInt(OPT_TO_STRING_MAX_LENGTH, AgentConstants.UNSPECIFIED_INT_VALUE);
+		toStringMaxElements = cmd.getInt(OPT_TO_STRING_MAX_ELEMENTS, AgentConstants.UNSPECIFIED_INT_VALUE);
+		toStringStatsFile = cmd.getString(OPT_TO_STRING_STATS_FILE);
+		if (singlePass) {
+			/* completed by the transformer, see TraceInstrumenter */
+			Set<String> methods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			methods.addAll(overlongMethods);
+			overlongMethods = methods;
+		}
 	}
 
 	public static AgentParams initFrom(CommandLine cmd) {
@@ -183,10 +234,54 @@ public class AgentParams extends CommonParams {
 		return expectedSteps;
 	}
 	
+	public int getSpillResidentSteps() {
+		return spillResidentSteps;
+	}
+	
+	public String getCfgCacheDir() {
+		return cfgCacheDir;
+	}
+	
+	public List<String> getAppBinFolders() {
+		return appBinFolders;
+	}
+	
 	public Set<String> getOverlongMethods() {
 		return overlongMethods;
 	}
 	
+	public boolean isSinglePass() {
+		return singlePass;
+	}
+
+	public boolean isShareSnapshots() {
+		return shareSnapshots;
+	}
+
+	public boolean isToStringSummary() {
+		return toStringSummary;
+	}
+
+	public int getToStringCallBudget() {
+		return toStringCallBudget;
+	}
+
+	public int getToStringClassBudget() {
+		return toStringClassBudget;
+	}
+
+	public int getToStringMaxLength() {
+		return toStringMaxLength;
+	}
+
+	public int getToStringMaxElements() {
+		return toStringMaxElements;
+	}
+
+	public String getToStringStatsFile() {
+		return toStringStatsFile;
+	}
+
 	public boolean isRequireMethodSplit() {
 		return requireMethodSplit;
 	}
@@ -13,6 +13,7 @@ import java.util.jar.JarFile;
 import microbat.instrumentation.instr.TestRunnerTranformer;
 import microbat.instrumentation.utils.CollectionUtils;
 import microbat.instrumentation.utils.FileUtils;
+import microbat.instrumentation.worker.AgentWorker;
 
 /**
  * 
@@ -39,6 +40,11 @@ public class Premain {
 		agentPreStartup = System.currentTimeMillis() - agentPreStartup;
 		System.out.println("Vm start up time: " + vmStartupTime);
 		System.out.println("Agent start up time: " + agentPreStartup);
+		if (AgentWorker.isWorkerVm(cmd)) {
+			/* the agent of each run is installed by the worker */
+			AgentWorker.setup(inst);
+			return;
+		}
 		Agent agent = AgentFactory.createAgent(cmd, inst);
 		agent.startup(vmStartupTime, agentPreStartup);
 		inst.addTransformer(agent.getTransformer(), true);
@@ -1,19 +1,32 @@
 package microbat.instrumentation;
 
+import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import microbat.codeanalysis.bytecode.ByteCodeParser;
+import microbat.codeanalysis.bytecode.CFGCache;
 import microbat.instrumentation.filter.CodeRangeUserFilter;
 import microbat.instrumentation.filter.GlobalFilterChecker;
 import microbat.instrumentation.filter.OverLongMethodFilter;
 import microbat.instrumentation.instr.TraceTransformer;
+import microbat.instrumentation.output.tcp.StepStreamer;
 import microbat.instrumentation.runtime.ExecutionTracer;
 import microbat.instrumentation.runtime.IExecutionTracer;
+import microbat.instrumentation.runtime.ToStringPolicy;
 import microbat.model.trace.Trace;
 import microbat.model.trace.TraceNode;
 import microbat.model.value.VarValue;
 import microbat.sql.Recorder;
+import sav.common.core.SavRtException;
 import sav.strategies.dto.AppJavaClassPath;
 
 public class TraceAgent extends Agent {
@@ -29,10 +42,15 @@ public class TraceAgent extends Agent {
 //		timer.newPoint("Execution");
 		/* init filter */
 		AppJavaClassPath appPath = agentParams.initAppClassPath();
-		GlobalFilterChecker.setup(appPath, agentParams.getIncludesExpression(), agentParams.getExcludesExpression());
+		GlobalFilterChecker.setup(appPath, agentParams.getAppBinFolders(), agentParams.getIncludesExpression(),
+				agentParams.getExcludesExpression());
 		ExecutionTracer.appJavaClassPath = appPath;
 		ExecutionTracer.variableLayer = agentParams.getVariableLayer();
 		ExecutionTracer.setStepLimit(agentParams.getStepLimit());
+		ExecutionTracer.setLinesOnlyOverStepLimit(agentParams.isSinglePass());
+		ExecutionTracer.setSpillResidentSteps(agentParams.getSpillResidentSteps());
+		ExecutionTracer.setShareSnapshots(agentParams.isShareSnapshots());
+		CFGCache.setCacheDir(agentParams.getCfgCacheDir());
 		if (!agentParams.isRequireMethodSplit()) {
 			agentParams.getUserFilters().register(new OverLongMethodFilter(agentParams.getOverlongMethods()));
 		}
@@ -43,43 +61,85 @@ public class TraceAgent extends Agent {
 
 		ExecutionTracer.setExpectedSteps(agentParams.getExpectedSteps());
 		ExecutionTracer.avoidProxyToString = agentParams.isAvoidProxyToString();
+		ToStringPolicy.setup(agentParams.isToStringSummary(), agentParams.getToStringCallBudget(),
+				agentParams.getToStringClassBudget(), agentParams.getToStringMaxLength(),
+				agentParams.getToStringMaxElements());
+		if (agentParams.getTcpPort() != AgentConstants.UNSPECIFIED_INT_VALUE) {
+			try {
+				ExecutionTracer.setStepStreamer(StepStreamer.connect(agentParams.getTcpPort()));
+			} catch (IOException e) {
+				AgentLogger.info("Cannot stream the trace steps: " + e.getMessage());
+			}
+		}
 	}
 
 	public void shutdown() throws Exception {
 		ExecutionTracer.shutdown();
+		ExecutionTracer.closeStepStream(Agent.getProgramMsg());
+		ToStringPolicy.exportStatistics(agentParams.getToStringStatsFile());
 		/* collect trace & store */
 		AgentLogger.debug("Building trace dependencies ...");
 //		timer.newPoint("Building trace dependencies");
 		// FIXME -mutithread LINYUN [3]
 		// LLT: only trace of main thread is recorded.
 		List<IExecutionTracer> tracers = ExecutionTracer.getAllThreadStore();
+		ExecutionTracer.dispose(); // clear cache
 
+		/*
+		 * traces are constructed in parallel, and the recorder starts storing
+		 * the first trace as soon as it is ready, while the others are still
+		 * being constructed.
+		 */
 		int size = tracers.size();
-		List<Trace> traceList = new ArrayList<>(size);
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(size, Runtime.getRuntime().availableProcessors())),
+				new TraceConstructionThreadFactory());
+		List<Future<Trace>> constructedTraces = new ArrayList<>(size);
 		for (int i = 0; i < size; i++) {
 
 			ExecutionTracer tracer = (ExecutionTracer) tracers.get(i);
 
-			Trace trace = tracer.getTrace();
+			final Trace trace = tracer.getTrace();
 			trace.setThreadId(tracer.getThreadId());
 			trace.setThreadName(tracer.getThreadName());
 			trace.setMain(ExecutionTracer.getMainThreadStore().equals(tracer));
 
-			constructTrace(trace);
-			traceList.add(trace);
+			constructedTraces.add(executor.submit(new Callable<Trace>() {
+
+				@Override
+				public Trace call() throws Exception {
+					constructTrace(trace);
+					return trace;
+				}
+			}));
 		}
+		executor.shutdown();
 
 //		timer.newPoint("Saving trace");
-		Recorder.create(agentParams).store(traceList);
+		List<Trace> traceList = new ConstructedTraceList(constructedTraces);
+		try {
+			Recorder.create(agentParams).store(traceList);
+		} finally {
+			executor.shutdownNow();
+		}
+		for (Trace trace : traceList) {
+			trace.disposeVariableSpill();
+		}
+		ByteCodeParser.clearCache();
+		if (!isWorkerMode()) {
+			/* control scopes are keyed by the method body, so they are kept for the next runs of a worker */
+			CFGCache.clearCache();
+		}
 //		AgentLogger.debug(timer.getResultString());
 	}
 
-	//FIXME this method can be handled in an asynchronized way
+	/**
+	 * can be called for different traces at the same time, each trace must only be accessed by one thread.
+	 */
 	public void constructTrace(Trace trace) {
 		GlobalFilterChecker.addFilterInfo(trace);
 
 		StepMismatchChecker.logNormalSteps(trace);
-		ExecutionTracer.dispose(); // clear cache
 		long t1 = System.currentTimeMillis();
 		AgentLogger.debug("create VirtualDataRelation....");
 		createVirtualDataRelation(trace);
@@ -120,6 +180,45 @@ public class TraceAgent extends Agent {
 //		AgentLogger.debug("Trace saved.");
 //	}
 
+	/**
+	 * list of traces in construction, getting a trace waits until it is constructed.
+	 */
+	private static class ConstructedTraceList extends AbstractList<Trace> {
+		private List<Future<Trace>> traces;
+
+		public ConstructedTraceList(List<Future<Trace>> traces) {
+			this.traces = traces;
+		}
+
+		@Override
+		public Trace get(int index) {
+			try {
+				return traces.get(index).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SavRtException(e);
+			} catch (ExecutionException e) {
+				throw new SavRtException(e.getCause());
+			}
+		}
+
+		@Override
+		public int size() {
+			return traces.size();
+		}
+	}
+
+	private static class TraceConstructionThreadFactory implements ThreadFactory {
+		private int threadIdx = 0;
+
+		@Override
+		public synchronized Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "trace-construction-" + threadIdx++);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	private void createVirtualDataRelation(Trace trace) {
 		for (int i = 0; i < trace.size(); i++) {
 			int order = i + 1;
@@ -136,7 +235,8 @@ public class TraceAgent extends Agent {
 			}
 
 			TraceNode previousStepOver = currentNode.getStepOverPrevious();
-			if (previousStepOver != null
+			/* the variables of the steps over the step limit are not recorded, see ExecutionTracer#setLinesOnlyOverStepLimit */
+			if (previousStepOver != null && order <= ExecutionTracer.stepLimit
 					&& previousStepOver.getClassCanonicalName().equals(currentNode.getClassCanonicalName())
 					&& Math.abs(previousStepOver.getLineNumber() - currentNode.getLineNumber()) <= 0) {
 				for (VarValue readVar : previousStepOver.getReadVariables()) {
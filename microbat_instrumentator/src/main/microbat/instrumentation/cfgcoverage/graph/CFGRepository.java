@@ -6,7 +6,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Method;
 
 import microbat.codeanalysis.bytecode.ByteCodeMethodFinder;
@@ -77,7 +76,7 @@ public class CFGRepository {
 	}
 	
 	public void clearCache() {
-		Repository.clearCache();
+		ByteCodeParser.clearCache();
 	}
 	
 	private static class MethodFinderByMethodSignature extends ByteCodeMethodFinder {
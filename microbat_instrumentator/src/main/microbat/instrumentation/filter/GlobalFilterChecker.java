@@ -2,9 +2,11 @@ package microbat.instrumentation.filter;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import microbat.instrumentation.runtime.ExecutionTracer;
 import microbat.model.trace.Trace;
@@ -17,20 +19,34 @@ public class GlobalFilterChecker {
 	private List<String> appBinFolders;
 	private List<String> extLibs;
 	private List<String> bootstrapIncludes = new ArrayList<>();
-	private Set<String> includes = new HashSet<>();
+	/*
+	 * app classes, by classFName and by className. Classes are added while they are loaded and looked up by the
+	 * traced threads at every step, so that the sets are concurrent and the className one spares the conversion of
+	 * the name at every lookup.
+	 */
+	private Set<String> includes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private Set<String> includedClassNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	private WildcardMatcher extIncludesMatcher; // className
 	private WildcardMatcher extExcludesMatcher; // className
 	
-	private List<String> includedLibraryClasses = new ArrayList<>();
-	private List<String> excludedLibraryClasses = new ArrayList<>();
+	/* library classes, logged when they are loaded or retransformed, once per class */
+	private Set<String> includedLibraryClasses = new LinkedHashSet<>();
+	private Set<String> excludedLibraryClasses = new LinkedHashSet<>();
 	
 	public static GlobalFilterChecker getInstance() {
 		return checker;
 	}
 	
-	public void startup(AppJavaClassPath appClasspath, String includeExpression, String excludeExpression) {
+	/**
+	 * @param extAppBinFolders class folders which belong to the application even though they are not in its
+	 *            working directory, such as the class folder of a mutant.
+	 */
+	public void startup(AppJavaClassPath appClasspath, List<String> extAppBinFolders, String includeExpression,
+			String excludeExpression) {
 		extLibs = new ArrayList<>();
 		appBinFolders = new ArrayList<>();
+		extIncludesMatcher = null;
+		extExcludesMatcher = null;
 		ExecutionTracer.appJavaClassPath = appClasspath;
 		String workingDir = getPath(appClasspath.getWorkingDirectory());
 		for (String cp : appClasspath.getClasspaths()) {
@@ -47,11 +63,17 @@ public class GlobalFilterChecker {
 				}
 			}
 		}
+		for (String folder : extAppBinFolders) {
+			File binFolder = new File(folder);
+			if (binFolder.exists() && binFolder.isDirectory()) {
+				appBinFolders.add(getDir(getPath(folder)));
+			}
+		}
 		if (!StringUtils.isEmpty(includeExpression)) {
-			extIncludesMatcher = new WildcardMatcher(includeExpression);
+			extIncludesMatcher = WildcardMatcher.of(includeExpression);
 		}
 		if (!StringUtils.isEmpty(excludeExpression)) {
-			extExcludesMatcher = new WildcardMatcher(excludeExpression);
+			extExcludesMatcher = WildcardMatcher.of(excludeExpression);
 		}
 	}
 	
@@ -100,6 +122,7 @@ public class GlobalFilterChecker {
 						match = true;
 						isExtLib = false;
 						includes.add(classFName);
+						includedClassNames.add(getClassName(classFName));
 						break;
 					}
 				}
@@ -119,10 +142,13 @@ public class GlobalFilterChecker {
 			if (className.startsWith("microbat.")){
 				return;
 			}
-			if (isIncluded) {
-				includedLibraryClasses.add(className);
-			} else {
-				excludedLibraryClasses.add(className);
+			/* classes might still be loaded while traces are constructed after execution */
+			synchronized (this) {
+				if (isIncluded) {
+					includedLibraryClasses.add(className);
+				} else {
+					excludedLibraryClasses.add(className);
+				}
 			}
 		}
 	}
@@ -148,8 +174,7 @@ public class GlobalFilterChecker {
 	}
 	
 	public boolean checkExclusive(String className, String methodName) {
-		String classFName = className.replace(".", "/");
-		return !includes.contains(classFName) /* && !bootstrapIncludes.contains(classFName) */;
+		return !includedClassNames.contains(className) /* && !bootstrapIncludes.contains(classFName) */;
 	}
 	
 	public static boolean isExclusive(String className, String methodName) {
@@ -169,14 +194,40 @@ public class GlobalFilterChecker {
 	}
 
 	public static void setup(AppJavaClassPath appPath, String includesExpression, String exludesExpression) {
-		checker.startup(appPath, includesExpression, exludesExpression);
+		setup(appPath, Collections.<String>emptyList(), includesExpression, exludesExpression);
+	}
+	
+	public static void setup(AppJavaClassPath appPath, List<String> extAppBinFolders, String includesExpression,
+			String exludesExpression) {
+		checker.startup(appPath, extAppBinFolders, includesExpression, exludesExpression);
+	}
+
+	/**
+	 * clears the classes of the previous run of a worker vm, which are added by the transformers of that run. The
+	 * classes shared by the runs are only transformed again if the filters change, so that the library classes and
+	 * the bootstrap classes are kept if keepSharedClasses is true.
+	 */
+	public static void reset(boolean keepSharedClasses) {
+		checker.clear(keepSharedClasses);
+	}
+
+	private synchronized void clear(boolean keepSharedClasses) {
+		includes.clear();
+		includedClassNames.clear();
+		if (!keepSharedClasses) {
+			bootstrapIncludes.clear();
+			includedLibraryClasses.clear();
+			excludedLibraryClasses.clear();
+		}
 	}
 
 	public static void addFilterInfo(Trace trace) {
 		if (checker instanceof GlobalFilterChecker) {
 			GlobalFilterChecker filterChecker = (GlobalFilterChecker) checker;
-			trace.setExcludedLibraryClasses(filterChecker.excludedLibraryClasses);
-			trace.setIncludedLibraryClasses(filterChecker.includedLibraryClasses);
+			synchronized (filterChecker) {
+				trace.setExcludedLibraryClasses(new ArrayList<>(filterChecker.excludedLibraryClasses));
+				trace.setIncludedLibraryClasses(new ArrayList<>(filterChecker.includedLibraryClasses));
+			}
 		}
 	}
 	
@@ -184,7 +235,7 @@ public class GlobalFilterChecker {
 		return bootstrapIncludes;
 	}
 	
-	public List<String> getIncludedLibraryClasses() {
-		return includedLibraryClasses;
+	public synchronized List<String> getIncludedLibraryClasses() {
+		return new ArrayList<>(includedLibraryClasses);
 	}
 }
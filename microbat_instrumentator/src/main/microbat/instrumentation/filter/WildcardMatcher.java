@@ -1,12 +1,39 @@
 package microbat.instrumentation.filter;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import microbat.instrumentation.AgentConstants;
 
 public class WildcardMatcher {
+	static final int MAX_CACHED_MATCHES = 1 << 16;
+	/* the runs of a worker mostly have the same include and exclude expressions, see #of(String) */
+	private static final ConcurrentMap<String, WildcardMatcher> matchersByExpression = new ConcurrentHashMap<>();
 
 	private final Pattern pattern;
+	/*
+	 * the same class names are matched again, e.g. by the checks of each class loader and each run of a worker, at most
+	 * MAX_CACHED_MATCHES of them are kept.
+	 */
+	private final Map<String, Boolean> matches = new ConcurrentHashMap<>();
+
+	/**
+	 * the matcher of the expression, shared by all the runs in this JVM so that the class names matched by a run are
+	 * not matched again by the next one.
+	 */
+	public static WildcardMatcher of(String expression) {
+		WildcardMatcher matcher = matchersByExpression.get(expression);
+		if (matcher == null) {
+			matcher = new WildcardMatcher(expression);
+			WildcardMatcher existing = matchersByExpression.putIfAbsent(expression, matcher);
+			if (existing != null) {
+				matcher = existing;
+			}
+		}
+		return matcher;
+	}
 
 	/**
 	 * Creates a new matcher with the given expression.
@@ -78,7 +105,14 @@ public class WildcardMatcher {
 	 * @return <code>true</code>, if the expression matches
 	 */
 	public boolean matches(final String s) {
-		return pattern.matcher(s).matches();
+		Boolean match = matches.get(s);
+		if (match == null) {
+			match = pattern.matcher(s).matches();
+			if (matches.size() < MAX_CACHED_MATCHES) {
+				matches.put(s, match);
+			}
+		}
+		return match;
 	}
 
 }
@@ -12,6 +12,8 @@ import microbat.instrumentation.runtime.IExecutionTracer;
 import sav.common.core.utils.FileUtils;
 
 public abstract class AbstractTransformer implements ClassFileTransformer {
+	/* set by an agent worker to reuse the instrumented classes of its previous runs */
+	private TransformedClassCache classCache;
 
 	@Override
 	public final byte[] transform(ClassLoader loader, String classFName, Class<?> classBeingRedefined,
@@ -43,6 +45,14 @@ public abstract class AbstractTransformer implements ClassFileTransformer {
 		return data;
 	}
 
+	public TransformedClassCache getClassCache() {
+		return classCache;
+	}
+
+	public void setClassCache(TransformedClassCache classCache) {
+		this.classCache = classCache;
+	}
+
 	protected abstract byte[] doTransform(ClassLoader loader, String classFName, Class<?> classBeingRedefined,
 			ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException;
 		
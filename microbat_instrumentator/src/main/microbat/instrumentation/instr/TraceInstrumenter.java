@@ -26,6 +26,7 @@ import org.apache.bcel.generic.DUP_X2;
 import org.apache.bcel.generic.FieldInstruction;
 import org.apache.bcel.generic.GETFIELD;
 import org.apache.bcel.generic.GETSTATIC;
+import org.apache.bcel.generic.IFEQ;
 import org.apache.bcel.generic.IINC;
 import org.apache.bcel.generic.INVOKEINTERFACE;
 import org.apache.bcel.generic.INVOKESPECIAL;
@@ -38,6 +39,7 @@ import org.apache.bcel.generic.InvokeInstruction;
 import org.apache.bcel.generic.LocalVariableGen;
 import org.apache.bcel.generic.LocalVariableInstruction;
 import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.NOP;
 import org.apache.bcel.generic.POP;
 import org.apache.bcel.generic.POP2;
 import org.apache.bcel.generic.PUSH;
@@ -62,6 +64,7 @@ import microbat.instrumentation.instr.instruction.info.LineInstructionInfo;
 import microbat.instrumentation.instr.instruction.info.LocalVarInstructionInfo;
 import microbat.instrumentation.instr.instruction.info.RWInstructionInfo;
 import microbat.instrumentation.runtime.IExecutionTracer;
+import microbat.instrumentation.runtime.LocationRegistry;
 import microbat.instrumentation.runtime.TraceUtils;
 import microbat.instrumentation.utils.MicrobatUtils;
 
@@ -72,6 +75,8 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 	private int tempVarIdx = 0;
 	private EntryPoint entryPoint;
 	private Set<String> requireSplittingMethods = Collections.emptySet();
+	/* over long methods of the agent params, completed at class load time in a single pass, see AgentParams */
+	private Set<String> adaptiveOverLongMethods;
 	private UserFilters userFilters;
 	
 	TraceInstrumenter() {
@@ -82,6 +87,9 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		if (params.isRequireMethodSplit()) {
 			this.requireSplittingMethods = params.getOverlongMethods();
 		}
+		if (params.isSinglePass()) {
+			this.adaptiveOverLongMethods = params.getOverlongMethods();
+		}
 		this.userFilters = params.getUserFilters();
 	}
 
@@ -99,51 +107,61 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 			if (method.isNative() || method.isAbstract() || method.getCode() == null) {
 				continue; // Only instrument methods with code in them!
 			}
-			try {
-				MethodGen methodGen = new MethodGen(method, classFName, constPool);
-				boolean isMainMethod = false;
-				if (entry && entryPoint.matchMethod(method.getName(), method.getSignature())) {
-					isMainMethod = true;
-				}
-				
-				boolean isEntry = false;
-				if(method.getName().equals("run") && isThread(jc)) {
-					isEntry = true;
-				}
-				
-				
-				GeneratedMethods generatedMethods = runMethodInstrumentation(classGen, constPool, methodGen, 
-						method, isAppClass, isMainMethod, isEntry);
-				if (generatedMethods != null) {
-					if (doesBytecodeExceedLimit(generatedMethods)) {
-						AgentLogger.info(String.format("Warning: %s exceeds bytecode limit!",
-								MicrobatUtils.getMicrobatMethodFullName(classGen.getClassName(), method)));
-					} else {
-						for (MethodGen newMethod : generatedMethods.getExtractedMethods()) {
-							newMethod.setMaxStack();
-							newMethod.setMaxLocals();
-							classGen.addMethod(newMethod.getMethod());
+			boolean reinstrument;
+			do {
+				reinstrument = false;
+				try {
+					MethodGen methodGen = new MethodGen(method, classFName, constPool);
+					boolean isMainMethod = false;
+					if (entry && entryPoint.matchMethod(method.getName(), method.getSignature())) {
+						isMainMethod = true;
+					}
+					
+					boolean isEntry = false;
+					if(method.getName().equals("run") && isThread(jc)) {
+						isEntry = true;
+					}
+					
+					
+					GeneratedMethods generatedMethods = runMethodInstrumentation(classGen, constPool, methodGen, 
+							method, isAppClass, isMainMethod, isEntry);
+					if (generatedMethods != null) {
+						if (doesBytecodeExceedLimit(generatedMethods)) {
+							reinstrument = addOverLongMethod(classGen.getClassName(), method);
+							if (!reinstrument) {
+								AgentLogger.info(String.format("Warning: %s exceeds bytecode limit!",
+										MicrobatUtils.getMicrobatMethodFullName(classGen.getClassName(), method)));
+							}
+						} else {
+							for (MethodGen newMethod : generatedMethods.getExtractedMethods()) {
+								newMethod.setMaxStack();
+								newMethod.setMaxLocals();
+								classGen.addMethod(newMethod.getMethod());
+							}
+							methodGen = generatedMethods.getRootMethod();
+							// All changes made, so finish off the method:
+							InstructionList instructionList = methodGen.getInstructionList();
+							instructionList.setPositions();
+							methodGen.setMaxStack();
+							methodGen.setMaxLocals();
+							classGen.replaceMethod(method, methodGen.getMethod());
 						}
-						methodGen = generatedMethods.getRootMethod();
-						// All changes made, so finish off the method:
-						InstructionList instructionList = methodGen.getInstructionList();
-						instructionList.setPositions();
-						methodGen.setMaxStack();
-						methodGen.setMaxLocals();
-						classGen.replaceMethod(method, methodGen.getMethod());
+					}
+					newJC = classGen.getJavaClass();
+					newJC.setConstantPool(constPool.getFinalConstantPool());
+				} catch (Exception e) {
+					String message = e.getMessage();
+					if (e.getMessage() != null && e.getMessage().contains("offset too large")) {
+						message = "offset too large";
+						reinstrument = addOverLongMethod(classGen.getClassName(), method);
+					}
+					if (!reinstrument) {
+						AgentLogger.info(String.format("Warning: %s [%s]",
+								MicrobatUtils.getMicrobatMethodFullName(classGen.getClassName(), method), message));
+						AgentLogger.error(e);
 					}
 				}
-				newJC = classGen.getJavaClass();
-				newJC.setConstantPool(constPool.getFinalConstantPool());
-			} catch (Exception e) {
-				String message = e.getMessage();
-				if (e.getMessage() != null && e.getMessage().contains("offset too large")) {
-					message = "offset too large";
-				}
-				AgentLogger.info(String.format("Warning: %s [%s]",
-						MicrobatUtils.getMicrobatMethodFullName(classGen.getClassName(), method), message));
-				AgentLogger.error(e);
-			}
+			} while (reinstrument);
 		}
 		if (newJC != null) {
 			byte[] data = newJC.getBytes();
@@ -175,6 +193,26 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		return false;
 	}
 
+	/**
+	 * without a precheck, a method whose instrumented code exceeds the size limit is found when its class is loaded,
+	 * then it is instrumented again as an over long method found by the precheck, i.e. split or without tracing its
+	 * invocations and array elements.
+	 * 
+	 * @return whether the method is to be instrumented again.
+	 */
+	private boolean addOverLongMethod(String className, Method method) {
+		if (adaptiveOverLongMethods == null) {
+			return false;
+		}
+		String methodFullName = MicrobatUtils.getMicrobatMethodFullName(className, method);
+		if (!adaptiveOverLongMethods.add(methodFullName)) {
+			return false; // already instrumented as an over long method
+		}
+		AgentLogger.info(String.format("%s exceeds bytecode limit, instrument it as an over long method.",
+				methodFullName));
+		return true;
+	}
+
 	private boolean doesBytecodeExceedLimit(GeneratedMethods generatedMethods) {
 		boolean excessive = doesBytecodeExceedLimit(generatedMethods.getRootMethod());
 		for (MethodGen addedMethod : generatedMethods.getExtractedMethods()) {
@@ -244,9 +282,17 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 			/* instrument RW instructions */
 			List<RWInstructionInfo> rwInsns = lineInfo.getRWInstructions();
 //			if (lineInfo.hasNoInstrumentation()) {
-			injectCodeTracerHitLine(insnList, constPool, tracerVar, lineInfo.getLine(), lineInfo.getLineNumberInsn(),
-					classNameVar, methodSigVar, lineInfo.hasExceptionTarget(), lineInfo.getReadWriteInsnTotal(false),
-					lineInfo.getReadWriteInsnTotal(true), lineInfo);
+			/*
+			 * the lines of a library class are excluded by the tracer, see GlobalFilterChecker#isExclusive, only its
+			 * exception targets are handled.
+			 */
+			if (lineInfo.hasExceptionTarget()) {
+				injectCodeTracerHitLine(insnList, constPool, tracerVar, lineInfo.getLine(), lineInfo.getLineNumberInsn(),
+						classNameVar, methodSigVar, true, lineInfo.getReadWriteInsnTotal(false),
+						lineInfo.getReadWriteInsnTotal(true), lineInfo);
+			} else if (isAppClass) {
+				injectCodeTracerHitLocation(insnList, constPool, tracerVar, methodGen, lineInfo);
+			}
 //			}
 			for (RWInstructionInfo rwInsnInfo : rwInsns) {
 				InstructionList newInsns = null;
@@ -581,6 +627,13 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		return null;
 	}
 
+	/**
+	 * @return the variant of the field tracer method which takes a primitive field value without boxing.
+	 */
+	private TracerMethods getFieldTracerMethod(TracerMethods tracerMethod, FieldInstructionInfo info) {
+		return tracerMethod.forValueType(info.getFieldBcType().getSignature());
+	}
+
 	private InstructionList getInjectCodePutField(ConstantPoolGen constPool, LocalVariableGen tracerVar,
 			FieldInstructionInfo info, LocalVariableGen classNameVar, LocalVariableGen methodSigVar) {
 		InstructionList newInsns = new InstructionList();
@@ -630,10 +683,6 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 			newInsns.append(new DUP_X2()); // [obj, val*], obj, tracer, obj, val*, obj
 			newInsns.append(new POP()); // [obj, val*], obj, tracer, obj, val*
 		}
-		Type fieldType = info.getFieldBcType();
-		if (fieldType instanceof BasicType) {
-			newInsns.append(new INVOKESTATIC(basicTypeSupporter.getValueOfMethodIdx((BasicType) fieldType, constPool)));
-		}
 		newInsns.append(new PUSH(constPool, info.getFieldName())); 
 		// [obj || (obj, val) || (obj, val*, obj)], tracer, obj, val, fieldName
 		
@@ -645,7 +694,7 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		
 		newInsns.append(new ALOAD(classNameVar.getIndex()));
 		newInsns.append(new ALOAD(methodSigVar.getIndex()));
-		appendTracerMethodInvoke(newInsns, TracerMethods.WRITE_FIELD, constPool); 
+		appendTracerMethodInvoke(newInsns, getFieldTracerMethod(TracerMethods.WRITE_FIELD, info), constPool); 
 		// record -> [obj || (obj, val) || (obj, val*, obj)]
 		
 		if (info.isNextToAconstNull()) {
@@ -740,16 +789,12 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 			newInsns.append(new DUP_X2()); // [val*], obj, tracer, obj, val*, obj
 			newInsns.append(new POP()); // [val*, obj], tracer, obj, val*
 		}
-		Type fieldType = info.getFieldBcType();
-		if (fieldType instanceof BasicType) {
-			newInsns.append(new INVOKESTATIC(basicTypeSupporter.getValueOfMethodIdx((BasicType) fieldType, constPool)));
-		}
 		newInsns.append(new PUSH(constPool, info.getFieldName())); // [val*, obj], tracer, obj, val, fieldName
 		newInsns.append(new PUSH(constPool, info.getFieldType())); // [val*, obj], tracer, obj, val, fieldName, fieldTypeSignature
 		newInsns.append(new PUSH(constPool, info.getLine())); // [val*, obj], tracer, obj, val, fieldName, fieldTypeSignature, line
 		newInsns.append(new ALOAD(classNameVar.getIndex()));
 		newInsns.append(new ALOAD(methodSigVar.getIndex()));
-		appendTracerMethodInvoke(newInsns, TracerMethods.READ_FIELD, constPool); 
+		appendTracerMethodInvoke(newInsns, getFieldTracerMethod(TracerMethods.READ_FIELD, info), constPool); 
 		// record -> [val] or [val*, obj]
 		if (info.isComputationalType2()) {
 			newInsns.append(new POP());
@@ -829,7 +874,8 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 			}
 		}
 		if (type instanceof BasicType) {
-			newInsns.append(new INVOKESTATIC(basicTypeSupporter.getValueOfMethodIdx((BasicType) type, constPool)));
+			/* the value is passed without boxing */
+			tracerMethod = tracerMethod.forValueType(type.getSignature());
 		}
 		
 		newInsns.append(new PUSH(constPool, insnInfo.getVarName())); 
@@ -870,14 +916,12 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		newInsns.append(new ALOAD(tracerVar.getIndex()));
 		/* load current value */
 		newInsns.append(InstructionFactory.createLoad(type, insn.getIndex())); // $tracer, value
-		newInsns.append(new INVOKESTATIC(basicTypeSupporter.getValueOfMethodIdx((BasicType) type, constPool)));
 		
 		/* iinc */
 		newInsns.append(insn.copy()); // $tracer, value
 		
 		/* load valueAfter */
 		newInsns.append(InstructionFactory.createLoad(type, insn.getIndex())); // $tracer, value, valueAfter
-		newInsns.append(new INVOKESTATIC(basicTypeSupporter.getValueOfMethodIdx((BasicType) type, constPool)));
 
 		newInsns.append(new PUSH(constPool, insnInfo.getVarName())); 
 		// $tracer, value, valueAfter, varName
@@ -899,7 +943,7 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		
 		newInsns.append(new ALOAD(classNameVar.getIndex()));
 		newInsns.append(new ALOAD(methodSigVar.getIndex()));
-		appendTracerMethodInvoke(newInsns, TracerMethods.IINC_LOCAL_VAR, constPool);
+		appendTracerMethodInvoke(newInsns, TracerMethods.IINC_LOCAL_VAR_INT, constPool);
 		
 		return newInsns;
 	}
@@ -940,8 +984,8 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		// tracer, arrRef, idx, val
 		
 		if (info.getElementType() instanceof BasicType) {
-			newInsns.append(
-					new INVOKESTATIC(basicTypeSupporter.getValueOfMethodIdx((BasicType) info.getElementType(), constPool)));
+			/* the value is passed without boxing */
+			tracerMethod = tracerMethod.forValueType(info.getElementType().getSignature());
 		}
 		newInsns.append(new PUSH(constPool, info.getVarType())); 
 		// tracer, arrRef, idx, val, eleType
@@ -995,6 +1039,36 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		newInsns.dispose();
 	}
 
+	/**
+	 * registers the line in {@link LocationRegistry} and injects the call of
+	 * {@link IExecutionTracer#_hitLocation(int, int, int)} with its id.
+	 */
+	private void injectCodeTracerHitLocation(InstructionList insnList, ConstantPoolGen constPool,
+			LocalVariableGen tracerVar, MethodGen methodGen, LineInstructionInfo lineInfo) {
+		StringBuffer buffer = new StringBuffer();
+		for (InstructionHandle handle : lineInfo.getInstructionsOnLine()) {
+			buffer.append(handle.getInstruction().toString() + ":");
+		}
+		int locationId = LocationRegistry.register(getClassName(methodGen), getMethodSignature(methodGen),
+				lineInfo.getLine(), buffer.toString());
+		InstructionList newInsns = new InstructionList();
+		newInsns.append(new ALOAD(tracerVar.getIndex()));
+		newInsns.append(new PUSH(constPool, locationId));
+		newInsns.append(new PUSH(constPool, lineInfo.getReadWriteInsnTotal(false)));
+		newInsns.append(new PUSH(constPool, lineInfo.getReadWriteInsnTotal(true)));
+		appendTracerMethodInvoke(newInsns, TracerMethods.HIT_LOCATION, constPool);
+		insertInsnHandler(insnList, newInsns, lineInfo.getLineNumberInsn());
+		newInsns.dispose();
+	}
+
+	private static String getClassName(MethodGen methodGen) {
+		return methodGen.getClassName().replace("/", ".");
+	}
+
+	private static String getMethodSignature(MethodGen methodGen) {
+		return getClassName(methodGen) + "#" + methodGen.getName() + methodGen.getSignature();
+	}
+
 	protected LocalVariableGen injectCodeInitTracer(MethodGen methodGen, ConstantPoolGen constPool, int methodStartLine,
 			int methodEndLine, boolean isAppClass, LocalVariableGen classNameVar, LocalVariableGen methodSigVar,
 			boolean startTracing, LocalVariableGen tracerVar) {
@@ -1009,16 +1083,11 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 			appendTracerMethodInvoke(newInsns, TracerMethods.START, constPool);
 		}
 		/* store classNameVar */
-		String className = methodGen.getClassName();
-		className = className.replace("/", ".");
-		newInsns.append(new PUSH(constPool, className));
+		newInsns.append(new PUSH(constPool, getClassName(methodGen)));
 		newInsns.append(new ASTORE(classNameVar.getIndex()));
 		
 		/* store methodSignVar */
-		String sig = methodGen.getSignature();
-		String methodName = methodGen.getName();
-		String mSig = className + "#" + methodName + sig;
-		newInsns.append(new PUSH(constPool, mSig));
+		newInsns.append(new PUSH(constPool, getMethodSignature(methodGen)));
 		newInsns.append(new ASTORE(methodSigVar.getIndex())); 
 		
 		/* invoke _getTracer()  */
@@ -1031,22 +1100,40 @@ public class TraceInstrumenter extends AbstractInstrumenter {
 		String[] argList = getArgumentNames(methodGen);
 		newInsns.append(new PUSH(constPool, TraceUtils.encodeArgNames(argList)));
 		newInsns.append(new PUSH(constPool, TraceUtils.encodeArgTypes(methodGen.getArgumentTypes())));
-		// startTracing, className, String methodSig, int methodStartLine, argTypes
-		
-		LocalVariableGen argObjsVar = createMethodParamTypesObjectArrayVar(methodGen, constPool, startInsn, newInsns, nextTempVarName());
-		newInsns.append(new ALOAD(argObjsVar.getIndex()));
-		// className, String methodSig, int methodStartLine, methodEndLine, argNames, argTypes, argObjs
+		// startTracing, className, String methodSig, int methodStartLine, methodEndLine, argNames, argTypes
 		
 		appendTracerMethodInvoke(newInsns, TracerMethods.GET_TRACER, constPool);
 		InstructionHandle tracerStartPos = newInsns.append(new ASTORE(tracerVar.getIndex()));
 		tracerVar.setStart(tracerStartPos);
 		
+		if (methodGen.getArgumentTypes().length > 0) {
+			injectCodeEnterMethod(methodGen, constPool, startInsn, newInsns, tracerVar);
+		}
+		
 		//insertInsnHandler(insnList, newInsns, startInsn);
 		insnList.insert(startInsn, newInsns);
 		newInsns.dispose();
 		return tracerVar;
 	}
 
+	/**
+	 * if (tracer._needMethodArguments()) { tracer._enterMethod(new Object[] {arg0, arg1...}); } so that the arguments
+	 * are not boxed when the tracer does not record them.
+	 */
+	private void injectCodeEnterMethod(MethodGen methodGen, ConstantPoolGen constPool, InstructionHandle startInsn,
+			InstructionList newInsns, LocalVariableGen tracerVar) {
+		newInsns.append(new ALOAD(tracerVar.getIndex()));
+		appendTracerMethodInvoke(newInsns, TracerMethods.NEED_METHOD_ARGUMENTS, constPool);
+		IFEQ ifNotNeeded = new IFEQ(null);
+		newInsns.append(ifNotNeeded);
+		LocalVariableGen argObjsVar = createMethodParamTypesObjectArrayVar(methodGen, constPool, startInsn, newInsns,
+				nextTempVarName());
+		newInsns.append(new ALOAD(tracerVar.getIndex()));
+		newInsns.append(new ALOAD(argObjsVar.getIndex()));
+		appendTracerMethodInvoke(newInsns, TracerMethods.ENTER_METHOD, constPool);
+		ifNotNeeded.setTarget(newInsns.append(new NOP()));
+	}
+
 	private String nextTempVarName() {
 		return TEMP_VAR_NAME + (++tempVarIdx);
 	}
@@ -6,6 +6,7 @@ import java.security.ProtectionDomain;
 
 import microbat.instrumentation.AgentParams;
 import microbat.instrumentation.filter.GlobalFilterChecker;
+import microbat.instrumentation.instr.TransformedClassCache.TransformedClass;
 
 /**
  * 
@@ -37,11 +38,25 @@ public class TraceTransformer extends AbstractTransformer implements ClassFileTr
 		
 		/* do instrumentation */
 		try {
-			return instrumenter.instrument(classFName, classfileBuffer);
+			return instrument(classFName, classfileBuffer);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 
+	private byte[] instrument(String classFName, byte[] classfileBuffer) throws Exception {
+		TransformedClassCache classCache = getClassCache();
+		if (classCache == null) {
+			return instrumenter.instrument(classFName, classfileBuffer);
+		}
+		String key = classCache.getKey(classFName, GlobalFilterChecker.isAppClass(classFName), classfileBuffer);
+		TransformedClass transformedClass = classCache.get(key);
+		if (transformedClass == null) {
+			transformedClass = new TransformedClass(instrumenter.instrument(classFName, classfileBuffer));
+			classCache.put(key, transformedClass);
+		}
+		return transformedClass.getData();
+	}
+
 }
@@ -7,23 +7,51 @@ package microbat.instrumentation.instr;
  */
 public enum TracerMethods {
 	AFTER_INVOKE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_afterInvoke", "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;Z)V", 8),
-	GET_TRACER(false, "microbat/instrumentation/runtime/ExecutionTracer", "_getTracer", "(ZLjava/lang/String;Ljava/lang/String;IILjava/lang/String;Ljava/lang/String;[Ljava/lang/Object;)Lmicrobat/instrumentation/runtime/IExecutionTracer;", 9),
+	GET_TRACER(false, "microbat/instrumentation/runtime/ExecutionTracer", "_getTracer", "(ZLjava/lang/String;Ljava/lang/String;IILjava/lang/String;Ljava/lang/String;)Lmicrobat/instrumentation/runtime/IExecutionTracer;", 8),
+	NEED_METHOD_ARGUMENTS(true, "microbat/instrumentation/runtime/IExecutionTracer", "_needMethodArguments", "()Z", 1),
+	ENTER_METHOD(true, "microbat/instrumentation/runtime/IExecutionTracer", "_enterMethod", "([Ljava/lang/Object;)V", 2),
 	HIT_EXEPTION_TARGET(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitExeptionTarget", "(ILjava/lang/String;Ljava/lang/String;)V", 4),
 	HIT_INVOKE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitInvoke", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;[Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 10),
 	HIT_INVOKE_STATIC(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitInvokeStatic", "(Ljava/lang/String;Ljava/lang/String;[Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
 	HIT_LINE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitLine", "(ILjava/lang/String;Ljava/lang/String;IILjava/lang/String;)V", 7),
+	HIT_LOCATION(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitLocation", "(III)V", 4),
 	HIT_METHOD_END(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitMethodEnd", "(ILjava/lang/String;Ljava/lang/String;)V", 4),
 	HIT_RETURN(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitReturn", "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 6),
 	HIT_VOID_RETURN(true, "microbat/instrumentation/runtime/IExecutionTracer", "_hitVoidReturn", "(ILjava/lang/String;Ljava/lang/String;)V", 4),
 	IINC_LOCAL_VAR(true, "microbat/instrumentation/runtime/IExecutionTracer", "_iincLocalVar", "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 11),
+	IINC_LOCAL_VAR_INT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_iincLocalVar", "(IILjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 11),
 	READ_ARRAY_ELEMENT_VAR(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readArrayElementVar", "(Ljava/lang/Object;ILjava/lang/Object;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	READ_ARRAY_ELEMENT_VAR_INT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readArrayElementVar", "(Ljava/lang/Object;IILjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	READ_ARRAY_ELEMENT_VAR_LONG(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readArrayElementVar", "(Ljava/lang/Object;IJLjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
+	READ_ARRAY_ELEMENT_VAR_FLOAT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readArrayElementVar", "(Ljava/lang/Object;IFLjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	READ_ARRAY_ELEMENT_VAR_DOUBLE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readArrayElementVar", "(Ljava/lang/Object;IDLjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
 	READ_FIELD(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readField", "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	READ_FIELD_INT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readField", "(Ljava/lang/Object;ILjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	READ_FIELD_LONG(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readField", "(Ljava/lang/Object;JLjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
+	READ_FIELD_FLOAT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readField", "(Ljava/lang/Object;FLjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	READ_FIELD_DOUBLE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readField", "(Ljava/lang/Object;DLjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
 	READ_LOCAL_VAR(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readLocalVar", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 10),
+	READ_LOCAL_VAR_INT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readLocalVar", "(ILjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 10),
+	READ_LOCAL_VAR_LONG(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readLocalVar", "(JLjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 11),
+	READ_LOCAL_VAR_FLOAT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readLocalVar", "(FLjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 10),
+	READ_LOCAL_VAR_DOUBLE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readLocalVar", "(DLjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 11),
 	READ_STATIC_FIELD(true, "microbat/instrumentation/runtime/IExecutionTracer", "_readStaticField", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
 	START(false, "microbat/instrumentation/runtime/ExecutionTracer", "_start", "()V", 1),
 	WRITE_ARRAY_ELEMENT_VAR(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeArrayElementVar", "(Ljava/lang/Object;ILjava/lang/Object;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	WRITE_ARRAY_ELEMENT_VAR_INT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeArrayElementVar", "(Ljava/lang/Object;IILjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	WRITE_ARRAY_ELEMENT_VAR_LONG(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeArrayElementVar", "(Ljava/lang/Object;IJLjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
+	WRITE_ARRAY_ELEMENT_VAR_FLOAT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeArrayElementVar", "(Ljava/lang/Object;IFLjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	WRITE_ARRAY_ELEMENT_VAR_DOUBLE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeArrayElementVar", "(Ljava/lang/Object;IDLjava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
 	WRITE_FIELD(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeField", "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	WRITE_FIELD_INT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeField", "(Ljava/lang/Object;ILjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	WRITE_FIELD_LONG(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeField", "(Ljava/lang/Object;JLjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
+	WRITE_FIELD_FLOAT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeField", "(Ljava/lang/Object;FLjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
+	WRITE_FIELD_DOUBLE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeField", "(Ljava/lang/Object;DLjava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 9),
 	WRITE_LOCAL_VAR(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeLocalVar", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 10),
+	WRITE_LOCAL_VAR_INT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeLocalVar", "(ILjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 10),
+	WRITE_LOCAL_VAR_LONG(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeLocalVar", "(JLjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 11),
+	WRITE_LOCAL_VAR_FLOAT(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeLocalVar", "(FLjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 10),
+	WRITE_LOCAL_VAR_DOUBLE(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeLocalVar", "(DLjava/lang/String;Ljava/lang/String;IIIILjava/lang/String;Ljava/lang/String;)V", 11),
 	WRITE_STATIC_FIELD(true, "microbat/instrumentation/runtime/IExecutionTracer", "_writeStaticField", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;)V", 8),
 
 	;
@@ -60,4 +88,29 @@ public enum TracerMethods {
 	public boolean isInterfaceMethod() {
 		return interfaceMethod;
 	}
+
+	/**
+	 * @param valueTypeSign
+	 *            signature of the type of the value passed to this method.
+	 * @return the variant of this method which takes a primitive value of that type without boxing, or this method
+	 *         for a reference.
+	 */
+	public TracerMethods forValueType(String valueTypeSign) {
+		switch (valueTypeSign.charAt(0)) {
+		case 'Z':
+		case 'B':
+		case 'C':
+		case 'S':
+		case 'I':
+			return valueOf(name() + "_INT");
+		case 'J':
+			return valueOf(name() + "_LONG");
+		case 'F':
+			return valueOf(name() + "_FLOAT");
+		case 'D':
+			return valueOf(name() + "_DOUBLE");
+		default:
+			return this;
+		}
+	}
 }
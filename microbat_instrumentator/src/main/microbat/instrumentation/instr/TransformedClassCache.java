@@ -0,0 +1,75 @@
+package microbat.instrumentation.instr;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the instrumented bytecode of classes, so that a class which is loaded again with the same bytecode, by the
+ * next run of an agent worker, is not instrumented again.
+ * <p>
+ * Entries are keyed by the class name, whether it is an application class, and a digest of its original bytecode, so
+ * a recompiled class never gets a stale entry. A cache must only be shared by transformers with the same
+ * instrumentation options.
+ */
+public class TransformedClassCache {
+	private static final int MAX_CACHED_CLASSES = 5000;
+
+	private Map<String, TransformedClass> classes = new LinkedHashMap<String, TransformedClass>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TransformedClass> eldest) {
+			return size() > MAX_CACHED_CLASSES;
+		}
+	};
+
+	public String getKey(String classFName, boolean isAppClass, byte[] classfileBuffer) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		StringBuilder key = new StringBuilder(classFName).append(isAppClass ? "#app@" : "#lib@");
+		for (byte b : digest.digest(classfileBuffer)) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+
+	public synchronized TransformedClass get(String key) {
+		return classes.get(key);
+	}
+
+	public synchronized void put(String key, TransformedClass transformedClass) {
+		classes.put(key, transformedClass);
+	}
+
+	public static class TransformedClass {
+		/* null if the class is not instrumented */
+		private byte[] data;
+		/* methods whose instrumented code would exceed the size limit, only found by the precheck */
+		private List<String> exceedingLimitMethods;
+
+		public TransformedClass(byte[] data) {
+			this(data, Collections.<String>emptyList());
+		}
+
+		public TransformedClass(byte[] data, List<String> exceedingLimitMethods) {
+			this.data = data;
+			this.exceedingLimitMethods = exceedingLimitMethods;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public List<String> getExceedingLimitMethods() {
+			return exceedingLimitMethods;
+		}
+	}
+}
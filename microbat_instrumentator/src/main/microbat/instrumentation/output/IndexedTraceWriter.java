@@ -0,0 +1,177 @@
+package microbat.instrumentation.output;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+
+/**
+ * Writes traces into the random-access layout read by {@link MappedTraceFile}:
+ *
+ * <pre>
+ * header        : INDEXED_HEADER, format version
+ * for each trace:
+ *   meta        : included/excluded library classes, locations (as in {@link TraceOutputWriter})
+ *   step index  : one fixed-size record of STEP_RECORD_SIZE bytes per step, see {@link #writeStepRecord(TraceNode, Map)}
+ *   step blocks : bytecode and read/written variables of BLOCK_SIZE steps, encoded by {@link VarValueWriter}
+ *   block table : start offset of each block followed by the end offset of the last one
+ * directory     : program message, expected/collected steps, and for each trace its thread info and the offsets
+ *                 of the sections above
+ * trailer       : offset of the directory (the last 8 bytes of the file)
+ * </pre>
+ */
+public class IndexedTraceWriter extends TraceOutputWriter {
+	public static final String INDEXED_HEADER = "TracingResult#indexed";
+	public static final int INDEXED_FORMAT_VERSION = 1;
+	/* locationIdx, timestamp, controlDominator, stepInNext, stepOverNext, invocationParent, loopParent, flags */
+	public static final int STEP_RECORD_SIZE = 4 + 8 + 4 * 5 + 1;
+	public static final int BLOCK_SIZE = 1000;
+	public static final int EXCEPTION_FLAG = 1;
+
+	private CountingOutputStream counter;
+
+	public IndexedTraceWriter(OutputStream out, String traceExecFolder, String filterFilePrefix) {
+		this(new CountingOutputStream(out), traceExecFolder, filterFilePrefix);
+	}
+
+	private IndexedTraceWriter(CountingOutputStream out, String traceExecFolder, String filterFilePrefix) {
+		super(out, traceExecFolder, filterFilePrefix);
+		this.counter = out;
+	}
+
+	public static void saveToFile(RunningInfo runningInfo, String dumpFile) throws IOException {
+		File file = new File(dumpFile);
+		FileOutputStream fileStream = new FileOutputStream(file, false);
+		IndexedTraceWriter writer = null;
+		try {
+			// Avoid concurrent writes from other processes:
+			fileStream.getChannel().lock();
+			writer = new IndexedTraceWriter(new BufferedOutputStream(fileStream), file.getParent(),
+					file.getName().substring(0, file.getName().lastIndexOf(".")));
+			writer.writeRunningInfo(runningInfo);
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+			fileStream.close();
+		}
+	}
+
+	public void writeRunningInfo(RunningInfo runningInfo) throws IOException {
+		writeString(INDEXED_HEADER);
+		writeVarInt(INDEXED_FORMAT_VERSION);
+		List<TraceSection> sections = new ArrayList<>();
+		for (Trace trace : runningInfo.getTraceList()) {
+			sections.add(writeTraceSection(trace));
+		}
+		long directoryOffset = counter.getCount();
+		writeString(runningInfo.getProgramMsg());
+		writeInt(runningInfo.getExpectedSteps());
+		writeInt(runningInfo.getCollectedSteps());
+		writeVarInt(sections.size());
+		for (TraceSection section : sections) {
+			writeBoolean(section.trace.isMain());
+			writeString(section.trace.getThreadName());
+			writeLong(section.trace.getThreadId());
+			writeInt(section.stepNum);
+			writeLong(section.metaOffset);
+			writeLong(section.stepIndexOffset);
+			writeLong(section.blockTableOffset);
+		}
+		writeLong(directoryOffset);
+		flush();
+	}
+
+	private TraceSection writeTraceSection(Trace trace) throws IOException {
+		TraceSection section = new TraceSection();
+		section.trace = trace;
+		List<TraceNode> steps = trace.getExecutionList();
+		section.stepNum = steps.size();
+		section.metaOffset = counter.getCount();
+		writeFilterInfo(trace.getIncludedLibraryClasses(), true);
+		writeFilterInfo(trace.getExcludedLibraryClasses(), false);
+		Map<String, Integer> locIdIdxMap = writeLocations(trace);
+		section.stepIndexOffset = counter.getCount();
+		for (TraceNode step : steps) {
+			writeStepRecord(step, locIdIdxMap);
+		}
+		int blockNum = (steps.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		long[] blockOffsets = new long[blockNum + 1];
+		for (int i = 0; i < blockNum; i++) {
+			blockOffsets[i] = counter.getCount();
+			write(encodeBlock(steps, i * BLOCK_SIZE, Math.min(steps.size(), (i + 1) * BLOCK_SIZE)));
+		}
+		blockOffsets[blockNum] = counter.getCount();
+		section.blockTableOffset = blockOffsets[blockNum];
+		for (long offset : blockOffsets) {
+			writeLong(offset);
+		}
+		return section;
+	}
+
+	private void writeStepRecord(TraceNode step, Map<String, Integer> locIdIdxMap) throws IOException {
+		writeInt(locIdIdxMap.get(step.getBreakPoint().getId()));
+		writeLong(step.getTimestamp());
+		writeInt(getOrder(step.getControlDominator()));
+		writeInt(getOrder(step.getStepInNext()));
+		writeInt(getOrder(step.getStepOverNext()));
+		writeInt(getOrder(step.getInvocationParent()));
+		writeInt(getOrder(step.getLoopParent()));
+		writeByte(step.isException() ? EXCEPTION_FLAG : 0);
+	}
+
+	private static int getOrder(TraceNode node) {
+		return node == null ? 0 : node.getOrder();
+	}
+
+	private static byte[] encodeBlock(List<TraceNode> steps, int start, int end) throws IOException {
+		VarValueWriter writer = new VarValueWriter();
+		for (int i = start; i < end; i++) {
+			TraceNode step = steps.get(i);
+			writer.writeRefString(step.getBytecode());
+			writer.writeValues(step.getReadVariables());
+			writer.writeValues(step.getWrittenVariables());
+		}
+		return writer.toByteArray();
+	}
+
+	private static class TraceSection {
+		Trace trace;
+		int stepNum;
+		long metaOffset;
+		long stepIndexOffset;
+		long blockTableOffset;
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
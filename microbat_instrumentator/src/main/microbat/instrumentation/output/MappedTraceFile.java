@@ -0,0 +1,413 @@
+package microbat.instrumentation.output;
+
+import static microbat.instrumentation.output.IndexedTraceWriter.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.model.BreakPoint;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import microbat.model.value.VarValue;
+
+/**
+ * Random-access reader of a trace file written by {@link IndexedTraceWriter}.
+ *
+ * Opening the file only reads its directory and the locations of each trace, the step index is memory-mapped so
+ * that the location and the links (control dominator, step in/over, invocation & loop parents) of any step are
+ * looked up by its order in constant time without loading the others. The bytecode and variables of a step are
+ * decoded on demand, a block of {@link IndexedTraceWriter#BLOCK_SIZE} steps at a time, and the last decoded
+ * blocks are cached.
+ */
+public class MappedTraceFile implements Closeable {
+	private static final int DECODED_BLOCK_CACHE_SIZE = 4;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private String programMsg;
+	private int expectedSteps;
+	private int collectedSteps;
+	private List<MappedTrace> traces;
+
+	private MappedTraceFile(File traceFile) throws IOException {
+		file = new RandomAccessFile(traceFile, "r");
+		channel = file.getChannel();
+	}
+
+	public static boolean isIndexedFile(File traceFile) {
+		if (!traceFile.exists()) {
+			return false;
+		}
+		OutputReader reader = null;
+		try {
+			reader = new OutputReader(new BufferedInputStream(new FileInputStream(traceFile)));
+			/* check the length first, the file might start with anything */
+			if (reader.readVarInt() != INDEXED_HEADER.length()) {
+				return false;
+			}
+			byte[] header = new byte[INDEXED_HEADER.length()];
+			reader.readFully(header);
+			return INDEXED_HEADER.equals(new String(header));
+		} catch (IOException e) {
+			return false;
+		} finally {
+			closeQuietly(reader);
+		}
+	}
+
+	public static MappedTraceFile open(File traceFile) throws IOException {
+		MappedTraceFile mappedFile = new MappedTraceFile(traceFile);
+		try {
+			mappedFile.readDirectory(traceFile.getParent());
+		} catch (IOException e) {
+			mappedFile.close();
+			throw e;
+		}
+		return mappedFile;
+	}
+
+	private void readDirectory(String traceExecFolder) throws IOException {
+		TraceOutputReader reader = newReader(0, traceExecFolder);
+		if (!INDEXED_HEADER.equals(reader.readString())) {
+			throw new IOException("Not an indexed trace file!");
+		}
+		int version = reader.readVarInt();
+		if (version > INDEXED_FORMAT_VERSION) {
+			throw new IOException("Unsupported indexed trace format version: " + version);
+		}
+		file.seek(file.length() - 8);
+		long directoryOffset = file.readLong();
+		reader = newReader(directoryOffset, traceExecFolder);
+		programMsg = reader.readString();
+		expectedSteps = reader.readInt();
+		collectedSteps = reader.readInt();
+		int traceNum = reader.readVarInt();
+		traces = new ArrayList<>(traceNum);
+		for (int i = 0; i < traceNum; i++) {
+			MappedTrace trace = new MappedTrace();
+			trace.isMain = reader.readBoolean();
+			trace.threadName = reader.readString();
+			trace.threadId = reader.readLong();
+			trace.stepNum = reader.readInt();
+			long metaOffset = reader.readLong();
+			long stepIndexOffset = reader.readLong();
+			long blockTableOffset = reader.readLong();
+			TraceOutputReader metaReader = newReader(metaOffset, traceExecFolder);
+			trace.includedLibraryClasses = metaReader.readFilterInfo();
+			trace.excludedLibraryClasses = metaReader.readFilterInfo();
+			trace.locations = metaReader.readLocations();
+			long indexSize = (long) trace.stepNum * STEP_RECORD_SIZE;
+			if (indexSize > Integer.MAX_VALUE) {
+				throw new IOException("Too many steps to be mapped: " + trace.stepNum);
+			}
+			trace.stepIndex = channel.map(MapMode.READ_ONLY, stepIndexOffset, indexSize);
+			int blockNum = (trace.stepNum + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			trace.blockOffsets = new long[blockNum + 1];
+			TraceOutputReader tableReader = newReader(blockTableOffset, null);
+			for (int b = 0; b <= blockNum; b++) {
+				trace.blockOffsets[b] = tableReader.readLong();
+			}
+			traces.add(trace);
+		}
+	}
+
+	private TraceOutputReader newReader(long offset, String traceExecFolder) throws IOException {
+		InputStream in = new ChannelInputStream(channel, offset);
+		return new TraceOutputReader(new BufferedInputStream(in), traceExecFolder);
+	}
+
+	public String getProgramMsg() {
+		return programMsg;
+	}
+
+	public int getExpectedSteps() {
+		return expectedSteps;
+	}
+
+	public int getCollectedSteps() {
+		return collectedSteps;
+	}
+
+	public List<MappedTrace> getTraces() {
+		return traces;
+	}
+
+	/**
+	 * load all traces, as {@link RunningInfo#readFromFile(File)} does for the sequential format.
+	 */
+	public RunningInfo toRunningInfo() throws IOException {
+		List<Trace> traceList = new ArrayList<>(traces.size());
+		for (MappedTrace mappedTrace : traces) {
+			traceList.add(mappedTrace.toTrace());
+		}
+		return new RunningInfo(programMsg, traceList, expectedSteps, collectedSteps);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			if (closeable != null) {
+				closeable.close();
+			}
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	/**
+	 * reads the channel from an offset with its own position, so that readers at different offsets (e.g., the
+	 * directory reader and the readers of each trace) do not move each other.
+	 */
+	private static class ChannelInputStream extends InputStream {
+		private FileChannel channel;
+		private long position;
+
+		private ChannelInputStream(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+			if (n > 0) {
+				position += n;
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * a trace in the file, steps are accessed by their order (starting from 1), a step order of 0 means no step.
+	 */
+	public class MappedTrace {
+		private boolean isMain;
+		private String threadName;
+		private long threadId;
+		private int stepNum;
+		private List<String> includedLibraryClasses;
+		private List<String> excludedLibraryClasses;
+		private List<BreakPoint> locations;
+		private MappedByteBuffer stepIndex;
+		private long[] blockOffsets;
+		private Map<Integer, StepBlock> decodedBlocks = new LinkedHashMap<Integer, StepBlock>(8, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, StepBlock> eldest) {
+				return size() > DECODED_BLOCK_CACHE_SIZE;
+			}
+		};
+
+		public int size() {
+			return stepNum;
+		}
+
+		public BreakPoint getLocation(int order) {
+			return locations.get(stepIndex.getInt(recordPos(order)));
+		}
+
+		public long getTimestamp(int order) {
+			return stepIndex.getLong(recordPos(order) + 4);
+		}
+
+		public int getControlDominator(int order) {
+			return stepIndex.getInt(recordPos(order) + 12);
+		}
+
+		public int getStepInNext(int order) {
+			return stepIndex.getInt(recordPos(order) + 16);
+		}
+
+		public int getStepOverNext(int order) {
+			return stepIndex.getInt(recordPos(order) + 20);
+		}
+
+		public int getInvocationParent(int order) {
+			return stepIndex.getInt(recordPos(order) + 24);
+		}
+
+		public int getLoopParent(int order) {
+			return stepIndex.getInt(recordPos(order) + 28);
+		}
+
+		public boolean isException(int order) {
+			return (stepIndex.get(recordPos(order) + 32) & EXCEPTION_FLAG) != 0;
+		}
+
+		private int recordPos(int order) {
+			if (order < 1 || order > stepNum) {
+				throw new IndexOutOfBoundsException("Step " + order + " of " + stepNum);
+			}
+			return (order - 1) * STEP_RECORD_SIZE;
+		}
+
+		public String getBytecode(int order) throws IOException {
+			StepBlock block = getBlock(order);
+			return block.bytecodes[(order - 1) % BLOCK_SIZE];
+		}
+
+		public List<VarValue> getReadVariables(int order) throws IOException {
+			StepBlock block = getBlock(order);
+			return block.readVariables.get((order - 1) % BLOCK_SIZE);
+		}
+
+		public List<VarValue> getWrittenVariables(int order) throws IOException {
+			StepBlock block = getBlock(order);
+			return block.writtenVariables.get((order - 1) % BLOCK_SIZE);
+		}
+
+		private StepBlock getBlock(int order) throws IOException {
+			recordPos(order);
+			int blockIdx = (order - 1) / BLOCK_SIZE;
+			synchronized (MappedTraceFile.this) {
+				StepBlock block = decodedBlocks.get(blockIdx);
+				if (block == null) {
+					block = readBlock(blockIdx);
+					decodedBlocks.put(blockIdx, block);
+				}
+				return block;
+			}
+		}
+
+		private StepBlock readBlock(int blockIdx) throws IOException {
+			long start = blockOffsets[blockIdx];
+			ByteBuffer buffer = ByteBuffer.allocate((int) (blockOffsets[blockIdx + 1] - start));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of trace file!");
+				}
+			}
+			int size = Math.min(BLOCK_SIZE, stepNum - blockIdx * BLOCK_SIZE);
+			StepBlock block = new StepBlock(size);
+			VarValueReader reader = new VarValueReader(buffer.array());
+			for (int i = 0; i < size; i++) {
+				block.bytecodes[i] = reader.readRefString();
+				block.readVariables.add(nullToEmpty(reader.readValues()));
+				block.writtenVariables.add(nullToEmpty(reader.readValues()));
+			}
+			return block;
+		}
+
+		/**
+		 * build the whole trace in heap.
+		 */
+		public Trace toTrace() throws IOException {
+			Trace trace = new Trace(null);
+			trace.setMain(isMain);
+			trace.setThreadName(threadName);
+			trace.setThreadId(threadId);
+			trace.setIncludedLibraryClasses(includedLibraryClasses);
+			trace.setExcludedLibraryClasses(excludedLibraryClasses);
+			List<TraceNode> allSteps = new ArrayList<>(stepNum);
+			for (int i = 0; i < stepNum; i++) {
+				allSteps.add(new TraceNode(null, null, i + 1, trace, null));
+			}
+			for (int order = 1; order <= stepNum; order++) {
+				TraceNode step = allSteps.get(order - 1);
+				step.setBreakPoint(getLocation(order));
+				step.setTimestamp(getTimestamp(order));
+				TraceNode controlDominator = getNode(allSteps, getControlDominator(order));
+				step.setControlDominator(controlDominator);
+				if (controlDominator != null) {
+					controlDominator.addControlDominatee(step);
+				}
+				TraceNode stepIn = getNode(allSteps, getStepInNext(order));
+				step.setStepInNext(stepIn);
+				if (stepIn != null) {
+					stepIn.setStepInPrevious(step);
+				}
+				TraceNode stepOver = getNode(allSteps, getStepOverNext(order));
+				step.setStepOverNext(stepOver);
+				if (stepOver != null) {
+					stepOver.setStepOverPrevious(step);
+				}
+				TraceNode invocationParent = getNode(allSteps, getInvocationParent(order));
+				step.setInvocationParent(invocationParent);
+				if (invocationParent != null) {
+					invocationParent.addInvocationChild(step);
+				}
+				TraceNode loopParent = getNode(allSteps, getLoopParent(order));
+				step.setLoopParent(loopParent);
+				if (loopParent != null) {
+					loopParent.addLoopChild(step);
+				}
+				step.setException(isException(order));
+				step.setBytecode(getBytecode(order));
+				step.setReadVariables(getReadVariables(order));
+				step.setWrittenVariables(getWrittenVariables(order));
+			}
+			trace.setExecutionList(allSteps);
+			return trace;
+		}
+
+		private TraceNode getNode(List<TraceNode> allSteps, int order) {
+			return order <= 0 ? null : allSteps.get(order - 1);
+		}
+
+		public boolean isMain() {
+			return isMain;
+		}
+
+		public String getThreadName() {
+			return threadName;
+		}
+
+		public long getThreadId() {
+			return threadId;
+		}
+
+		public List<String> getIncludedLibraryClasses() {
+			return includedLibraryClasses;
+		}
+
+		public List<String> getExcludedLibraryClasses() {
+			return excludedLibraryClasses;
+		}
+	}
+
+	private static List<VarValue> nullToEmpty(List<VarValue> vars) {
+		if (vars == null) {
+			return new ArrayList<>(0);
+		}
+		return vars;
+	}
+
+	private static class StepBlock {
+		String[] bytecodes;
+		List<List<VarValue>> readVariables;
+		List<List<VarValue>> writtenVariables;
+
+		StepBlock(int size) {
+			bytecodes = new String[size];
+			readVariables = new ArrayList<>(size);
+			writtenVariables = new ArrayList<>(size);
+		}
+	}
+}
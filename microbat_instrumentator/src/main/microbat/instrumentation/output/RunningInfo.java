@@ -19,7 +19,10 @@ import sav.common.core.SavRtException;
  *
  */
 public class RunningInfo {
+	/* header of format version 1 */
 	private static final String HEADER = "TracingResult";
+	/* followed by the format version, see TraceOutputWriter#FORMAT_VERSION */
+	private static final String VERSIONED_HEADER_PREFIX = "TracingResult#";
 	private List<Trace> traceList;
 	private String programMsg;
 	private int expectedSteps;
@@ -37,6 +40,9 @@ public class RunningInfo {
 	}
 	
 	public static RunningInfo readFromFile(File execTraceFile) { 
+		if (MappedTraceFile.isIndexedFile(execTraceFile)) {
+			return readFromIndexedFile(execTraceFile);
+		}
 		TraceOutputReader reader = null;
 		InputStream stream = null;
 		try {
@@ -46,11 +52,13 @@ public class RunningInfo {
 			String programMsg;
 			int expectedSteps = 0;
 			int collectedSteps = 0;
-			if (HEADER.equals(header)) {
+			if (HEADER.equals(header) || header.startsWith(VERSIONED_HEADER_PREFIX)) {
+				reader.setFormatVersion(getFormatVersion(header));
 				programMsg = reader.readString();
 				expectedSteps = reader.readInt();
 				collectedSteps = reader.readInt();
 			} else {
+				reader.setFormatVersion(1);
 				programMsg = header; // for compatible reason with old version. TO BE REMOVED.
 			}
 			List<Trace> traceList = reader.readTrace();
@@ -69,6 +77,36 @@ public class RunningInfo {
 		}
 	}
 	
+	private static RunningInfo readFromIndexedFile(File execTraceFile) {
+		MappedTraceFile mappedFile = null;
+		try {
+			mappedFile = MappedTraceFile.open(execTraceFile);
+			return mappedFile.toRunningInfo();
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new SavRtException(e);
+		} finally {
+			try {
+				if (mappedFile != null) {
+					mappedFile.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	private static int getFormatVersion(String header) throws IOException {
+		if (HEADER.equals(header)) {
+			return 1;
+		}
+		try {
+			return Integer.parseInt(header.substring(VERSIONED_HEADER_PREFIX.length()));
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid trace header: " + header);
+		}
+	}
+	
 	public Trace getMainTrace() {
 		for(Trace trace: traceList) {
 			if(trace.isMain()) {
@@ -90,7 +128,7 @@ public class RunningInfo {
 		try {
 			outputWriter = new TraceOutputWriter(bufferedStream, traceExecFolder,
 					file.getName().substring(0, file.getName().lastIndexOf(".")));
-			outputWriter.writeString(HEADER);
+			outputWriter.writeString(VERSIONED_HEADER_PREFIX + TraceOutputWriter.FORMAT_VERSION);
 			outputWriter.writeString(programMsg);
 			outputWriter.writeInt(expectedSteps);
 			outputWriter.writeInt(collectedSteps);
@@ -16,6 +16,7 @@ import sav.common.core.utils.FileUtils;
 
 public class TraceOutputReader extends OutputReader {
 	private String traceExecFolder;
+	private int formatVersion = TraceOutputWriter.FORMAT_VERSION;
 	
 	public TraceOutputReader(InputStream in) {
 		super(in);
@@ -45,7 +46,8 @@ public class TraceOutputReader extends OutputReader {
 			trace.setIncludedLibraryClasses(readFilterInfo());
 			trace.setExcludedLibraryClasses(readFilterInfo());
 			List<BreakPoint> locationList = readLocations();
-			trace.setExecutionList(readSteps(trace, locationList));
+			List<String> bytecodes = formatVersion < 3 ? null : readBytecodes();
+			trace.setExecutionList(readSteps(trace, locationList, bytecodes));
 			readStepVariableRelation(trace);
 			
 			traceList.add(trace);
@@ -54,7 +56,7 @@ public class TraceOutputReader extends OutputReader {
 		return traceList;
 	}
 
-	private List<String> readFilterInfo() throws IOException {
+	protected List<String> readFilterInfo() throws IOException {
 		boolean inFile = readBoolean();
 		if (inFile) {
 			if (traceExecFolder == null) {
@@ -68,7 +70,7 @@ public class TraceOutputReader extends OutputReader {
 		}
 	}
 
-	private List<BreakPoint> readLocations() throws IOException {
+	protected List<BreakPoint> readLocations() throws IOException {
 		int bkpTotal = readVarInt();
 		int numOfClasses = readVarInt();
 		List<BreakPoint> allLocs = new ArrayList<>(bkpTotal);
@@ -86,7 +88,27 @@ public class TraceOutputReader extends OutputReader {
 		return allLocs;
 	}
 
-	private List<TraceNode> readSteps(Trace trace, List<BreakPoint> locationList) throws IOException {
+	/**
+	 * @return the bytecodes of the steps of a trace, by their index in the steps, see
+	 *         {@link TraceOutputWriter#FORMAT_VERSION}.
+	 */
+	private List<String> readBytecodes() throws IOException {
+		int size = readVarInt();
+		List<String> bytecodes = new ArrayList<>(size + 1);
+		/* a step without bytecode, read as an empty string as in the former versions */
+		bytecodes.add("");
+		for (int i = 0; i < size; i++) {
+			bytecodes.add(readString());
+		}
+		return bytecodes;
+	}
+
+	/**
+	 * @param bytecodes
+	 *            null if the bytecode of each step is written with the step.
+	 */
+	private List<TraceNode> readSteps(Trace trace, List<BreakPoint> locationList, List<String> bytecodes)
+			throws IOException {
 		int size = readVarInt();
 		List<TraceNode> allSteps = new ArrayList<>(size);
 		for (int i = 0; i < size; i++) {
@@ -127,7 +149,7 @@ public class TraceOutputReader extends OutputReader {
 				loopParent.addLoopChild(step);
 			}
 			step.setException(readBoolean());
-			step.setBytecode(readString());
+			step.setBytecode(bytecodes == null ? readString() : bytecodes.get(readVarInt()));
 		}
 		readRWVarValues(allSteps, false);
 		readRWVarValues(allSteps, true);
@@ -141,7 +163,12 @@ public class TraceOutputReader extends OutputReader {
 	private void readRWVarValues(List<TraceNode> allSteps, boolean isWrittenVar) throws IOException {
 		int i = 0;
 		while (i < allSteps.size()) {
-			List<List<VarValue>> varsCol = readSerializableList();
+			List<List<VarValue>> varsCol;
+			if (formatVersion < 2) {
+				varsCol = readSerializableList();
+			} else {
+				varsCol = readVarValuesBatch();
+			}
 			for (List<VarValue> vars : varsCol) {
 				if (isWrittenVar) {
 					allSteps.get(i++).setWrittenVariables(vars);
@@ -152,6 +179,18 @@ public class TraceOutputReader extends OutputReader {
 		}
 	}
 
+	private List<List<VarValue>> readVarValuesBatch() throws IOException {
+		int size = readVarInt();
+		if (size == 0) {
+			return new ArrayList<>(0);
+		}
+		byte[] bytes = readByteArray();
+		if (bytes == null || bytes.length == 0) {
+			return new ArrayList<>(0);
+		}
+		return VarValueReader.decode(bytes);
+	}
+
 	private TraceNode readNode(List<TraceNode> allSteps) throws IOException {
 		int nodeOrder = readVarInt();
 		if (nodeOrder <= 0) {
@@ -222,5 +261,14 @@ public class TraceOutputReader extends OutputReader {
 //		}
 	}
 
-	
+	public int getFormatVersion() {
+		return formatVersion;
+	}
+
+	/**
+	 * format version of the traces to read, see {@link TraceOutputWriter#FORMAT_VERSION}.
+	 */
+	public void setFormatVersion(int formatVersion) {
+		this.formatVersion = formatVersion;
+	}
 }
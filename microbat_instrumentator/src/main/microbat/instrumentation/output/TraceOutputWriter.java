@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,6 +26,13 @@ import sav.common.core.utils.StringUtils;
 public class TraceOutputWriter extends OutputWriter {
 	public static final int READ = 1;
 	public static final int WRITE = 2;
+	/**
+	 * version of the trace format, to be increased with any incompatible change.
+	 * 1: variables of steps in java serialization.
+	 * 2: variables of steps in {@link VarValueWriter} encoding.
+	 * 3: bytecodes of the locations written once per trace, steps refer to them by index.
+	 */
+	public static final int FORMAT_VERSION = 3;
 	private String traceExecFolder;
 	private String filterFilePrefix;
 	
@@ -58,11 +66,12 @@ public class TraceOutputWriter extends OutputWriter {
 		writeFilterInfo(trace.getIncludedLibraryClasses(), true);
 		writeFilterInfo(trace.getExcludedLibraryClasses(), false);
 		Map<String, Integer> locIdIdxMap = writeLocations(trace);
-		writeSteps(trace.getExecutionList(), locIdIdxMap);
+		Map<String, Integer> bytecodeIdxMap = writeBytecodes(trace);
+		writeSteps(trace.getExecutionList(), locIdIdxMap, bytecodeIdxMap);
 		writeStepVariableRelation(trace);
 	}
 	
-	private void writeFilterInfo(List<String> libClasses, boolean isInclusive) throws IOException {
+	protected void writeFilterInfo(List<String> libClasses, boolean isInclusive) throws IOException {
 		if (libClasses.size() > 300 && (traceExecFolder != null)) {
 			writeBoolean(true); // write file
 			String fileName = filterFilePrefix + (isInclusive ? "_includes.info" : "_excludes.info");
@@ -75,7 +84,7 @@ public class TraceOutputWriter extends OutputWriter {
 		}
 	}
 
-	private Map<String, Integer> writeLocations(Trace trace) throws IOException {
+	protected Map<String, Integer> writeLocations(Trace trace) throws IOException {
 		Map<String, Set<BreakPoint>> locationMap = getExecutedLocation(trace);
 		writeVarInt(getNumberOfBkps(locationMap)); // number of bkps
 		writeVarInt(locationMap.size()); // numberOfClass
@@ -122,11 +131,27 @@ public class TraceOutputWriter extends OutputWriter {
 		return locationMap;
 	}
 	
-	private void writeSteps(List<TraceNode> exectionList, Map<String, Integer> locIdIdxMap)
-			throws IOException {
+	/**
+	 * the distinct bytecodes of the steps, index 0 stands for a step without bytecode.
+	 */
+	private Map<String, Integer> writeBytecodes(Trace trace) throws IOException {
+		Map<String, Integer> bytecodeIdxMap = new LinkedHashMap<>();
+		for (TraceNode node : trace.getExecutionList()) {
+			String bytecode = node.getBytecode();
+			if (bytecode != null && !bytecodeIdxMap.containsKey(bytecode)) {
+				bytecodeIdxMap.put(bytecode, bytecodeIdxMap.size() + 1);
+			}
+		}
+		writeVarInt(bytecodeIdxMap.size());
+		for (String bytecode : bytecodeIdxMap.keySet()) {
+			writeString(bytecode);
+		}
+		return bytecodeIdxMap;
+	}
+
+	private void writeSteps(List<TraceNode> exectionList, Map<String, Integer> locIdIdxMap,
+			Map<String, Integer> bytecodeIdxMap) throws IOException {
 		writeVarInt(exectionList.size());
-		List<Collection<VarValue>> allReadVars = new ArrayList<>(exectionList.size());
-		List<Collection<VarValue>> allWrittenVars = new ArrayList<>(exectionList.size());
 		for (int i = 0; i < exectionList.size(); i++) {
 			TraceNode node = exectionList.get(i);
 			writeVarInt(locIdIdxMap.get(node.getBreakPoint().getId()));
@@ -136,22 +161,25 @@ public class TraceOutputWriter extends OutputWriter {
 			writeNodeOrder(node.getStepOverNext());
 			writeNodeOrder(node.getInvocationParent());
 			writeNodeOrder(node.getLoopParent());
-			allReadVars.add(node.getReadVariables());
-			allWrittenVars.add(node.getWrittenVariables());
 			writeBoolean(node.isException());
-			writeString(node.getBytecode());
+			writeVarInt(node.getBytecode() == null ? 0 : bytecodeIdxMap.get(node.getBytecode()));
 		}
-		writeVarValues(allReadVars);
-		writeVarValues(allWrittenVars);
+		writeVarValues(exectionList, true);
+		writeVarValues(exectionList, false);
 	}
 	
-	private void writeVarValues(List<Collection<VarValue>> list) throws IOException {
+	/**
+	 * variables are collected batch by batch so that, if the variables of the
+	 * trace are spilled to disk, only one batch of them is loaded at a time.
+	 */
+	private void writeVarValues(List<TraceNode> exectionList, boolean readVars) throws IOException {
 		int idx = 0;
-		while (idx < list.size()) {
+		while (idx < exectionList.size()) {
 			int limitSize = 0;
 			List<Collection<VarValue>> subList = new ArrayList<>();
-			while (limitSize < 4000 && (idx < list.size())) {
-				Collection<VarValue> vars = list.get(idx++);
+			while (limitSize < 4000 && (idx < exectionList.size())) {
+				TraceNode node = exectionList.get(idx++);
+				Collection<VarValue> vars = readVars ? node.getReadVariables() : node.getWrittenVariables();
 				subList.add(vars);
 				limitSize = subList.size();
 			}
@@ -159,7 +187,7 @@ public class TraceOutputWriter extends OutputWriter {
 				writeVarInt(0);
 			} else {
 				writeVarInt(subList.size());
-				byte[] bytes = ByteConverter.convertToBytes(subList);
+				byte[] bytes = VarValueWriter.encode(subList);
 				writeByteArr(bytes);
 			}
 		}
@@ -0,0 +1,354 @@
+package microbat.instrumentation.output;
+
+import static microbat.instrumentation.output.VarValueWriter.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import microbat.model.value.ArrayValue;
+import microbat.model.value.PrimitiveValue;
+import microbat.model.value.ReferenceValue;
+import microbat.model.value.StringValue;
+import microbat.model.value.VarValue;
+import microbat.model.value.VirtualValue;
+import microbat.model.variable.ArrayElementVar;
+import microbat.model.variable.ConstantVar;
+import microbat.model.variable.FieldVar;
+import microbat.model.variable.LocalVar;
+import microbat.model.variable.VarIdTable;
+import microbat.model.variable.Variable;
+import microbat.model.variable.VirtualVar;
+
+/**
+ * Decodes the variables of a batch of steps written by {@link VarValueWriter}.
+ */
+public class VarValueReader extends OutputReader {
+	/*
+	 * traces are also read in the microbat plugin against its own copy of microbat.model, where the constructor of
+	 * VirtualValue takes an additional unique id and variables have no runtime type, those are resolved once here.
+	 */
+	private static Constructor<VirtualValue> virtualValueConstructor;
+	private static Method setRtTypeMethod;
+	static {
+		for (Constructor<?> constructor : VirtualValue.class.getConstructors()) {
+			if (virtualValueConstructor == null || constructor.getParameterTypes().length == 2) {
+				@SuppressWarnings("unchecked")
+				Constructor<VirtualValue> valueConstructor = (Constructor<VirtualValue>) constructor;
+				virtualValueConstructor = valueConstructor;
+			}
+		}
+		try {
+			setRtTypeMethod = Variable.class.getMethod("setRtType", String.class);
+		} catch (NoSuchMethodException e) {
+			setRtTypeMethod = null;
+		}
+	}
+	
+	private List<VarValue> values = new ArrayList<>();
+	private List<Variable> variables = new ArrayList<>();
+	private List<String> strings = new ArrayList<>();
+	/* the interned ids by reference, see VarValueWriter#writeVarID */
+	private List<Integer> varIdxs = new ArrayList<>();
+	protected VarIdTable varIds;
+
+	public VarValueReader(byte[] bytes) {
+		this(bytes, new VarIdTable());
+	}
+
+	/**
+	 * @param varIds the table into which the ids written as their parts are interned.
+	 */
+	protected VarValueReader(byte[] bytes, VarIdTable varIds) {
+		super(new ByteArrayInputStream(bytes));
+		this.varIds = varIds;
+	}
+
+	public static List<List<VarValue>> decode(byte[] bytes) throws IOException {
+		VarValueReader reader = new VarValueReader(bytes);
+		int size = reader.readVarInt();
+		List<List<VarValue>> stepVars = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			stepVars.add(reader.readValues());
+		}
+		return stepVars;
+	}
+
+	public List<VarValue> readValues() throws IOException {
+		int size = readVarInt();
+		if (size == -1) {
+			return null;
+		}
+		List<VarValue> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(readValue());
+		}
+		return list;
+	}
+
+	public VarValue readValue() throws IOException {
+		int ref = readVarInt();
+		if (ref == NULL_REF) {
+			return null;
+		}
+		if (ref != NEW_REF) {
+			return values.get(ref - REF_OFFSET);
+		}
+		int idx = values.size();
+		values.add(null);
+		VarValue existingValue = readValueKey();
+		if (existingValue != null) {
+			values.set(idx, existingValue);
+			if (isValueFollowing()) {
+				/* the value which follows is outdated, read it without keeping it */
+				readNewValue(-1);
+			}
+			return existingValue;
+		}
+		return readNewValue(idx);
+	}
+
+	private VarValue readNewValue(int idx) throws IOException {
+		int type = readByte();
+		if (type == SERIALIZED_VALUE) {
+			VarValue value = readSerializableObj();
+			newValueRead(idx, value);
+			return value;
+		}
+		boolean isRoot = readBoolean();
+		Variable var = readVariable();
+		String strVal = readRefString();
+		VarValue value;
+		switch (type) {
+		case PRIMITIVE_VALUE:
+			value = new PrimitiveValue(strVal, isRoot, var);
+			break;
+		case STRING_VALUE:
+			String varType = var.getType();
+			value = new StringValue(strVal, isRoot, var);
+			/* keep the type as it was written */
+			var.setType(varType);
+			break;
+		case REFERENCE_VALUE:
+			value = new ReferenceValue(false, isRoot, var);
+			break;
+		case ARRAY_VALUE:
+			value = new ArrayValue(false, isRoot, var);
+			break;
+		case VIRTUAL_VALUE:
+			value = newVirtualValue(isRoot, var);
+			break;
+		default:
+			throw new IOException("Unknown value type: " + type);
+		}
+		value.setStringValue(strVal);
+		newValueRead(idx, value);
+		if (value instanceof ReferenceValue) {
+			ReferenceValue refValue = (ReferenceValue) value;
+			refValue.setNull(readBoolean());
+			refValue.setUniqueID(readVarLong());
+			if (value instanceof ArrayValue) {
+				((ArrayValue) value).setComponentType(readRefString());
+			}
+		}
+		value.setChildren(readValues());
+		value.setParents(readValues());
+		return value;
+	}
+
+	private void newValueRead(int idx, VarValue value) {
+		if (idx >= 0) {
+			values.set(idx, value);
+			valueRead(value);
+		}
+	}
+
+	/**
+	 * reads what {@link VarValueWriter#writeValueKey(VarValue)} writes before a new value. Nothing is read by
+	 * default.
+	 *
+	 * @return the value to use instead of the value which follows, or null to read the value which follows.
+	 */
+	protected VarValue readValueKey() throws IOException {
+		return null;
+	}
+
+	/**
+	 * whether a value follows the key just read, it must be true if {@link #readValueKey()} returns null.
+	 */
+	protected boolean isValueFollowing() {
+		return true;
+	}
+
+	/**
+	 * called once a new value is created, before its children and parents are read.
+	 */
+	protected void valueRead(VarValue value) {
+		// nothing by default
+	}
+
+	private Variable readVariable() throws IOException {
+		int ref = readVarInt();
+		if (ref == NULL_REF) {
+			return null;
+		}
+		if (ref != NEW_REF) {
+			return variables.get(ref - REF_OFFSET);
+		}
+		int idx = variables.size();
+		variables.add(null);
+		int type = readByte();
+		if (type == SERIALIZED_VAR) {
+			Variable var = readSerializableObj();
+			variables.set(idx, var);
+			return var;
+		}
+		String name = readRefString();
+		String varType = readRefString();
+		String rtType = readRefString();
+		boolean internedVarID = readBoolean();
+		String varID = internedVarID ? null : readRefString();
+		int varIdx = internedVarID ? readVarIdx() : VarIdTable.NO_ID;
+		boolean internedAliasVarID = readBoolean();
+		String aliasVarID = internedAliasVarID ? null : readRefString();
+		int aliasVarIdx = internedAliasVarID ? readVarIdx() : VarIdTable.NO_ID;
+		Variable var;
+		switch (type) {
+		case LOCAL_VAR:
+			String locationClass = readRefString();
+			LocalVar localVar = new LocalVar(name, varType, locationClass, readVarInt());
+			localVar.setByteCodeIndex(readVarInt());
+			localVar.setParameter(readBoolean());
+			var = localVar;
+			break;
+		case FIELD_VAR:
+			boolean isStatic = readBoolean();
+			var = new FieldVar(isStatic, name, varType, readRefString());
+			break;
+		case ARRAY_ELEMENT_VAR:
+			/* the last parameter is the varID or the aliasVarID depending on the model, both are set below */
+			var = new ArrayElementVar(name, varType, null);
+			break;
+		case CONSTANT_VAR:
+			ConstantVar constVar = new ConstantVar(name, varType);
+			constVar.setValue(readRefString());
+			var = constVar;
+			break;
+		case VIRTUAL_VAR:
+			var = new VirtualVar(name, varType);
+			break;
+		default:
+			throw new IOException("Unknown variable type: " + type);
+		}
+		setRtType(var, rtType);
+		setVarIDs(var, varID, varIdx, aliasVarID, aliasVarIdx);
+		if (name == null && type == ARRAY_ELEMENT_VAR) {
+			nameByVarID(var);
+		}
+		variables.set(idx, var);
+		return var;
+	}
+
+	/**
+	 * the string forms of the interned ids are built here, as the variables of the plugin have no interned ids.
+	 */
+	protected void setVarIDs(Variable var, String varID, int varIdx, String aliasVarID, int aliasVarIdx) {
+		var.setVarID(varIdx == VarIdTable.NO_ID ? varID : varIds.getVarID(varIdx));
+		var.setAliasVarID(aliasVarIdx == VarIdTable.NO_ID ? aliasVarID : varIds.getVarID(aliasVarIdx));
+	}
+
+	/**
+	 * an array element written without name is named by its varID.
+	 */
+	protected void nameByVarID(Variable var) {
+		var.setName(var.getVarID());
+	}
+
+	private int readVarIdx() throws IOException {
+		int ref = readVarInt();
+		if (ref != NEW_REF) {
+			return varIdxs.get(ref - REF_OFFSET);
+		}
+		int varIdx;
+		int kind = readByte();
+		switch (kind) {
+		case OBJECT_ID:
+			varIdx = varIds.getObjectId(readVarInt());
+			break;
+		case FIELD_ID:
+			int parentIdx = readVarIdx();
+			varIdx = varIds.getFieldId(parentIdx, readRefString());
+			break;
+		case STATIC_FIELD_ID:
+			String declaringType = readRefString();
+			varIdx = varIds.getStaticFieldId(declaringType, readRefString());
+			break;
+		case ARRAY_ELEMENT_ID:
+			int arrayIdx = readVarIdx();
+			varIdx = varIds.getArrayElementId(arrayIdx, readVarInt());
+			break;
+		case LOCAL_VAR_ID:
+			String className = readRefString();
+			String varName = readRefString();
+			int startLine = readVarInt();
+			int endLine = readVarInt();
+			varIdx = varIds.getLocalVarId(className, varName, startLine, endLine, readVarInt());
+			break;
+		default:
+			throw new IOException("Unknown variable id kind: " + kind);
+		}
+		varIdxs.add(varIdx);
+		return varIdx;
+	}
+
+	private static VirtualValue newVirtualValue(boolean isRoot, Variable var) throws IOException {
+		try {
+			if (virtualValueConstructor.getParameterTypes().length == 2) {
+				return virtualValueConstructor.newInstance(isRoot, var);
+			}
+			return virtualValueConstructor.newInstance(isRoot, var, 0L);
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static void setRtType(Variable var, String rtType) throws IOException {
+		if (setRtTypeMethod != null && rtType != null) {
+			try {
+				setRtTypeMethod.invoke(var, rtType);
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	public String readRefString() throws IOException {
+		int ref = readVarInt();
+		if (ref == NULL_REF) {
+			return null;
+		}
+		if (ref != NEW_REF) {
+			return strings.get(ref - REF_OFFSET);
+		}
+		byte[] bytes = new byte[readVarInt()];
+		readFully(bytes);
+		String str = new String(bytes, UTF_8);
+		strings.add(str);
+		return str;
+	}
+
+	public long readVarLong() throws IOException {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = readByte() & 0xFF;
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -0,0 +1,359 @@
+package microbat.instrumentation.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.model.value.ArrayValue;
+import microbat.model.value.PrimitiveValue;
+import microbat.model.value.ReferenceValue;
+import microbat.model.value.StringValue;
+import microbat.model.value.VarValue;
+import microbat.model.value.VirtualValue;
+import microbat.model.variable.ArrayElementVar;
+import microbat.model.variable.ConstantVar;
+import microbat.model.variable.FieldVar;
+import microbat.model.variable.LocalVar;
+import microbat.model.variable.VarIdTable;
+import microbat.model.variable.Variable;
+import microbat.model.variable.VirtualVar;
+import microbat.util.LongIntHashMap;
+
+/**
+ * Compact binary encoding of the variables of a batch of steps, replacing the java serialization of
+ * {@link ByteConverter}.
+ *
+ * Each value, variable and string is written once per batch, the following occurrences are written as a back
+ * reference to it, so values shared between steps or between parents keep being shared after reading. See
+ * {@link VarValueReader} for the reverse.
+ *
+ * The ids interned in a {@link VarIdTable} while recording are written as their parts, so that their string forms
+ * are only built when the trace is read.
+ */
+public class VarValueWriter extends OutputWriter {
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/* reference code: 0 for null, 1 for a new entry which follows, (idx + 2) for an already written entry */
+	static final int NULL_REF = 0;
+	static final int NEW_REF = 1;
+	static final int REF_OFFSET = 2;
+
+	/* value types */
+	static final int PRIMITIVE_VALUE = 1;
+	static final int STRING_VALUE = 2;
+	static final int REFERENCE_VALUE = 3;
+	static final int ARRAY_VALUE = 4;
+	static final int VIRTUAL_VALUE = 5;
+	/* for other value types, the value is written with java serialization */
+	static final int SERIALIZED_VALUE = 0;
+
+	/* variable types */
+	static final int LOCAL_VAR = 1;
+	static final int FIELD_VAR = 2;
+	static final int ARRAY_ELEMENT_VAR = 3;
+	static final int CONSTANT_VAR = 4;
+	static final int VIRTUAL_VAR = 5;
+	static final int SERIALIZED_VAR = 0;
+
+	/* kinds of interned id, see VarIdTable.IdVisitor */
+	static final int OBJECT_ID = 1;
+	static final int FIELD_ID = 2;
+	static final int STATIC_FIELD_ID = 3;
+	static final int ARRAY_ELEMENT_ID = 4;
+	static final int LOCAL_VAR_ID = 5;
+
+	private ByteArrayOutputStream bytesOut;
+	private Map<VarValue, Integer> valueIds = new IdentityHashMap<>();
+	private Map<Variable, Integer> variableIds = new IdentityHashMap<>();
+	private Map<String, Integer> stringIds = new HashMap<>();
+	private Map<VarIdTable, IdWriter> idWriters = new IdentityHashMap<>();
+	private int varIdCount;
+
+	public VarValueWriter() {
+		this(new ByteArrayOutputStream());
+	}
+
+	private VarValueWriter(ByteArrayOutputStream bytesOut) {
+		super(bytesOut);
+		this.bytesOut = bytesOut;
+	}
+
+	/**
+	 * encode variables of a batch of steps.
+	 */
+	public static byte[] encode(List<? extends Collection<VarValue>> stepVars) throws IOException {
+		VarValueWriter writer = new VarValueWriter();
+		writer.writeVarInt(stepVars.size());
+		for (Collection<VarValue> vars : stepVars) {
+			writer.writeValues(vars);
+		}
+		return writer.toByteArray();
+	}
+
+	public byte[] toByteArray() throws IOException {
+		flush();
+		return bytesOut.toByteArray();
+	}
+
+	public void writeValues(Collection<VarValue> values) throws IOException {
+		if (values == null) {
+			writeVarInt(-1);
+			return;
+		}
+		writeVarInt(values.size());
+		for (VarValue value : values) {
+			writeValue(value);
+		}
+	}
+
+	public void writeValue(VarValue value) throws IOException {
+		if (value == null) {
+			writeVarInt(NULL_REF);
+			return;
+		}
+		Integer id = valueIds.get(value);
+		if (id != null) {
+			writeVarInt(id + REF_OFFSET);
+			return;
+		}
+		writeVarInt(NEW_REF);
+		/* register before writing children & parents, they might refer back to this value */
+		valueIds.put(value, valueIds.size());
+		if (!writeValueKey(value)) {
+			return;
+		}
+		Class<?> type = value.getClass();
+		if (type == PrimitiveValue.class) {
+			writeByte(PRIMITIVE_VALUE);
+		} else if (type == StringValue.class) {
+			writeByte(STRING_VALUE);
+		} else if (type == ReferenceValue.class) {
+			writeByte(REFERENCE_VALUE);
+		} else if (type == ArrayValue.class) {
+			writeByte(ARRAY_VALUE);
+		} else if (type == VirtualValue.class) {
+			writeByte(VIRTUAL_VALUE);
+		} else {
+			writeByte(SERIALIZED_VALUE);
+			writeSerializableObj(value);
+			return;
+		}
+		writeBoolean(value.isRoot());
+		writeVariable(value.getVariable());
+		writeRefString(getRawStringValue(value));
+		if (value instanceof ReferenceValue) {
+			ReferenceValue refValue = (ReferenceValue) value;
+			writeBoolean(refValue.isNull());
+			writeVarLong(refValue.getUniqueID());
+			if (value instanceof ArrayValue) {
+				writeRefString(((ArrayValue) value).getComponentType());
+			}
+		}
+		writeLinkedValues(value, true);
+		writeLinkedValues(value, false);
+	}
+
+	/**
+	 * writes what identifies a new value beyond the batch, before the value itself. Nothing is written by default.
+	 *
+	 * @return whether the value follows its key, see {@link VarValueReader#readValueKey()}.
+	 */
+	protected boolean writeValueKey(VarValue value) throws IOException {
+		return true;
+	}
+
+	/**
+	 * whether the value is already written in this batch.
+	 */
+	protected boolean isWritten(VarValue value) {
+		return valueIds.containsKey(value);
+	}
+
+	private void writeLinkedValues(VarValue value, boolean children) throws IOException {
+		List<VarValue> values = children ? value.getChildren() : value.getParents();
+		/* getChildren() & getParents() return the shared empty list if no list is created */
+		if (values == Collections.EMPTY_LIST) {
+			writeVarInt(-1);
+		} else {
+			writeValues(values);
+		}
+	}
+
+	/**
+	 * {@link VarValue#getStringValue()} returns "null" for a null string value,
+	 * which must be restored as null, see {@link VarValue#isDefinedToStringMethod()}.
+	 */
+	private static String getRawStringValue(VarValue value) {
+		String str = value.getStringValue();
+		if ("null".equals(str) && !value.isDefinedToStringMethod()) {
+			return null;
+		}
+		return str;
+	}
+
+	private void writeVariable(Variable var) throws IOException {
+		if (var == null) {
+			writeVarInt(NULL_REF);
+			return;
+		}
+		Integer id = variableIds.get(var);
+		if (id != null) {
+			writeVarInt(id + REF_OFFSET);
+			return;
+		}
+		writeVarInt(NEW_REF);
+		variableIds.put(var, variableIds.size());
+		Class<?> type = var.getClass();
+		if (type == LocalVar.class) {
+			writeByte(LOCAL_VAR);
+		} else if (type == FieldVar.class) {
+			writeByte(FIELD_VAR);
+		} else if (type == ArrayElementVar.class) {
+			writeByte(ARRAY_ELEMENT_VAR);
+		} else if (type == ConstantVar.class) {
+			writeByte(CONSTANT_VAR);
+		} else if (type == VirtualVar.class) {
+			writeByte(VIRTUAL_VAR);
+		} else {
+			writeByte(SERIALIZED_VAR);
+			writeSerializableObj(var);
+			return;
+		}
+		/* a null name is read as the varID */
+		boolean namedByVarID = (var instanceof ArrayElementVar) && ((ArrayElementVar) var).isNamedByVarID();
+		writeRefString(namedByVarID ? null : var.getName());
+		writeRefString(var.getType());
+		writeRefString(var.getRuntimeType());
+		writeVarID(var, var.getVarIdx(), false);
+		writeVarID(var, var.getAliasVarIdx(), true);
+		if (var instanceof LocalVar) {
+			LocalVar localVar = (LocalVar) var;
+			writeRefString(localVar.getLocationClass());
+			writeVarInt(localVar.getLineNumber());
+			writeVarInt(localVar.getByteCodeIndex());
+			writeBoolean(localVar.isParameter());
+		} else if (var instanceof FieldVar) {
+			FieldVar fieldVar = (FieldVar) var;
+			writeBoolean(fieldVar.isStatic());
+			writeRefString(fieldVar.getDeclaringType());
+		} else if (var instanceof ConstantVar) {
+			writeRefString(((ConstantVar) var).getValue());
+		}
+	}
+
+	/**
+	 * an interned id is written as a reference to its parts, otherwise as a string.
+	 */
+	private void writeVarID(Variable var, int varIdx, boolean alias) throws IOException {
+		boolean interned = varIdx != VarIdTable.NO_ID;
+		writeBoolean(interned);
+		if (!interned) {
+			writeRefString(alias ? var.getAliasVarID() : var.getVarID());
+			return;
+		}
+		IdWriter idWriter = idWriters.get(var.getVarIdTable());
+		if (idWriter == null) {
+			idWriter = new IdWriter(var.getVarIdTable());
+			idWriters.put(var.getVarIdTable(), idWriter);
+		}
+		idWriter.writeVarIdx(varIdx);
+	}
+
+	/**
+	 * writes the ids of a table, the references to them being numbered across the tables of the batch.
+	 */
+	private class IdWriter implements VarIdTable.IdVisitor<IOException> {
+		private VarIdTable varIds;
+		/* (ref + 1) of the written ids */
+		private LongIntHashMap refs = new LongIntHashMap();
+
+		private IdWriter(VarIdTable varIds) {
+			this.varIds = varIds;
+		}
+
+		private void writeVarIdx(int varIdx) throws IOException {
+			int ref = refs.get(varIdx) - 1;
+			if (ref >= 0) {
+				writeVarInt(ref + REF_OFFSET);
+				return;
+			}
+			writeVarInt(NEW_REF);
+			varIds.visit(varIdx, this);
+			/* registered after its parts, as the reader interns it once they are read */
+			refs.put(varIdx, ++varIdCount);
+		}
+
+		@Override
+		public void visitObject(int identityHashCode) throws IOException {
+			writeByte(OBJECT_ID);
+			writeVarInt(identityHashCode);
+		}
+
+		@Override
+		public void visitField(int parentId, String fieldName) throws IOException {
+			writeByte(FIELD_ID);
+			writeVarIdx(parentId);
+			writeRefString(fieldName);
+		}
+
+		@Override
+		public void visitStaticField(String declaringType, String fieldName) throws IOException {
+			writeByte(STATIC_FIELD_ID);
+			writeRefString(declaringType);
+			writeRefString(fieldName);
+		}
+
+		@Override
+		public void visitArrayElement(int arrayId, int index) throws IOException {
+			writeByte(ARRAY_ELEMENT_ID);
+			writeVarIdx(arrayId);
+			writeVarInt(index);
+		}
+
+		@Override
+		public void visitLocalVar(String className, String varName, int startLine, int endLine, int invocationLayer)
+				throws IOException {
+			writeByte(LOCAL_VAR_ID);
+			writeRefString(className);
+			writeRefString(varName);
+			writeVarInt(startLine);
+			writeVarInt(endLine);
+			writeVarInt(invocationLayer);
+		}
+	}
+
+	/**
+	 * unlike {@link #writeString(String)}, keeps null and non-ascii characters
+	 * and writes each distinct string only once.
+	 */
+	public void writeRefString(String str) throws IOException {
+		if (str == null) {
+			writeVarInt(NULL_REF);
+			return;
+		}
+		Integer id = stringIds.get(str);
+		if (id != null) {
+			writeVarInt(id + REF_OFFSET);
+			return;
+		}
+		writeVarInt(NEW_REF);
+		stringIds.put(str, stringIds.size());
+		byte[] bytes = str.getBytes(UTF_8);
+		writeVarInt(bytes.length);
+		write(bytes, 0, bytes.length);
+	}
+
+	public void writeVarLong(long value) throws IOException {
+		while ((value & 0xFFFFFFFFFFFFFF80L) != 0) {
+			writeByte((int) (0x80 | (value & 0x7F)));
+			value >>>= 7;
+		}
+		writeByte((int) value);
+	}
+}
@@ -0,0 +1,20 @@
+package microbat.instrumentation.output.tcp;
+
+import java.util.List;
+
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+
+/**
+ * Receives the steps of a running program, see {@link StepStreamReader}.
+ */
+public interface StepStreamListener {
+
+	/**
+	 * called in the thread reading the stream. The steps are not added to {@code trace} yet, the listener adds them
+	 * with {@link StepStreamReader#appendSteps(Trace, List)} in the thread using the trace.
+	 */
+	void stepsReceived(Trace trace, List<TraceNode> steps);
+
+	void streamEnded(String programMsg);
+}
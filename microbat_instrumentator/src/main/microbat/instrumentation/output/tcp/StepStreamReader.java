@@ -0,0 +1,118 @@
+package microbat.instrumentation.output.tcp;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.instrumentation.output.OutputReader;
+import microbat.instrumentation.output.VarValueReader;
+import microbat.model.BreakPoint;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import microbat.model.value.VarValue;
+
+/**
+ * Reads the steps streamed by {@link StepStreamer} and passes them to a {@link StepStreamListener}, one trace per
+ * thread. The steps only have their location, timestamp, invocation parent and variables, the other relations of a
+ * trace are built after the program ends.
+ */
+public class StepStreamReader extends OutputReader {
+	private List<BreakPoint> locations = new ArrayList<>();
+	private Map<Long, Trace> traces = new HashMap<>();
+	/* steps received for each thread, by order, including the ones not yet added to their trace */
+	private Map<Long, List<TraceNode>> threadSteps = new HashMap<>();
+
+	public StepStreamReader(InputStream in) {
+		super(new BufferedInputStream(in));
+	}
+
+	/**
+	 * reads the stream until its end.
+	 *
+	 * @return the program message, or null if the stream was closed before its end.
+	 */
+	public String read(StepStreamListener listener) throws IOException {
+		try {
+			while (true) {
+				int record = readVarInt();
+				switch (record) {
+				case StepStreamWriter.RECORD_LOCATION:
+					readLocation();
+					break;
+				case StepStreamWriter.RECORD_STEPS:
+					readSteps(listener);
+					break;
+				case StepStreamWriter.RECORD_END:
+					String programMsg = readString();
+					listener.streamEnded(programMsg);
+					return programMsg;
+				default:
+					throw new IOException("Unknown record in trace step stream: " + record);
+				}
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	private void readLocation() throws IOException {
+		int id = readVarInt();
+		String className = readString();
+		String methodSign = readString();
+		int lineNumber = readVarInt();
+		BreakPoint location = new BreakPoint(className, methodSign, lineNumber);
+		while (locations.size() <= id) {
+			locations.add(null);
+		}
+		locations.set(id, location);
+	}
+
+	private void readSteps(StepStreamListener listener) throws IOException {
+		long threadId = readLong();
+		boolean isMain = readBoolean();
+		Trace trace = traces.get(threadId);
+		List<TraceNode> allSteps = threadSteps.get(threadId);
+		if (trace == null) {
+			trace = new Trace(null);
+			trace.setThreadId(threadId);
+			trace.setMain(isMain);
+			traces.put(threadId, trace);
+			allSteps = new ArrayList<>();
+			threadSteps.put(threadId, allSteps);
+		}
+		int size = readVarInt();
+		List<TraceNode> steps = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int order = readVarInt();
+			TraceNode step = new TraceNode(locations.get(readVarInt()), null, order, trace, null);
+			step.setTimestamp(readLong());
+			int invocationParent = readVarInt();
+			if (invocationParent > 0 && invocationParent <= allSteps.size()) {
+				step.setInvocationParent(allSteps.get(invocationParent - 1));
+			}
+			List<List<VarValue>> vars = VarValueReader.decode(readByteArray());
+			step.setReadVariables(vars.get(0));
+			step.setWrittenVariables(vars.get(1));
+			allSteps.add(step);
+			steps.add(step);
+		}
+		listener.stepsReceived(trace, steps);
+	}
+
+	/**
+	 * adds the received steps to their trace and to the invocation children of their parent.
+	 */
+	public static void appendSteps(Trace trace, List<TraceNode> steps) {
+		for (TraceNode step : steps) {
+			trace.addTraceNode(step);
+			if (step.getInvocationParent() != null) {
+				step.getInvocationParent().addInvocationChild(step);
+			}
+		}
+	}
+}
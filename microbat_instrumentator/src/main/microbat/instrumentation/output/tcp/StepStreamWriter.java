@@ -0,0 +1,122 @@
+package microbat.instrumentation.output.tcp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.instrumentation.output.OutputWriter;
+import microbat.instrumentation.output.VarValueWriter;
+import microbat.model.BreakPoint;
+import microbat.model.value.VarValue;
+
+/**
+ * Writes the steps of a running program as a stream of records, read by {@link StepStreamReader}:
+ *
+ * <pre>
+ * {@link #RECORD_LOCATION} location id, class, method signature, line
+ * {@link #RECORD_STEPS} thread id, is main thread, number of steps,
+ *     then for each step: order, location id, timestamp, order of its invocation parent (-1 if none),
+ *     and its read and written variables in {@link VarValueWriter} encoding
+ * {@link #RECORD_END} program message
+ * </pre>
+ *
+ * A location is written once, before the first step executing it.
+ */
+public class StepStreamWriter extends OutputWriter {
+	public static final int RECORD_END = 0;
+	public static final int RECORD_LOCATION = 1;
+	public static final int RECORD_STEPS = 2;
+	private Map<String, Integer> locationIds = new HashMap<>();
+
+	public StepStreamWriter(OutputStream out) {
+		super(out);
+	}
+
+	public void writeSteps(long threadId, boolean isMain, List<StreamedStep> steps) throws IOException {
+		int[] locIds = new int[steps.size()];
+		for (int i = 0; i < locIds.length; i++) {
+			locIds[i] = getLocationId(steps.get(i).getLocation());
+		}
+		writeVarInt(RECORD_STEPS);
+		writeLong(threadId);
+		writeBoolean(isMain);
+		writeVarInt(steps.size());
+		for (int i = 0; i < locIds.length; i++) {
+			StreamedStep step = steps.get(i);
+			writeVarInt(step.getOrder());
+			writeVarInt(locIds[i]);
+			writeLong(step.getTimestamp());
+			writeVarInt(step.getInvocationParentOrder());
+			writeByteArr(step.getVariables());
+		}
+	}
+
+	private int getLocationId(BreakPoint location) throws IOException {
+		String key = location.getId();
+		Integer id = locationIds.get(key);
+		if (id == null) {
+			id = locationIds.size();
+			locationIds.put(key, id);
+			writeVarInt(RECORD_LOCATION);
+			writeVarInt(id);
+			writeString(location.getClassCanonicalName());
+			writeString(location.getMethodSign());
+			writeVarInt(location.getLineNumber());
+		}
+		return id;
+	}
+
+	public void writeEnd(String programMsg) throws IOException {
+		writeVarInt(RECORD_END);
+		writeString(programMsg);
+	}
+
+	/**
+	 * a completed step, with the variables it had when the next step of its thread started. The variables are
+	 * encoded when the step is created, on the thread of the step, since the program keeps modifying the values
+	 * afterward.
+	 */
+	public static class StreamedStep {
+		private int order;
+		private BreakPoint location;
+		private long timestamp;
+		private int invocationParentOrder;
+		private byte[] variables;
+
+		public StreamedStep(int order, BreakPoint location, long timestamp, int invocationParentOrder,
+				Collection<VarValue> readVariables, Collection<VarValue> writtenVariables) throws IOException {
+			this.order = order;
+			this.location = location;
+			this.timestamp = timestamp;
+			this.invocationParentOrder = invocationParentOrder;
+			this.variables = VarValueWriter.encode(Arrays.asList(readVariables, writtenVariables));
+		}
+
+		public int getOrder() {
+			return order;
+		}
+
+		public BreakPoint getLocation() {
+			return location;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public int getInvocationParentOrder() {
+			return invocationParentOrder;
+		}
+
+		/**
+		 * the read and the written variables, see {@link VarValueWriter#encode(List)}.
+		 */
+		public byte[] getVariables() {
+			return variables;
+		}
+	}
+}
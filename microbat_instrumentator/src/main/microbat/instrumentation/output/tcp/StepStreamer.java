@@ -0,0 +1,189 @@
+package microbat.instrumentation.output.tcp;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import microbat.instrumentation.AgentLogger;
+import microbat.instrumentation.output.tcp.StepStreamWriter.StreamedStep;
+import microbat.instrumentation.runtime.ExecutionTracer;
+import microbat.model.trace.TraceNode;
+
+/**
+ * Sends the steps of the traced threads to the runner of the agent while the program is running, see
+ * {@link StepStreamWriter}.
+ * <p>
+ * Completed steps are put in a bounded queue which a daemon thread writes to the socket in batches. When the queue is
+ * full, the traced threads wait for the runner to read, so that the memory used by the stream does not grow with the
+ * trace. If the connection fails, the stream is closed and the steps are no longer sent, the trace is still stored
+ * like without a stream.
+ */
+public class StepStreamer {
+	private static final int BUFFER_STEPS = 4096;
+	private static final int BATCH_STEPS = 512;
+	private static final long CLOSE_TIMEOUT = 10000;
+
+	private BlockingQueue<Item> queue = new ArrayBlockingQueue<>(BUFFER_STEPS);
+	private volatile boolean closed = false;
+	private Socket socket;
+	private StepStreamWriter writer;
+	private Thread streamThread;
+
+	private StepStreamer(Socket socket) throws IOException {
+		this.socket = socket;
+		socket.setTcpNoDelay(true);
+		this.writer = new StepStreamWriter(new BufferedOutputStream(socket.getOutputStream()));
+	}
+
+	/**
+	 * connects to the runner listening at {@code tcpPort} and starts the stream.
+	 */
+	public static StepStreamer connect(int tcpPort) throws IOException {
+		StepStreamer streamer = new StepStreamer(new Socket("localhost", tcpPort));
+		streamer.streamThread = new Thread(streamer.new StreamTask(), "trace-step-streamer");
+		streamer.streamThread.setDaemon(true);
+		streamer.streamThread.start();
+		return streamer;
+	}
+
+	/**
+	 * to be called by the thread of the trace of {@code node} when the next step starts, waits if the queue is full.
+	 */
+	public void stepCompleted(long threadId, boolean isMain, TraceNode node) {
+		if (closed) {
+			return;
+		}
+		TraceNode invocationParent = node.getInvocationParent();
+		StreamedStep step;
+		try {
+			step = new StreamedStep(node.getOrder(), node.getBreakPoint(), node.getTimestamp(),
+					invocationParent == null ? -1 : invocationParent.getOrder(), node.getReadVariables(),
+					node.getWrittenVariables());
+		} catch (IOException | RuntimeException e) {
+			AgentLogger.info("Trace step stream is closed, cannot encode step " + node.getOrder() + ": " + e);
+			stop();
+			return;
+		}
+		put(new Item(threadId, isMain, step));
+	}
+
+	private void put(Item item) {
+		boolean interrupted = false;
+		while (!closed) {
+			try {
+				queue.put(item);
+				break;
+			} catch (InterruptedException e) {
+				/* the interruption belongs to the program */
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * sends the remaining steps and the program message, then closes the connection.
+	 */
+	public void close(String programMsg) {
+		put(new Item(programMsg));
+		try {
+			streamThread.join(CLOSE_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		stop();
+	}
+
+	private void stop() {
+		closed = true;
+		/* releases the threads waiting for the queue */
+		queue.clear();
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private class StreamTask implements Runnable {
+
+		@Override
+		public void run() {
+			/* the code of the jdk run by the stream is not part of the program */
+			ExecutionTracer.stopRecordingCurrendThread();
+			List<Item> batch = new ArrayList<>(BATCH_STEPS);
+			try {
+				while (!closed) {
+					batch.add(queue.take());
+					queue.drainTo(batch, BATCH_STEPS - 1);
+					if (write(batch)) {
+						break;
+					}
+					batch.clear();
+				}
+			} catch (InterruptedException e) {
+				// stopped
+			} catch (IOException | RuntimeException e) {
+				AgentLogger.info("Trace step stream is closed: " + e);
+			} finally {
+				/* the traced threads must never wait for a stream which is no longer read */
+				stop();
+			}
+		}
+
+		/**
+		 * writes the consecutive steps of the same thread as one record.
+		 *
+		 * @return whether the end of the stream is written.
+		 */
+		private boolean write(List<Item> batch) throws IOException {
+			int start = 0;
+			boolean end = false;
+			for (int i = 0; i <= batch.size(); i++) {
+				Item item = i < batch.size() ? batch.get(i) : null;
+				if (item != null && item.step != null && item.threadId == batch.get(start).threadId) {
+					continue;
+				}
+				if (start < i) {
+					List<StreamedStep> steps = new ArrayList<>(i - start);
+					for (Item stepItem : batch.subList(start, i)) {
+						steps.add(stepItem.step);
+					}
+					writer.writeSteps(batch.get(start).threadId, batch.get(start).isMain, steps);
+				}
+				start = i;
+				if (item != null && item.step == null) {
+					writer.writeEnd(item.programMsg);
+					end = true;
+					break;
+				}
+			}
+			writer.flush();
+			return end;
+		}
+	}
+
+	private static class Item {
+		private long threadId;
+		private boolean isMain;
+		private StreamedStep step;
+		private String programMsg;
+
+		public Item(long threadId, boolean isMain, StreamedStep step) {
+			this.threadId = threadId;
+			this.isMain = isMain;
+			this.step = step;
+		}
+
+		/* end of the stream */
+		public Item(String programMsg) {
+			this.programMsg = programMsg;
+		}
+	}
+}
@@ -22,8 +22,8 @@ public class PrecheckAgent extends Agent{
 	}
 	
 	public void startup0(long vmStartupTime, long agentPreStartup) {
-		GlobalFilterChecker.setup(agentParams.initAppClassPath(), agentParams.getIncludesExpression(),
-				agentParams.getExcludesExpression());
+		GlobalFilterChecker.setup(agentParams.initAppClassPath(), agentParams.getAppBinFolders(),
+				agentParams.getIncludesExpression(), agentParams.getExcludesExpression());
 		TraceMeasurement.setStepLimit(agentParams.getStepLimit());
 		SystemClassTransformer.transformThread(instrumentation);
 	}
@@ -12,6 +12,8 @@ import microbat.instrumentation.AgentLogger;
 import microbat.instrumentation.AgentParams;
 import microbat.instrumentation.filter.GlobalFilterChecker;
 import microbat.instrumentation.instr.AbstractTransformer;
+import microbat.instrumentation.instr.TransformedClassCache;
+import microbat.instrumentation.instr.TransformedClassCache.TransformedClass;
 
 public class PrecheckTransformer extends AbstractTransformer implements ClassFileTransformer {
 	private PrecheckInstrumenter instrumenter;
@@ -37,7 +39,7 @@ public class PrecheckTransformer extends AbstractTransformer implements ClassFil
 				if (!GlobalFilterChecker.isTransformable(classFName, path, false) || !GlobalFilterChecker.isAppClass(classFName)) {
 					return null;
 				}
-				byte[] data = instrumenter.instrument(classFName, classfileBuffer);
+				byte[] data = instrument(classFName, classfileBuffer);
 				return data;
 			}
 		} catch (Exception e) {
@@ -46,6 +48,30 @@ public class PrecheckTransformer extends AbstractTransformer implements ClassFil
 		return null;
 	}
 
+	/**
+	 * the methods exceeding the limit which are found while instrumenting a class are cached with it, so that they are
+	 * reported again when the instrumentation of the class is reused.
+	 */
+	private byte[] instrument(String classFName, byte[] classfileBuffer) throws Exception {
+		TransformedClassCache classCache = getClassCache();
+		if (classCache == null) {
+			return instrumenter.instrument(classFName, classfileBuffer);
+		}
+		String key = classCache.getKey(classFName, true, classfileBuffer);
+		TransformedClass transformedClass = classCache.get(key);
+		List<String> exceedingLimitMethods = instrumenter.getExceedLimitMethods();
+		if (transformedClass == null) {
+			int size = exceedingLimitMethods.size();
+			byte[] data = instrumenter.instrument(classFName, classfileBuffer);
+			transformedClass = new TransformedClass(data,
+					new ArrayList<>(exceedingLimitMethods.subList(size, exceedingLimitMethods.size())));
+			classCache.put(key, transformedClass);
+		} else {
+			exceedingLimitMethods.addAll(transformedClass.getExceedingLimitMethods());
+		}
+		return transformedClass.getData();
+	}
+
 	public List<String> getExceedingLimitMethods() {
 		return instrumenter.getExceedLimitMethods();
 	}
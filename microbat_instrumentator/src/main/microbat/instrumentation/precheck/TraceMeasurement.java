@@ -23,7 +23,7 @@ public class TraceMeasurement {
 			return;
 		}
 		if (trace.getStepTotal() > maxSteps) {
-			Agent._exitProgram("fail;Trace is over long!");
+			Agent.abortProgram("fail;Trace is over long!");
 		}
 		try {
 			ClassLocation lastStep = trace.getLastStep();
@@ -93,4 +93,15 @@ public class TraceMeasurement {
 	public static void shutdown() {
 		state = TracingState.SHUTDOWN;
 	}
+
+	/**
+	 * drops the measurements of the previous run of an agent worker.
+	 */
+	public static synchronized void reset() {
+		rtStores = new HashMap<>();
+		mainThreadId = -1;
+		stepLimit = Integer.MAX_VALUE;
+		maxSteps = stepLimit;
+		state = TracingState.INIT;
+	}
 }
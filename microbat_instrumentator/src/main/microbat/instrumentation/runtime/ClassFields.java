@@ -0,0 +1,123 @@
+package microbat.instrumentation.runtime;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import microbat.instrumentation.AgentLogger;
+import sav.common.core.utils.SignatureUtils;
+
+/**
+ * The fields of a class which are recorded in the value of its objects, see {@link HeuristicIgnoringFieldRule}. They
+ * are looked up, made accessible and described once per class, so that recording an object only reads its fields.
+ */
+public class ClassFields {
+	private static final ClassValue<ClassFields> classFields = new ClassValue<ClassFields>() {
+
+		@Override
+		protected ClassFields computeValue(Class<?> type) {
+			return new ClassFields(type);
+		}
+	};
+
+	private boolean needParsingFields;
+	private FieldInfo[] fields;
+
+	private ClassFields(Class<?> type) {
+		needParsingFields = HeuristicIgnoringFieldRule.isNeedParsingFields(type);
+		if (!needParsingFields) {
+			fields = new FieldInfo[0];
+			return;
+		}
+		boolean isCollectionOrHashMap = HeuristicIgnoringFieldRule.isCollectionClass(type)
+				|| HeuristicIgnoringFieldRule.isHashMapClass(type);
+		List<FieldInfo> fieldInfos = new ArrayList<>();
+		for (Field field : HeuristicIgnoringFieldRule.getValidFields(type, null)) {
+			try {
+				field.setAccessible(true);
+			} catch (RuntimeException e) {
+				/* e.g. a field of a jdk module which is not open */
+				AgentLogger.info(String.format("Field %s.%s is not recorded: %s", type.getName(), field.getName(),
+						e.getMessage()));
+				continue;
+			}
+			boolean isCollectionOrMapElement = isCollectionOrHashMap
+					&& HeuristicIgnoringFieldRule.isCollectionOrMapElement(type.getName(), field.getName());
+			fieldInfos.add(new FieldInfo(field, isCollectionOrMapElement));
+		}
+		fields = fieldInfos.toArray(new FieldInfo[fieldInfos.size()]);
+	}
+
+	public static ClassFields of(Class<?> type) {
+		return classFields.get(type);
+	}
+
+	public boolean isNeedParsingFields() {
+		return needParsingFields;
+	}
+
+	public FieldInfo[] getFields() {
+		return fields;
+	}
+
+	public static class FieldInfo {
+		private Field field;
+		private String name;
+		private String type;
+		private String declaringType;
+		private boolean isStatic;
+		private boolean isEnum;
+		private boolean isCollectionOrMapElement;
+
+		private FieldInfo(Field field, boolean isCollectionOrMapElement) {
+			this.field = field;
+			this.name = field.getName();
+			Class<?> fieldType = field.getType();
+			String fieldTypeStr = fieldType.getName();
+			if (fieldType.isArray()) {
+				fieldTypeStr = SignatureUtils.signatureToName(fieldTypeStr);
+			}
+			this.type = fieldTypeStr;
+			this.declaringType = field.getDeclaringClass().getName();
+			this.isStatic = Modifier.isStatic(field.getModifiers());
+			this.isEnum = fieldType.isEnum();
+			this.isCollectionOrMapElement = isCollectionOrMapElement;
+		}
+
+		public Object get(Object obj) throws IllegalAccessException {
+			return field.get(obj);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the name of the type of the field, arrays as in source code.
+		 */
+		public String getType() {
+			return type;
+		}
+
+		public String getDeclaringType() {
+			return declaringType;
+		}
+
+		public boolean isStatic() {
+			return isStatic;
+		}
+
+		public boolean isEnum() {
+			return isEnum;
+		}
+
+		/**
+		 * @return whether the field holds the elements of its collection or map, see
+		 *         {@link HeuristicIgnoringFieldRule#isCollectionOrMapElement(String, String)}.
+		 */
+		public boolean isCollectionOrMapElement() {
+			return isCollectionOrMapElement;
+		}
+	}
+}
@@ -17,6 +17,16 @@ public class EmptyExecutionTracer implements IExecutionTracer {
 		
 	}
 
+	@Override
+	public boolean _needMethodArguments() {
+		return false;
+	}
+
+	@Override
+	public void _enterMethod(Object[] params) {
+
+	}
+
 	@Override
 	public void _hitInvoke(Object invokeObj, String invokeTypeSign, String methodName, Object[] params,
 			String paramTypeSignsCode, String returnTypeSign, int line, String className, String methodSignature) {
@@ -45,12 +55,41 @@ public class EmptyExecutionTracer implements IExecutionTracer {
 
 	}
 
+	@Override
+	public void _hitLocation(int locationId, int numOfReadVars, int numOfWrittenVars) {
+
+	}
+
 	@Override
 	public void _writeField(Object refValue, Object fieldValue, String fieldName, String fieldTypeSign, int line,
 			String className, String methodSignature) {
 		
 	}
 
+	@Override
+	public void _writeField(Object refValue, int fieldValue, String fieldName, String fieldTypeSign, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeField(Object refValue, long fieldValue, String fieldName, String fieldTypeSign, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeField(Object refValue, float fieldValue, String fieldName, String fieldTypeSign, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeField(Object refValue, double fieldValue, String fieldName, String fieldTypeSign, int line,
+			String className, String methodSignature) {
+		
+	}
+
 	@Override
 	public void _writeStaticField(Object fieldValue, String refType, String fieldName, String fieldType, int line,
 			String className, String methodSignature) {
@@ -63,6 +102,30 @@ public class EmptyExecutionTracer implements IExecutionTracer {
 		
 	}
 
+	@Override
+	public void _readField(Object refValue, int fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readField(Object refValue, long fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readField(Object refValue, float fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readField(Object refValue, double fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		
+	}
+
 	@Override
 	public void _readStaticField(Object fieldValue, String refType, String fieldName, String fieldTypeSign, int line,
 			String className, String methodSignature) {
@@ -75,24 +138,120 @@ public class EmptyExecutionTracer implements IExecutionTracer {
 		
 	}
 
+	@Override
+	public void _writeLocalVar(int varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeLocalVar(long varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeLocalVar(float varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeLocalVar(double varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
 	@Override
 	public void _readLocalVar(Object varValue, String varName, String varType, int line, int bcLocalVarIdx,
 			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
 		
 	}
 
+	@Override
+	public void _readLocalVar(int varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readLocalVar(long varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readLocalVar(float varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readLocalVar(double varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
 	@Override
 	public void _readArrayElementVar(Object arrayRef, int index, Object eleValue, String elementType, int line,
 			String className, String methodSignature) {
 		
 	}
 
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, int eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, long eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, float eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, double eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
 	@Override
 	public void _writeArrayElementVar(Object arrayRef, int index, Object eleValue, String elementType, int line,
 			String className, String methodSignature) {
 		
 	}
 
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, int eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, long eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, float eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, double eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		
+	}
+
 	@Override
 	public boolean lock() {
 		return false;
@@ -109,6 +268,12 @@ public class EmptyExecutionTracer implements IExecutionTracer {
 		
 	}
 
+	@Override
+	public void _iincLocalVar(int varValue, int varValueAfter, String varName, String varType, int line,
+			int bcLocalVarIdx, int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		
+	}
+
 	@Override
 	public void _hitExeptionTarget(int line, String className, String methodSignature) {
 		
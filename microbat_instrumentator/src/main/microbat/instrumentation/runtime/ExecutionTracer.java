@@ -1,17 +1,13 @@
 package microbat.instrumentation.runtime;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.LocalVariable;
 import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.classfile.Method;
@@ -24,6 +20,9 @@ import microbat.instrumentation.Agent;
 import microbat.instrumentation.AgentConstants;
 import microbat.instrumentation.AgentLogger;
 import microbat.instrumentation.filter.GlobalFilterChecker;
+import microbat.instrumentation.output.tcp.StepStreamer;
+import microbat.instrumentation.runtime.ClassFields.FieldInfo;
+import microbat.instrumentation.worker.RunAbortedError;
 import microbat.model.BreakPoint;
 import microbat.model.trace.Trace;
 import microbat.model.trace.TraceNode;
@@ -36,6 +35,7 @@ import microbat.model.value.VarValue;
 import microbat.model.variable.ArrayElementVar;
 import microbat.model.variable.FieldVar;
 import microbat.model.variable.LocalVar;
+import microbat.model.variable.VarIdTable;
 import microbat.model.variable.Variable;
 import microbat.model.variable.VirtualVar;
 import microbat.util.PrimitiveUtils;
@@ -49,7 +49,7 @@ import sav.strategies.dto.AppJavaClassPath;
  *
  */
 public class ExecutionTracer implements IExecutionTracer, ITracer {
-	private static ExecutionTracerStore rtStore = new ExecutionTracerStore();
+	private static volatile ExecutionTracerStore rtStore = new ExecutionTracerStore();
 
 	public static AppJavaClassPath appJavaClassPath;
 	public static int variableLayer = 2;
@@ -57,9 +57,28 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 	public static int expectedSteps = Integer.MAX_VALUE;
 //	private static int tolerantExpectedSteps = expectedSteps;
 	public static boolean avoidProxyToString = false;
+	/* if positive, only variables of that many steps per trace are kept in heap, the rest is spilled to disk */
+	private static int spillResidentSteps = AgentConstants.UNSPECIFIED_INT_VALUE;
+	/* if set, the steps are sent to the runner of the agent as soon as they are completed */
+	private static StepStreamer stepStreamer;
+	/* if set, a trace reaching the step limit goes on with its lines only rather than aborting the program */
+	private static boolean linesOnlyOverStepLimit = false;
+	/* if set, an object read again unmodified shares the children of its previous value, see ObjectSnapshots */
+	private static boolean shareSnapshots = false;
 	private long threadId;
+	/* steps are recorded without their variables once the trace reached the step limit */
+	private boolean linesOnly = false;
+
+	/* the method entered without its arguments yet, see enterMethod */
+	private MethodEntry pendingMethodEntry;
 
 	private Trace trace;
+	/* the breakpoints of the steps of this trace, by their id in LocationRegistry */
+	private BreakPoint[] locations = new BreakPoint[0];
+	/* ids of the variables recorded by this tracer, see setVarID methods */
+	private VarIdTable varIds = new VarIdTable();
+	/* null if snapshots are not shared */
+	private ObjectSnapshots snapshots;
 
 	private MethodCallStack methodCallStack;
 	
@@ -75,6 +94,22 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		}
 	}
 
+	public static void setSpillResidentSteps(int spillResidentSteps) {
+		ExecutionTracer.spillResidentSteps = spillResidentSteps;
+	}
+
+	public static void setLinesOnlyOverStepLimit(boolean linesOnlyOverStepLimit) {
+		ExecutionTracer.linesOnlyOverStepLimit = linesOnlyOverStepLimit;
+	}
+
+	public static void setShareSnapshots(boolean shareSnapshots) {
+		ExecutionTracer.shareSnapshots = shareSnapshots;
+	}
+
+	public static void setStepStreamer(StepStreamer stepStreamer) {
+		ExecutionTracer.stepStreamer = stepStreamer;
+	}
+
 	public static void setStepLimit(int stepLimit) {
 		if (stepLimit != AgentConstants.UNSPECIFIED_INT_VALUE) {
 			ExecutionTracer.stepLimit = stepLimit;
@@ -86,6 +121,12 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate = new TrackingDelegate(threadId);
 		methodCallStack = new MethodCallStack();
 		trace = new Trace(appJavaClassPath);
+		if (spillResidentSteps > 0) {
+			trace.enableVariableSpill(spillResidentSteps, varIds);
+		}
+		if (shareSnapshots) {
+			snapshots = new ObjectSnapshots();
+		}
 	}
 
 	// private void buildDataRelation(TraceNode currentNode, VarValue value, String
@@ -136,7 +177,52 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 	// }
 
 	private VarValue appendVarValue(Object value, Variable var, VarValue parent) {
-		return appendVarValue(value, var, parent, variableLayer);
+		if (snapshots == null || parent != null || value == null || var.getVarIdx() == VarIdTable.NO_ID
+				|| PrimitiveUtils.isString(var.getType()) || PrimitiveUtils.isPrimitive(var.getType())) {
+			return appendVarValue(value, var, parent, variableLayer);
+		}
+		VarValue snapshot = snapshots.get(var.getVarIdx(), value);
+		if (snapshot != null) {
+			return shareSnapshot(snapshot, value, var);
+		}
+		VarValue varValue = null;
+		snapshots.startCapture();
+		try {
+			varValue = appendVarValue(value, var, null, variableLayer);
+		} finally {
+			snapshots.endCapture(var.getVarIdx(), value, varValue);
+		}
+		return varValue;
+	}
+
+	/**
+	 * a new value of the variable, as the captured value of the same object, which shares its children.
+	 */
+	private VarValue shareSnapshot(VarValue snapshot, Object value, Variable var) {
+		VarValue varValue;
+		if (snapshot instanceof ArrayValue) {
+			ArrayValue arrVal = new ArrayValue(false, true, var);
+			arrVal.setComponentType(((ArrayValue) snapshot).getComponentType());
+			arrVal.ensureChildrenSize(snapshot.getChildren().size());
+			varValue = arrVal;
+		} else {
+			var.setRtType(value.getClass().getName());
+			varValue = new ReferenceValue(false, TraceUtils.getUniqueId(value), true, var);
+		}
+		String stringValue = snapshot.getStringValue();
+		/* getStringValue() returns "null" for a null string value */
+		if ("null".equals(stringValue) && !snapshot.isDefinedToStringMethod()) {
+			stringValue = null;
+		}
+		varValue.setStringValue(stringValue);
+		/*
+		 * the children keep the captured value as their only parent, which has the same variable id, so that their
+		 * parents do not grow with every read of the object
+		 */
+		for (VarValue child : snapshot.getChildren()) {
+			varValue.addChild(child);
+		}
+		return varValue;
 	}
 
 	private VarValue appendVarValue(Object value, Variable var, VarValue parent, int retrieveLayer) {
@@ -161,13 +247,13 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			if (value == null) {
 				arrVal.setNull(true);
 			} else {
+				if (snapshots != null) {
+					snapshots.capture(value);
+				}
 				int length = Array.getLength(value);
 				arrVal.ensureChildrenSize(length);
 				for (int i = 0; i < length; i++) {
-					String parentSimpleID = Variable.truncateSimpleID(var.getVarID());
-					String arrayElementID = Variable.concanateArrayElementVarID(parentSimpleID, String.valueOf(i));
-					String varName = arrayElementID;
-					ArrayElementVar varElement = new ArrayElementVar(varName, arrVal.getComponentType(), arrayElementID);
+					Variable varElement = newArrayElementVar(var, i, arrVal.getComponentType());
 					Object elementValue = Array.get(value, i);
 					if (HeuristicIgnoringFieldRule.isHashMapTableType(arrVal.getComponentType())) {
 						appendVarValue(elementValue, varElement, arrVal, retrieveLayer + 1);
@@ -182,33 +268,29 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			// varValue.setStringValue(getStringValue(value, var.getType()));
 			varValue.setStringValue(getStringValue(value, null));
 			if (value != null) {
+				if (snapshots != null) {
+					snapshots.capture(value);
+				}
 				Class<?> objClass = value.getClass();
 				var.setRtType(objClass.getName());
-				boolean needParseFields = HeuristicIgnoringFieldRule.isNeedParsingFields(objClass);
-				boolean isCollectionOrHashMap = HeuristicIgnoringFieldRule.isCollectionClass(objClass)
-						|| HeuristicIgnoringFieldRule.isHashMapClass(objClass);
-				if (needParseFields) {
-					List<Field> validFields = HeuristicIgnoringFieldRule.getValidFields(objClass, value);
-					for (Field field : validFields) {
-						field.setAccessible(true);
+				ClassFields classFields = ClassFields.of(objClass);
+				if (classFields.isNeedParsingFields()) {
+					for (FieldInfo field : classFields.getFields()) {
 						try {
-							Object fieldValue = field.get(value);
-							Class<?> fieldType = field.getType();
-							String fieldTypeStr = fieldType.getName();
-							if (fieldType.isArray()) {
-								fieldTypeStr = SignatureUtils.signatureToName(fieldTypeStr);
-							}
-							if (fieldType.isEnum()) {
-								if (fieldTypeStr.equals(var.getType())) {
+							if (field.isEnum()) {
+								if (field.getType().equals(var.getType())) {
 									continue;
 								}
 							}
+							Object fieldValue = field.get(value);
+							if (field.isStatic() && snapshots != null) {
+								snapshots.captureStaticField();
+							}
 							if (fieldValue != null) {
-								FieldVar fieldVar = new FieldVar(Modifier.isStatic(field.getModifiers()), field.getName(), fieldTypeStr,
-										field.getDeclaringClass().getName());
-								fieldVar.setVarID(TraceUtils.getFieldVarId(var.getVarID(), field.getName(), fieldTypeStr, fieldValue));
-								if (isCollectionOrHashMap
-										&& HeuristicIgnoringFieldRule.isCollectionOrMapElement(var.getRuntimeType(), field.getName())) {
+								FieldVar fieldVar = new FieldVar(field.isStatic(), field.getName(), field.getType(),
+										field.getDeclaringType());
+								setFieldVarID(fieldVar, var, field.getName());
+								if (field.isCollectionOrMapElement()) {
 									appendVarValue(fieldValue, fieldVar, refVal, retrieveLayer + 1);
 								} else {
 									appendVarValue(fieldValue, fieldVar, refVal, retrieveLayer);
@@ -227,8 +309,79 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		return varValue;
 	}
 
-	private static Set<Class<?>> stringValueBlackList = new HashSet<>();
-	
+	/**
+	 * the id of an element of an array is derived from the interned id of the array if it has one, otherwise from
+	 * its varID without the order of its defining step.
+	 */
+	private Variable newArrayElementVar(Variable array, int index, String componentType) {
+		int arrayIdx = array.getVarIdx();
+		if (arrayIdx == VarIdTable.NO_ID) {
+			String parentSimpleID = Variable.truncateSimpleID(array.getVarID());
+			String arrayElementID = Variable.concanateArrayElementVarID(parentSimpleID, String.valueOf(index));
+			return new ArrayElementVar(arrayElementID, componentType, arrayElementID);
+		}
+		return newArrayElementVar(varIds.getArrayElementId(arrayIdx, index), componentType);
+	}
+
+	/**
+	 * the element is named by its interned id, see {@link ArrayElementVar#getName()}.
+	 */
+	private Variable newArrayElementVar(int idx, String componentType) {
+		ArrayElementVar var = new ArrayElementVar(null, componentType, null);
+		var.setVarID(varIds, idx);
+		return var;
+	}
+
+	private void setFieldVarID(Variable fieldVar, Variable parent, String fieldName) {
+		int parentIdx = parent.getVarIdx();
+		if (parentIdx == VarIdTable.NO_ID) {
+			fieldVar.setVarID(Variable.concanateFieldVarID(parent.getVarID(), fieldName));
+		} else {
+			setVarID(fieldVar, varIds.getFieldId(parentIdx, fieldName));
+		}
+	}
+
+	private void setVarID(Variable var, int idx) {
+		var.setVarID(varIds, idx);
+	}
+
+	/**
+	 * same as {@link TraceUtils#getObjectVarId(Object, String)} as alias id, but interned.
+	 */
+	private void setAliasVarID(Variable var, Object obj) {
+		var.setAliasVarID(varIds, getObjectVarIdx(obj));
+	}
+
+	private int getObjectVarIdx(Object obj) {
+		if (obj == null) {
+			return VarIdTable.NO_ID;
+		}
+		return varIds.getObjectId((int) TraceUtils.getUniqueId(obj));
+	}
+
+	private Variable newLocalVar(String className, String varName, String varType, int line, int varScopeStartLine,
+			int varScopeEndLine, int invocationLayer) {
+		Variable var = new LocalVar(varName, varType, className, line);
+		setVarID(var, varIds.getLocalVarId(className, varName, varScopeStartLine, varScopeEndLine, invocationLayer));
+		return var;
+	}
+
+	private Variable newObjectFieldVar(Object obj, String fieldName, String fieldType) {
+		String objType = obj.getClass().getName();
+		Variable var = new FieldVar(false, fieldName, fieldType, objType);
+		setVarID(var, varIds.getFieldId(getObjectVarIdx(obj), fieldName));
+		return var;
+	}
+
+	/**
+	 * the unknown variable holding an object or an array, used as parent of its fields or elements.
+	 */
+	private ReferenceValue newParentValue(Object obj) {
+		Variable parentVariable = new FieldVar(false, "unknown", obj.getClass().getName(), "unknown");
+		setVarID(parentVariable, getObjectVarIdx(obj));
+		return new ReferenceValue(false, false, parentVariable);
+	}
+
 	private String getStringValue(final Object obj, String type) {
 		try {
 			if (obj == null) {
@@ -243,7 +396,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			if (simpleType != null) {
 				if (simpleType.equals("char")) {
 					char[] charArray = (char[]) obj;
-					return String.valueOf(charArray);
+					return ToStringPolicy.valueOf(charArray);
 				}
 			}
 
@@ -264,18 +417,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 				return obj.getClass().getName();
 			}
 
-			if(stringValueBlackList.contains(obj.getClass())) {
-				return "$unknown (estimated as too cost to have its value)";
-			}
-			
-			long t1 = System.currentTimeMillis();
-			String value = String.valueOf(obj);// obj.toString();
-			long t2 = System.currentTimeMillis();
-			if(t2-t1 > 500) {
-				stringValueBlackList.add(obj.getClass());
-			}
-			
-			return value;
+			return ToStringPolicy.valueOf(obj);
 		} catch (Throwable t) {
 			return null;
 		}
@@ -297,67 +439,123 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 	 * Methods with prefix "_" are called in instrument code.
 	 * =================================================================
 	 */
+	/**
+	 * enters a method called by the instrumented code. If its arguments are to be recorded in the step invoking it,
+	 * the entry waits for them, see {@link #_needMethodArguments()}, so that they are only passed to a tracer which
+	 * records them. The arguments of an excluded method are not recorded, so they are never passed.
+	 */
 	public void enterMethod(String className, String methodSignature, int methodStartLine, int methodEndLine,
-			String paramTypeSignsCode, String paramNamesCode, Object[] params) {
+			String paramTypeSignsCode, String paramNamesCode) {
 		trackingDelegate.untrack();
+		if (pendingMethodEntry != null) {
+			/* a method called while the arguments of the pending one were passed */
+			completeMethodEntry(null);
+		}
 		TraceNode caller = trace.getLatestNode();
 		if (caller != null && caller.getMethodSign().contains("<clinit>")) {
 			caller = caller.getInvocationParent();
 		}
 
-		if (caller != null) {
-			int varScopeStart = methodStartLine;
-			int varScopeEnd = methodEndLine;
+		if (caller != null && !linesOnly && !paramTypeSignsCode.isEmpty()
+				&& !GlobalFilterChecker.isExclusive(className, methodSignature)) {
+			pendingMethodEntry = new MethodEntry(caller, className, methodSignature, methodStartLine, methodEndLine,
+					paramTypeSignsCode, paramNamesCode);
+		} else {
+			hitMethodStart(caller, className, methodSignature, methodStartLine);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public boolean _needMethodArguments() {
+		return pendingMethodEntry != null;
+	}
 
-			String[] parameterTypes = TraceUtils.parseArgTypesOrNames(paramTypeSignsCode);
-			String[] parameterNames = paramNamesCode.split(":");
-			if (parameterNames.length != 0) {
-				int adjust = adjustVariableStartScope(methodSignature, className);
-				varScopeStart = (adjust > 0) ? adjust : varScopeStart;
-			}
+	@Override
+	public void _enterMethod(Object[] params) {
+		trackingDelegate.untrack();
+		try {
+			completeMethodEntry(params);
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	/**
+	 * @param params
+	 *            the arguments of the pending method, null if they are not passed.
+	 */
+	private void completeMethodEntry(Object[] params) {
+		MethodEntry entry = pendingMethodEntry;
+		if (entry == null) {
+			return;
+		}
+		pendingMethodEntry = null;
+		if (params != null) {
+			recordMethodArguments(entry, params);
+		}
+		hitMethodStart(entry.caller, entry.className, entry.methodSignature, entry.methodStartLine);
+	}
 
-			for (int i = 0; i < parameterTypes.length; i++) {
-				String pType = parameterTypes[i];
-				String parameterType = SignatureUtils.signatureToName(pType);
-				String varName = parameterNames[i];
+	private void recordMethodArguments(MethodEntry entry, Object[] params) {
+		TraceNode caller = entry.caller;
+		int varScopeStart = entry.methodStartLine;
+		int varScopeEnd = entry.methodEndLine;
 
-				Variable var = new LocalVar(varName, parameterType, className, methodStartLine);
+		String[] parameterTypes = TraceUtils.parseArgTypesOrNames(entry.paramTypeSignsCode);
+		String[] parameterNames = entry.paramNamesCode.split(":");
+		if (parameterNames.length != 0) {
+			int adjust = adjustVariableStartScope(entry.methodSignature, entry.className);
+			varScopeStart = (adjust > 0) ? adjust : varScopeStart;
+		}
 
-				String varID = Variable.concanateLocalVarID(className, varName, varScopeStart, varScopeEnd,
-						caller.getInvocationLevel() + 1);
-				var.setVarID(varID);
-				if (!PrimitiveUtils.isPrimitive(pType)) {
-					String aliasID = TraceUtils.getObjectVarId(params[i], pType);
-					var.setAliasVarID(aliasID);
-				}
+		for (int i = 0; i < parameterTypes.length; i++) {
+			String pType = parameterTypes[i];
+			String parameterType = SignatureUtils.signatureToName(pType);
+			String varName = parameterNames[i];
 
-				VarValue value = appendVarValue(params[i], var, null);
-				if(value instanceof PrimitiveValue && !(value instanceof StringValue)) {
-					addRWriteValue(caller, value, true);					
-				}
+			Variable var = newLocalVar(entry.className, varName, parameterType, entry.methodStartLine, varScopeStart,
+					varScopeEnd, caller.getInvocationLevel() + 1);
+			if (!PrimitiveUtils.isPrimitive(pType)) {
+				setAliasVarID(var, params[i]);
+			}
+
+			VarValue value = appendVarValue(params[i], var, null);
+			if(value instanceof PrimitiveValue && !(value instanceof StringValue)) {
+				addRWriteValue(caller, value, true);
 			}
 		}
+	}
 
+	private void hitMethodStart(TraceNode caller, String className, String methodSignature, int methodStartLine) {
 		boolean exclusive = GlobalFilterChecker.isExclusive(className, methodSignature);
 		if (!exclusive) {
 			if (caller != null) {
 				methodCallStack.push(caller);
 			}
 			hitLine(methodStartLine, className, methodSignature);
-		} else {
-			trackingDelegate.track();
-			return;
 		}
-		trackingDelegate.track();
 	}
 
-	private static Map<String, Integer> adjustVarMap = new HashMap<>();
+	private static Map<String, Integer> adjustVarMap = new ConcurrentHashMap<>();
 
 	private int adjustVariableStartScope(String fullSign, String className) {
 		Integer value = adjustVarMap.get(fullSign);
 		if (value != null) {
 			return value;
 		}
+		/* method entries of different threads are no longer serialized by _getTracer */
+		synchronized (adjustVarMap) {
+			value = adjustVarMap.get(fullSign);
+			if (value != null) {
+				return value;
+			}
+			return parseVariableStartScope(fullSign, className);
+		}
+	}
+
+	private int parseVariableStartScope(String fullSign, String className) {
 		String shortSign = fullSign.substring(fullSign.indexOf("#") + 1, fullSign.length());
 		MethodFinderBySignature finder = new MethodFinderBySignature(shortSign);
 		ByteCodeParser.parse(className, finder, appJavaClassPath);
@@ -382,7 +580,6 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			}
 		}
 		adjustVarMap.put(fullSign, start);
-		Repository.clearCache();
 		return start;
 	}
 
@@ -395,6 +592,25 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.track();
 	}
 
+	/**
+	 * an object which may be modified, so that its captured values are not shared anymore, see
+	 * {@link ObjectSnapshots}. Called at the end of a callback, after the values it captures, since the object is
+	 * modified by the instruction following the callback.
+	 */
+	private static void objectModified(Object obj) {
+		if (shareSnapshots) {
+			ObjectSnapshots.modified(obj);
+		}
+	}
+
+	/* a method which is not traced may modify its receiver and its arguments, see objectModified() */
+	private static void methodInvoked(Object invokeObj, String invokeType, String methodSig, Object[] params) {
+		if (shareSnapshots && GlobalFilterChecker.isExclusive(invokeType, methodSig)) {
+			ObjectSnapshots.modified(invokeObj);
+			ObjectSnapshots.modified(params);
+		}
+	}
+
 	@Override
 	public void _hitInvoke(Object invokeObj, String invokeTypeSign, String methodSig, Object[] params,
 			String paramTypeSignsCode, String returnTypeSign, int line, String residingClassName,
@@ -408,14 +624,13 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 				initInvokingDetail(invokeObj, invokeTypeSign, methodSig, params, paramTypeSignsCode, residingClassName,
 						latestNode);
 
-				if (methodSig.contains("clone()")) {
+				if (!linesOnly && methodSig.contains("clone()")) {
 
 					String type = SignatureUtils.signatureToName(invokeTypeSign);
 					Variable var = new LocalVar("$tmp", type, null, -1);
 					VarValue value = new ReferenceValue(false, false, var);
 
-					String varID = TraceUtils.getObjectVarId(invokeObj, invokeTypeSign);
-					value.setVarID(varID);
+					setVarID(var, getObjectVarIdx(invokeObj));
 
 					appendVarValue(invokeObj, var, value, 2);
 
@@ -429,6 +644,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			handleException(t);
 		}
 
+		methodInvoked(invokeObj, invokeTypeSign, methodSig, params);
 		trackingDelegate.track();
 	}
 
@@ -446,10 +662,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 	}
 
 	public void buildReadRelationForArrayCopy(Object array, int startPosition, int length, int line) {
-		Variable sourceParentVariable = new FieldVar(false, "unknown", array.getClass().getName(), "unknown");
-		String sourceParentVarId = TraceUtils.getObjectVarId(array, array.getClass().getName());
-		sourceParentVariable.setVarID(sourceParentVarId);
-		ReferenceValue sourceParentValue = new ReferenceValue(false, false, sourceParentVariable);
+		ReferenceValue sourceParentValue = newParentValue(array);
 		for (int i = 0; i < length; i++) {
 			int k = startPosition + i;
 			Object elementValue = Array.get(array, k);
@@ -465,10 +678,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 
 	public void buildWriteRelationForArrayCopy(Object targetArray, int startPosition, Object sourceArray, int srcStartPos,
 			int length, int line) {
-		Variable targetParentVariable = new FieldVar(false, "unknown", targetArray.getClass().getName(), "unknown");
-		String targetParentVarId = TraceUtils.getObjectVarId(targetArray, targetArray.getClass().getName());
-		targetParentVariable.setVarID(targetParentVarId);
-		ReferenceValue targetParentValue = new ReferenceValue(false, false, targetParentVariable);
+		ReferenceValue targetParentValue = newParentValue(targetArray);
 		for (int i = 0; i < length; i++) {
 			int k = srcStartPos + i;
 			Object elementValue = Array.get(sourceArray, k);
@@ -490,7 +700,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		try {
 			hitLine(line, className, residingMethodSignature);
 
-			if (methodSig.equals("java.lang.System#arraycopy(Ljava/lang/Object;ILjava/lang/Object;II)V")) {
+			if (!linesOnly && methodSig.equals("java.lang.System#arraycopy(Ljava/lang/Object;ILjava/lang/Object;II)V")) {
 				Object sourceArray = params[0];
 				int sourcePosition = (Integer) params[1];
 				Object targetArray = params[2];
@@ -509,6 +719,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		} catch (Throwable t) {
 			handleException(t);
 		}
+		methodInvoked(null, invokeTypeSign, methodSig, params);
 		trackingDelegate.track();
 	}
 
@@ -529,6 +740,11 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 	@Override
 	public void _afterInvoke(Object returnedValue, Object invokeObj, String invokeMethodSig, int line,
 			String residingClassName, String residingMethodSignature, boolean needRevisiting) {
+		if (shareSnapshots && invokeObj != null) {
+			/* modified again if the method called back traced code which read it */
+			methodInvoked(invokeObj, invokeMethodSig.substring(0, invokeMethodSig.indexOf("#")), invokeMethodSig,
+					null);
+		}
 		trackingDelegate.untrack();
 		try {
 			boolean exclusive = GlobalFilterChecker.isExclusive(residingClassName, residingMethodSignature);
@@ -545,14 +761,13 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 					// }
 				}
 
-				if (returnedValue != null && invokeMethodSig.contains("clone()")) {
+				if (!linesOnly && returnedValue != null && invokeMethodSig.contains("clone()")) {
 					String returnTypeSign = returnedValue.getClass().getName();
 					String type = SignatureUtils.signatureToName(returnTypeSign);
 					Variable var = new LocalVar("$tmp", type, null, -1);
 					VarValue value = new ReferenceValue(false, false, var);
 
-					String varID = TraceUtils.getObjectVarId(returnedValue, returnTypeSign);
-					value.setVarID(varID);
+					setVarID(var, getObjectVarIdx(returnedValue));
 
 					appendVarValue(returnedValue, var, value, 2);
 
@@ -604,14 +819,17 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.untrack();
 		try {
 			hitLine(line, className, methodSignature);
+			if (linesOnly) {
+				trackingDelegate.track();
+				return;
+			}
 			String returnGeneralType = SignatureUtils.signatureToName(returnGeneralTypeSign);
 			Variable returnVar = new VirtualVar(methodSignature, returnGeneralType);
 
 			String varID = VirtualVar.VIRTUAL_PREFIX + methodSignature;
 			returnVar.setVarID(varID);
 
-			String aliasID = TraceUtils.getObjectVarId(returnObj, returnGeneralTypeSign);
-			returnVar.setAliasVarID(aliasID);
+			setAliasVarID(returnVar, returnObj);
 			VarValue returnVal = appendVarValue(returnObj, returnVar, null);
 			if (returnVal != null) {
 				TraceNode latestNode = trace.getLatestNode();
@@ -632,6 +850,10 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 	}
 
 	private void handleException(Throwable t) {
+		if (t instanceof RunAbortedError) {
+			/* the run of a worker is aborted, see Agent#abortProgram */
+			throw (RunAbortedError) t;
+		}
 		if (t.getMessage() != null) {
 			AgentLogger.info("ExecutionTracer error: " + t.getMessage());
 		}
@@ -653,6 +875,22 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 
 	@Override
 	public void _hitLine(int line, String className, String methodSignature, int numOfReadVars, int numOfWrittenVars, String bytecode) {
+		hitLine(line, className, methodSignature, numOfReadVars, numOfWrittenVars, bytecode, -1);
+	}
+
+	@Override
+	public void _hitLocation(int locationId, int numOfReadVars, int numOfWrittenVars) {
+		LocationRegistry.Location location = LocationRegistry.getLocation(locationId);
+		hitLine(location.getLine(), location.getClassName(), location.getMethodSignature(), numOfReadVars,
+				numOfWrittenVars, location.getBytecode(), locationId);
+	}
+
+	/**
+	 * @param locationId
+	 *            id of the line in {@link LocationRegistry}, or -1 if it is not registered.
+	 */
+	private void hitLine(int line, String className, String methodSignature, int numOfReadVars, int numOfWrittenVars,
+			String bytecode, int locationId) {
 		boolean isLocked = trackingDelegate.isUntrack();
 		trackingDelegate.untrack();
 		try {
@@ -669,19 +907,28 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			}
 
 			int order = trace.size() + 1;
-			if (order > stepLimit) {
-				shutdown();
-				Agent._exitProgram("fail;Trace is over long!");
+			if (order > stepLimit && !linesOnly) {
+				if (!linesOnlyOverStepLimit) {
+					shutdown();
+					Agent.abortProgram("fail;Trace is over long!");
+				}
+				AgentLogger.info(String.format("Trace of thread %d is over long, its variables are no longer recorded.",
+						threadId));
+				linesOnly = true;
 			}
 //			if (order > tolerantExpectedSteps) {
 //				shutdown();
 //				Agent._exitProgram("fail;Trace size exceeds expected_steps!");
 //			}
 
-			BreakPoint bkp = new BreakPoint(className, methodSignature, line);
+			BreakPoint bkp = getBreakPoint(line, className, methodSignature, locationId);
 			long timestamp = System.currentTimeMillis();
 			TraceNode currentNode = new TraceNode(bkp, null, order, trace, numOfReadVars, numOfWrittenVars, timestamp, bytecode);
 
+			if (stepStreamer != null && latestNode != null) {
+				/* the variables of a step are collected until the next step starts */
+				stepStreamer.stepCompleted(threadId, threadId == rtStore.getMainThreadId(), latestNode);
+			}
 			trace.addTraceNode(currentNode);
 			AgentLogger.printProgress(order);
 			if (!methodCallStack.isEmpty()) {
@@ -696,6 +943,25 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.track(isLocked);
 	}
 
+	/**
+	 * the steps of a registered location share its breakpoint.
+	 */
+	private BreakPoint getBreakPoint(int line, String className, String methodSignature, int locationId) {
+		if (locationId < 0) {
+			return new BreakPoint(className, methodSignature, line);
+		}
+		if (locationId >= locations.length) {
+			locations = Arrays.copyOf(locations, Math.max(locationId + 1, locations.length * 2));
+		}
+		BreakPoint bkp = locations[locationId];
+		if (bkp == null) {
+			LocationRegistry.Location location = LocationRegistry.getLocation(locationId);
+			bkp = new BreakPoint(className, location.getDeclaringCompilationUnitName(), methodSignature, line);
+			locations[locationId] = bkp;
+		}
+		return bkp;
+	}
+
 	@Override
 	public void _hitExeptionTarget(int line, String className, String methodSignature) {
 		trackingDelegate.untrack();
@@ -735,45 +1001,114 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			String className, String methodSignature) {
 		trackingDelegate.untrack();
 		try {
-			hitLine(line, className, methodSignature);
-			boolean exclusive = GlobalFilterChecker.isExclusive(className, methodSignature);
-			TraceNode latestNode = trace.getLatestNode();
-			if (exclusive) {
-				if (latestNode != null && latestNode.getInvokingDetail() != null) {
-					InvokingDetail invokingDetail = latestNode.getInvokingDetail();
-					boolean relevant = invokingDetail.updateRelevantVar(refValue, fieldValue, fieldType);
-					if (!relevant) {
-						trackingDelegate.track();
-						return;
-					}
-				} else {
-					trackingDelegate.track();
-					return;
-				}
+			if (!hitObjectVar(refValue, fieldValue, fieldType, line, className, methodSignature)) {
+				objectModified(refValue);
+				trackingDelegate.track();
+				return;
 			}
-			String parentVarId = TraceUtils.getObjectVarId(refValue, refValue.getClass().getName());
-			String fieldVarId = TraceUtils.getFieldVarId(parentVarId, fieldName, fieldType, fieldValue);
-			Variable var = new FieldVar(false, fieldName, fieldType, refValue.getClass().getName());
-			var.setVarID(fieldVarId);
+			Variable var = newObjectFieldVar(refValue, fieldName, fieldType);
 			if (!PrimitiveUtils.isPrimitive(fieldType)) {
-				String aliasID = TraceUtils.getObjectVarId(fieldValue, fieldType);
-				var.setAliasVarID(aliasID);
+				setAliasVarID(var, fieldValue);
 			}
 
 			VarValue value = appendVarValue(fieldValue, var, null);
+			value.addParent(newParentValue(refValue));
+
+			addRWriteValue(trace.getLatestNode(), value, true);
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(refValue);
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _writeField(Object refValue, int fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(intValueToString(fieldValue, fieldType), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(refValue);
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _writeField(Object refValue, long fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(String.valueOf(fieldValue), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(refValue);
+		trackingDelegate.track();
+	}
 
-			Variable parentVariable = new FieldVar(false, "unknown", refValue.getClass().getName(), "unknown");
-			parentVariable.setVarID(parentVarId);
-			ReferenceValue parentValue = new ReferenceValue(false, false, parentVariable);
-			value.addParent(parentValue);
+	@Override
+	public void _writeField(Object refValue, float fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(String.valueOf(fieldValue), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(refValue);
+		trackingDelegate.track();
+	}
 
-			addRWriteValue(latestNode, value, true);
+	@Override
+	public void _writeField(Object refValue, double fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(String.valueOf(fieldValue), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						true);
+			}
 		} catch (Throwable t) {
 			handleException(t);
 		}
+		objectModified(refValue);
 		trackingDelegate.track();
 	}
 
+	/**
+	 * @return whether the field or the element of {@code obj} accessed at the line is recorded, the line is hit if
+	 *         so. In an excluded method, only the fields and elements of the objects relevant to the invocation of
+	 *         the method are recorded.
+	 */
+	private boolean hitObjectVar(Object obj, Object value, String type, int line, String className,
+			String methodSignature) {
+		boolean exclusive = GlobalFilterChecker.isExclusive(className, methodSignature);
+		if (exclusive) {
+			TraceNode latestNode = trace.getLatestNode();
+			boolean relevant = false;
+			if (latestNode != null && latestNode.getInvokingDetail() != null) {
+				InvokingDetail invokingDetail = latestNode.getInvokingDetail();
+				relevant = invokingDetail.updateRelevantVar(obj, value, type);
+			}
+			if (!relevant) {
+				return false;
+			}
+		}
+		hitLine(line, className, methodSignature);
+		return !linesOnly;
+	}
+
 	private void addRWriteValue(TraceNode currentNode, List<VarValue> value, boolean isWrittenVar) {
 		ArrayList<VarValue> values;
 		if (isWrittenVar) {
@@ -816,6 +1151,9 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 	@Override
 	public void _writeStaticField(Object fieldValue, String refType, String fieldName, String fieldType, int line,
 			String className, String methodSignature) {
+		if (shareSnapshots) {
+			ObjectSnapshots.staticFieldModified();
+		}
 		trackingDelegate.untrack();
 		try {
 			// boolean exclusive = FilterChecker.isExclusive(className, methodSignature);
@@ -823,11 +1161,14 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			// return;
 			// }
 			hitLine(line, className, methodSignature);
+			if (linesOnly) {
+				trackingDelegate.track();
+				return;
+			}
 			Variable var = new FieldVar(false, fieldName, fieldType, refType);
-			var.setVarID(Variable.concanateFieldVarID(refType, fieldName));
+			setVarID(var, varIds.getStaticFieldId(refType, fieldName));
 			if (!PrimitiveUtils.isPrimitive(fieldType)) {
-				String aliasVarID = TraceUtils.getObjectVarId(fieldValue, fieldType);
-				var.setAliasVarID(aliasVarID);
+				setAliasVarID(var, fieldValue);
 			}
 			VarValue value = appendVarValue(fieldValue, var, null);
 			addRWriteValue(trace.getLatestNode(), value, true);
@@ -848,37 +1189,19 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			String className, String methodSignature) {
 		trackingDelegate.untrack();
 		try {
-			boolean exclusive = GlobalFilterChecker.isExclusive(className, methodSignature);
-			if (exclusive) {
-				TraceNode latestNode = trace.getLatestNode();
-				boolean relevant = false;
-				if (latestNode != null && latestNode.getInvokingDetail() != null) {
-					InvokingDetail invokingDetail = latestNode.getInvokingDetail();
-					relevant = invokingDetail.updateRelevantVar(refValue, fieldValue, fieldType);
-				}
-				if (!relevant) {
-					trackingDelegate.track();
-					return;
-				}
+			if (!hitObjectVar(refValue, fieldValue, fieldType, line, className, methodSignature)) {
+				trackingDelegate.track();
+				return;
 			}
-			hitLine(line, className, methodSignature);
-			String parentVarId = TraceUtils.getObjectVarId(refValue, refValue.getClass().getName());
-			String fieldVarId = TraceUtils.getFieldVarId(parentVarId, fieldName, fieldType, fieldValue);
 			// invokeTrack.updateRelevant(parentVarId, fieldVarId);
 			// if (exclusive) {
 			// return;
 			// }
-			Variable var = new FieldVar(false, fieldName, fieldType, refValue.getClass().getName());
-			var.setVarID(fieldVarId);
-			String aliasID = TraceUtils.getObjectVarId(fieldValue, fieldType);
-			var.setAliasVarID(aliasID);
+			Variable var = newObjectFieldVar(refValue, fieldName, fieldType);
+			setAliasVarID(var, fieldValue);
 
 			VarValue value = appendVarValue(fieldValue, var, null);
-
-			Variable parentVariable = new FieldVar(false, "unknown", refValue.getClass().getName(), "unknown");
-			parentVariable.setVarID(parentVarId);
-			ReferenceValue parentValue = new ReferenceValue(false, false, parentVariable);
-			value.addParent(parentValue);
+			value.addParent(newParentValue(refValue));
 
 			addRWriteValue(trace.getLatestNode(), value, false);
 			addHeuristicVarChildren(trace.getLatestNode(), value, false);
@@ -888,6 +1211,66 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.track();
 	}
 
+	@Override
+	public void _readField(Object refValue, int fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(intValueToString(fieldValue, fieldType), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readField(Object refValue, long fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(String.valueOf(fieldValue), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readField(Object refValue, float fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(String.valueOf(fieldValue), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readField(Object refValue, double fieldValue, String fieldName, String fieldType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(refValue, null, fieldType, line, className, methodSignature)) {
+				addPrimitiveValue(String.valueOf(fieldValue), newObjectFieldVar(refValue, fieldName, fieldType), refValue,
+						false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
 	@Override
 	public void _readStaticField(Object fieldValue, String refType, String fieldName, String fieldType, int line,
 			String className, String methodSignature) {
@@ -899,11 +1282,13 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			// return;
 			// }
 			hitLine(line, className, methodSignature);
+			if (linesOnly) {
+				trackingDelegate.track();
+				return;
+			}
 			Variable var = new FieldVar(true, fieldName, fieldType, refType);
-			var.setVarID(Variable.concanateFieldVarID(refType, fieldName));
-
-			String aliasID = TraceUtils.getObjectVarId(fieldValue, fieldType);
-			var.setAliasVarID(aliasID);
+			setVarID(var, varIds.getStaticFieldId(refType, fieldName));
+			setAliasVarID(var, fieldValue);
 
 			VarValue value = appendVarValue(fieldValue, var, null);
 			addRWriteValue(trace.getLatestNode(), value, false);
@@ -929,16 +1314,14 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			// locker.unLock();
 			// return;
 			// }
-			hitLine(line, className, methodSignature);
-			Variable var = new LocalVar(varName, varType, className, line);
-
-			TraceNode latestNode = trace.getLatestNode();
-			String varID = Variable.concanateLocalVarID(className, varName, varScopeStartLine, varScopeEndLine,
-					latestNode.getInvocationLevel());
-			var.setVarID(varID);
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var == null) {
+				trackingDelegate.track();
+				return;
+			}
 			if (!PrimitiveUtils.isPrimitive(varType)) {
-				String aliasID = TraceUtils.getObjectVarId(varValue, varType);
-				var.setAliasVarID(aliasID);
+				setAliasVarID(var, varValue);
 			}
 
 			VarValue value = appendVarValue(varValue, var, null);
@@ -949,6 +1332,84 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.track();
 	}
 
+	@Override
+	public void _writeLocalVar(int varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _writeLocalVar(long varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _writeLocalVar(float varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _writeLocalVar(double varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	/**
+	 * @return the local variable accessed at the line, or null if its value is not recorded.
+	 */
+	private Variable hitLocalVar(String varName, String varType, int line, int varScopeStartLine,
+			int varScopeEndLine, String className, String methodSignature) {
+		hitLine(line, className, methodSignature);
+		if (linesOnly) {
+			return null;
+		}
+		TraceNode latestNode = trace.getLatestNode();
+		return newLocalVar(className, varName, varType, line, varScopeStartLine, varScopeEndLine,
+				latestNode.getInvocationLevel());
+	}
+
 	/**
 	 * Instrument for: Application Classes only.
 	 */
@@ -962,17 +1423,13 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			// locker.unLock();
 			// return;
 			// }
-			hitLine(line, className, methodSignature);
-			TraceNode latestNode = trace.getLatestNode();
-			Variable var = new LocalVar(varName, varType, className, line);
-
-			String varID = Variable.concanateLocalVarID(className, varName, varScopeStartLine, varScopeEndLine,
-					latestNode.getInvocationLevel());
-			// String varID = TraceUtils.getLocalVarId(className, varScopeStartLine,
-			// varScopeEndLine, varName, varType, varValue);
-			var.setVarID(varID);
-			String aliasVarID = TraceUtils.getObjectVarId(varValue, varType);
-			var.setAliasVarID(aliasVarID);
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var == null) {
+				trackingDelegate.track();
+				return;
+			}
+			setAliasVarID(var, varValue);
 
 			VarValue value = appendVarValue(varValue, var, null);
 			addRWriteValue(trace.getLatestNode(), value, false);
@@ -1017,6 +1474,70 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.track();
 	}
 
+	@Override
+	public void _readLocalVar(int varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readLocalVar(long varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readLocalVar(float varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readLocalVar(double varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var, null, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
 	private boolean isParameter(int varScopeStartLine, int varScopeEndLine, String className) {
 		BreakPoint point = trace.getLatestNode().getBreakPoint();
 		String fullSign = point.getMethodSign();
@@ -1054,15 +1575,12 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			// locker.unLock();
 			// return;
 			// }
-			hitLine(line, className, methodSignature);
-
-			TraceNode latestNode = trace.getLatestNode();
-			Variable var = new LocalVar(varName, varType, className, line);
-			String varID = Variable.concanateLocalVarID(className, varName, varScopeStartLine, varScopeEndLine,
-					latestNode.getInvocationLevel());
-			// String varID = TraceUtils.getLocalVarId(className, varScopeStartLine,
-			// varScopeEndLine, varName, varType, varValue);
-			var.setVarID(varID);
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var == null) {
+				trackingDelegate.track();
+				return;
+			}
 
 			Variable varBefore = var.clone();
 			VarValue value = appendVarValue(varValue, varBefore, null);
@@ -1077,6 +1595,23 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.track();
 	}
 
+	@Override
+	public void _iincLocalVar(int varValue, int varValueAfter, String varName, String varType, int line,
+			int bcLocalVarIdx, int varScopeStartLine, int varScopeEndLine, String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			Variable var = hitLocalVar(varName, varType, line, varScopeStartLine, varScopeEndLine, className,
+					methodSignature);
+			if (var != null) {
+				addPrimitiveValue(String.valueOf(varValue), var.clone(), null, false);
+				addPrimitiveValue(String.valueOf(varValueAfter), var.clone(), null, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
 	/**
 	 * @param arrayRef
 	 * @param index
@@ -1089,27 +1624,12 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			String className, String methodSignature) {
 		trackingDelegate.untrack();
 		try {
-			boolean exclusive = GlobalFilterChecker.isExclusive(className, methodSignature);
-			if (exclusive) {
-				TraceNode latestNode = trace.getLatestNode();
-				boolean relevant = false;
-				if (latestNode != null && latestNode.getInvokingDetail() != null) {
-					InvokingDetail invokingDetail = latestNode.getInvokingDetail();
-					relevant = invokingDetail.updateRelevantVar(arrayRef, eleValue, elementType);
-				}
-				if (!relevant) {
-					trackingDelegate.track();
-					return;
-				}
+			if (!hitObjectVar(arrayRef, eleValue, elementType, line, className, methodSignature)) {
+				trackingDelegate.track();
+				return;
 			}
-			hitLine(line, className, methodSignature);
 			VarValue value = addArrayElementVarValue(arrayRef, index, eleValue, elementType, line);
-
-			Variable parentVariable = new FieldVar(false, "unknown", arrayRef.getClass().getName(), "unknown");
-			String parentVarId = TraceUtils.getObjectVarId(arrayRef, arrayRef.getClass().getName());
-			parentVariable.setVarID(parentVarId);
-			ReferenceValue parentValue = new ReferenceValue(false, false, parentVariable);
-			value.addParent(parentValue);
+			value.addParent(newParentValue(arrayRef));
 
 			addRWriteValue(trace.getLatestNode(), value, false);
 			addHeuristicVarChildren(trace.getLatestNode(), value, false);
@@ -1120,6 +1640,70 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		trackingDelegate.track();
 	}
 
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, int eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(intValueToString(eleValue, elementType), var, arrayRef, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, long eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(String.valueOf(eleValue), var, arrayRef, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, float eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(String.valueOf(eleValue), var, arrayRef, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _readArrayElementVar(Object arrayRef, int index, double eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(String.valueOf(eleValue), var, arrayRef, false);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		trackingDelegate.track();
+	}
+
 	private void addHeuristicVarChildren(TraceNode latestNode, VarValue value, boolean isWritten) {
 		// if (ArrayList.class.getName().equals(value.getRuntimeType())) {
 		// for (VarValue child : value.getChildren()) {
@@ -1182,64 +1766,150 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			String className, String methodSignature) {
 		trackingDelegate.untrack();
 		try {
-			boolean exclusive = GlobalFilterChecker.isExclusive(className, methodSignature);
-			if (exclusive) {
-				TraceNode latestNode = trace.getLatestNode();
-				boolean relevant = false;
-				if (latestNode != null && latestNode.getInvokingDetail() != null) {
-					InvokingDetail invokingDetail = latestNode.getInvokingDetail();
-					relevant = invokingDetail.updateRelevantVar(arrayRef, eleValue, elementType);
-				}
-				if (!relevant) {
-					trackingDelegate.track();
-					return;
-				}
+			if (!hitObjectVar(arrayRef, eleValue, elementType, line, className, methodSignature)) {
+				objectModified(arrayRef);
+				trackingDelegate.track();
+				return;
 			}
-			hitLine(line, className, methodSignature);
 			VarValue value = addArrayElementVarValue(arrayRef, index, eleValue, elementType, line);
-
-			Variable parentVariable = new FieldVar(false, "unknown", arrayRef.getClass().getName(), "unknown");
-			String parentVarId = TraceUtils.getObjectVarId(arrayRef, arrayRef.getClass().getName());
-			parentVariable.setVarID(parentVarId);
-			ReferenceValue parentValue = new ReferenceValue(false, false, parentVariable);
-			value.addParent(parentValue);
+			value.addParent(newParentValue(arrayRef));
 
 			addRWriteValue(trace.getLatestNode(), value, true);
 		} catch (Throwable t) {
 			handleException(t);
 		}
+		objectModified(arrayRef);
 		trackingDelegate.track();
 	}
 
-	private VarValue addArrayElementVarValue(Object arrayRef, int index, Object eleValue, String elementType, int line) {
-		String id = new StringBuilder(TraceUtils.getObjectVarId(arrayRef, elementType + "[]")).append("[").append(index)
-				.append("]").toString();
-		String name = id;
-		Variable var = new ArrayElementVar(name, elementType, id);
-		var.setVarID(id);
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, int eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(intValueToString(eleValue, elementType), var, arrayRef, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(arrayRef);
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, long eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(String.valueOf(eleValue), var, arrayRef, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(arrayRef);
+		trackingDelegate.track();
+	}
 
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, float eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(String.valueOf(eleValue), var, arrayRef, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(arrayRef);
+		trackingDelegate.track();
+	}
+
+	@Override
+	public void _writeArrayElementVar(Object arrayRef, int index, double eleValue, String elementType, int line,
+			String className, String methodSignature) {
+		trackingDelegate.untrack();
+		try {
+			if (hitObjectVar(arrayRef, null, elementType, line, className, methodSignature)) {
+				Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index),
+						elementType);
+				addPrimitiveValue(String.valueOf(eleValue), var, arrayRef, true);
+			}
+		} catch (Throwable t) {
+			handleException(t);
+		}
+		objectModified(arrayRef);
+		trackingDelegate.track();
+	}
+
+	private VarValue addArrayElementVarValue(Object arrayRef, int index, Object eleValue, String elementType, int line) {
+		Variable var = newArrayElementVar(varIds.getArrayElementId(getObjectVarIdx(arrayRef), index), elementType);
 		if (!PrimitiveUtils.isPrimitive(elementType)) {
-			String aliasID = TraceUtils.getObjectVarId(eleValue, elementType);
-			var.setAliasVarID(aliasID);
+			setAliasVarID(var, eleValue);
 		}
 
 		VarValue value = appendVarValue(eleValue, var, null);
 		return value;
 	}
 
+	/**
+	 * records a primitive value passed to the tracer without boxing, as
+	 * {@link #appendVarValue(Object, Variable, VarValue)} records its boxed value.
+	 * 
+	 * @param parentObj
+	 *            the object or the array holding the variable, null for a local variable.
+	 */
+	private void addPrimitiveValue(String stringValue, Variable var, Object parentObj, boolean isWrittenVar) {
+		if (variableLayer <= 0) {
+			return;
+		}
+		VarValue value = new PrimitiveValue(stringValue, true, var);
+		if (parentObj != null) {
+			value.addParent(newParentValue(parentObj));
+		}
+		addRWriteValue(trace.getLatestNode(), value, isWrittenVar);
+	}
+
+	/**
+	 * @return the value of a field or an array element of type int, boolean, byte, char or short, passed as int, as
+	 *         the string of its boxed value.
+	 */
+	private static String intValueToString(int value, String type) {
+		if ("boolean".equals(type)) {
+			return String.valueOf(value != 0);
+		}
+		if ("char".equals(type)) {
+			return String.valueOf((char) value);
+		}
+		return String.valueOf(value);
+	}
+
 	/**
 	 * BE VERY CAREFUL WHEN MODIFYING THIS FUNCTION! TO AVOID CREATING A LOOP, DO
 	 * KEEP THIS ATMOST SIMPLE, AVOID INVOKE ANY EXTERNAL LIBRARY FUNCTION, EVEN JDK
 	 * INSIDE THIS BLOCK OF CODE AND ITS INVOKED METHODS.! (ONLY
 	 * Thread.currentThread().getId() is exceptional used) IF NEED TO USE A LIST,MAP
 	 * -> USE AN ARRAY INSTEAD!
+	 * 
+	 * This method is called at every method entry of every thread, so it must not
+	 * take any lock on its common path: the tracer and the tracking state of a
+	 * thread are looked up in lock-free tables ({@link TracerStore},
+	 * {@link LockedThreads}), only the first call of a thread and the start of
+	 * recording are synchronized.
 	 */
-	public synchronized static IExecutionTracer _getTracer(boolean isAppClass, String className, String methodSig,
-			int methodStartLine, int methodEndLine, String paramNamesCode, String paramTypeSignsCode, Object[] params) {
+	public static IExecutionTracer _getTracer(boolean isAppClass, String className, String methodSig,
+			int methodStartLine, int methodEndLine, String paramNamesCode, String paramTypeSignsCode) {
 		try {
 			if (state == TracingState.TEST_STARTED && isAppClass) {
-				state = TracingState.RECORDING;
-				rtStore.setMainThreadId(Thread.currentThread().getId());
+				startRecording();
 			}
 			if (state != TracingState.RECORDING) {
 				return EmptyExecutionTracer.getInstance();
@@ -1255,13 +1925,7 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 			 * currently we always return null if not main thread.
 			 */
 			ExecutionTracer tracer = rtStore.get(threadId);
-			if (tracer == null) {
-				tracer = rtStore.get(threadId);
-				// lockedThreads.remove(threadId);
-				// return EmptyExecutionTracer.getInstance();
-			}
-			tracer.enterMethod(className, methodSig, methodStartLine, methodEndLine, paramTypeSignsCode, paramNamesCode,
-					params);
+			tracer.enterMethod(className, methodSig, methodStartLine, methodEndLine, paramTypeSignsCode, paramNamesCode);
 			lockedThreads.track(threadId);
 			return tracer;
 		} catch (Throwable t) {
@@ -1270,6 +1934,13 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		}
 	}
 
+	private static synchronized void startRecording() {
+		if (state == TracingState.TEST_STARTED) {
+			rtStore.setMainThreadId(Thread.currentThread().getId());
+			state = TracingState.RECORDING;
+		}
+	}
+
 	public static IExecutionTracer getMainThreadStore() {
 		return rtStore.getMainThreadTracer();
 	}
@@ -1278,21 +1949,19 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		return rtStore.getAllThreadTracer();
 	}
 
-	public static synchronized IExecutionTracer getCurrentThreadStore() {
-		synchronized (rtStore) {
-			long threadId = Thread.currentThread().getId();
-			// String threadName = Thread.currentThread().getName();
-			if (lockedThreads.isUntracking(threadId)) {
-				return EmptyExecutionTracer.getInstance();
-			}
-			IExecutionTracer tracer = rtStore.get(threadId);
-			// store.setThreadName(threadName);
+	public static IExecutionTracer getCurrentThreadStore() {
+		long threadId = Thread.currentThread().getId();
+		// String threadName = Thread.currentThread().getName();
+		if (lockedThreads.isUntracking(threadId)) {
+			return EmptyExecutionTracer.getInstance();
+		}
+		IExecutionTracer tracer = rtStore.get(threadId);
+		// store.setThreadName(threadName);
 
-			if (tracer == null) {
-				tracer = EmptyExecutionTracer.getInstance();
-			}
-			return tracer;
+		if (tracer == null) {
+			tracer = EmptyExecutionTracer.getInstance();
 		}
+		return tracer;
 	}
 	
 	public static List<Long> stoppedThreads = new ArrayList<Long>();
@@ -1305,22 +1974,58 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 		}
 	}
 
-	private static TracingState state = TracingState.INIT;
+	private static volatile TracingState state = TracingState.INIT;
 
 	public static void shutdown() {
 		state = TracingState.SHUTDOWN;
 	}
 
 	public static void dispose() {
-		adjustVarMap = new HashMap<>();
+		adjustVarMap = new ConcurrentHashMap<>();
 		lockedThreads = new LockedThreads();
 		HeuristicIgnoringFieldRule.clearCache();
 	}
 
+	/**
+	 * sends the last step of each thread and the program message, then closes the stream of steps if any. To be
+	 * called after the tracer is shut down.
+	 */
+	public static void closeStepStream(String programMsg) {
+		StepStreamer streamer = stepStreamer;
+		if (streamer == null) {
+			return;
+		}
+		stepStreamer = null;
+		long mainThreadId = rtStore.getMainThreadId();
+		for (IExecutionTracer tracer : rtStore.getAllThreadTracer()) {
+			ExecutionTracer executionTracer = (ExecutionTracer) tracer;
+			TraceNode latestNode = executionTracer.trace.getLatestNode();
+			if (latestNode != null) {
+				streamer.stepCompleted(executionTracer.threadId, executionTracer.threadId == mainThreadId, latestNode);
+			}
+		}
+		streamer.close(programMsg);
+	}
+
 	public static void _start() {
 		state = TracingState.TEST_STARTED;
 	}
 
+	/**
+	 * drops the tracers and the settings of the previous run, so that another run can be traced in the same vm by an
+	 * agent worker. Classes are instrumented again until the tracer is shut down.
+	 */
+	public static synchronized void reset() {
+		dispose();
+		rtStore = new ExecutionTracerStore();
+		stoppedThreads = new ArrayList<Long>();
+		stepStreamer = null;
+		linesOnlyOverStepLimit = false;
+		stepLimit = Integer.MAX_VALUE;
+		expectedSteps = Integer.MAX_VALUE;
+		state = TracingState.INIT;
+	}
+
 	public static boolean isShutdown() {
 		return state == TracingState.SHUTDOWN;
 	}
@@ -1331,6 +2036,27 @@ public class ExecutionTracer implements IExecutionTracer, ITracer {
 
 	private static volatile LockedThreads lockedThreads = new LockedThreads();
 
+	private static class MethodEntry {
+		private TraceNode caller;
+		private String className;
+		private String methodSignature;
+		private int methodStartLine;
+		private int methodEndLine;
+		private String paramTypeSignsCode;
+		private String paramNamesCode;
+
+		private MethodEntry(TraceNode caller, String className, String methodSignature, int methodStartLine,
+				int methodEndLine, String paramTypeSignsCode, String paramNamesCode) {
+			this.caller = caller;
+			this.className = className;
+			this.methodSignature = methodSignature;
+			this.methodStartLine = methodStartLine;
+			this.methodEndLine = methodEndLine;
+			this.paramTypeSignsCode = paramTypeSignsCode;
+			this.paramNamesCode = paramNamesCode;
+		}
+	}
+
 	static class TrackingDelegate {
 //		boolean tracing;
 		long threadId;
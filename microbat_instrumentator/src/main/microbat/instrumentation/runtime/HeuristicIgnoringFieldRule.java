@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import microbat.instrumentation.AgentLogger;
 import sav.common.core.utils.CollectionUtils;
@@ -24,10 +25,12 @@ public class HeuristicIgnoringFieldRule {
 	
 	/**
 	 * for example, I record map(java.util.Stack)=java.io.Collection
+	 * 
+	 * the maps are filled by the traced threads, see {@link ClassFields}.
 	 */
-	private static Map<String, Boolean> isCollectionMap = new HashMap<>();
-	private static Map<String, Boolean> isHashMapMap = new HashMap<>();
-	private static Map<String, Boolean> isSerializableMap = new HashMap<>();
+	private static Map<String, Boolean> isCollectionMap = new ConcurrentHashMap<>();
+	private static Map<String, Boolean> isHashMapMap = new ConcurrentHashMap<>();
+	private static Map<String, Boolean> isSerializableMap = new ConcurrentHashMap<>();
 	
 	/**
 	 * this map store <className, list<fieldName>>, specifying which fields will be
@@ -189,7 +192,7 @@ public class HeuristicIgnoringFieldRule {
 	
 	
 	
-	private static Map<String, Boolean> parsingTypeMap = new HashMap<>();
+	private static Map<String, Boolean> parsingTypeMap = new ConcurrentHashMap<>();
 	/**
 	 * For some JDK class, we do not need its detailed fields. However, we may still be
 	 * interested in the elements in Collection class.
@@ -282,8 +285,8 @@ public class HeuristicIgnoringFieldRule {
 	}
 
 	public static void clearCache() {
-		isCollectionMap = new HashMap<>();
-		isHashMapMap = new HashMap<>();
-		parsingTypeMap = new HashMap<>();
+		isCollectionMap = new ConcurrentHashMap<>();
+		isHashMapMap = new ConcurrentHashMap<>();
+		parsingTypeMap = new ConcurrentHashMap<>();
 	}
 }
@@ -13,34 +13,112 @@ public interface IExecutionTracer {
 	public void _hitVoidReturn(int line, String className, String methodSignature);
 
 	public void _hitLine(int line, String className, String methodSignature, int numOfReadVars, int numOfWrittenVars, String bytecode);
+
+	/**
+	 * same as {@link #_hitLine(int, String, String, int, int, String)} for a line registered in
+	 * {@link LocationRegistry}.
+	 */
+	public void _hitLocation(int locationId, int numOfReadVars, int numOfWrittenVars);
 	
 	public void _hitExeptionTarget(int line, String className, String methodSignature);
 
 	public void _writeField(Object refValue, Object fieldValue, String fieldName, String fieldTypeSign, int line, String className, String methodSignature);
 
+	/*
+	 * the variants of the variable callbacks for primitive values take them without boxing, the values of boolean,
+	 * byte, char and short variables are passed as int like on the operand stack.
+	 */
+	public void _writeField(Object refValue, int fieldValue, String fieldName, String fieldTypeSign, int line, String className, String methodSignature);
+
+	public void _writeField(Object refValue, long fieldValue, String fieldName, String fieldTypeSign, int line, String className, String methodSignature);
+
+	public void _writeField(Object refValue, float fieldValue, String fieldName, String fieldTypeSign, int line, String className, String methodSignature);
+
+	public void _writeField(Object refValue, double fieldValue, String fieldName, String fieldTypeSign, int line, String className, String methodSignature);
+
 	public void _writeStaticField(Object fieldValue, String refType, String fieldName, String fieldType, int line, String className, String methodSignature);
 
 	public void _readField(Object refValue, Object fieldValue, String fieldName, String fieldType, int line, String className, String methodSignature);
 
+	public void _readField(Object refValue, int fieldValue, String fieldName, String fieldType, int line, String className, String methodSignature);
+
+	public void _readField(Object refValue, long fieldValue, String fieldName, String fieldType, int line, String className, String methodSignature);
+
+	public void _readField(Object refValue, float fieldValue, String fieldName, String fieldType, int line, String className, String methodSignature);
+
+	public void _readField(Object refValue, double fieldValue, String fieldName, String fieldType, int line, String className, String methodSignature);
+
 	public void _readStaticField(Object fieldValue, String refType, String fieldName, String fieldTypeSign, int line, String className, String methodSignature);
 
 	public void _writeLocalVar(Object varValue, String varName, String varType, int line, int bcLocalVarIdx,
 			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
 
+	public void _writeLocalVar(int varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
+	public void _writeLocalVar(long varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
+	public void _writeLocalVar(float varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
+	public void _writeLocalVar(double varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
 	public void _readLocalVar(Object varValue, String varName, String varType, int line, int bcLocalVarIdx,
 			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
+	public void _readLocalVar(int varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
+	public void _readLocalVar(long varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
+	public void _readLocalVar(float varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
+	public void _readLocalVar(double varValue, String varName, String varType, int line, int bcLocalVarIdx,
+			int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
 	
 	public void _iincLocalVar(Object varValue, Object varValueAfter, String varName, String varType, int line,
 			int bcLocalVarIdx, int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
 
+	public void _iincLocalVar(int varValue, int varValueAfter, String varName, String varType, int line,
+			int bcLocalVarIdx, int varScopeStartLine, int varScopeEndLine, String className, String methodSignature);
+
 	public void _readArrayElementVar(Object arrayRef, int index, Object eleValue, String elementType, int line, String className, String methodSignature);
 
+	public void _readArrayElementVar(Object arrayRef, int index, int eleValue, String elementType, int line, String className, String methodSignature);
+
+	public void _readArrayElementVar(Object arrayRef, int index, long eleValue, String elementType, int line, String className, String methodSignature);
+
+	public void _readArrayElementVar(Object arrayRef, int index, float eleValue, String elementType, int line, String className, String methodSignature);
+
+	public void _readArrayElementVar(Object arrayRef, int index, double eleValue, String elementType, int line, String className, String methodSignature);
+
 	public void _writeArrayElementVar(Object arrayRef, int index, Object eleValue, String elementType, int line, String className, String methodSignature);
 
+	public void _writeArrayElementVar(Object arrayRef, int index, int eleValue, String elementType, int line, String className, String methodSignature);
+
+	public void _writeArrayElementVar(Object arrayRef, int index, long eleValue, String elementType, int line, String className, String methodSignature);
+
+	public void _writeArrayElementVar(Object arrayRef, int index, float eleValue, String elementType, int line, String className, String methodSignature);
+
+	public void _writeArrayElementVar(Object arrayRef, int index, double eleValue, String elementType, int line, String className, String methodSignature);
+
 	void _afterInvoke(Object returnedValue, Object invokeObj, String invokeMethodSig, int line, String residingClassName,
 			String residingMethodSignature, boolean needRevisiting);
 
 	public void _hitMethodEnd(int line, String className, String methodSignature);
+
+	/**
+	 * @return whether the method entered by ExecutionTracer#_getTracer waits for its arguments, which are then to be
+	 *         passed to {@link #_enterMethod(Object[])}. The arguments are only boxed into an array when they are
+	 *         recorded.
+	 */
+	public boolean _needMethodArguments();
+
+	public void _enterMethod(Object[] params);
 	
 	/**
 	 * 
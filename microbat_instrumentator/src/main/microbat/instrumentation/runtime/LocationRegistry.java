@@ -0,0 +1,89 @@
+package microbat.instrumentation.runtime;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import sav.common.core.utils.ClassUtils;
+
+/**
+ * The lines of the instrumented methods, registered when their class is instrumented. Each line has an id which is
+ * pushed by the instrumented code instead of its class, method and bytecode, see
+ * {@link IExecutionTracer#_hitLocation(int, int, int)}, so the metadata of a line is kept once in the vm whatever the
+ * number of its steps.
+ * <p>
+ * Ids are dense and never reused, the registry is not cleared between the runs of an agent worker since the classes
+ * instrumented by a previous run are reused.
+ */
+public class LocationRegistry {
+	private static final Map<String, Integer> locationIds = new HashMap<>();
+	private static volatile Location[] locations = new Location[1024];
+	private static int size = 0;
+
+	private LocationRegistry() {
+	}
+
+	/**
+	 * @return the id of the location, the same id if the location with the same bytecode is already registered.
+	 */
+	public static synchronized int register(String className, String methodSignature, int line, String bytecode) {
+		String key = methodSignature + ":" + line;
+		Integer id = locationIds.get(key);
+		if (id != null && equals(locations[id].getBytecode(), bytecode)) {
+			return id;
+		}
+		Location[] locs = locations;
+		if (size == locs.length) {
+			locs = Arrays.copyOf(locs, size * 2);
+		}
+		locs[size] = new Location(className, methodSignature, line, bytecode);
+		/* publishes the new location to the tracing threads */
+		locations = locs;
+		locationIds.put(key, size);
+		return size++;
+	}
+
+	private static boolean equals(String str1, String str2) {
+		return str1 == null ? str2 == null : str1.equals(str2);
+	}
+
+	public static Location getLocation(int id) {
+		return locations[id];
+	}
+
+	public static class Location {
+		private String className;
+		private String declaringCompilationUnitName;
+		private String methodSignature;
+		private int line;
+		private String bytecode;
+
+		private Location(String className, String methodSignature, int line, String bytecode) {
+			this.className = className;
+			this.declaringCompilationUnitName = ClassUtils.getCompilationUnitForSimpleCase(className);
+			this.methodSignature = methodSignature;
+			this.line = line;
+			this.bytecode = bytecode;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getDeclaringCompilationUnitName() {
+			return declaringCompilationUnitName;
+		}
+
+		public String getMethodSignature() {
+			return methodSignature;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public String getBytecode() {
+			return bytecode;
+		}
+	}
+}
@@ -1,9 +1,9 @@
 package microbat.instrumentation.runtime;
 
 /**
- * 
+ *
  * @author Lin Yun and LLT
- * 
+ *
  * This class is supposed to keep at very basic, NOT use or trigger ANY other liberay function even in jdk,
  * only Array is allowed.
  * [TO AVOID RECURSIVE LOOP IN GET_TRACER!!]
@@ -11,114 +11,94 @@ package microbat.instrumentation.runtime;
 public class LockedThreads {
 	public static final long TRACKING = 0;
 	public static final long UNTRACKING = 1;
-	
+
+	private static final int INIT_CAPACITY = 16;
+
 	/**
-	 * The first dimension is for thread id (long type), and the second dimension is for its state (i.e., tracking or untracking)
-	 * 
-	 * the array length is initialized as 10, it can increase when the number of the threads grows. See {@link LockedThreads#increaseSize()}
-	 * 
-	 * If a thread is in the state of TRACKING, all the relevant steps will be recorded (by invoking {@code ExecutionTracer}).
-	 * Otherwise, no step will be recorded (by invoking {@code EmptyTracer})
+	 * An open-addressing table indexed by thread id, each slot is a {threadId, state} pair (i.e., tracking or
+	 * untracking).
+	 *
+	 * If a thread is in the state of TRACKING, all the relevant steps will be recorded (by invoking
+	 * {@code ExecutionTracer}). Otherwise, no step will be recorded (by invoking {@code EmptyTracer})
+	 *
+	 * A slot is created once by its own thread and is never reassigned, so {@link #track(long)} and
+	 * {@link #untrack(long)} only write the slot of the current thread and do not need any lock. Registering a new
+	 * thread copies the table (reusing the existing slots) and publishes the copy through the volatile field, so
+	 * lookups never see a partially filled table. See {@link LockedThreads#register(long)}
 	 */
-	public volatile long[][] lockedThreadIds = new long[10][2];
-	
-	public LockedThreads() {
-		for (int i = 0; i < lockedThreadIds.length; i++) {
-			lockedThreadIds[i][0] = -1l;
-			lockedThreadIds[i][1] = TRACKING;
-		}
-	}
+	private volatile long[][] slots = new long[INIT_CAPACITY][];
+	private int size;
 
 	public boolean isUntracking(long threadId) {
-		for (int i = 0; i < lockedThreadIds.length; i++) {
-			if (lockedThreadIds[i][0] == threadId) {
-				return lockedThreadIds[i][1] == UNTRACKING;
-			}
-		}
-		
-		return false;
+		long[] slot = findSlot(slots, threadId);
+		return slot != null && slot[1] == UNTRACKING;
 	}
 
 	public void track(long threadId) {
-		int i = 0;
-		int firstSlotIndex = -1;
-		for (; i < lockedThreadIds.length; i++) {
-			if (lockedThreadIds[i][0] == threadId) {
-				lockedThreadIds[i][1] = TRACKING;
-				return;
-			}
-			
-			if(firstSlotIndex == -1 && lockedThreadIds[i][0] == -1) {
-				firstSlotIndex = i;
-			}
-		}
-		
-		/**
-		 * all the slots are not -1
-		 */
-		if(firstSlotIndex == -1) {
-			increaseSize();
+		long[] slot = findSlot(slots, threadId);
+		if (slot == null) {
+			slot = register(threadId);
 		}
-		/**
-		 * fill in an empty slot
-		 */
-		else {
-			i = firstSlotIndex;			
-		}
-		lockedThreadIds[i][0] = threadId;
-		lockedThreadIds[i][1] = TRACKING;
+		slot[1] = TRACKING;
 	}
-	
-	 private void increaseSize() {
-        int newCapacity = lockedThreadIds.length + 2;
-        long[][] temp = new long[newCapacity][2];
-        int i = 0;
-        for (; i < lockedThreadIds.length; i++) {
-        	temp[i] = lockedThreadIds[i];
-        }
-        for (; i < newCapacity; i++) {
-        	temp[i][0] = -1l;
-        	temp[i][1] = TRACKING;
-        }
-        lockedThreadIds = temp;
-	 }
 
-//	public void remove(long threadId) {
-//		for (int i = 0; i < lockedThreadIds.length; i++) {
-//			if (lockedThreadIds[i] == threadId) {
-//				lockedThreadIds[i] = -1l;
-//			}
-//		}
-//	}
-	
 	public void untrack(long threadId) {
-		int i = 0;
-		int firstSlotIndex = -1;
-		for (; i < lockedThreadIds.length; i++) {
-			if (lockedThreadIds[i][0] == threadId) {
-				lockedThreadIds[i][1] = UNTRACKING;
-				return;
-			}
-			
-			if(firstSlotIndex == -1 && lockedThreadIds[i][0] == -1) {
-				firstSlotIndex = i;
+		long[] slot = findSlot(slots, threadId);
+		if (slot == null) {
+			slot = register(threadId);
+		}
+		slot[1] = UNTRACKING;
+	}
+
+	private synchronized long[] register(long threadId) {
+		long[][] table = slots;
+		long[] slot = findSlot(table, threadId);
+		if (slot != null) {
+			return slot;
+		}
+		int capacity = table.length;
+		/* keep the load factor under 0.5 so that probing stays short */
+		if ((size + 1) * 2 > capacity) {
+			capacity = capacity * 2;
+		}
+		long[][] newTable = new long[capacity][];
+		for (int i = 0; i < table.length; i++) {
+			if (table[i] != null) {
+				put(newTable, table[i]);
 			}
 		}
-		
-		/**
-		 * all the slots are not -1
-		 */
-		if(firstSlotIndex == -1) {
-			increaseSize();
+		slot = new long[] { threadId, TRACKING };
+		put(newTable, slot);
+		size++;
+		slots = newTable;
+		return slot;
+	}
+
+	private static void put(long[][] table, long[] slot) {
+		int mask = table.length - 1;
+		int i = indexFor(slot[0], mask);
+		while (table[i] != null) {
+			i = (i + 1) & mask;
 		}
-		/**
-		 * fill in an empty slot
-		 */
-		else {
-			i = firstSlotIndex;			
+		table[i] = slot;
+	}
+
+	private static long[] findSlot(long[][] table, long threadId) {
+		int mask = table.length - 1;
+		int i = indexFor(threadId, mask);
+		long[] slot;
+		while ((slot = table[i]) != null) {
+			if (slot[0] == threadId) {
+				return slot;
+			}
+			i = (i + 1) & mask;
 		}
-		lockedThreadIds[i][0] = threadId;
-		lockedThreadIds[i][1] = UNTRACKING;
+		return null;
+	}
+
+	static int indexFor(long threadId, int mask) {
+		int h = (int) (threadId ^ (threadId >>> 32));
+		/* thread ids are mostly sequential, so the low bits are already well spread */
+		return (h ^ (h >>> 16)) & mask;
 	}
-	
 }
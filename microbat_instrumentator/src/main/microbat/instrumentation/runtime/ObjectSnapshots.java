@@ -0,0 +1,170 @@
+package microbat.instrumentation.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import microbat.model.value.VarValue;
+
+/**
+ * The values of the objects recorded by a tracer, so that an object read again by the same variable while none of the
+ * objects of its value was modified shares the children of its previous value, instead of reading its fields and
+ * calling their toString() again.
+ * <p>
+ * Modifications are those seen by the instrumented code of any thread: the writes of fields and array elements, and
+ * the invocations of methods which are not traced, which may modify their receiver and their arguments. Objects are
+ * stamped by their identity hash in a fixed table, a collision only makes a value be read again. Objects deeper than
+ * the recorded layers, or only reachable through the arguments of a method which is not traced, are not checked, so
+ * sharing the values is optional, see {@link microbat.instrumentation.AgentParams#OPT_SHARE_SNAPSHOTS}.
+ */
+public class ObjectSnapshots {
+	private static final int STAMP_TABLE_SIZE = 1 << 16;
+	private static final int MAX_SNAPSHOTS = 1024;
+	/*
+	 * the number of captured values when each slot of objects was last modified, written by all traced threads. A
+	 * stamp only increases, so that a thread stamping late does not hide the modification of another one.
+	 */
+	private static final AtomicLongArray modifications = new AtomicLongArray(STAMP_TABLE_SIZE);
+	private static final AtomicLong captures = new AtomicLong();
+	private static final AtomicLong staticFieldModification = new AtomicLong();
+
+	private Map<Long, Snapshot> snapshots = new LinkedHashMap<Long, Snapshot>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+			return size() > MAX_SNAPSHOTS;
+		}
+	};
+	/* the objects of the value being captured, null if none is */
+	private int[] capturedObjects;
+	private int capturedSize;
+	private boolean capturedStaticFields;
+	private long captureStamp;
+
+	public static void modified(Object obj) {
+		if (obj != null) {
+			int slot = slot(obj);
+			long stamp = captures.get();
+			long lastStamp;
+			while ((lastStamp = modifications.get(slot)) < stamp
+					&& !modifications.compareAndSet(slot, lastStamp, stamp)) {
+				// retry
+			}
+		}
+	}
+
+	public static void modified(Object[] objs) {
+		if (objs != null) {
+			for (Object obj : objs) {
+				modified(obj);
+			}
+		}
+	}
+
+	public static void staticFieldModified() {
+		long stamp = captures.get();
+		long lastStamp;
+		while ((lastStamp = staticFieldModification.get()) < stamp
+				&& !staticFieldModification.compareAndSet(lastStamp, stamp)) {
+			// retry
+		}
+	}
+
+	private static int slot(Object obj) {
+		return System.identityHashCode(obj) & (STAMP_TABLE_SIZE - 1);
+	}
+
+	/**
+	 * @return the value previously captured for the object read by the variable, or null if there is none or if it
+	 *         might have been modified since.
+	 */
+	public VarValue get(int varIdx, Object obj) {
+		Long key = getKey(varIdx, obj);
+		Snapshot snapshot = snapshots.get(key);
+		if (snapshot == null) {
+			return null;
+		}
+		if (snapshot.obj.get() != obj || !snapshot.isUnmodified()) {
+			snapshots.remove(key);
+			return null;
+		}
+		return snapshot.value;
+	}
+
+	/**
+	 * starts collecting the objects of the value of an object, see {@link #capture(Object)}.
+	 */
+	public void startCapture() {
+		/* objects modified from now on are modified after the capture */
+		captureStamp = captures.incrementAndGet();
+		capturedObjects = new int[16];
+		capturedSize = 0;
+		capturedStaticFields = false;
+	}
+
+	/**
+	 * an object of the value being captured, to be checked for modifications when the value is shared.
+	 */
+	public void capture(Object obj) {
+		if (capturedObjects == null) {
+			return;
+		}
+		if (capturedSize == capturedObjects.length) {
+			capturedObjects = Arrays.copyOf(capturedObjects, capturedSize * 2);
+		}
+		capturedObjects[capturedSize++] = slot(obj);
+	}
+
+	public void captureStaticField() {
+		capturedStaticFields = true;
+	}
+
+	/**
+	 * @param value
+	 *            the value of the object, null if it could not be captured.
+	 */
+	public void endCapture(int varIdx, Object obj, VarValue value) {
+		int[] objects = Arrays.copyOf(capturedObjects, capturedSize);
+		capturedObjects = null;
+		if (value != null) {
+			snapshots.put(getKey(varIdx, obj),
+					new Snapshot(obj, value, captureStamp, objects, capturedStaticFields));
+		}
+	}
+
+	private static Long getKey(int varIdx, Object obj) {
+		return ((long) varIdx << 32) | (System.identityHashCode(obj) & 0xFFFFFFFFL);
+	}
+
+	private static class Snapshot {
+		private WeakReference<Object> obj;
+		private VarValue value;
+		private long captureStamp;
+		private int[] objectSlots;
+		private boolean hasStaticFields;
+
+		private Snapshot(Object obj, VarValue value, long captureStamp, int[] objectSlots, boolean hasStaticFields) {
+			this.obj = new WeakReference<>(obj);
+			this.value = value;
+			this.captureStamp = captureStamp;
+			this.objectSlots = objectSlots;
+			this.hasStaticFields = hasStaticFields;
+		}
+
+		private boolean isUnmodified() {
+			if (hasStaticFields && staticFieldModification.get() >= captureStamp) {
+				return false;
+			}
+			for (int slot : objectSlots) {
+				if (modifications.get(slot) >= captureStamp) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
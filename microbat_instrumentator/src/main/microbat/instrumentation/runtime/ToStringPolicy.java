@@ -0,0 +1,228 @@
+package microbat.instrumentation.runtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import microbat.instrumentation.AgentConstants;
+import microbat.instrumentation.AgentLogger;
+import sav.common.core.utils.FileUtils;
+
+/**
+ * How the string value of an object is recorded: by its toString(), or by a summary of its structure which does not
+ * invoke the code of the program, e.g. "java.util.ArrayList[size=3]". The objects of a class are summarized once a
+ * toString() of the class exceeds the call budget or once all of them exceed the class budget, the JDK collections
+ * and maps over the element limit are summarized, and all of them are summarized in summary mode. The string values
+ * longer than the length limit are truncated.
+ * <p>
+ * Only the size or the length of a JDK collection, map or char sequence is part of its summary, the summary of any
+ * other object is its class name and identity hash code, so that summarizing never invokes the program.
+ * <p>
+ * The cost of toString() is accounted per class and can be exported after a run, to tune the limits of a project, see
+ * {@link microbat.instrumentation.AgentParams#OPT_TO_STRING_STATS_FILE}. toString() is invoked on the traced thread,
+ * since invoking it on another thread would read the objects while the program modifies them.
+ */
+public class ToStringPolicy {
+	public static final String TRUNCATED_SUFFIX = "...";
+	private static final long DEFAULT_CALL_BUDGET = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private static boolean summaryMode = false;
+	private static long callBudget = DEFAULT_CALL_BUDGET;
+	private static long classBudget = Long.MAX_VALUE;
+	private static int maxLength = Integer.MAX_VALUE;
+	private static int maxElements = Integer.MAX_VALUE;
+	private static volatile ConcurrentMap<Class<?>, ClassCost> classCosts = new ConcurrentHashMap<>();
+
+	private ToStringPolicy() {
+	}
+
+	/**
+	 * @param callBudgetMs
+	 *            {@link AgentConstants#UNSPECIFIED_INT_VALUE} for 500ms, as are the other limits for no limit.
+	 */
+	public static void setup(boolean summaryMode, int callBudgetMs, int classBudgetMs, int maxLength,
+			int maxElements) {
+		ToStringPolicy.summaryMode = summaryMode;
+		ToStringPolicy.callBudget = isSpecified(callBudgetMs) ? TimeUnit.MILLISECONDS.toNanos(callBudgetMs)
+				: DEFAULT_CALL_BUDGET;
+		ToStringPolicy.classBudget = isSpecified(classBudgetMs) ? TimeUnit.MILLISECONDS.toNanos(classBudgetMs)
+				: Long.MAX_VALUE;
+		ToStringPolicy.maxLength = isSpecified(maxLength) ? maxLength : Integer.MAX_VALUE;
+		ToStringPolicy.maxElements = isSpecified(maxElements) ? maxElements : Integer.MAX_VALUE;
+	}
+
+	private static boolean isSpecified(int value) {
+		return value != AgentConstants.UNSPECIFIED_INT_VALUE;
+	}
+
+	public static String valueOf(Object obj) {
+		if (obj instanceof String) {
+			return truncate((String) obj, String.class);
+		}
+		Class<?> type = obj.getClass();
+		ClassCost cost = getCost(type);
+		if (cost.isPlainToString) {
+			return String.valueOf(obj);
+		}
+		if (summaryMode || cost.overBudget || hasTooManyElements(obj)) {
+			cost.summarized();
+			return summarize(obj);
+		}
+		long t1 = System.nanoTime();
+		String value = null;
+		try {
+			value = String.valueOf(obj);
+		} finally {
+			cost.invoked(System.nanoTime() - t1);
+		}
+		return truncate(value, type);
+	}
+
+	public static String valueOf(char[] chars) {
+		return truncate(String.valueOf(chars), char[].class);
+	}
+
+	private static ClassCost getCost(Class<?> type) {
+		ClassCost cost = classCosts.get(type);
+		if (cost == null) {
+			cost = new ClassCost(type);
+			ClassCost existing = classCosts.putIfAbsent(type, cost);
+			if (existing != null) {
+				cost = existing;
+			}
+		}
+		return cost;
+	}
+
+	private static boolean hasTooManyElements(Object obj) {
+		if (maxElements == Integer.MAX_VALUE || !isJdkClass(obj.getClass())) {
+			return false;
+		}
+		if (obj instanceof Collection<?>) {
+			return ((Collection<?>) obj).size() > maxElements;
+		}
+		if (obj instanceof Map<?, ?>) {
+			return ((Map<?, ?>) obj).size() > maxElements;
+		}
+		return false;
+	}
+
+	private static String summarize(Object obj) {
+		String className = obj.getClass().getName();
+		if (obj instanceof Enum<?>) {
+			return ((Enum<?>) obj).name();
+		}
+		if (!isJdkClass(obj.getClass())) {
+			return className + "@" + Integer.toHexString(System.identityHashCode(obj));
+		}
+		if (obj instanceof Collection<?>) {
+			return className + "[size=" + ((Collection<?>) obj).size() + "]";
+		}
+		if (obj instanceof Map<?, ?>) {
+			return className + "[size=" + ((Map<?, ?>) obj).size() + "]";
+		}
+		if (obj instanceof CharSequence) {
+			return className + "[length=" + ((CharSequence) obj).length() + "]";
+		}
+		return className + "@" + Integer.toHexString(System.identityHashCode(obj));
+	}
+
+	/* the size() or length() of a class of the program could run any code */
+	private static boolean isJdkClass(Class<?> type) {
+		return type.getName().startsWith("java.");
+	}
+
+	private static String truncate(String value, Class<?> type) {
+		if (value == null || value.length() <= maxLength) {
+			return value;
+		}
+		getCost(type).truncated();
+		return value.substring(0, maxLength) + TRUNCATED_SUFFIX;
+	}
+
+	/**
+	 * writes the costs of the classes, the most costly first, and clears them for the next run.
+	 */
+	public static void exportStatistics(String filePath) {
+		List<ClassCost> costs = new ArrayList<>(classCosts.values());
+		classCosts = new ConcurrentHashMap<>();
+		if (filePath == null) {
+			return;
+		}
+		Collections.sort(costs, new Comparator<ClassCost>() {
+
+			@Override
+			public int compare(ClassCost o1, ClassCost o2) {
+				return Long.compare(o2.totalNanos, o1.totalNanos);
+			}
+		});
+		StringBuilder sb = new StringBuilder("class\tcalls\ttotal_ms\tmax_ms\tsummarized\ttruncated\tover_budget\n");
+		for (ClassCost cost : costs) {
+			if (cost.isPlainToString && cost.truncated == 0) {
+				continue;
+			}
+			sb.append(cost.className).append("\t")
+				.append(cost.calls).append("\t")
+				.append(TimeUnit.NANOSECONDS.toMillis(cost.totalNanos)).append("\t")
+				.append(TimeUnit.NANOSECONDS.toMillis(cost.maxNanos)).append("\t")
+				.append(cost.summarized).append("\t")
+				.append(cost.truncated).append("\t")
+				.append(cost.overBudget).append("\n");
+		}
+		try {
+			FileUtils.writeFile(filePath, sb.toString());
+		} catch (RuntimeException e) {
+			AgentLogger.info("Cannot export the toString statistics: " + e.getMessage());
+		}
+	}
+
+	private static class ClassCost {
+		private String className;
+		/* the toString() of a boxed primitive, or the default one e.g. of an array, which does not run the program */
+		private boolean isPlainToString;
+		private long calls;
+		private long totalNanos;
+		private long maxNanos;
+		private long summarized;
+		private long truncated;
+		private volatile boolean overBudget;
+
+		private ClassCost(Class<?> type) {
+			this.className = type.getName();
+			if (Number.class.isAssignableFrom(type) || type == Boolean.class || type == Character.class) {
+				isPlainToString = type.getName().startsWith("java.lang.");
+			} else {
+				try {
+					isPlainToString = type.getMethod("toString").getDeclaringClass() == Object.class;
+				} catch (Exception e) {
+					isPlainToString = false;
+				}
+			}
+		}
+
+		private synchronized void invoked(long nanos) {
+			calls++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+			if (!overBudget && (nanos > callBudget || totalNanos > classBudget)) {
+				overBudget = true;
+				AgentLogger.info(String.format("toString() of %s is summarized from now on, %dms in %d calls",
+						className, TimeUnit.NANOSECONDS.toMillis(totalNanos), calls));
+			}
+		}
+
+		private synchronized void summarized() {
+			summarized++;
+		}
+
+		private synchronized void truncated() {
+			truncated++;
+		}
+	}
+}
@@ -1,50 +1,86 @@
 package microbat.instrumentation.runtime;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author LLT
  * This class is supposed to keep at very basic, NOT use or trigger ANY other liberay function even in jdk,
  * only Array is allowed.
  * [TO AVOID RECURSIVE LOOP IN GET_TRACER!!]
+ *
+ * Tracers are kept in an open-addressing table keyed by thread id. The table is copied on write when a new thread
+ * registers and published through a volatile field, so {@link #get(long)} of an already registered thread is a
+ * plain array lookup without any lock.
  */
 public abstract class TracerStore<T extends ExecutionTracer> {
 	public static final int INVALID_THREAD_ID = -1;
-	private Map<Long, T> rtStore = new HashMap<>();
-//	protected ITracer[] rtStore = new ITracer[10];
-	protected long mainThreadId = INVALID_THREAD_ID;
+	private static final int INIT_CAPACITY = 16;
+
+	private volatile ExecutionTracer[] rtStore = new ExecutionTracer[INIT_CAPACITY];
+	/* tracers in the order of registration, only accessed under the store lock */
+	private ExecutionTracer[] allTracers = new ExecutionTracer[INIT_CAPACITY];
+	protected volatile long mainThreadId = INVALID_THREAD_ID;
 	protected transient int lastUsedIdx = INVALID_THREAD_ID;
-	
+
 	/* threadId must be valid */
+	public T get(long threadId) {
+		T tracer = find(rtStore, threadId);
+		if (tracer != null) {
+			return tracer;
+		}
+		return register(threadId);
+	}
+
 	@SuppressWarnings("unchecked")
-	public synchronized T get(long threadId) {
-		// FIXME -mutithread LINYUN [2]
-		// LLT: this is where we disable recording other threads not the main one
-//		if (threadId != mainThreadId) {
-//			return null; // for now, only recording trace for main thread.
-//		}
-		
-//		int i = 0;
-//		while(i <= lastUsedIdx) {
-//			ITracer tracer = rtStore[i];
-//			if (tracer.getThreadId() == threadId) {
-//				return (T) tracer;
-//			}
-//			i++;
-//		}
-//		T tracer = initTracer(threadId);
-//		rtStore[++lastUsedIdx] = tracer;
-		if (rtStore.containsKey(threadId)) {
-			return rtStore.get(threadId);
+	private T find(ExecutionTracer[] table, long threadId) {
+		int mask = table.length - 1;
+		int i = LockedThreads.indexFor(threadId, mask);
+		ExecutionTracer tracer;
+		while ((tracer = table[i]) != null) {
+			if (tracer.getThreadId() == threadId) {
+				return (T) tracer;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	private synchronized T register(long threadId) {
+		ExecutionTracer[] table = rtStore;
+		T tracer = find(table, threadId);
+		if (tracer != null) {
+			return tracer;
+		}
+		tracer = initTracer(threadId);
+		if (++lastUsedIdx >= allTracers.length) {
+			ExecutionTracer[] newAllTracers = new ExecutionTracer[allTracers.length * 2];
+			System.arraycopy(allTracers, 0, newAllTracers, 0, allTracers.length);
+			allTracers = newAllTracers;
 		}
-		T tracer = initTracer(threadId);
-		rtStore.put(threadId, tracer);
+		allTracers[lastUsedIdx] = tracer;
+		int capacity = table.length;
+		/* keep the load factor under 0.5 so that probing stays short */
+		if ((lastUsedIdx + 1) * 2 > capacity) {
+			capacity = capacity * 2;
+		}
+		ExecutionTracer[] newTable = new ExecutionTracer[capacity];
+		for (int i = 0; i <= lastUsedIdx; i++) {
+			put(newTable, allTracers[i]);
+		}
+		rtStore = newTable;
 		return tracer;
 	}
-	
+
+	private static void put(ExecutionTracer[] table, ExecutionTracer tracer) {
+		int mask = table.length - 1;
+		int i = LockedThreads.indexFor(tracer.getThreadId(), mask);
+		while (table[i] != null) {
+			i = (i + 1) & mask;
+		}
+		table[i] = tracer;
+	}
+
 	protected abstract T initTracer(long threadId);
 
 	public void setMainThreadId(long mainThreadId) {
@@ -54,20 +90,16 @@ public abstract class TracerStore<T extends ExecutionTracer> {
 	public T getMainThreadTracer() {
 		return get(mainThreadId);
 	}
-	
+
 	public long getMainThreadId() {
 		return mainThreadId;
 	}
-	
-	public List<IExecutionTracer> getAllThreadTracer() {
-		return new ArrayList<IExecutionTracer>(rtStore.values());
-//		List<IExecutionTracer> traces = new ArrayList<>();
-//		for(int i=0; i<rtStore.length; i++) {
-//			if(rtStore[i] != null) {
-//				traces.add((IExecutionTracer) rtStore[i]);
-//			}
-//		}
-//		
-//		return traces;
+
+	public synchronized List<IExecutionTracer> getAllThreadTracer() {
+		List<IExecutionTracer> tracers = new ArrayList<>(lastUsedIdx + 1);
+		for (int i = 0; i <= lastUsedIdx; i++) {
+			tracers.add(allTracers[i]);
+		}
+		return tracers;
 	}
 }
@@ -0,0 +1,283 @@
+package microbat.instrumentation.worker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.instrumentation.Agent;
+import microbat.instrumentation.AgentConstants;
+import microbat.instrumentation.AgentFactory;
+import microbat.instrumentation.AgentLogger;
+import microbat.instrumentation.AgentParams;
+import microbat.instrumentation.CommandLine;
+import microbat.instrumentation.cfgcoverage.CoverageAgentParams;
+import microbat.instrumentation.filter.GlobalFilterChecker;
+import microbat.instrumentation.instr.AbstractTransformer;
+import microbat.instrumentation.instr.TestRunnerTranformer;
+import microbat.instrumentation.instr.TransformedClassCache;
+import microbat.instrumentation.precheck.TraceMeasurement;
+import microbat.instrumentation.runtime.ExecutionTracer;
+
+/**
+ * Main class of a worker vm, which executes the programs of many precheck and trace runs one after the other, so that
+ * the vm startup, the installation of the agent and the instrumentation of unchanged classes are paid once.
+ * <p>
+ * The vm is started with the agent and its {@link AgentParams#OPT_WORKER_PORT} option, then it connects to the host
+ * at that port and reads the runs from it, each one as:
+ *
+ * <pre>
+ * agent options of the run, in the format of the -javaagent options
+ * class path of the program
+ * launch class
+ * program arguments, one per line
+ * {@link #REQUEST_END}
+ * </pre>
+ *
+ * A run installs the transformer of an agent created from its options, loads the program in a new class loader, so
+ * that recompiled classes are loaded again, executes its main method in the main thread then stores the trace or the
+ * precheck info like the agent does when a vm stops. The program message is sent back between {@link #OUTPUT_START}
+ * and {@link #OUTPUT_END}. The vm exits when the host closes the connection, or if a run fails for another reason
+ * than its program, so that the host can execute it in a new vm. As in a vm of the agent, the run in progress is
+ * stored if the vm is stopped.
+ * <p>
+ * Classes which are not loaded by the program, e.g. the classes of the jdk, are shared by the runs.
+ */
+public class AgentWorker {
+	public static final String REQUEST_END = "@@AgentWorkerRequestEnd@@";
+	public static final String OUTPUT_START = "@@AgentWorkerOutputStart@@";
+	public static final String OUTPUT_END = "@@AgentWorkerOutputEnd@@";
+	/* options of a run which change the instrumented bytecode of a class */
+	private static final String[] INSTRUMENTATION_OPTIONS = { AgentParams.OPT_PRECHECK, AgentParams.OPT_ENTRY_POINT,
+			AgentParams.OPT_OVER_LONG_METHODS, AgentParams.OPT_REQUIRE_METHOD_SPLITTING, AgentParams.OPT_CODE_RANGE,
+			AgentParams.OPT_SINGLE_PASS };
+	/*
+	 * options of a run which change the instrumentation of the classes shared by the runs, the class path of a
+	 * program is not one of them since the shared classes are never loaded from it
+	 */
+	private static final String[] SHARED_INSTRUMENTATION_OPTIONS = { CoverageAgentParams.OPT_IS_COUNT_COVERAGE,
+			AgentParams.OPT_PRECHECK, AgentParams.OPT_ENTRY_POINT, AgentParams.OPT_OVER_LONG_METHODS,
+			AgentParams.OPT_REQUIRE_METHOD_SPLITTING, AgentParams.OPT_CODE_RANGE, AgentParams.OPT_INCLUDES,
+			AgentParams.OPT_EXCLUDES, AgentParams.OPT_INCLUDES_FILE, AgentParams.OPT_EXCLUDES_FILE,
+			AgentParams.OPT_SINGLE_PASS };
+	private static final int MAX_CACHED_CONFIGURATIONS = 4;
+
+	private static Instrumentation instrumentation;
+	/* shared instrumentation options of the previous run */
+	private static String sharedInstrumentationKey;
+	/* agent of the run in progress */
+	private static Agent runAgent;
+	/* instrumented classes by the instrumentation options of the runs */
+	private static Map<String, TransformedClassCache> classCaches = new LinkedHashMap<String, TransformedClassCache>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TransformedClassCache> eldest) {
+			return size() > MAX_CACHED_CONFIGURATIONS;
+		}
+	};
+
+	public static boolean isWorkerVm(CommandLine cmd) {
+		return cmd.getInt(AgentParams.OPT_WORKER_PORT, AgentConstants.UNSPECIFIED_INT_VALUE) > 0;
+	}
+
+	public static void setup(Instrumentation inst) {
+		AgentWorker.instrumentation = inst;
+		Agent.setWorkerMode(true);
+		/* like the agent of a vm, stores the run in progress when the vm is stopped, e.g. after a timeout */
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					shutdownRun();
+				} catch (Throwable e) {
+					AgentLogger.error(e);
+				}
+			}
+		});
+	}
+
+	public static void main(String[] args) {
+		int port = AgentFactory.cmd.getInt(AgentParams.OPT_WORKER_PORT, AgentConstants.UNSPECIFIED_INT_VALUE);
+		int exitCode = 0;
+		try (Socket socket = new Socket("localhost", port)) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			PrintWriter writer = new PrintWriter(
+					new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+			List<String> request;
+			while ((request = readRequest(reader)) != null) {
+				String programMsg = run(request);
+				writer.println(OUTPUT_START);
+				writer.println(programMsg);
+				writer.println(OUTPUT_END);
+				writer.flush();
+			}
+		} catch (Throwable e) {
+			e.printStackTrace();
+			exitCode = 1;
+		}
+		/* force the vm to exit even if threads of the programs are still running */
+		Runtime.getRuntime().exit(exitCode);
+	}
+
+	/**
+	 * @return the lines of the next run, or null if the host closed the connection.
+	 */
+	private static List<String> readRequest(BufferedReader reader) throws Exception {
+		List<String> request = new ArrayList<>();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (REQUEST_END.equals(line)) {
+				return request;
+			}
+			request.add(line);
+		}
+		return null;
+	}
+
+	private static String run(List<String> request) throws Exception {
+		CommandLine cmd = CommandLine.parse(request.get(0));
+		List<String> classpath = new ArrayList<>();
+		for (String path : request.get(1).split(File.pathSeparator)) {
+			if (!path.isEmpty()) {
+				classpath.add(path);
+			}
+		}
+		String launchClass = request.get(2);
+		List<String> programArgs = request.subList(3, request.size());
+
+		boolean sharedInstrumentationChanged = resetRun(cmd);
+		AgentFactory.cmd = cmd;
+		Agent agent = AgentFactory.createAgent(cmd, instrumentation);
+		agent.startup0(0, 0);
+		runAgent = agent;
+		ClassFileTransformer transformer = agent.getTransformer();
+		if (transformer instanceof AbstractTransformer) {
+			((AbstractTransformer) transformer).setClassCache(getClassCache(cmd));
+		}
+		/* installed after the agent is created, like at the startup of the agent */
+		TestRunnerTranformer testRunnerTransformer = new TestRunnerTranformer();
+		instrumentation.addTransformer(transformer, true);
+		instrumentation.addTransformer(testRunnerTransformer);
+		try {
+			if (sharedInstrumentationChanged) {
+				agent.retransformClasses(getSharedClasses());
+			}
+			runProgram(classpath, launchClass, programArgs.toArray(new String[programArgs.size()]));
+		} finally {
+			instrumentation.removeTransformer(testRunnerTransformer);
+			instrumentation.removeTransformer(transformer);
+		}
+		shutdownRun();
+		return Agent.getProgramMsg();
+	}
+
+	/**
+	 * clears the state of the previous run.
+	 * 
+	 * @return whether the classes shared by the runs are instrumented differently from the previous run, so that they
+	 *         must be retransformed.
+	 */
+	static boolean resetRun(CommandLine cmd) {
+		String instrumentationKey = getOptionsKey(cmd, SHARED_INSTRUMENTATION_OPTIONS);
+		boolean sharedInstrumentationChanged = !instrumentationKey.equals(sharedInstrumentationKey);
+		sharedInstrumentationKey = instrumentationKey;
+		Agent.reset();
+		ExecutionTracer.reset();
+		TraceMeasurement.reset();
+		GlobalFilterChecker.reset(!sharedInstrumentationChanged);
+		return sharedInstrumentationChanged;
+	}
+
+	private static synchronized void shutdownRun() throws Exception {
+		Agent agent = runAgent;
+		runAgent = null;
+		if (agent != null) {
+			agent.shutdown();
+		}
+	}
+
+	/**
+	 * the classes which are not loaded by the program of a run, they are retransformed like the agent does at
+	 * startup with the classes loaded before it when the options of a run would instrument them differently from
+	 * the previous run. Like at startup, {@link Thread} is left to the precheck agent which counts the started
+	 * threads with it.
+	 */
+	private static Class<?>[] getSharedClasses() {
+		List<Class<?>> classes = new ArrayList<>();
+		for (Class<?> clazz : instrumentation.getAllLoadedClasses()) {
+			if (!(clazz.getClassLoader() instanceof ProgramClassLoader) && instrumentation.isModifiableClass(clazz)
+					&& !ClassLoader.class.equals(clazz) && !Thread.class.equals(clazz)) {
+				classes.add(clazz);
+			}
+		}
+		return classes.toArray(new Class<?>[classes.size()]);
+	}
+
+	private static TransformedClassCache getClassCache(CommandLine cmd) {
+		String key = getOptionsKey(cmd, INSTRUMENTATION_OPTIONS);
+		TransformedClassCache classCache = classCaches.get(key);
+		if (classCache == null) {
+			classCache = new TransformedClassCache();
+			classCaches.put(key, classCache);
+		}
+		return classCache;
+	}
+
+	private static String getOptionsKey(CommandLine cmd, String[] options) {
+		StringBuilder key = new StringBuilder();
+		for (String option : options) {
+			key.append(option).append(AgentConstants.AGENT_OPTION_SEPARATOR).append(cmd.getString(option))
+					.append(AgentConstants.AGENT_PARAMS_SEPARATOR);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * executes the main method of the program like the java launcher does, except that its classes are loaded by a
+	 * new class loader whose parent is the extension class loader.
+	 */
+	private static void runProgram(List<String> classpath, String launchClass, String[] programArgs)
+			throws Exception {
+		URL[] urls = new URL[classpath.size()];
+		for (int i = 0; i < urls.length; i++) {
+			urls[i] = new File(classpath.get(i)).toURI().toURL();
+		}
+		Thread thread = Thread.currentThread();
+		ClassLoader contextClassLoader = thread.getContextClassLoader();
+		try (URLClassLoader classLoader = new ProgramClassLoader(urls)) {
+			thread.setContextClassLoader(classLoader);
+			Method main = Class.forName(launchClass, true, classLoader).getMethod("main", String[].class);
+			main.invoke(null, (Object) programArgs);
+		} catch (InvocationTargetException e) {
+			if (!(e.getCause() instanceof RunAbortedError)) {
+				/* an uncaught exception of the program ends its run like it ends its vm */
+				e.getCause().printStackTrace();
+			}
+		} finally {
+			thread.setContextClassLoader(contextClassLoader);
+		}
+	}
+
+	private static class ProgramClassLoader extends URLClassLoader {
+
+		public ProgramClassLoader(URL[] urls) {
+			super(urls, ClassLoader.getSystemClassLoader().getParent());
+		}
+	}
+}
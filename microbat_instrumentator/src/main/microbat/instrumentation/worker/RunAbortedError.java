@@ -0,0 +1,13 @@
+package microbat.instrumentation.worker;
+
+/**
+ * thrown in the main thread to abort the program of a run of {@link AgentWorker}, see
+ * {@link microbat.instrumentation.Agent#abortProgram(String)}.
+ */
+public class RunAbortedError extends Error {
+	private static final long serialVersionUID = 1L;
+
+	public RunAbortedError(String programMsg) {
+		super(programMsg);
+	}
+}
@@ -0,0 +1,110 @@
+package microbat.codeanalysis.bytecode;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.LineNumber;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.util.ClassPath;
+import org.junit.After;
+import org.junit.Test;
+
+public class CFGCacheTest {
+	private static final String CLASS_NAME = CFGCacheTest.class.getName();
+
+	@After
+	public void tearDown() {
+		CFGCache.setCacheDir(null);
+		CFGCache.clearCache();
+	}
+
+	@Test
+	public void testControlScopesOfMethod() throws Exception {
+		Method method = getSampleMethod();
+		MethodControlScopes scopes = CFGCache.getControlScopes(CLASS_NAME, method);
+		assertSame(scopes, CFGCache.getControlScopes(CLASS_NAME, method));
+		CFG cfg = new CFGConstructor().buildCFGWithControlDomiance(method.getCode());
+		cfg.setMethod(method);
+		assertArrayEquals(toBytes(MethodControlScopes.build(cfg, method)), toBytes(scopes));
+
+		boolean hasConditional = false;
+		for (LineNumber lineNumber : method.getLineNumberTable().getLineNumberTable()) {
+			int line = lineNumber.getLineNumber();
+			if (scopes.isConditional(line)) {
+				hasConditional = true;
+				assertTrue(scopes.getControlledLines(line).length > 0);
+			}
+		}
+		assertTrue(hasConditional);
+		assertEquals(0, scopes.getControlledLines(-1).length);
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		MethodControlScopes scopes = CFGCache.getControlScopes(CLASS_NAME, getSampleMethod());
+		byte[] bytes = toBytes(scopes);
+		MethodControlScopes readScopes = MethodControlScopes
+				.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+		assertArrayEquals(bytes, toBytes(readScopes));
+	}
+
+	@Test
+	public void testControlScopesAreStoredInCacheDir() throws Exception {
+		File dir = File.createTempFile("cfgcache", "");
+		dir.delete();
+		dir.deleteOnExit();
+		CFGCache.setCacheDir(dir.getPath());
+		CFGCache.clearCache();
+		Method method = getSampleMethod();
+		byte[] bytes = toBytes(CFGCache.getControlScopes(CLASS_NAME, method));
+		File[] files = dir.listFiles();
+		assertEquals(1, files.length);
+		files[0].deleteOnExit();
+
+		/* read from the file by the next run */
+		CFGCache.clearCache();
+		long lastModified = files[0].lastModified();
+		assertArrayEquals(bytes, toBytes(CFGCache.getControlScopes(CLASS_NAME, method)));
+		assertEquals(lastModified, files[0].lastModified());
+		assertEquals(1, dir.listFiles().length);
+	}
+
+	private Method getSampleMethod() throws ClassNotFoundException {
+		CachedClassRepository repository = new CachedClassRepository(
+				new ClassPath(System.getProperty("java.class.path")), 10);
+		JavaClass clazz = repository.loadClass(CLASS_NAME);
+		for (Method method : clazz.getMethods()) {
+			if (method.getName().equals("sample")) {
+				return method;
+			}
+		}
+		throw new IllegalStateException("no sample method");
+	}
+
+	private static byte[] toBytes(MethodControlScopes scopes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(out);
+		scopes.write(dataOut);
+		dataOut.flush();
+		return out.toByteArray();
+	}
+
+	static int sample(int[] values) {
+		int sum = 0;
+		for (int value : values) {
+			if (value > 0) {
+				sum += value;
+			} else {
+				sum--;
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,52 @@
+package microbat.codeanalysis.bytecode;
+
+import static org.junit.Assert.*;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.ClassPath;
+import org.junit.Test;
+
+public class CachedClassRepositoryTest {
+	private static final String CLASS1 = CachedClassRepositoryTest.class.getName();
+	private static final String CLASS2 = CFGCacheTest.class.getName();
+	private static final String CLASS3 = MethodControlScopes.class.getName();
+
+	@Test
+	public void testLoadedClassIsCached() throws Exception {
+		CachedClassRepository repository = newRepository(10);
+		JavaClass clazz = repository.loadClass(CLASS1);
+		assertEquals(CLASS1, clazz.getClassName());
+		assertSame(repository, clazz.getRepository());
+		assertSame(clazz, repository.findClass(CLASS1));
+		assertSame(clazz, repository.loadClass(CLASS1.replace('.', '/')));
+		assertSame(clazz, repository.loadClass(CachedClassRepositoryTest.class));
+		assertEquals(1, repository.size());
+		repository.removeClass(clazz);
+		assertNull(repository.findClass(CLASS1));
+		assertNotSame(clazz, repository.loadClass(CLASS1));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedClassIsEvicted() throws Exception {
+		CachedClassRepository repository = newRepository(2);
+		repository.loadClass(CLASS1);
+		repository.loadClass(CLASS2);
+		repository.loadClass(CLASS1);
+		repository.loadClass(CLASS3);
+		assertEquals(2, repository.size());
+		assertNotNull(repository.findClass(CLASS1));
+		assertNull(repository.findClass(CLASS2));
+		assertNotNull(repository.findClass(CLASS3));
+		repository.clear();
+		assertEquals(0, repository.size());
+	}
+
+	@Test(expected = ClassNotFoundException.class)
+	public void testMissingClass() throws Exception {
+		newRepository(10).loadClass("microbat.codeanalysis.bytecode.NoSuchClass");
+	}
+
+	private CachedClassRepository newRepository(int maxClasses) {
+		return new CachedClassRepository(new ClassPath(System.getProperty("java.class.path")), maxClasses);
+	}
+}
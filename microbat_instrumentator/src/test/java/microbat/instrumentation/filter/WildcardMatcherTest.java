@@ -1,5 +1,7 @@
 package microbat.instrumentation.filter;
 
+import static org.junit.Assert.*;
+
 import org.junit.Test;
 
 public class WildcardMatcherTest {
@@ -38,6 +40,18 @@ public class WildcardMatcherTest {
 		match(matcher, "java.lang.Object");
 	}
 	
+	@Test
+	public void testMatcherIsSharedByExpression() {
+		WildcardMatcher matcher = WildcardMatcher.of("java.util.*\\");
+		assertSame(matcher, WildcardMatcher.of("java.util.*\\"));
+		assertNotSame(matcher, WildcardMatcher.of("java.util.*"));
+		for (int i = 0; i < WildcardMatcher.MAX_CACHED_MATCHES + 10; i++) {
+			assertEquals(i % 2 == 0, matcher.matches(i % 2 == 0 ? "java.util.A" + i : "java.util.a" + i + ".A"));
+		}
+		assertTrue(matcher.matches("java.util.ArrayList"));
+		assertFalse(matcher.matches("java.util.concurrent.ConcurrentMap"));
+	}
+	
 	private WildcardMatcher initMatcher(String expression) {
 		System.out.println("\n\nmatcher: " + expression);
 		return new WildcardMatcher(expression);
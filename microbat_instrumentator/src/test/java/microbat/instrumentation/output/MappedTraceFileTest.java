@@ -0,0 +1,112 @@
+package microbat.instrumentation.output;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import microbat.instrumentation.output.MappedTraceFile.MappedTrace;
+import microbat.model.BreakPoint;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import microbat.model.value.PrimitiveValue;
+import microbat.model.variable.LocalVar;
+
+public class MappedTraceFileTest {
+	private static final int STEPS = 2500;
+
+	@Test
+	public void testRandomAccess() throws Exception {
+		File file = File.createTempFile("trace", ".exec");
+		file.deleteOnExit();
+		IndexedTraceWriter.saveToFile(new RunningInfo("msg", Arrays.asList(createTrace(12, true)), STEPS, STEPS),
+				file.getPath());
+		assertTrue(MappedTraceFile.isIndexedFile(file));
+
+		MappedTraceFile mappedFile = MappedTraceFile.open(file);
+		try {
+			assertEquals("msg", mappedFile.getProgramMsg());
+			MappedTrace trace = mappedFile.getTraces().get(0);
+			assertEquals(STEPS, trace.size());
+			assertTrue(trace.isMain());
+			assertEquals(12, trace.getThreadId());
+			assertEquals(2012, trace.getLocation(2012).getLineNumber());
+			assertEquals(2011, trace.getStepOverNext(2010));
+			assertEquals(0, trace.getStepOverNext(STEPS));
+			assertEquals(1, trace.getInvocationParent(1999));
+			assertEquals(0, trace.getInvocationParent(1));
+			assertTrue(trace.isException(STEPS));
+			assertEquals("iload_1", trace.getBytecode(1001));
+			assertEquals("1999", trace.getReadVariables(1999).get(0).getStringValue());
+			assertTrue(trace.getWrittenVariables(1999).isEmpty());
+		} finally {
+			mappedFile.close();
+		}
+
+		/* the whole trace is loaded when reading as a RunningInfo */
+		Trace trace = RunningInfo.readFromFile(file).getMainTrace();
+		assertEquals(STEPS, trace.size());
+		TraceNode step = trace.getTraceNode(2000);
+		assertSame(trace.getTraceNode(1), step.getInvocationParent());
+		assertSame(trace.getTraceNode(2001), step.getStepOverNext());
+		assertEquals("2000", step.getReadVariables().iterator().next().getStringValue());
+	}
+
+	@Test
+	public void testSeveralTracesWithLongProgramMessage() throws Exception {
+		File file = File.createTempFile("trace", ".exec");
+		file.deleteOnExit();
+		/* longer than the buffers of the readers of the directory and of each trace */
+		StringBuilder msg = new StringBuilder();
+		while (msg.length() < 8100) {
+			msg.append("program message ");
+		}
+		List<Trace> traces = Arrays.asList(createTrace(1, true), createTrace(2, false), createTrace(3, false));
+		IndexedTraceWriter.saveToFile(new RunningInfo(msg.toString(), traces, STEPS, STEPS), file.getPath());
+
+		MappedTraceFile mappedFile = MappedTraceFile.open(file);
+		try {
+			assertEquals(msg.toString(), mappedFile.getProgramMsg());
+			assertEquals(3, mappedFile.getTraces().size());
+			for (int i = 0; i < 3; i++) {
+				MappedTrace trace = mappedFile.getTraces().get(i);
+				assertEquals(i + 1, trace.getThreadId());
+				assertEquals(i == 0, trace.isMain());
+				assertEquals(STEPS, trace.size());
+				assertEquals(1500, trace.getLocation(1500).getLineNumber());
+				assertEquals("2499", trace.getReadVariables(2499).get(0).getStringValue());
+			}
+		} finally {
+			mappedFile.close();
+		}
+	}
+
+	private Trace createTrace(long threadId, boolean isMain) {
+		Trace trace = new Trace(null);
+		trace.setMain(isMain);
+		trace.setThreadId(threadId);
+		trace.setThreadName(isMain ? "main" : "thread-" + threadId);
+		trace.setIncludedLibraryClasses(new ArrayList<String>());
+		trace.setExcludedLibraryClasses(new ArrayList<String>());
+		TraceNode prev = null;
+		for (int order = 1; order <= STEPS; order++) {
+			BreakPoint bkp = new BreakPoint("Sample", "Sample", "run()V", order);
+			TraceNode step = new TraceNode(bkp, null, order, trace, 1, 0, order, "iload_1");
+			LocalVar var = new LocalVar("i", "int", "Sample", order);
+			var.setVarID("i:" + order);
+			step.addReadVariable(new PrimitiveValue(String.valueOf(order), true, var));
+			if (prev != null) {
+				prev.setStepOverNext(step);
+				step.setInvocationParent(trace.getTraceNode(1));
+			}
+			step.setException(order == STEPS);
+			trace.addTraceNode(step);
+			prev = step;
+		}
+		return trace;
+	}
+}
@@ -0,0 +1,72 @@
+package microbat.instrumentation.output;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import microbat.model.BreakPoint;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+
+public class TraceOutputWriterTest {
+	private static final String[] BYTECODES = { "iload_1", null, "aload_0 getfield", "iload_1", "" };
+	private static final int STEPS = 100;
+
+	@Test
+	public void testBytecodesRoundTrip() throws Exception {
+		Trace trace = createTrace(BYTECODES);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TraceOutputWriter writer = new TraceOutputWriter(out);
+		writer.writeTrace(Arrays.asList(trace));
+		writer.close();
+
+		TraceOutputReader reader = new TraceOutputReader(new ByteArrayInputStream(out.toByteArray()));
+		List<Trace> traces = reader.readTrace();
+		reader.close();
+		assertEquals(1, traces.size());
+		Trace readTrace = traces.get(0);
+		assertEquals(STEPS, readTrace.size());
+		for (int order = 1; order <= STEPS; order++) {
+			TraceNode step = readTrace.getTraceNode(order);
+			String bytecode = BYTECODES[order % BYTECODES.length];
+			/* a step without bytecode is read as an empty string, as in the former versions */
+			assertEquals(bytecode == null ? "" : bytecode, step.getBytecode());
+			assertEquals(order % 7, step.getLineNumber());
+			assertEquals(order, step.getTimestamp());
+		}
+	}
+
+	@Test
+	public void testBytecodeIsWrittenOncePerTrace() throws Exception {
+		String bytecode = "aload_0 getfield invokevirtual astore_1 aload_1 ifnull";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TraceOutputWriter writer = new TraceOutputWriter(out);
+		writer.writeTrace(Arrays.asList(createTrace(new String[] { bytecode })));
+		writer.close();
+		assertTrue(out.size() < STEPS * bytecode.length());
+		TraceOutputReader reader = new TraceOutputReader(new ByteArrayInputStream(out.toByteArray()));
+		Trace readTrace = reader.readTrace().get(0);
+		reader.close();
+		assertEquals(bytecode, readTrace.getTraceNode(1).getBytecode());
+		assertEquals(bytecode, readTrace.getTraceNode(STEPS).getBytecode());
+	}
+
+	private Trace createTrace(String[] bytecodes) {
+		Trace trace = new Trace(null);
+		trace.setMain(true);
+		trace.setThreadName("main");
+		trace.setIncludedLibraryClasses(new ArrayList<String>());
+		trace.setExcludedLibraryClasses(new ArrayList<String>());
+		for (int order = 1; order <= STEPS; order++) {
+			BreakPoint bkp = new BreakPoint("Sample", "Sample", "run()V", order % 7);
+			trace.addTraceNode(new TraceNode(bkp, null, order, trace, 0, 0, order, bytecodes[order % bytecodes.length]));
+		}
+		return trace;
+	}
+}
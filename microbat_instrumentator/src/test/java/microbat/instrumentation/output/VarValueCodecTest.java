@@ -0,0 +1,124 @@
+package microbat.instrumentation.output;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+import microbat.model.value.ArrayValue;
+import microbat.model.value.PrimitiveValue;
+import microbat.model.value.ReferenceValue;
+import microbat.model.value.StringValue;
+import microbat.model.value.VarValue;
+import microbat.model.variable.ArrayElementVar;
+import microbat.model.variable.FieldVar;
+import microbat.model.variable.LocalVar;
+import microbat.model.variable.VarIdTable;
+import microbat.model.variable.Variable;
+
+public class VarValueCodecTest {
+
+	@Test
+	public void testSharedChildrenArePreserved() throws Exception {
+		LocalVar localVar = new LocalVar("list", "java.util.List", "Sample", 12);
+		localVar.setVarID("Sample{10,20}list-1:3");
+		localVar.setParameter(true);
+		ReferenceValue list = new ReferenceValue(false, 100, true, localVar);
+		list.setStringValue("[a, b]");
+		FieldVar sizeVar = new FieldVar(false, "size", "int", "java.util.ArrayList");
+		sizeVar.setVarID("100.size:3");
+		PrimitiveValue size = new PrimitiveValue("2", false, sizeVar);
+		list.linkAchild(size);
+		ArrayValue elements = new ArrayValue(false, false, new FieldVar(false, "elementData", "Object[]", null));
+		elements.setComponentType("java.lang.Object");
+		elements.setUniqueID(101);
+		list.linkAchild(elements);
+		StringValue elem = new StringValue("bé", false, new ArrayElementVar("[1]", "String", "101[1]:3"));
+		elements.linkAchild(elem);
+		ReferenceValue nullValue = ReferenceValue.nullValue(new LocalVar("o", "Object", "Sample", 13));
+		nullValue.setNull(true);
+
+		List<Collection<VarValue>> steps = new ArrayList<>();
+		steps.add(Arrays.<VarValue>asList(list, nullValue));
+		steps.add(Arrays.<VarValue>asList(size));
+		steps.add(null);
+		List<List<VarValue>> decoded = VarValueReader.decode(VarValueWriter.encode(steps));
+
+		assertEquals(3, decoded.size());
+		assertNull(decoded.get(2));
+		ReferenceValue decodedList = (ReferenceValue) decoded.get(0).get(0);
+		assertEquals("[a, b]", decodedList.getStringValue());
+		assertEquals(100, decodedList.getUniqueID());
+		assertTrue(((LocalVar) decodedList.getVariable()).isParameter());
+		assertEquals("Sample{10,20}list-1:3", decodedList.getVarID());
+		/* the same instance is shared between steps and parent/children links */
+		VarValue decodedSize = decoded.get(1).get(0);
+		assertSame(decodedList.getChildren().get(0), decodedSize);
+		assertSame(decodedList, decodedSize.getParents().get(0));
+		ArrayValue decodedElements = (ArrayValue) decodedList.getChildren().get(1);
+		assertEquals("java.lang.Object", decodedElements.getComponentType());
+		assertEquals("bé", decodedElements.getChildren().get(0).getStringValue());
+		assertEquals("101[1]:3", decodedElements.getChildren().get(0).getVarID());
+		/* null string value stays null */
+		ReferenceValue decodedNull = (ReferenceValue) decoded.get(0).get(1);
+		assertTrue(decodedNull.isNull());
+		assertFalse(decodedNull.isDefinedToStringMethod());
+		assertTrue(decodedNull.getChildren().isEmpty());
+	}
+
+	@Test
+	public void testInternedIdsAreBuiltWhenRead() throws Exception {
+		VarIdTable varIds = new VarIdTable() {
+			@Override
+			public String getVarID(int id) {
+				throw new AssertionError("id " + id + " is built before the trace is read");
+			}
+		};
+		int objId = varIds.getObjectId(100);
+		List<Collection<VarValue>> steps = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			LocalVar localVar = new LocalVar("list", "java.util.List", "a.Sample", 12);
+			localVar.setVarID(varIds, varIds.getLocalVarId("a.Sample", "list", 10, 20, i));
+			localVar.setAliasVarID(varIds, objId);
+			ReferenceValue list = new ReferenceValue(false, 100, true, localVar);
+			FieldVar sizeVar = new FieldVar(false, "size", "int", "java.util.ArrayList");
+			sizeVar.setVarID(varIds, varIds.getFieldId(objId, "size"));
+			list.linkAchild(new PrimitiveValue("2", false, sizeVar));
+			ArrayElementVar elementVar = new ArrayElementVar(null, "int", null);
+			elementVar.setVarID(varIds, varIds.getArrayElementId(varIds.getFieldId(objId, "elementData"), i));
+			FieldVar staticVar = new FieldVar(true, "COUNT", "int", "a.Sample");
+			staticVar.setVarID(varIds, varIds.getStaticFieldId("a.Sample", "COUNT"));
+			steps.add(Arrays.<VarValue>asList(list, new PrimitiveValue("1", true, elementVar),
+					new PrimitiveValue("3", true, staticVar)));
+		}
+		List<List<VarValue>> decoded = VarValueReader.decode(VarValueWriter.encode(steps));
+
+		for (int i = 0; i < 3; i++) {
+			List<VarValue> values = decoded.get(i);
+			assertEquals(Variable.concanateLocalVarID("a.Sample", "list", 10, 20, i), values.get(0).getVarID());
+			assertEquals("100", values.get(0).getAliasVarID());
+			assertEquals("100.size", values.get(0).getChildren().get(0).getVarID());
+			assertEquals("100.elementData[" + i + "]", values.get(1).getVarID());
+			assertEquals("100.elementData[" + i + "]", values.get(1).getVarName());
+			assertEquals("a.Sample.COUNT", values.get(2).getVarID());
+			assertNull(values.get(2).getAliasVarID());
+		}
+	}
+
+	@Test
+	public void testSmallerThanJavaSerialization() throws Exception {
+		List<Collection<VarValue>> steps = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			FieldVar var = new FieldVar(false, "count", "int", "Sample");
+			var.setVarID("100.count:" + i);
+			steps.add(Arrays.<VarValue>asList(new PrimitiveValue(String.valueOf(i), true, var)));
+		}
+		int binarySize = VarValueWriter.encode(steps).length;
+		int serializedSize = ByteConverter.convertToBytes(steps).length;
+		assertTrue(binarySize < serializedSize);
+	}
+}
@@ -0,0 +1,91 @@
+package microbat.instrumentation.runtime;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import microbat.instrumentation.filter.GlobalFilterChecker;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import microbat.model.value.VarValue;
+import sav.strategies.dto.AppJavaClassPath;
+
+public class ExecutionTracerTest {
+	private static final String CLASS_NAME = "Sample";
+	private static final String METHOD_SIGNATURE = "Sample.run()V";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() throws Exception {
+		File binFolder = folder.newFolder("bin");
+		AppJavaClassPath appPath = new AppJavaClassPath();
+		appPath.setWorkingDirectory(folder.getRoot().getAbsolutePath());
+		appPath.addClasspath(binFolder.getAbsolutePath());
+		GlobalFilterChecker.setup(appPath, null, null);
+		/* Sample is an app class, which is traced */
+		assertTrue(GlobalFilterChecker.isTransformable(CLASS_NAME, binFolder.getAbsolutePath(), false));
+		ExecutionTracer.setShareSnapshots(true);
+	}
+
+	@After
+	public void tearDown() {
+		ExecutionTracer.setShareSnapshots(false);
+	}
+
+	@Test
+	public void testSharedChildrenKeepOneParent() {
+		ExecutionTracer tracer = new ExecutionTracer(Thread.currentThread().getId());
+		Node node = new Node(1, new Node(2, null));
+		int reads = 1000;
+		for (int i = 0; i < reads; i++) {
+			/* a new step at every read */
+			tracer._readLocalVar(node, "node", Node.class.getName(), 1 + i % 2, 1, 1, 10, CLASS_NAME,
+					METHOD_SIGNATURE);
+		}
+		List<VarValue> values = getReadValues(tracer.getTrace(), "node");
+		assertEquals(reads, values.size());
+		VarValue snapshot = values.get(0);
+		assertFalse(snapshot.getChildren().isEmpty());
+		for (VarValue value : values) {
+			assertEquals(snapshot.getChildren().size(), value.getChildren().size());
+			for (int i = 0; i < snapshot.getChildren().size(); i++) {
+				VarValue child = value.getChildren().get(i);
+				assertSame(snapshot.getChildren().get(i), child);
+				assertEquals(1, child.getParents().size());
+				assertSame(snapshot, child.getParents().get(0));
+			}
+		}
+	}
+
+	private List<VarValue> getReadValues(Trace trace, String varName) {
+		List<VarValue> values = new ArrayList<>();
+		for (TraceNode step : trace.getExecutionList()) {
+			for (VarValue value : step.getReadVariables()) {
+				if (varName.equals(value.getVarName())) {
+					values.add(value);
+				}
+			}
+		}
+		return values;
+	}
+
+	static class Node {
+		int value;
+		Node next;
+
+		Node(int value, Node next) {
+			this.value = value;
+			this.next = next;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package microbat.instrumentation.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microbat.instrumentation.runtime.ClassFields.FieldInfo;
+import microbat.model.variable.FieldVar;
+import sav.common.core.utils.SignatureUtils;
+
+/**
+ * Compares the time and the allocation of reading the fields of objects down to a variable layer, as
+ * {@link ExecutionTracer} does to record the value of an object: by looking up the fields of the class at every read,
+ * which is how the tracer used to do, and by the fields described once per class in {@link ClassFields}.
+ *
+ * Allocated bytes are measured with the HotSpot extension of ThreadMXBean.
+ *
+ * Run as java application, optional arguments: number of object reads, variable layer. From java 9, the fields of
+ * the collections need --add-opens java.base/java.util=ALL-UNNAMED.
+ */
+public class FieldCaptureBenchmark {
+	private static final int OBJECTS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		int reads = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int layer = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		Order[] orders = createOrders();
+		/* warm up */
+		run(orders, reads / 2, layer, false);
+		run(orders, reads / 2, layer, true);
+
+		System.out.println(String.format("%-15s %15s %15s", "fields", "bytes/read", "ns/read"));
+		long[] lookup = measure(orders, reads, layer, false);
+		long[] cached = measure(orders, reads, layer, true);
+		System.out.println(String.format("%-15s %15d %15d", "looked up", lookup[0], lookup[1]));
+		System.out.println(String.format("%-15s %15d %15d", "cached", cached[0], cached[1]));
+	}
+
+	private static Order[] createOrders() {
+		Order[] orders = new Order[OBJECTS];
+		Customer[] customers = new Customer[OBJECTS / 10];
+		for (int i = 0; i < customers.length; i++) {
+			customers[i] = new Customer("customer" + i, new Address("street " + i, "city" + (i % 7), 10000 + i));
+		}
+		for (int i = 0; i < OBJECTS; i++) {
+			Order order = new Order(i, customers[i % customers.length], new int[] { i, i + 1, i + 2 });
+			order.previous = i > 0 ? orders[i - 1] : null;
+			order.items.add("item" + i);
+			order.attributes.put("priority", i % 3);
+			orders[i] = order;
+		}
+		return orders;
+	}
+
+	private static long[] measure(Order[] orders, int reads, int layer, boolean cached) throws Exception {
+		long bytes = allocatedBytes();
+		long t1 = System.nanoTime();
+		int checksum = run(orders, reads, layer, cached);
+		long elapsed = System.nanoTime() - t1;
+		bytes = allocatedBytes() - bytes;
+		if (checksum == 42) {
+			System.out.println();
+		}
+		return new long[] { bytes / reads, elapsed / reads };
+	}
+
+	private static int run(Order[] orders, int reads, int layer, boolean cached) throws Exception {
+		int checksum = 0;
+		for (int i = 0; i < reads; i++) {
+			Order order = orders[i % OBJECTS];
+			checksum += cached ? readCached(order, layer) : readLookup(order, layer);
+		}
+		return checksum;
+	}
+
+	/* the former ExecutionTracer#appendVarValue */
+	private static int readLookup(Object value, int layer) throws Exception {
+		if (layer <= 0 || value == null) {
+			return 0;
+		}
+		int checksum = 1;
+		Class<?> objClass = value.getClass();
+		if (!HeuristicIgnoringFieldRule.isNeedParsingFields(objClass)) {
+			return checksum;
+		}
+		for (Field field : HeuristicIgnoringFieldRule.getValidFields(objClass, value)) {
+			field.setAccessible(true);
+			Object fieldValue = field.get(value);
+			Class<?> fieldType = field.getType();
+			String fieldTypeStr = fieldType.getName();
+			if (fieldType.isArray()) {
+				fieldTypeStr = SignatureUtils.signatureToName(fieldTypeStr);
+			}
+			if (fieldValue != null) {
+				FieldVar fieldVar = new FieldVar(Modifier.isStatic(field.getModifiers()), field.getName(),
+						fieldTypeStr, field.getDeclaringClass().getName());
+				checksum += fieldVar.getType().length();
+				if (!isLeaf(fieldValue)) {
+					checksum += readLookup(fieldValue, layer - 1);
+				}
+			}
+		}
+		return checksum;
+	}
+
+	private static int readCached(Object value, int layer) throws Exception {
+		if (layer <= 0 || value == null) {
+			return 0;
+		}
+		int checksum = 1;
+		ClassFields classFields = ClassFields.of(value.getClass());
+		if (!classFields.isNeedParsingFields()) {
+			return checksum;
+		}
+		for (FieldInfo field : classFields.getFields()) {
+			Object fieldValue = field.get(value);
+			if (fieldValue != null) {
+				FieldVar fieldVar = new FieldVar(field.isStatic(), field.getName(), field.getType(),
+						field.getDeclaringType());
+				checksum += fieldVar.getType().length();
+				if (!isLeaf(fieldValue)) {
+					checksum += readCached(fieldValue, layer - 1);
+				}
+			}
+		}
+		return checksum;
+	}
+
+	private static boolean isLeaf(Object value) {
+		return value instanceof Number || value instanceof Boolean || value instanceof Character
+				|| value instanceof String;
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	static class Address {
+		String street;
+		String city;
+		int zip;
+
+		Address(String street, String city, int zip) {
+			this.street = street;
+			this.city = city;
+			this.zip = zip;
+		}
+	}
+
+	static class Customer {
+		String name;
+		Address address;
+		boolean active = true;
+
+		Customer(String name, Address address) {
+			this.name = name;
+			this.address = address;
+		}
+	}
+
+	static class Order {
+		int id;
+		double amount;
+		Customer customer;
+		Order previous;
+		int[] quantities;
+		List<String> items = new ArrayList<>();
+		Map<String, Integer> attributes = new HashMap<>();
+
+		Order(int id, Customer customer, int[] quantities) {
+			this.id = id;
+			this.amount = id * 1.5;
+			this.customer = customer;
+			this.quantities = quantities;
+		}
+	}
+}
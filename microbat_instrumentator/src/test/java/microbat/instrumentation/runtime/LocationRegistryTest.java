@@ -0,0 +1,47 @@
+package microbat.instrumentation.runtime;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import microbat.instrumentation.runtime.LocationRegistry.Location;
+
+public class LocationRegistryTest {
+
+	@Test
+	public void testSameLocationHasSameId() {
+		int id = LocationRegistry.register("sample.Outer$Inner", "sample.Outer$Inner#same()V", 10, "iload_1");
+		assertEquals(id, LocationRegistry.register("sample.Outer$Inner", "sample.Outer$Inner#same()V", 10, "iload_1"));
+		assertNotEquals(id, LocationRegistry.register("sample.Outer$Inner", "sample.Outer$Inner#same()V", 11, "iload_1"));
+		Location location = LocationRegistry.getLocation(id);
+		assertEquals("sample.Outer$Inner", location.getClassName());
+		assertEquals("sample.Outer", location.getDeclaringCompilationUnitName());
+		assertEquals("sample.Outer$Inner#same()V", location.getMethodSignature());
+		assertEquals(10, location.getLine());
+		assertEquals("iload_1", location.getBytecode());
+	}
+
+	@Test
+	public void testRedefinedLocationHasNewId() {
+		/* e.g. the class is instrumented again after it is redefined */
+		int id = LocationRegistry.register("sample.Redefined", "sample.Redefined#run()V", 5, "iload_1");
+		int newId = LocationRegistry.register("sample.Redefined", "sample.Redefined#run()V", 5, "iload_2");
+		assertNotEquals(id, newId);
+		assertEquals("iload_1", LocationRegistry.getLocation(id).getBytecode());
+		assertEquals("iload_2", LocationRegistry.getLocation(newId).getBytecode());
+		assertEquals(newId, LocationRegistry.register("sample.Redefined", "sample.Redefined#run()V", 5, "iload_2"));
+		assertEquals(newId + 1, LocationRegistry.register("sample.Redefined", "sample.Redefined#run()V", 5, null));
+		assertEquals(newId + 1, LocationRegistry.register("sample.Redefined", "sample.Redefined#run()V", 5, null));
+	}
+
+	@Test
+	public void testIdsAreDense() {
+		int firstId = LocationRegistry.register("sample.Many", "sample.Many#run()V", 0, null);
+		for (int line = 1; line < 3000; line++) {
+			assertEquals(firstId + line, LocationRegistry.register("sample.Many", "sample.Many#run()V", line, null));
+		}
+		for (int line = 0; line < 3000; line++) {
+			assertEquals(line, LocationRegistry.getLocation(firstId + line).getLine());
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package microbat.instrumentation.runtime;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import microbat.model.value.ReferenceValue;
+import microbat.model.value.VarValue;
+import microbat.model.variable.LocalVar;
+
+public class ObjectSnapshotsTest {
+	private static final int VAR_IDX = 7;
+
+	@Test
+	public void testUnmodifiedValueIsShared() {
+		ObjectSnapshots snapshots = new ObjectSnapshots();
+		Object obj = new Object();
+		Object field = new Object();
+		/* modified before the capture */
+		ObjectSnapshots.modified(field);
+		VarValue value = capture(snapshots, obj, field);
+		assertSame(value, snapshots.get(VAR_IDX, obj));
+		assertNull(snapshots.get(VAR_IDX + 1, obj));
+		assertNull(snapshots.get(VAR_IDX, new Object()));
+	}
+
+	@Test
+	public void testModifiedObjectInvalidatesValue() {
+		ObjectSnapshots snapshots = new ObjectSnapshots();
+		Object obj = new Object();
+		Object field = new Object();
+		capture(snapshots, obj, field);
+		ObjectSnapshots.modified(field);
+		assertNull(snapshots.get(VAR_IDX, obj));
+		/* invalidated values are removed */
+		assertNull(snapshots.get(VAR_IDX, obj));
+	}
+
+	@Test
+	public void testModificationAfterCaptureOfTheSameCallback() {
+		/* e.g. n.next = m where m.prev == n, the value of m (capturing n) is recorded before n is modified */
+		ObjectSnapshots snapshots = new ObjectSnapshots();
+		Object n = new Object();
+		Object m = new Object();
+		capture(snapshots, m, n);
+		ObjectSnapshots.modified(n);
+		assertNull(snapshots.get(VAR_IDX, m));
+	}
+
+	@Test
+	public void testStaticFieldModificationInvalidatesValue() {
+		ObjectSnapshots snapshots = new ObjectSnapshots();
+		Object obj = new Object();
+		snapshots.startCapture();
+		snapshots.capture(obj);
+		snapshots.captureStaticField();
+		snapshots.endCapture(VAR_IDX, obj, newValue());
+		assertNotNull(snapshots.get(VAR_IDX, obj));
+		ObjectSnapshots.staticFieldModified();
+		assertNull(snapshots.get(VAR_IDX, obj));
+	}
+
+	@Test
+	public void testValueNotCapturedIsNotKept() {
+		ObjectSnapshots snapshots = new ObjectSnapshots();
+		Object obj = new Object();
+		snapshots.startCapture();
+		snapshots.capture(obj);
+		snapshots.endCapture(VAR_IDX, obj, null);
+		assertNull(snapshots.get(VAR_IDX, obj));
+	}
+
+	private VarValue capture(ObjectSnapshots snapshots, Object obj, Object field) {
+		VarValue value = newValue();
+		snapshots.startCapture();
+		snapshots.capture(obj);
+		snapshots.capture(field);
+		snapshots.endCapture(VAR_IDX, obj, value);
+		return value;
+	}
+
+	private VarValue newValue() {
+		return new ReferenceValue(false, 1, false, new LocalVar("obj", "java.lang.Object", "Sample", 1));
+	}
+}
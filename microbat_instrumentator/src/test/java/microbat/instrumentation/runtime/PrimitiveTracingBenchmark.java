@@ -0,0 +1,254 @@
+package microbat.instrumentation.runtime;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the time and the allocation of passing the values of the variables of array-heavy numeric code to the
+ * tracer, as the instrumented code does on every read and write: boxed in an Object, which is how the instrumented code
+ * used to do, and by the primitive callbacks of {@link IExecutionTracer}. The code is a multiplication of double
+ * matrices indexed by int loop variables.
+ *
+ * Two tracers are measured, one ignoring the values, as {@link ExecutionTracer} does in lines only mode or in an
+ * excluded method, and one formatting them as the recorded value. The tracers are called through an interface with
+ * several implementations so that the calls are not inlined, like the calls of the instrumented code.
+ *
+ * Allocated bytes are measured with the HotSpot extension of ThreadMXBean.
+ *
+ * Run as java application, optional arguments: matrix size, number of multiplications.
+ */
+public class PrimitiveTracingBenchmark {
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		double[][] a = createMatrix(size, 1);
+		double[][] b = createMatrix(size, 2);
+		Recorder[] recorders = new Recorder[] { new IgnoringRecorder(), new FormattingRecorder(),
+				new CountingRecorder() };
+		/* warm up, all recorders on both paths so that the calls are megamorphic */
+		for (Recorder recorder : recorders) {
+			multiplyBoxed(a, b, recorder);
+			multiplyPrimitive(a, b, recorder);
+		}
+
+		System.out.println(String.format("%-20s %-10s %15s %15s", "tracer", "values", "bytes/access", "ns/access"));
+		for (int i = 0; i < 2; i++) {
+			Recorder recorder = recorders[i];
+			long[] boxed = measure(a, b, recorder, runs, false);
+			long[] primitive = measure(a, b, recorder, runs, true);
+			String name = recorder.getClass().getSimpleName();
+			System.out.println(String.format("%-20s %-10s %15.1f %15.2f", name, "boxed", boxed[0] / (double) boxed[2],
+					boxed[1] / (double) boxed[2]));
+			System.out.println(String.format("%-20s %-10s %15.1f %15.2f", name, "primitive",
+					primitive[0] / (double) primitive[2], primitive[1] / (double) primitive[2]));
+		}
+	}
+
+	private static double[][] createMatrix(int size, int seed) {
+		double[][] matrix = new double[size][size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				matrix[i][j] = (i * 31 + j * seed) % 17 / 7.0;
+			}
+		}
+		return matrix;
+	}
+
+	private static long[] measure(double[][] a, double[][] b, Recorder recorder, int runs, boolean primitive) {
+		recorder.reset();
+		long bytes = allocatedBytes();
+		long t1 = System.nanoTime();
+		double checksum = 0;
+		for (int i = 0; i < runs; i++) {
+			double[][] c = primitive ? multiplyPrimitive(a, b, recorder) : multiplyBoxed(a, b, recorder);
+			checksum += c[i % c.length][0];
+		}
+		long elapsed = System.nanoTime() - t1;
+		bytes = allocatedBytes() - bytes;
+		if (checksum == 42) {
+			System.out.println();
+		}
+		long accesses = recorder.getAccesses();
+		return new long[] { bytes, elapsed, accesses };
+	}
+
+	/* c[i][j] += a[i][k] * b[k][j], every read and write of a local variable or array element is traced */
+	private static double[][] multiplyBoxed(double[][] a, double[][] b, Recorder recorder) {
+		int n = a.length;
+		double[][] c = new double[n][n];
+		for (int i = 0; i < n; i = i + 1) {
+			recorder.readLocalVar(Integer.valueOf(i));
+			for (int j = 0; j < n; j = j + 1) {
+				recorder.readLocalVar(Integer.valueOf(j));
+				double sum = 0;
+				for (int k = 0; k < n; k = k + 1) {
+					recorder.readLocalVar(Integer.valueOf(k));
+					double x = a[i][k];
+					recorder.readArrayElementVar(a[i], k, Double.valueOf(x));
+					double y = b[k][j];
+					recorder.readArrayElementVar(b[k], j, Double.valueOf(y));
+					sum += x * y;
+					recorder.writeLocalVar(Double.valueOf(sum));
+				}
+				c[i][j] = sum;
+				recorder.writeArrayElementVar(c[i], j, Double.valueOf(sum));
+			}
+		}
+		return c;
+	}
+
+	private static double[][] multiplyPrimitive(double[][] a, double[][] b, Recorder recorder) {
+		int n = a.length;
+		double[][] c = new double[n][n];
+		for (int i = 0; i < n; i = i + 1) {
+			recorder.readLocalVar(i);
+			for (int j = 0; j < n; j = j + 1) {
+				recorder.readLocalVar(j);
+				double sum = 0;
+				for (int k = 0; k < n; k = k + 1) {
+					recorder.readLocalVar(k);
+					double x = a[i][k];
+					recorder.readArrayElementVar(a[i], k, x);
+					double y = b[k][j];
+					recorder.readArrayElementVar(b[k], j, y);
+					sum += x * y;
+					recorder.writeLocalVar(sum);
+				}
+				c[i][j] = sum;
+				recorder.writeArrayElementVar(c[i], j, sum);
+			}
+		}
+		return c;
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	/* the value callbacks of IExecutionTracer, boxed and primitive */
+	interface Recorder {
+		void readLocalVar(Object value);
+
+		void readLocalVar(int value);
+
+		void writeLocalVar(Object value);
+
+		void writeLocalVar(double value);
+
+		void readArrayElementVar(Object arrayRef, int index, Object value);
+
+		void readArrayElementVar(Object arrayRef, int index, double value);
+
+		void writeArrayElementVar(Object arrayRef, int index, Object value);
+
+		void writeArrayElementVar(Object arrayRef, int index, double value);
+
+		void reset();
+
+		long getAccesses();
+	}
+
+	static class IgnoringRecorder implements Recorder {
+		protected long accesses;
+
+		public void readLocalVar(Object value) {
+			accesses++;
+		}
+
+		public void readLocalVar(int value) {
+			accesses++;
+		}
+
+		public void writeLocalVar(Object value) {
+			accesses++;
+		}
+
+		public void writeLocalVar(double value) {
+			accesses++;
+		}
+
+		public void readArrayElementVar(Object arrayRef, int index, Object value) {
+			accesses++;
+		}
+
+		public void readArrayElementVar(Object arrayRef, int index, double value) {
+			accesses++;
+		}
+
+		public void writeArrayElementVar(Object arrayRef, int index, Object value) {
+			accesses++;
+		}
+
+		public void writeArrayElementVar(Object arrayRef, int index, double value) {
+			accesses++;
+		}
+
+		public void reset() {
+			accesses = 0;
+		}
+
+		public long getAccesses() {
+			return accesses;
+		}
+	}
+
+	static class FormattingRecorder extends IgnoringRecorder {
+		private static final int BUFFER_SIZE = 1024;
+		/* the recorded values, kept as the trace keeps them */
+		private String[] values = new String[BUFFER_SIZE];
+
+		private void record(String value) {
+			values[(int) (accesses++ % BUFFER_SIZE)] = value;
+		}
+
+		public void readLocalVar(Object value) {
+			record(String.valueOf(value));
+		}
+
+		public void readLocalVar(int value) {
+			record(String.valueOf(value));
+		}
+
+		public void writeLocalVar(Object value) {
+			record(String.valueOf(value));
+		}
+
+		public void writeLocalVar(double value) {
+			record(String.valueOf(value));
+		}
+
+		public void readArrayElementVar(Object arrayRef, int index, Object value) {
+			record(String.valueOf(value));
+		}
+
+		public void readArrayElementVar(Object arrayRef, int index, double value) {
+			record(String.valueOf(value));
+		}
+
+		public void writeArrayElementVar(Object arrayRef, int index, Object value) {
+			record(String.valueOf(value));
+		}
+
+		public void writeArrayElementVar(Object arrayRef, int index, double value) {
+			record(String.valueOf(value));
+		}
+	}
+
+	static class CountingRecorder extends IgnoringRecorder {
+		private long checksum;
+
+		public void readLocalVar(Object value) {
+			checksum += value.hashCode();
+			accesses++;
+		}
+
+		public void readArrayElementVar(Object arrayRef, int index, Object value) {
+			checksum += value.hashCode();
+			accesses++;
+		}
+	}
+}
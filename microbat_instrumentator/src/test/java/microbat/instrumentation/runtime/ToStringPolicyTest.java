@@ -0,0 +1,118 @@
+package microbat.instrumentation.runtime;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import microbat.instrumentation.AgentConstants;
+
+public class ToStringPolicyTest {
+	private static final int UNSPECIFIED = AgentConstants.UNSPECIFIED_INT_VALUE;
+
+	@After
+	public void tearDown() {
+		ToStringPolicy.setup(false, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED);
+		ToStringPolicy.exportStatistics(null);
+	}
+
+	@Test
+	public void testLongValueIsTruncated() {
+		ToStringPolicy.setup(false, UNSPECIFIED, UNSPECIFIED, 5, UNSPECIFIED);
+		assertEquals("abcde" + ToStringPolicy.TRUNCATED_SUFFIX, ToStringPolicy.valueOf("abcdefgh"));
+		assertEquals("abcde", ToStringPolicy.valueOf("abcde"));
+		assertEquals("[1, 2" + ToStringPolicy.TRUNCATED_SUFFIX, ToStringPolicy.valueOf(Arrays.asList(1, 2, 3)));
+	}
+
+	@Test
+	public void testJdkCollectionOverElementLimitIsSummarized() {
+		ToStringPolicy.setup(false, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED, 2);
+		assertEquals("[1, 2]", ToStringPolicy.valueOf(new ArrayList<>(Arrays.asList(1, 2))));
+		assertEquals("java.util.ArrayList[size=3]", ToStringPolicy.valueOf(new ArrayList<>(Arrays.asList(1, 2, 3))));
+	}
+
+	@Test
+	public void testSizeOfProgramCollectionIsNotInvoked() {
+		ToStringPolicy.setup(false, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED, 2);
+		SizedList list = new SizedList();
+		assertEquals("sized", ToStringPolicy.valueOf(list));
+		assertEquals(0, list.sizeCalls);
+		ToStringPolicy.setup(true, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED);
+		assertEquals(SizedList.class.getName() + "@" + Integer.toHexString(System.identityHashCode(list)),
+				ToStringPolicy.valueOf(list));
+		assertEquals(0, list.sizeCalls);
+	}
+
+	@Test
+	public void testClassOverCallBudgetIsSummarized() {
+		ToStringPolicy.setup(false, 1, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED);
+		SlowValue value = new SlowValue(5);
+		assertEquals("slow", ToStringPolicy.valueOf(value));
+		assertEquals(summaryOf(value), ToStringPolicy.valueOf(value));
+		assertEquals(1, value.calls);
+	}
+
+	@Test
+	public void testClassOverClassBudgetIsSummarized() {
+		ToStringPolicy.setup(false, UNSPECIFIED, 10, UNSPECIFIED, UNSPECIFIED);
+		SlowValue value = new SlowValue(4);
+		int calls = 0;
+		while (ToStringPolicy.valueOf(value).equals("slow")) {
+			calls++;
+			assertTrue(calls < 10);
+		}
+		assertTrue(calls >= 2);
+		assertEquals(summaryOf(value), ToStringPolicy.valueOf(value));
+		assertEquals(calls, value.calls);
+	}
+
+	@Test
+	public void testSummaryModeKeepsPlainToString() {
+		ToStringPolicy.setup(true, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED);
+		assertEquals("12", ToStringPolicy.valueOf(Integer.valueOf(12)));
+		assertEquals("java.util.ArrayList[size=0]", ToStringPolicy.valueOf(new ArrayList<>()));
+	}
+
+	private static String summaryOf(Object obj) {
+		return obj.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(obj));
+	}
+
+	private static class SlowValue {
+		private long sleepMs;
+		private int calls;
+
+		public SlowValue(long sleepMs) {
+			this.sleepMs = sleepMs;
+		}
+
+		@Override
+		public String toString() {
+			calls++;
+			try {
+				Thread.sleep(sleepMs);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			return "slow";
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class SizedList extends ArrayList<Object> {
+		private int sizeCalls;
+
+		@Override
+		public int size() {
+			sizeCalls++;
+			return 5;
+		}
+
+		@Override
+		public String toString() {
+			return "sized";
+		}
+	}
+}
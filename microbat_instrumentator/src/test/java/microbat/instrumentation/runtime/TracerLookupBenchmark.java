@@ -0,0 +1,101 @@
+package microbat.instrumentation.runtime;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.LineNumber;
+import org.apache.bcel.classfile.Method;
+
+import microbat.instrumentation.filter.GlobalFilterChecker;
+
+/**
+ * Measures the throughput of method entries ({@link ExecutionTracer#_getTracer}) with different numbers of threads.
+ * The "synchronized" column wraps every call into one global monitor, which is how _getTracer used to behave. The
+ * entered method is {@link #enterMethod()}, entered as a method of an application class so that recording starts and
+ * the tracer of the thread is looked up. Its class is not included in {@link GlobalFilterChecker}, which is not set
+ * up, so that the lookup of the tracer is measured without the recording of a step.
+ *
+ * Run as java application, optional argument: number of method entries per thread.
+ */
+public class TracerLookupBenchmark {
+	private static final int[] THREAD_NUMS = new int[] { 1, 4, 16, 64 };
+	private static final Object GLOBAL_LOCK = new Object();
+	private static final String CLASS_NAME = TracerLookupBenchmark.class.getName();
+	private static final String METHOD_NAME = "enterMethod";
+	private static final String METHOD_SIGNATURE = CLASS_NAME + "#" + METHOD_NAME
+			+ "()Lmicrobat/instrumentation/runtime/IExecutionTracer;";
+	/* the first and last lines of the entered method */
+	private static int methodStartLine;
+	private static int methodEndLine;
+
+	public static void main(String[] args) throws Exception {
+		int callsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		lookupMethodLines();
+		ExecutionTracer._start();
+		/* warm up */
+		run(4, callsPerThread / 10, false);
+		run(4, callsPerThread / 10, true);
+		System.out.println(String.format("%-8s %20s %20s", "threads", "lock-free (ops/ms)", "synchronized (ops/ms)"));
+		for (int threadNum : THREAD_NUMS) {
+			long lockFree = run(threadNum, callsPerThread, false);
+			long synced = run(threadNum, callsPerThread, true);
+			System.out.println(String.format("%-8d %20d %20d", threadNum, lockFree, synced));
+		}
+		ExecutionTracer.shutdown();
+	}
+
+	private static long run(int threadNum, final int callsPerThread, final boolean synchronizedBaseline)
+			throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadNum);
+		for (int i = 0; i < threadNum; i++) {
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < callsPerThread; j++) {
+							if (synchronizedBaseline) {
+								synchronized (GLOBAL_LOCK) {
+									enterMethod();
+								}
+							} else {
+								enterMethod();
+							}
+						}
+					} catch (InterruptedException e) {
+						// ignore
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+			thread.start();
+		}
+		long t1 = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsedMs = Math.max(1, (System.nanoTime() - t1) / 1000000);
+		return ((long) threadNum * callsPerThread) / elapsedMs;
+	}
+
+	private static IExecutionTracer enterMethod() {
+		return ExecutionTracer._getTracer(true, CLASS_NAME, METHOD_SIGNATURE, methodStartLine, methodEndLine, "", "");
+	}
+
+	/**
+	 * the lines of the entered method, as given to _getTracer by the instrumented code.
+	 */
+	private static void lookupMethodLines() throws ClassNotFoundException {
+		for (Method method : Repository.lookupClass(TracerLookupBenchmark.class).getMethods()) {
+			if (METHOD_NAME.equals(method.getName())) {
+				LineNumber[] lines = method.getLineNumberTable().getLineNumberTable();
+				methodStartLine = lines[0].getLineNumber();
+				methodEndLine = lines[lines.length - 1].getLineNumber();
+				return;
+			}
+		}
+		throw new IllegalStateException("Method not found: " + METHOD_SIGNATURE);
+	}
+}
@@ -0,0 +1,105 @@
+package microbat.instrumentation.runtime;
+
+import java.lang.management.ManagementFactory;
+
+import microbat.model.variable.VarIdTable;
+import microbat.model.variable.Variable;
+
+/**
+ * Compares the allocation and the time spent to build the var IDs of typical read/write events (a local variable,
+ * a field of an object with its alias, an array element) by string concatenation, which is how
+ * {@link ExecutionTracer} used to build them, and by interning them in a {@link VarIdTable}.
+ *
+ * Allocated bytes are measured with the HotSpot extension of ThreadMXBean.
+ *
+ * Run as java application, optional argument: number of events.
+ */
+public class VarIdAllocationBenchmark {
+	private static final int OBJECTS = 1000;
+	private static final int ARRAY_LENGTH = 16;
+
+	public static void main(String[] args) {
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		Object[] objects = new Object[OBJECTS];
+		for (int i = 0; i < OBJECTS; i++) {
+			objects[i] = new Object();
+		}
+		/* warm up */
+		runConcatenation(objects, events / 2);
+		runInterning(new VarIdTable(), objects, events / 2);
+
+		System.out.println(String.format("%-15s %15s %15s", "var IDs", "bytes/event", "ns/event"));
+		VarIdTable table = new VarIdTable();
+		long[] concat = measure(objects, events, null);
+		long[] interned = measure(objects, events, table);
+		System.out.println(String.format("%-15s %15d %15d", "concatenated", concat[0], concat[1]));
+		System.out.println(String.format("%-15s %15d %15d", "interned", interned[0], interned[1]));
+		System.out.println("distinct ids: " + table.size());
+	}
+
+	private static long[] measure(Object[] objects, int events, VarIdTable table) {
+		long bytes = allocatedBytes();
+		long t1 = System.nanoTime();
+		int checksum = table == null ? runConcatenation(objects, events) : runInterning(table, objects, events);
+		long elapsed = System.nanoTime() - t1;
+		bytes = allocatedBytes() - bytes;
+		if (checksum == 42) {
+			System.out.println();
+		}
+		return new long[] { bytes / events, elapsed / events };
+	}
+
+	private static int runConcatenation(Object[] objects, int events) {
+		int checksum = 0;
+		for (int i = 0; i < events; i++) {
+			Object obj = objects[i % OBJECTS];
+			String varID;
+			switch (i % 3) {
+			case 0:
+				varID = Variable.concanateLocalVarID("sample.Sample", "count", 10, 30, 2);
+				break;
+			case 1:
+				String parentId = String.valueOf(System.identityHashCode(obj));
+				checksum += Variable.concanateFieldVarID(parentId, "next").length();
+				/* alias id */
+				varID = String.valueOf(System.identityHashCode(objects[(i + 1) % OBJECTS]));
+				break;
+			default:
+				varID = Variable.concanateArrayElementVarID(String.valueOf(System.identityHashCode(obj)),
+						String.valueOf(i % ARRAY_LENGTH));
+			}
+			checksum += varID.length();
+		}
+		return checksum;
+	}
+
+	private static int runInterning(VarIdTable table, Object[] objects, int events) {
+		int checksum = 0;
+		for (int i = 0; i < events; i++) {
+			Object obj = objects[i % OBJECTS];
+			int id;
+			switch (i % 3) {
+			case 0:
+				id = table.getLocalVarId("sample.Sample", "count", 10, 30, 2);
+				break;
+			case 1:
+				int fieldId = table.getFieldId(table.getObjectId(System.identityHashCode(obj)), "next");
+				checksum += table.getVarID(fieldId).length();
+				id = table.getObjectId(System.identityHashCode(objects[(i + 1) % OBJECTS]));
+				break;
+			default:
+				id = table.getArrayElementId(table.getObjectId(System.identityHashCode(obj)), i % ARRAY_LENGTH);
+			}
+			checksum += table.getVarID(id).length();
+		}
+		return checksum;
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,83 @@
+package microbat.instrumentation.worker;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import microbat.instrumentation.CommandLine;
+import microbat.instrumentation.filter.GlobalFilterChecker;
+import microbat.model.trace.Trace;
+import sav.strategies.dto.AppJavaClassPath;
+
+public class AgentWorkerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File binFolder;
+	private File otherBinFolder;
+	private File libJar;
+
+	@Before
+	public void setUp() throws Exception {
+		binFolder = folder.newFolder("bin");
+		otherBinFolder = folder.newFolder("otherBin");
+		libJar = folder.newFile("lib.jar");
+	}
+
+	@Test
+	public void testRunDoesNotInheritFiltersOfPreviousRun() {
+		/* run 1: includes lib.A */
+		assertTrue(AgentWorker.resetRun(CommandLine.parse("includes=lib.A*")));
+		GlobalFilterChecker.setup(newAppPath(binFolder), "lib.A*", null);
+		assertTrue(GlobalFilterChecker.isTransformable("Sample", binFolder.getAbsolutePath(), false));
+		assertTrue(GlobalFilterChecker.isTransformable("lib/A", libJar.getAbsolutePath(), false));
+		assertFalse(GlobalFilterChecker.isTransformable("lib/B", libJar.getAbsolutePath(), false));
+		assertFalse(GlobalFilterChecker.isExclusive("Sample", "run()V"));
+		assertLibraryClasses(new String[] { "lib.A" }, new String[] { "lib.B" });
+
+		/* run 2: another program, includes lib.B and excludes lib.A */
+		assertTrue(AgentWorker.resetRun(CommandLine.parse("includes=lib.B*,excludes=lib.A*")));
+		GlobalFilterChecker.setup(newAppPath(otherBinFolder), "lib.B*", "lib.A*");
+		assertTrue(GlobalFilterChecker.isExclusive("Sample", "run()V"));
+		assertFalse(GlobalFilterChecker.isAppClazz("Sample"));
+		assertLibraryClasses(new String[0], new String[0]);
+		assertFalse(GlobalFilterChecker.isTransformable("Sample", binFolder.getAbsolutePath(), false));
+		assertTrue(GlobalFilterChecker.isTransformable("Other", otherBinFolder.getAbsolutePath(), false));
+		assertFalse(GlobalFilterChecker.isTransformable("lib/A", libJar.getAbsolutePath(), false));
+		assertTrue(GlobalFilterChecker.isTransformable("lib/B", libJar.getAbsolutePath(), false));
+		assertTrue(GlobalFilterChecker.isExclusive("Sample", "run()V"));
+		assertFalse(GlobalFilterChecker.isExclusive("Other", "run()V"));
+		/* Sample is not a class of the program of run 2 */
+		assertLibraryClasses(new String[] { "lib.B" }, new String[] { "Sample", "lib.A" });
+
+		/* run 3: same filters, the library classes shared by the runs are not transformed again */
+		assertFalse(AgentWorker.resetRun(CommandLine.parse("includes=lib.B*,excludes=lib.A*")));
+		GlobalFilterChecker.setup(newAppPath(otherBinFolder), "lib.B*", "lib.A*");
+		assertTrue(GlobalFilterChecker.isExclusive("Other", "run()V"));
+		assertLibraryClasses(new String[] { "lib.B" }, new String[] { "Sample", "lib.A" });
+		assertTrue(GlobalFilterChecker.isTransformable("lib/B", libJar.getAbsolutePath(), false));
+		assertLibraryClasses(new String[] { "lib.B" }, new String[] { "Sample", "lib.A" });
+	}
+
+	private AppJavaClassPath newAppPath(File binFolder) {
+		AppJavaClassPath appPath = new AppJavaClassPath();
+		appPath.setWorkingDirectory(folder.getRoot().getAbsolutePath());
+		appPath.addClasspath(binFolder.getAbsolutePath());
+		appPath.addClasspath(libJar.getAbsolutePath());
+		return appPath;
+	}
+
+	private void assertLibraryClasses(String[] included, String[] excluded) {
+		Trace trace = new Trace(null);
+		GlobalFilterChecker.addFilterInfo(trace);
+		assertEquals(Arrays.asList(included), trace.getIncludedLibraryClasses());
+		assertEquals(Arrays.asList(excluded), trace.getExcludedLibraryClasses());
+		assertEquals(Collections.emptyList(), GlobalFilterChecker.getInstance().getBootstrapIncludes());
+	}
+}
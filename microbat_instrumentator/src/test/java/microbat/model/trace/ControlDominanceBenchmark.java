@@ -0,0 +1,180 @@
+package microbat.model.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import microbat.model.BreakPoint;
+import microbat.model.ClassLocation;
+import microbat.model.ControlScope;
+import microbat.model.Scope;
+
+/**
+ * Compares the time spent to assign the control dominators of a synthetic trace of deep recursions by
+ * {@link Trace#assignControlDominators()} and by the former algorithm, which checked every invocation parent of a
+ * step against the scope of its candidate dominators, and checks that both assign the same dominators.
+ *
+ * The traced method is:
+ * <pre>
+ * 10 void f(int d) {
+ * 11   if (d > 0) {
+ * 12     x++;
+ * 13     f(d - 1);
+ * 14   }
+ * 15 }
+ * </pre>
+ *
+ * Run as java application, optional arguments: recursion depth, number of recursions.
+ */
+public class ControlDominanceBenchmark {
+	private static final String CLASS_NAME = "sample.Recursion";
+	private static final String METHOD_SIGN = CLASS_NAME + "#f(I)V";
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int recursions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		/* warm up */
+		assignFormer(createTrace(depth / 10, recursions));
+		createTrace(depth / 10, recursions).assignControlDominators();
+
+		Trace former = createTrace(depth, recursions);
+		long t1 = System.nanoTime();
+		assignFormer(former);
+		long formerTime = System.nanoTime() - t1;
+
+		Trace linear = createTrace(depth, recursions);
+		t1 = System.nanoTime();
+		linear.assignControlDominators();
+		long linearTime = System.nanoTime() - t1;
+
+		System.out.println(String.format("steps: %d, recursion depth: %d", linear.size(), depth));
+		System.out.println(String.format("%-10s %15s", "algorithm", "ms"));
+		System.out.println(String.format("%-10s %15d", "former", formerTime / 1000000));
+		System.out.println(String.format("%-10s %15d", "linear", linearTime / 1000000));
+		System.out.println("same dominators: " + sameDominators(former, linear));
+	}
+
+	private static Trace createTrace(int depth, int recursions) {
+		Trace trace = new Trace(null);
+		ControlScope ifScope = new ControlScope(toLocations(12, 13, 14, 11), true, false);
+		ifScope.setBranch(true);
+		for (int i = 0; i < recursions; i++) {
+			TraceNode invocationParent = null;
+			for (int d = depth; d >= 0; d--) {
+				addStep(trace, 10, null, invocationParent);
+				addStep(trace, 11, ifScope, invocationParent);
+				if (d > 0) {
+					addStep(trace, 12, null, invocationParent);
+					invocationParent = addStep(trace, 13, null, invocationParent);
+				}
+			}
+			/* returns */
+			while (invocationParent != null) {
+				TraceNode caller = invocationParent.getInvocationParent();
+				addStep(trace, 15, null, caller);
+				invocationParent = caller;
+			}
+		}
+		return trace;
+	}
+
+	private static TraceNode addStep(Trace trace, int line, ControlScope scope, TraceNode invocationParent) {
+		BreakPoint breakPoint = new BreakPoint(CLASS_NAME, METHOD_SIGN, line);
+		if (scope != null) {
+			breakPoint.setConditional(true);
+			breakPoint.setBranch(true);
+			breakPoint.setControlScope(scope);
+		}
+		TraceNode node = new TraceNode(breakPoint, null, trace.size() + 1, trace, 0, 0, 0, null);
+		trace.addTraceNode(node);
+		node.setInvocationParent(invocationParent);
+		return node;
+	}
+
+	private static List<ClassLocation> toLocations(int... lines) {
+		List<ClassLocation> locations = new ArrayList<>();
+		for (int line : lines) {
+			locations.add(new ClassLocation(CLASS_NAME, METHOD_SIGN, line));
+		}
+		return locations;
+	}
+
+	private static boolean sameDominators(Trace former, Trace linear) {
+		for (int i = 0; i < former.size(); i++) {
+			TraceNode formerNode = former.getExecutionList().get(i);
+			TraceNode linearNode = linear.getExecutionList().get(i);
+			if (getOrder(formerNode.getControlDominator()) != getOrder(linearNode.getControlDominator())
+					|| !Arrays.equals(getOrders(formerNode.getControlDominatees()),
+							getOrders(linearNode.getControlDominatees()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int getOrder(TraceNode node) {
+		return node == null ? 0 : node.getOrder();
+	}
+
+	private static int[] getOrders(List<TraceNode> nodes) {
+		int[] orders = new int[nodes.size()];
+		for (int i = 0; i < orders.length; i++) {
+			orders[i] = nodes.get(i).getOrder();
+		}
+		return orders;
+	}
+
+	/* the algorithm which Trace#constructControlDomianceRelation used before */
+
+	private static void assignFormer(Trace trace) {
+		TraceNode controlDominator = null;
+		for (TraceNode node : trace.getExecutionList()) {
+			if (controlDominator != null) {
+				if (isContainedInScope(node, controlDominator.getControlScope())) {
+					addControlDominatee(controlDominator, node);
+				} else {
+					controlDominator = findContainingControlDominator(node, controlDominator);
+					if (controlDominator != null) {
+						addControlDominatee(controlDominator, node);
+					}
+				}
+			}
+			if (node.isBranch()) {
+				controlDominator = node;
+			}
+		}
+	}
+
+	private static void addControlDominatee(TraceNode controlDominator, TraceNode node) {
+		if (!controlDominator.getControlDominatees().contains(node)) {
+			controlDominator.addControlDominatee(node);
+		}
+		node.setControlDominator(controlDominator);
+	}
+
+	private static TraceNode findContainingControlDominator(TraceNode node, TraceNode controlDominator) {
+		TraceNode superControlDominator = controlDominator.getControlDominator();
+		while (superControlDominator != null) {
+			if (isContainedInScope(node, superControlDominator.getControlScope())) {
+				return superControlDominator;
+			}
+			superControlDominator = superControlDominator.getControlDominator();
+		}
+		return null;
+	}
+
+	private static boolean isContainedInScope(TraceNode node, Scope conditionScope) {
+		if (conditionScope == null) {
+			return false;
+		}
+		List<TraceNode> testingSet = new ArrayList<>();
+		testingSet.add(node);
+		testingSet.addAll(node.findAllInvocationParents());
+		for (TraceNode n : testingSet) {
+			if (conditionScope.containsNodeScope(n)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
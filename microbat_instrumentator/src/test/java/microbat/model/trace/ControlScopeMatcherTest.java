@@ -0,0 +1,116 @@
+package microbat.model.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import microbat.model.BreakPoint;
+import microbat.model.ClassLocation;
+import microbat.model.ControlScope;
+import microbat.model.Scope;
+import microbat.model.SourceScope;
+
+public class ControlScopeMatcherTest {
+	private static final String[] CLASSES = { "Sample", "Sample$Inner", "Other" };
+
+	@Test
+	public void testSameAsScanningInvocationParents() {
+		Random random = new Random(1);
+		for (int run = 0; run < 50; run++) {
+			Trace trace = createTrace(random, 50 + random.nextInt(300));
+			List<Scope> scopes = createScopes(random, 20);
+			ControlScopeMatcher matcher = new ControlScopeMatcher();
+			for (TraceNode node : trace.getExecutionList()) {
+				for (int i = 0; i < 5; i++) {
+					Scope scope = scopes.get(random.nextInt(scopes.size()));
+					assertEquals(isContainedInScope(node, scope), matcher.isContainedInScope(node, scope));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCycleOfInvocationParents() {
+		Trace trace = new Trace(null);
+		TraceNode node1 = newStep(trace, "Sample", 1);
+		TraceNode node2 = newStep(trace, "Sample", 2);
+		TraceNode node3 = newStep(trace, "Sample", 3);
+		node1.setInvocationParent(node2);
+		node2.setInvocationParent(node1);
+		node3.setInvocationParent(node1);
+		ControlScopeMatcher matcher = new ControlScopeMatcher();
+		assertFalse(matcher.isContainedInScope(node3, newControlScope("Sample", 4)));
+		assertTrue(matcher.isContainedInScope(node3, newControlScope("Sample", 2)));
+		assertFalse(matcher.isContainedInScope(node3, null));
+	}
+
+	private Trace createTrace(Random random, int size) {
+		Trace trace = new Trace(null);
+		for (int order = 1; order <= size; order++) {
+			TraceNode node = newStep(trace, CLASSES[random.nextInt(CLASSES.length)], random.nextInt(30));
+			if (order > 1 && random.nextInt(4) != 0) {
+				node.setInvocationParent(trace.getTraceNode(1 + random.nextInt(order - 1)));
+			}
+		}
+		/* a few cycles */
+		for (int i = 0; i < 3; i++) {
+			trace.getTraceNode(1 + random.nextInt(size)).setInvocationParent(trace.getTraceNode(1 + random.nextInt(size)));
+		}
+		return trace;
+	}
+
+	private List<Scope> createScopes(Random random, int size) {
+		List<Scope> scopes = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			if (random.nextInt(5) == 0) {
+				int start = random.nextInt(30);
+				scopes.add(new SourceScope(CLASSES[random.nextInt(CLASSES.length)], start, start + random.nextInt(5)));
+				continue;
+			}
+			ControlScope scope = new ControlScope();
+			int locations = random.nextInt(6);
+			for (int j = 0; j < locations; j++) {
+				/* a negative line is not indexed */
+				int line = random.nextInt(20) == 0 ? -1 : random.nextInt(30);
+				scope.addLocation(new ClassLocation(CLASSES[random.nextInt(CLASSES.length)], null, line));
+			}
+			scopes.add(scope);
+		}
+		return scopes;
+	}
+
+	private TraceNode newStep(Trace trace, String className, int line) {
+		BreakPoint bkp = new BreakPoint(className, "run()V", line);
+		TraceNode node = new TraceNode(bkp, null, trace.size() + 1, trace, 0, 0, 0, null);
+		trace.addTraceNode(node);
+		return node;
+	}
+
+	private ControlScope newControlScope(String className, int line) {
+		ControlScope scope = new ControlScope();
+		scope.addLocation(new ClassLocation(className, null, line));
+		return scope;
+	}
+
+	/**
+	 * the check of {@link Trace#constructControlDomianceRelation()} before {@link ControlScopeMatcher}.
+	 */
+	private boolean isContainedInScope(TraceNode node, Scope scope) {
+		if (scope == null) {
+			return false;
+		}
+		if (scope.containsNodeScope(node)) {
+			return true;
+		}
+		for (TraceNode parent : node.findAllInvocationParents()) {
+			if (scope.containsNodeScope(parent)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,160 @@
+package microbat.model.trace;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import microbat.model.BreakPoint;
+import microbat.model.value.PrimitiveValue;
+import microbat.model.value.ReferenceValue;
+import microbat.model.value.VarValue;
+import microbat.model.variable.ArrayElementVar;
+import microbat.model.variable.FieldVar;
+import microbat.model.variable.LocalVar;
+import microbat.model.variable.VarIdTable;
+import microbat.model.variable.Variable;
+
+public class StepVariableSpillTest {
+	private static final int STEPS = 3 * StepVariableSpill.CHUNK_SIZE;
+	private static final int SHARING_INTERVAL = 500;
+
+	@Test
+	public void testSharedValuesKeepTheirIdentityAcrossChunks() {
+		Trace trace = createTrace(new StepVariableSpill(16, new VarIdTable()));
+		VarValue first = getWrittenValue(trace, 1);
+		for (int order = 1 + SHARING_INTERVAL; order <= STEPS; order += SHARING_INTERVAL) {
+			VarValue value = getWrittenValue(trace, order);
+			assertSame(first, value);
+			assertSame(first.getChildren().get(0), value.getChildren().get(0));
+			assertSame(value, value.getChildren().get(0).getParents().get(0));
+		}
+		assertTrue(trace.getVariableSpill().getSpilledSteps() > 0);
+		trace.disposeVariableSpill();
+	}
+
+	@Test
+	public void testValuesModifiedInPlaceAreSpilledAgain() {
+		assertModifiedValuesAreSpilledAgain(createTrace(new StepVariableSpill(16, new VarIdTable())));
+	}
+
+	@Test
+	public void testModifiedValuesWithSameFingerprintAreSpilledAgain() {
+		/* the fingerprints of all values collide */
+		assertModifiedValuesAreSpilledAgain(createTrace(new StepVariableSpill(16, new VarIdTable()) {
+			@Override
+			long fingerprint(VarValue value) {
+				return 0;
+			}
+		}));
+	}
+
+	@Test
+	public void testInternedIdsAreSpilledWithoutTheirStrings() {
+		final int[] builtIds = new int[1];
+		VarIdTable varIds = new VarIdTable() {
+			@Override
+			public String getVarID(int id) {
+				builtIds[0]++;
+				return super.getVarID(id);
+			}
+		};
+		Trace trace = new Trace(null);
+		trace.enableVariableSpill(new StepVariableSpill(16, varIds));
+		int arrayIdx = varIds.getObjectId(100);
+		/* the first chunk is out of the cache of the decoded chunks */
+		for (int order = 1; order <= 4 * StepVariableSpill.CHUNK_SIZE; order++) {
+			TraceNode node = new TraceNode(new BreakPoint("Sample", "run()V", 1), null, order, trace, null);
+			trace.addTraceNode(node);
+			node.addReadVariable(new PrimitiveValue(String.valueOf(order), true, newLocalVar(varIds, order)));
+			ArrayElementVar element = new ArrayElementVar(null, "int", null);
+			element.setVarID(varIds, varIds.getArrayElementId(arrayIdx, order));
+			node.addWrittenVariable(new PrimitiveValue(String.valueOf(order), true, element));
+		}
+		assertTrue(trace.getVariableSpill().getSpilledSteps() > 0);
+		System.gc();
+		VarValue readValue = getReadValue(trace, 5);
+		assertEquals(varIds.getLocalVarId("Sample", "x", 1, 10, 5), readValue.getVarIdx());
+		assertEquals(0, builtIds[0]);
+		assertEquals(Variable.concanateLocalVarID("Sample", "x", 1, 10, 5), readValue.getVarID());
+		assertEquals("100[5]", getWrittenValue(trace, 5).getVarName());
+		/* a new value of the same variable replaces the restored one */
+		TraceNode node = trace.getTraceNode(5);
+		node.addReadVariable(new PrimitiveValue("5", true, newLocalVar(varIds, 5)));
+		assertEquals(1, node.getReadVariables().size());
+		trace.disposeVariableSpill();
+	}
+
+	private LocalVar newLocalVar(VarIdTable varIds, int order) {
+		LocalVar var = new LocalVar("x", "int", "Sample", 1);
+		var.setVarID(varIds, varIds.getLocalVarId("Sample", "x", 1, 10, order));
+		return var;
+	}
+
+	private void assertModifiedValuesAreSpilledAgain(Trace trace) {
+		modifyReadValue(trace, 5);
+		modifyWrittenValue(trace, 1);
+		/* spill the modified steps again and drop their values from heap */
+		for (int order = 2; order <= STEPS; order++) {
+			trace.getTraceNode(order).getReadVariables();
+		}
+		System.gc();
+		VarValue readValue = getReadValue(trace, 5);
+		assertEquals("modified", readValue.getStringValue());
+		assertEquals(1, readValue.getChildren().size());
+		assertSame(readValue, readValue.getChildren().get(0).getParents().get(0));
+		VarValue shared = getWrittenValue(trace, STEPS - SHARING_INTERVAL + 1);
+		assertEquals(2, shared.getChildren().size());
+		assertEquals("-1", shared.getChildren().get(1).getStringValue());
+		assertSame(shared, getWrittenValue(trace, 1));
+		trace.disposeVariableSpill();
+	}
+
+	private void modifyReadValue(Trace trace, int order) {
+		VarValue value = getReadValue(trace, order);
+		value.setStringValue("modified");
+		FieldVar field = new FieldVar(false, "hash", "int", "Sample");
+		field.setVarID("x.hash");
+		value.linkAchild(new PrimitiveValue("0", false, field));
+	}
+
+	private void modifyWrittenValue(Trace trace, int order) {
+		VarValue value = getWrittenValue(trace, order);
+		FieldVar field = new FieldVar(false, "modCount", "int", "java.util.ArrayList");
+		field.setVarID("100.modCount");
+		value.linkAchild(new PrimitiveValue("-1", false, field));
+	}
+
+	private VarValue getReadValue(Trace trace, int order) {
+		return trace.getTraceNode(order).getReadVariables().iterator().next();
+	}
+
+	private VarValue getWrittenValue(Trace trace, int order) {
+		return trace.getTraceNode(order).getWrittenVariables().iterator().next();
+	}
+
+	/**
+	 * each step reads its own value, and every {@link #SHARING_INTERVAL} steps write the same list.
+	 */
+	private Trace createTrace(StepVariableSpill variableSpill) {
+		Trace trace = new Trace(null);
+		trace.enableVariableSpill(variableSpill);
+		LocalVar listVar = new LocalVar("list", "java.util.List", "Sample", 3);
+		listVar.setVarID("Sample{1,10}list");
+		ReferenceValue list = new ReferenceValue(false, 100, true, listVar);
+		FieldVar sizeVar = new FieldVar(false, "size", "int", "java.util.ArrayList");
+		sizeVar.setVarID("100.size");
+		list.linkAchild(new PrimitiveValue("0", false, sizeVar));
+		for (int order = 1; order <= STEPS; order++) {
+			TraceNode node = new TraceNode(new BreakPoint("Sample", "run()V", 1 + order % 10), null, order, trace,
+					null);
+			trace.addTraceNode(node);
+			LocalVar var = new LocalVar("x", "int", "Sample", 1 + order % 10);
+			var.setVarID("Sample{1,10}x-" + order);
+			node.addReadVariable(new PrimitiveValue(String.valueOf(order), true, var));
+			if (order % SHARING_INTERVAL == 1) {
+				node.addWrittenVariable(list);
+			}
+		}
+		return trace;
+	}
+}
@@ -0,0 +1,60 @@
+package microbat.model.variable;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class VarIdTableTest {
+
+	@Test
+	public void testSameIdentityHasSameId() {
+		VarIdTable table = new VarIdTable();
+		int objId = table.getObjectId(12345);
+		assertEquals(objId, table.getObjectId(12345));
+		assertNotEquals(objId, table.getObjectId(54321));
+		int fieldId = table.getFieldId(objId, "next");
+		assertEquals(fieldId, table.getFieldId(objId, "next"));
+		assertNotEquals(fieldId, table.getFieldId(objId, "prev"));
+		/* the same parts in another kind of identity */
+		assertNotEquals(objId, table.getArrayElementId(0, 12345));
+		assertEquals(table.getLocalVarId("a.Sample", "i", 3, 10, 2), table.getLocalVarId("a.Sample", "i", 3, 10, 2));
+		assertNotEquals(table.getLocalVarId("a.Sample", "i", 3, 10, 2), table.getLocalVarId("a.Sample", "i", 3, 10, 3));
+		assertNotEquals(table.getLocalVarId("a.Sample", "i", 3, 10, 2), table.getLocalVarId("a.Sample", "i", 4, 10, 2));
+	}
+
+	@Test
+	public void testVarIDIsTheConcatenatedOne() {
+		VarIdTable table = new VarIdTable();
+		int objId = table.getObjectId(12345);
+		assertEquals("12345", table.getVarID(objId));
+		int fieldId = table.getFieldId(objId, "next");
+		assertEquals(Variable.concanateFieldVarID("12345", "next"), table.getVarID(fieldId));
+		assertEquals(Variable.concanateFieldVarID("12345.next", "value"),
+				table.getVarID(table.getFieldId(fieldId, "value")));
+		assertEquals(Variable.concanateFieldVarID("a.Sample", "COUNT"),
+				table.getVarID(table.getStaticFieldId("a.Sample", "COUNT")));
+		assertEquals(Variable.concanateArrayElementVarID("12345", "-1"),
+				table.getVarID(table.getArrayElementId(objId, -1)));
+		assertEquals(Variable.concanateLocalVarID("a.Sample", "i", 3, 10, 2),
+				table.getVarID(table.getLocalVarId("a.Sample", "i", 3, 10, 2)));
+		/* the string form is built once */
+		assertSame(table.getVarID(fieldId), table.getVarID(fieldId));
+		assertNull(table.getVarID(VarIdTable.NO_ID));
+		assertNull(table.getVarID(table.size() + 1));
+	}
+
+	@Test
+	public void testManyIds() {
+		VarIdTable table = new VarIdTable();
+		int arrayId = table.getObjectId(1);
+		int[] ids = new int[5000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = table.getArrayElementId(arrayId, i);
+		}
+		assertEquals(ids.length + 1, table.size());
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(ids[i], table.getArrayElementId(arrayId, i));
+			assertEquals("1[" + i + "]", table.getVarID(ids[i]));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package microbat.sql;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import microbat.model.BreakPoint;
+import microbat.model.trace.Trace;
+import microbat.model.trace.TraceNode;
+import microbat.model.value.PrimitiveValue;
+import microbat.model.variable.FieldVar;
+import microbat.model.variable.LocalVar;
+
+/**
+ * Compares the step insertion throughput of {@link SqliteRecorder} (one transaction, xml variables) and
+ * {@link BatchSqliteRecorder} (chunked commits, binary variables, WAL mode) on a generated trace.
+ *
+ * Run as java application, optional argument: number of steps.
+ */
+public class SqliteRecorderBenchmark {
+	private static final String[] SCHEMA = new String[] {
+			"CREATE TABLE Run (run_id TEXT NOT NULL, project_name TEXT, project_version TEXT, launch_method TEXT, "
+					+ "thread_status INTEGER, launch_class TEXT, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+					+ "PRIMARY KEY (run_id))",
+			"CREATE TABLE Trace (trace_id TEXT NOT NULL, run_id TEXT NOT NULL, thread_id TEXT, thread_name TEXT, "
+					+ "generated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, isMain INTEGER, PRIMARY KEY (trace_id))",
+			"CREATE TABLE Step (trace_id TEXT NOT NULL, step_order INTEGER NOT NULL, control_dominator INTEGER, "
+					+ "step_in INTEGER, step_over INTEGER, invocation_parent INTEGER, loop_parent INTEGER, "
+					+ "location_id INTEGER, read_vars TEXT, written_vars TEXT, time TIMESTAMP NOT NULL, "
+					+ "PRIMARY KEY (trace_id, step_order))",
+			"CREATE TABLE Location (location_id integer NOT NULL, trace_id TEXT NOT NULL, class_name TEXT, "
+					+ "line_number integer, is_conditional integer, is_return integer)" };
+
+	public static void main(String[] args) throws Exception {
+		int steps = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		Trace trace = createTrace(steps);
+		System.out.println(String.format("%-20s %15s %15s", "recorder", "time (ms)", "rows/s"));
+		run("SqliteRecorder", trace, false);
+		run("BatchSqliteRecorder", trace, true);
+	}
+
+	private static void run(String name, Trace trace, boolean batch) throws Exception {
+		File dbFile = File.createTempFile("microbat", ".db");
+		dbFile.deleteOnExit();
+		String runId = name + System.currentTimeMillis();
+		SqliteRecorder recorder = batch ? new BatchSqliteRecorder(dbFile.getPath(), runId)
+				: new SqliteRecorder(dbFile.getPath(), runId);
+		createSchema(recorder);
+		long t1 = System.nanoTime();
+		recorder.store(Arrays.asList(trace));
+		long elapsedMs = Math.max(1, (System.nanoTime() - t1) / 1000000);
+		System.out.println(String.format("%-20s %15d %15d", name, elapsedMs, trace.size() * 1000L / elapsedMs));
+		new File(dbFile.getPath() + "-wal").delete();
+		new File(dbFile.getPath() + "-shm").delete();
+	}
+
+	private static void createSchema(SqliteServer server) throws SQLException {
+		Connection conn = server.getConnection();
+		try {
+			Statement st = conn.createStatement();
+			for (String sql : SCHEMA) {
+				st.execute(sql);
+			}
+			st.close();
+		} finally {
+			conn.close();
+		}
+	}
+
+	private static Trace createTrace(int steps) {
+		Trace trace = new Trace(null);
+		trace.setMain(true);
+		trace.setThreadName("main");
+		TraceNode prev = null;
+		for (int order = 1; order <= steps; order++) {
+			BreakPoint bkp = new BreakPoint("Sample", "Sample", "run()V", order % 50);
+			TraceNode step = new TraceNode(bkp, null, order, trace, 1, 0, order, "iload_1");
+			LocalVar localVar = new LocalVar("i", "int", "Sample", order % 50);
+			localVar.setVarID("i:" + order);
+			step.addReadVariable(new PrimitiveValue(String.valueOf(order), true, localVar));
+			FieldVar fieldVar = new FieldVar(false, "count", "int", "Sample");
+			fieldVar.setVarID("100.count:" + order);
+			step.addReadVariable(new PrimitiveValue(String.valueOf(order - 1), true, fieldVar));
+			step.addWrittenVariable(new PrimitiveValue(String.valueOf(order), true, fieldVar));
+			if (prev != null) {
+				prev.setStepOverNext(step);
+			}
+			trace.addTraceNode(step);
+			prev = step;
+		}
+		return trace;
+	}
+}
@@ -1,6 +1,7 @@
 package microbat.mutation.trace;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.runtime.IPath;
@@ -13,6 +14,7 @@ import microbat.mutation.trace.dto.AnalysisTestcaseParams;
 import microbat.util.IResourceUtils;
 import microbat.util.JavaUtil;
 import microbat.util.MicroBatUtil;
+import sav.common.core.SystemVariables;
 import sav.common.core.utils.ClassUtils;
 import sav.common.core.utils.FileUtils;
 import sav.strategies.dto.AppJavaClassPath;
@@ -61,6 +63,30 @@ public class MuRegressionUtils {
 		classPath.setLaunchClass(TEST_RUNNER);
 		return classPath;
 	}
+
+	/**
+	 * a copy of the test case class path which loads the classes of {@code mutantClassFolder} first, so a mutant
+	 * can be executed without overwriting the original classes in the project output folder.
+	 */
+	public static AppJavaClassPath createMutationClassPath(AppJavaClassPath testcaseConfig, String mutantClassFolder) {
+		AppJavaClassPath classPath = new AppJavaClassPath();
+		classPath.setJavaHome(testcaseConfig.getJavaHome());
+		classPath.setWorkingDirectory(testcaseConfig.getWorkingDirectory());
+		classPath.addClasspath(mutantClassFolder);
+		classPath.addClasspaths(testcaseConfig.getClasspaths());
+		classPath.setExternalLibPaths(new ArrayList<>(testcaseConfig.getExternalLibPaths()));
+		classPath.setLaunchClass(testcaseConfig.getLaunchClass());
+		classPath.setAgentLib(testcaseConfig.getAgentLib());
+		classPath.setAgentBootstrapPathList(new ArrayList<>(testcaseConfig.getAgentBootstrapPathList()));
+		classPath.setOptionalTestClass(testcaseConfig.getOptionalTestClass());
+		classPath.setOptionalTestMethod(testcaseConfig.getOptionalTestMethod());
+		classPath.setSourceCodePath(testcaseConfig.getSoureCodePath());
+		classPath.setTestCodePath(testcaseConfig.getTestCodePath());
+		classPath.setAdditionalSourceFolders(new ArrayList<>(testcaseConfig.getAdditionalSourceFolders()));
+		classPath.getPreferences().put(SystemVariables.APP_ENABLE_ASSERTION,
+				testcaseConfig.getPreferences().get(SystemVariables.APP_ENABLE_ASSERTION));
+		return classPath;
+	}
 	
 	public static String getSourceFolder(String cName, String projectName) {
 		ICompilationUnit unit = JavaUtil.findICompilationUnitInProject(cName, projectName);
@@ -3,10 +3,15 @@ package microbat.mutation.trace;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdi.TimeoutException;
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -65,6 +70,7 @@ import tregression.separatesnapshots.DiffMatcher;
 import tregression.tracematch.ControlPathBasedTraceMatcher;
 
 public class MutationGenerator {
+	private static final String MUTANT_CLASS_FOLDER = "classes";
 	
 	public MutationGenerator() {
 		super();
@@ -124,6 +130,13 @@ public class MutationGenerator {
 		System.out.println("Finish evaluation all!");
 	}
 	
+	/**
+	 * the original program and its mutants share the control scopes of their unchanged methods.
+	 */
+	private static String getCfgCacheFolder(AnalysisParams analysisParams) {
+		return FileUtils.getFilePath(analysisParams.getMutationOutputSpace(), "cfg_cache");
+	}
+	
 	private void collectTestcases(AnalysisTestcaseParams tcParams) {
 		FileUtils.appendFile("/Users/lylytran/Projects/jfreechart-tcs.txt", tcParams.getTestcaseName() + "\n");
 	}
@@ -138,6 +151,7 @@ public class MutationGenerator {
 		InstrumentationExecutor executor = new InstrumentationExecutor(testcaseConfig, traceExecPath,
 				includedClassNames, excludedClassNames);
 		executor.setTimeout(params.getAnalysisParams().getExecutionTimeout());
+		executor.setCfgCacheDir(getCfgCacheFolder(params.getAnalysisParams()));
 		PreCheckInformation precheckInfo = executor.runPrecheck(precheckPath, params.getAnalysisParams().getStepLimit());
 
 		if (!precheckInfo.isPassTest() || precheckInfo.isOverLong()) {
@@ -173,40 +187,81 @@ public class MutationGenerator {
 		}
 		System.out.println("Start executing mutants for  " + testCaseName);
 		System.out.println("===========the mutation is start=================");
+		List<SingleMutation> acceptedMutations = new ArrayList<>(mutations.size());
 		for (SingleMutation mutation : mutations) {
-			if (monitor.isCanceled()) {
-				return false;
+			if (checker.accept(mutation.getMutationBugId(), MutationType.valueOf(mutation.getMutationType()))) {
+				acceptedMutations.add(mutation);
 			}
-			if (!checker.accept(mutation.getMutationBugId(), MutationType.valueOf(mutation.getMutationType()))) {
-				continue;
+		}
+		/*
+		 * mutants are compiled and executed in parallel, each one in its own class folder, so the project output
+		 * folder keeps the original classes. Their traces are then analyzed and reported one by one in the order of
+		 * the mutations, as the analysis relies on the static caches of Settings.
+		 */
+		AppJavaClassPath testcaseConfig = correctTrace.getTrace().getAppJavaClassPath();
+		ExecutorService executorService = Executors
+				.newFixedThreadPool(params.getAnalysisParams().getMutantParallelism());
+		try {
+			List<BackupClassFiles> bkClassFilesList = new ArrayList<>(acceptedMutations.size());
+			List<Future<MutationTrace>> muTraceFutures = new ArrayList<>(acceptedMutations.size());
+			for (SingleMutation mutation : acceptedMutations) {
+				BackupClassFiles bkClassFiles = backupClassFiles(params, mutation);
+				bkClassFilesList.add(bkClassFiles);
+				muTraceFutures.add(executorService.submit(
+						createMutantExecution(testcaseConfig, params.getAnalysisParams(), mutation, bkClassFiles)));
 			}
-			try {
-				MutationTrace muTrace = generateMutationTrace(correctTrace.getTrace().getAppJavaClassPath(), params, mutation);
-				ICompilationUnit iunit = JavaUtil.findNonCacheICompilationUnitInProject(mutation.getMutatedClass(),
-						params.getProjectName());
-				String orgFilePath = IResourceUtils.getAbsolutePathOsStr(iunit.getPath());
-				String mutationFilePath = mutation.getFile().getAbsolutePath();
-				if (muTrace != null && muTrace.isValid()) {
-					checkRootCause(mutation, orgFilePath, mutationFilePath, muTrace.getTraceExecInfo(), correctTrace, params, monitor);
+			for (int i = 0; i < acceptedMutations.size(); i++) {
+				if (monitor.isCanceled()) {
+					return false;
+				}
+				SingleMutation mutation = acceptedMutations.get(i);
+				try {
+					MutationTrace muTrace = muTraceFutures.get(i).get();
+					ICompilationUnit iunit = JavaUtil.findNonCacheICompilationUnitInProject(mutation.getMutatedClass(),
+							params.getProjectName());
+					String orgFilePath = IResourceUtils.getAbsolutePathOsStr(iunit.getPath());
+					String mutationFilePath = mutation.getFile().getAbsolutePath();
+					if (muTrace != null) {
+						params.setBkClassFiles(bkClassFilesList.get(i));
+						fillMutationTraceInfo(muTrace, mutation);
+					}
+					if (muTrace != null && muTrace.isValid()) {
+						checkRootCause(mutation, orgFilePath, mutationFilePath, muTrace.getTraceExecInfo(), correctTrace, params, monitor);
+					}
+					monitor.reportMutationCase(params, correctTrace, muTrace, mutation);
+				} catch (Exception e) {
+					e.printStackTrace();
 				}
-				monitor.reportMutationCase(params, correctTrace, muTrace, mutation);
-			} catch (Exception e) {
-				e.printStackTrace();
-			} finally {
-				params.recoverOrgMutatedClassFile();
 			}
+		} finally {
+			executorService.shutdownNow();
 		}
 		
 		System.out.println("===========all mutation is done==================");
 		return false;
 	}
 	
+	private Callable<MutationTrace> createMutantExecution(final AppJavaClassPath testcaseConfig,
+			final AnalysisParams analysisParams, final SingleMutation mutation, final BackupClassFiles bkClassFiles) {
+		return new Callable<MutationTrace>() {
+
+			@Override
+			public MutationTrace call() throws Exception {
+				return generateMutationTrace(testcaseConfig, analysisParams, mutation, bkClassFiles);
+			}
+		};
+	}
+	
+	/**
+	 * the mutant has its own class folder on the class path of its trace, so both traces load their own classes
+	 * without restoring any class file in the project output folder (see
+	 * {@link AppJavaClassPathWrapper#wrapAppClassPath(Trace, Trace, BackupClassFiles)}).
+	 */
 	private void checkRootCause(SingleMutation mutation, String orgFilePath, String mutationFilePath,
 			TraceExecutionInfo mutationTraceInfo, TraceExecutionInfo correctTraceInfo, AnalysisTestcaseParams params,
 			IMutationExperimentMonitor monitor) throws SimulationFailException {
 		AppJavaClassPath testCaseConfig = correctTraceInfo.getTrace().getAppJavaClassPath();
-		AppJavaClassPathWrapper.wrapAppClassPath(mutationTraceInfo.getTrace(), correctTraceInfo.getTrace(),
-				params.getBkClassFiles());
+		AppJavaClassPath mutationConfig = mutationTraceInfo.getTrace().getAppJavaClassPath();
 		
 		List<String> includedClassNames = AnalysisScopePreference.getIncludedLibList();
 		List<String> excludedClassNames = AnalysisScopePreference.getExcludedLibList();
@@ -260,12 +315,12 @@ public class MutationGenerator {
 				break;
 			} else {
 				/* !foundRootCause */
-				killingMutatantTrace = generateMutatedTrace(params, mutation, testCaseConfig, buggyPrecheck,
+				killingMutatantTrace = generateMutatedTrace(params, mutation, mutationConfig, buggyPrecheck,
 						includedClassNames, excludedClassNames);
 				correctTrace = generateCorrectTrace(params, testCaseConfig, correctPrecheck, includedClassNames,
 						excludedClassNames);
-				killingMutatantTrace.setAppJavaClassPath(mutationTraceInfo.getTrace().getAppJavaClassPath());
-				correctTrace.setAppJavaClassPath(correctTraceInfo.getTrace().getAppJavaClassPath());
+				killingMutatantTrace.setAppJavaClassPath(mutationConfig);
+				correctTrace.setAppJavaClassPath(testCaseConfig);
 			}
 		}
 		
@@ -307,13 +362,15 @@ public class MutationGenerator {
 		}
 	}
 	
-	private Trace generateMutatedTrace(AnalysisTestcaseParams params, SingleMutation mutation, AppJavaClassPath testcaseConfig,
+	private Trace generateMutatedTrace(AnalysisTestcaseParams params, SingleMutation mutation, AppJavaClassPath mutationConfig,
 			PreCheckInformation buggyPrecheck, List<String> includedClassNames, List<String> excludedClassNames) {
 		String traceDir = mutation.getMutationOutputFolder();
-		params.getBkClassFiles().restoreMutatedClassFile();
-		InstrumentationExecutor executor = new InstrumentationExecutor(testcaseConfig, traceDir, "bug",
+		InstrumentationExecutor executor = new InstrumentationExecutor(mutationConfig, traceDir, "bug",
 				includedClassNames, excludedClassNames);
 		executor.setTimeout(params.getAnalysisParams().getExecutionTimeout());
+		executor.setCfgCacheDir(getCfgCacheFolder(params.getAnalysisParams()));
+		executor.setAppBinFolders(Arrays.asList(getMutantClassFolder(mutation)));
+		executor.setUseAgentWorker(true);
 		RunningInfo runningInfo = executor.execute(buggyPrecheck);
 		return runningInfo.getTraceList().get(0);
 	}
@@ -321,10 +378,10 @@ public class MutationGenerator {
 	private Trace generateCorrectTrace(AnalysisTestcaseParams params, AppJavaClassPath testcaseConfig,
 			PreCheckInformation correctPrecheck, List<String> includedClassNames, List<String> excludedClassNames) {
 		String outputFolder = params.getAnalysisOutputFolder();
-		params.getBkClassFiles().restoreOrgClassFile();
 		InstrumentationExecutor executor = new InstrumentationExecutor(testcaseConfig, outputFolder, "fix",
 				includedClassNames, excludedClassNames);
 		executor.setTimeout(params.getAnalysisParams().getExecutionTimeout());
+		executor.setCfgCacheDir(getCfgCacheFolder(params.getAnalysisParams()));
 		RunningInfo info = executor.execute(correctPrecheck);
 		return info.getTraceList().get(0);
 	}
@@ -380,6 +437,10 @@ public class MutationGenerator {
 			InstrumentationExecutor executor = new InstrumentationExecutor(testcaseConfig, traceExecPath,
 					includedClassNames, excludedClassNames);
 			executor.setTimeout(analysisParams.getExecutionTimeout());
+			executor.setCfgCacheDir(getCfgCacheFolder(analysisParams));
+			executor.setAppBinFolders(Arrays.asList(getMutantClassFolder(mutation)));
+			executor.setUseAgentWorker(true);
+			executor.setDeferMissingInfo(true);
 			PreCheckInformation precheck = executor.runPrecheck(precheckPath, analysisParams.getStepLimit());
 			
 			muTrace.setTimeOut(precheck.isTimeout());
@@ -402,10 +463,7 @@ public class MutationGenerator {
 						long t2 = System.currentTimeMillis();
 						int time = (int) ((t2-t1)/1000);
 						trace.setConstructTime(time);
-						/* filling up trace */
-						MuRegressionUtils.fillMuBkpJavaFilePath(trace, mutation.getFile().getAbsolutePath(),
-								mutation.getMutatedClass());
-						Regression.fillMissingInfo(trace, testcaseConfig);
+						/* the trace is filled up by fillMutationTraceInfo */
 						muTrace.setTrace(new TraceExecutionInfo(precheck, trace, executor.getTraceExecFilePath(), precheckPath));
 					}
 				}
@@ -421,43 +479,74 @@ public class MutationGenerator {
 		return muTrace;
 	}
 	
-	private MutationTrace generateMutationTrace(AppJavaClassPath testcaseConfig, AnalysisTestcaseParams params,
-			SingleMutation mutation) throws Exception {
+	/**
+	 * must be called on the thread which analyzes the traces, see
+	 * {@link InstrumentationExecutor#setDeferMissingInfo(boolean)}.
+	 */
+	private void fillMutationTraceInfo(MutationTrace muTrace, SingleMutation mutation) {
+		Trace trace = muTrace.getTrace();
+		if (trace == null) {
+			return;
+		}
+		AppJavaClassPath mutationConfig = trace.getAppJavaClassPath();
+		InstrumentationExecutor.appendMissingInfo(trace, mutationConfig);
+		/* filling up trace */
+		MuRegressionUtils.fillMuBkpJavaFilePath(trace, mutation.getFile().getAbsolutePath(),
+				mutation.getMutatedClass());
+		Regression.fillMissingInfo(trace, mutationConfig);
+	}
+	
+	/**
+	 * backs up the original .class file of the mutated class, and registers its compilation unit, on the calling
+	 * thread as it uses the JDT model.
+	 */
+	private BackupClassFiles backupClassFiles(AnalysisTestcaseParams params, SingleMutation mutation)
+			throws JavaModelException {
 		ICompilationUnit iunit = JavaUtil.findNonCacheICompilationUnitInProject(mutation.getMutatedClass(), params.getProjectName());
 		CompilationUnit unit = JavaUtil.convertICompilationUnitToASTNode(iunit);
 		Settings.iCompilationUnitMap.put(mutation.getMutatedClass(), iunit);
 		Settings.compilationUnitMap.put(mutation.getMutatedClass(), unit);
 		
-		/* compile mutation file */
-		// backup original .class file
 		String targetFolder = IResourceUtils.getAbsolutePathOsStr(iunit.getJavaProject().getOutputLocation());
 		String classFilePath = ClassUtils.getClassFilePath(targetFolder, mutation.getMutatedClass());
 		String mutatedClassSimpleName = ClassUtils.getSimpleName(mutation.getMutatedClass());
 		String bkOrgClassFilePath = ClassUtils.getClassFilePath(params.getAnalysisOutputFolder(),
 				mutatedClassSimpleName);
 		FileUtils.copyFile(classFilePath, bkOrgClassFilePath, true);
-		String bkMutatedClassFilePath = null;
+		String bkMutatedClassFilePath = ClassUtils.getClassFilePath(mutation.getMutationOutputFolder(),
+				mutatedClassSimpleName);
+		return new BackupClassFiles(classFilePath, bkOrgClassFilePath, bkMutatedClassFilePath);
+	}
+	
+	/**
+	 * compiles the mutation file into the class folder of the mutant and executes the test case with it, the
+	 * project output folder is left untouched so that mutants can be executed in parallel.
+	 */
+	private MutationTrace generateMutationTrace(AppJavaClassPath testcaseConfig, AnalysisParams analysisParams,
+			SingleMutation mutation, BackupClassFiles bkClassFiles) throws Exception {
+		String mutantClassFolder = getMutantClassFolder(mutation);
+		FileUtils.createFolder(mutantClassFolder);
 		try {
 			JavaCompiler javaCompiler = new JavaCompiler(new VMConfiguration(testcaseConfig));
-			javaCompiler.compile(targetFolder, mutation.getFile());
-
-			/* generate trace */
-			MutationTrace mutateInfo = executeTestcaseWithMutation(testcaseConfig, params.getAnalysisParams(), mutation);
-			bkMutatedClassFilePath = ClassUtils.getClassFilePath(mutation.getMutationOutputFolder(), mutatedClassSimpleName);
-			FileUtils.copyFile(classFilePath, bkMutatedClassFilePath, true);
-			return mutateInfo;
+			javaCompiler.compile(mutantClassFolder, mutation.getFile());
 		} catch (SavException e) {
 			System.out.println("Compilation error: " + e.getMessage());
 			System.out.println();
-		} finally {
-			if (bkMutatedClassFilePath != null) {
-				params.setBkClassFiles(new BackupClassFiles(classFilePath, bkOrgClassFilePath, bkMutatedClassFilePath));
-			}
-			/* revert */
-			FileUtils.copyFile(bkOrgClassFilePath, classFilePath, true);
-			
+			return null;
 		}
-		return null;
+		/* generate trace */
+		AppJavaClassPath mutationConfig = MuRegressionUtils.createMutationClassPath(testcaseConfig, mutantClassFolder);
+		MutationTrace mutateInfo = executeTestcaseWithMutation(mutationConfig, analysisParams, mutation);
+		FileUtils.copyFile(ClassUtils.getClassFilePath(mutantClassFolder, mutation.getMutatedClass()),
+				bkClassFiles.getMutatedClassFilePath(), true);
+		return mutateInfo;
+	}
+	
+	/**
+	 * it is usually not in the project folder, so the agent is told that its classes belong to the application.
+	 */
+	private static String getMutantClassFolder(SingleMutation mutation) {
+		return FileUtils.getFilePath(mutation.getMutationOutputFolder(), MUTANT_CLASS_FOLDER);
 	}
 	
 	private List<ClassLocation> findMutationLocation(String junitClassName, List<ClassLocation> executingStatements,
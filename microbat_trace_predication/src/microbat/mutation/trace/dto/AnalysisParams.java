@@ -21,10 +21,23 @@ public class AnalysisParams {
 	private final int stepLimit = 10000;
 	private final long executionTimeout = 30000l;
 	private String mutationOutputSpace;
+	/* number of mutants of a test case which are executed at the same time */
+	private int mutantParallelism = getDefaultMutantParallelism();
 	
 	public AnalysisParams(MutationRegressionSettings mutationSettings) {
 		this.mutationTypes = mutationSettings.getMutationTypes();
 		this.mutationOutputSpace = mutationSettings.getMutationOutputSpace();
+		if (mutationSettings.getMutantParallelism() > 0) {
+			this.mutantParallelism = mutationSettings.getMutantParallelism();
+		}
+	}
+	
+	/**
+	 * a mutant runs one JVM at a time (compiler, precheck then trace), half of the processors leaves room for the
+	 * analysis of the executed mutants, which goes on meanwhile.
+	 */
+	public static int getDefaultMutantParallelism() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 	}
 
 	public IgnoredTestCaseFiles getIgnoredTestCaseFiles() {
@@ -118,4 +131,12 @@ public class AnalysisParams {
 	public String getMutationOutputSpace() {
 		return mutationOutputSpace;
 	}
+
+	public int getMutantParallelism() {
+		return mutantParallelism;
+	}
+
+	public void setMutantParallelism(int mutantParallelism) {
+		this.mutantParallelism = mutantParallelism;
+	}
 }
@@ -23,6 +23,7 @@ import org.osgi.service.prefs.BackingStoreException;
 
 import microbat.Activator;
 import microbat.mutation.mutation.MutationType;
+import microbat.mutation.trace.dto.AnalysisParams;
 import microbat.mutation.trace.dto.MutationCase;
 import microbat.util.MicroBatUtil;
 import microbat.util.SWTFactory;
@@ -36,6 +37,7 @@ public class MutationRegressionPreference extends PreferencePage implements IWor
 	public static final String BUG_ID_KEY = "bugId";
 	public static final String RERUN_KEY = "rerun";
 	public static final String MUTATION_TYPES = "mutationTypes";
+	public static final String MUTANT_PARALLELISM_KEY = "mutantParallelism";
 	
 	/* components */
 	private Text mutationOutputSpaceTb;
@@ -45,6 +47,7 @@ public class MutationRegressionPreference extends PreferencePage implements IWor
 	private List<Button> mutationTypeCbs;
 	private List<MutationType> mutationTypes = MutationType.getPreferenceMutationTypes();
 	private Button rerunCb;
+	private Text mutantParallelismTb;
 
 	@Override
 	public void init(IWorkbench workbench) {
@@ -78,6 +81,9 @@ public class MutationRegressionPreference extends PreferencePage implements IWor
 		SWTFactory.createLabel(mutationTypeGroup, "");
 		
 		rerunCb = SWTFactory.createCheckbox(compo, "Execute to get trace Again", 2);
+		
+		SWTFactory.createLabel(compo, "Mutants executed in parallel");
+		mutantParallelismTb = new Text(compo, SWT.NONE);
 		setDefaultValue();
 		registerListener();
 		return compo;
@@ -120,6 +126,7 @@ public class MutationRegressionPreference extends PreferencePage implements IWor
 		projectCombo.setText(settings.getTargetProject());
 		bugIdCombo.setText(settings.getBugId());
 		rerunCb.setSelection(settings.isRerun());
+		mutantParallelismTb.setText(String.valueOf(settings.getMutantParallelism()));
 		List<MutationType> selectedMutationTypes = settings.getMutationTypes();
 		for (int i = 0; i < mutationTypes.size(); i++) {
 			boolean selection = selectedMutationTypes.contains(mutationTypes.get(i));
@@ -141,6 +148,10 @@ public class MutationRegressionPreference extends PreferencePage implements IWor
 		settings.setBugId(store.getString(BUG_ID_KEY));
 		settings.setMutationTypes(getSelectedMutationTypes(store.getString(MUTATION_TYPES)));
 		settings.setRerun(store.getBoolean(RERUN_KEY));
+		settings.setMutantParallelism(store.getInt(MUTANT_PARALLELISM_KEY));
+		if (settings.getMutantParallelism() <= 0) {
+			settings.setMutantParallelism(AnalysisParams.getDefaultMutantParallelism());
+		}
 		return settings;
 	}
 	
@@ -179,6 +190,8 @@ public class MutationRegressionPreference extends PreferencePage implements IWor
 		preferences.put(RERUN_KEY, isRerun);
 		String selectedMutationTypes = collectSelectedMutationTypes();
 		preferences.put(MUTATION_TYPES, selectedMutationTypes);
+		String mutantParallelism = this.mutantParallelismTb.getText().trim();
+		preferences.put(MUTANT_PARALLELISM_KEY, mutantParallelism);
 		try {
 			preferences.flush();
 		} catch (BackingStoreException e) {
@@ -190,6 +203,7 @@ public class MutationRegressionPreference extends PreferencePage implements IWor
 		Activator.getDefault().getPreferenceStore().putValue(BUG_ID_KEY, bugId);
 		Activator.getDefault().getPreferenceStore().putValue(RERUN_KEY, isRerun);
 		Activator.getDefault().getPreferenceStore().putValue(MUTATION_TYPES, selectedMutationTypes);
+		Activator.getDefault().getPreferenceStore().putValue(MUTANT_PARALLELISM_KEY, mutantParallelism);
 		return true;
 	}
 }
@@ -11,6 +11,7 @@ public class MutationRegressionSettings {
 	private String bugId;
 	private List<MutationType> mutationTypes;
 	private boolean rerun;
+	private int mutantParallelism;
 
 	public String getTargetProject() {
 		return targetProject;
@@ -59,6 +60,14 @@ public class MutationRegressionSettings {
 	public void setMutationOutputSpace(String mutationOutputSpace) {
 		this.mutationOutputSpace = mutationOutputSpace;
 	}
+
+	public int getMutantParallelism() {
+		return mutantParallelism;
+	}
+
+	public void setMutantParallelism(int mutantParallelism) {
+		this.mutantParallelism = mutantParallelism;
+	}
 	
 	
 
@@ -106,7 +106,7 @@ public class AgentVmRunner extends VMRunner {
 		}
 	}
 
-	private List<String> getAgentParams() {
+	protected List<String> getAgentParams() {
 		ArrayList<String> params = new ArrayList<String>();
 		if (!agentParams.isEmpty()) {
 			for (Entry<String, String> entry : agentParams.entrySet()) {
@@ -281,6 +281,10 @@ public class VMRunner {
 	public void setTimeout(long timeout) {
 		this.timeout = timeout;
 	}
+
+	public long getTimeout() {
+		return timeout;
+	}
 	
 	public static boolean start(VMConfiguration config) throws SavException {
 		VMRunner vmRunner = new VMRunner();
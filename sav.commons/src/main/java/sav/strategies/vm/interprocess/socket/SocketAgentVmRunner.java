@@ -14,6 +14,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
@@ -34,6 +35,7 @@ import sav.strategies.vm.interprocess.TcpOutputReader;
 public class SocketAgentVmRunner extends AgentVmRunner {
 	private static Logger log = LoggerFactory.getLogger(SocketAgentVmRunner.class);
 	public static final String CONNECTION_PORT_OPTION = "port";
+	private static final int ACCEPT_TIMEOUT = 1000;
 	private ServerSocket serverSocket;
 	private TcpInputWriter inputWriter;
 	private TcpOutputReader outputReader;
@@ -58,7 +60,11 @@ public class SocketAgentVmRunner extends AgentVmRunner {
 	public boolean startVm(List<String> commands, boolean waitUntilStop) throws SavException {
 		boolean result = super.startVm(commands, false);
 		try {
-			Socket client = serverSocket.accept();
+			Socket client = acceptClient();
+			if (client == null) {
+				log.warn("vm stopped before connecting to the server!");
+				return false;
+			}
 			try {
 				if (inputWriter != null) {
 					inputWriter.setOutputStream(client.getOutputStream());
@@ -73,6 +79,22 @@ public class SocketAgentVmRunner extends AgentVmRunner {
 		return result;
 	}
 	
+	/**
+	 * waits for the vm to connect, or returns null if it stops before.
+	 */
+	private Socket acceptClient() throws IOException {
+		serverSocket.setSoTimeout(ACCEPT_TIMEOUT);
+		while (true) {
+			try {
+				return serverSocket.accept();
+			} catch (SocketTimeoutException e) {
+				if (!isProcessRunning()) {
+					return null;
+				}
+			}
+		}
+	}
+	
 	public void stop() {
 		try {
 			if (inputWriter != null) {